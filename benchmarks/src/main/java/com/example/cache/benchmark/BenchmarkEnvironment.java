@@ -0,0 +1,154 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.MultiLevelCacheApplication;
+import com.github.fppt.jedismock.RedisServer;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基准测试运行环境
+ * 启动一个进程内的Redis替身和不带Web服务器的应用上下文，
+ * 通过-Dbench.redis=host:port可改为连接本地已启动的真实Redis。
+ * 负载模拟器可以启动多个带Web服务器的应用节点，各节点共用同一个Redis作为远程缓存
+ */
+public final class BenchmarkEnvironment implements AutoCloseable {
+
+    private final RedisServer redisServer;
+
+    private final List<ConfigurableApplicationContext> nodes;
+
+    private BenchmarkEnvironment(RedisServer redisServer, List<ConfigurableApplicationContext> nodes) {
+        this.redisServer = redisServer;
+        this.nodes = nodes;
+    }
+
+    /**
+     * 启动运行环境
+     *
+     * @param properties 额外的应用配置，格式为key=value
+     * @return 运行环境
+     */
+    public static BenchmarkEnvironment start(String... properties) {
+        return start(1, WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * 启动多个带Web服务器的应用节点
+     * 各节点监听随机端口，使用不同的节点ID，共用同一个Redis
+     *
+     * @param nodeCount 节点数量
+     * @param properties 额外的应用配置，格式为key=value
+     * @return 运行环境
+     */
+    public static BenchmarkEnvironment startNodes(int nodeCount, String... properties) {
+        return start(nodeCount, WebApplicationType.SERVLET, properties);
+    }
+
+    private static BenchmarkEnvironment start(int nodeCount, WebApplicationType webType, String... properties) {
+        RedisServer redisServer = null;
+        String host;
+        int port;
+        String external = System.getProperty("bench.redis");
+        if (external != null) {
+            String[] hostAndPort = external.split(":");
+            host = hostAndPort[0];
+            port = Integer.parseInt(hostAndPort[1]);
+        } else {
+            try {
+                redisServer = RedisServer.newRedisServer();
+                redisServer.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start in-process Redis", e);
+            }
+            host = redisServer.getHost();
+            port = redisServer.getBindPort();
+        }
+
+        List<String> allProperties = new ArrayList<>(Arrays.asList(
+                "spring.redis.host=" + host,
+                "spring.redis.port=" + port,
+                // 本地缓存容量需覆盖基准测试的键空间，否则本地命中场景会退化为远程命中
+                "cache.local.sizing.initial-bytes=1073741824",
+                "cache.local.sizing.max-heap-fraction=0.5",
+                "cache.local.sizing.adaptive=false",
+                // 逐键INFO日志会主导热路径耗时
+                "logging.level.com.example.cache=WARN"));
+        if (redisServer != null) {
+            // 模拟服务不支持CLIENT SETNAME，连接不设置名称
+            allProperties.add("cache.redis.client-name=");
+        }
+        allProperties.addAll(Arrays.asList(properties));
+
+        List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                List<String> nodeProperties = new ArrayList<>(allProperties);
+                if (nodeCount > 1) {
+                    // 同一进程内的节点不能共用节点ID和本地文件
+                    String tmpDir = System.getProperty("java.io.tmpdir") + "/multi-level-cache/node-" + i;
+                    nodeProperties.add(0, "cache.node-id=node-" + i);
+                    nodeProperties.add(0, "cache.local.snapshot.path=" + tmpDir + "/local-cache.snapshot");
+                    nodeProperties.add(0, "cache.write-behind.journal-path=" + tmpDir + "/write-behind.journal");
+                }
+                if (webType != WebApplicationType.NONE) {
+                    nodeProperties.add(0, "server.port=0");
+                }
+                nodes.add(new SpringApplicationBuilder(MultiLevelCacheApplication.class)
+                        .web(webType)
+                        .bannerMode(Banner.Mode.OFF)
+                        .properties(nodeProperties.toArray(new String[0]))
+                        .run());
+            }
+        } catch (RuntimeException e) {
+            nodes.forEach(ConfigurableApplicationContext::close);
+            if (redisServer != null) {
+                try {
+                    redisServer.stop();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return new BenchmarkEnvironment(redisServer, nodes);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return getBean(0, type);
+    }
+
+    public <T> T getBean(int node, Class<T> type) {
+        return nodes.get(node).getBean(type);
+    }
+
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * 节点的Web服务器实际监听的端口
+     *
+     * @param node 节点下标
+     * @return 端口
+     */
+    public int port(int node) {
+        return ((WebServerApplicationContext) nodes.get(node)).getWebServer().getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+}
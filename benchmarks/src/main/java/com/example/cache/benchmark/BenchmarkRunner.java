@@ -0,0 +1,36 @@
+package com.example.cache.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * 依次以1、4、16个线程运行匹配的基准测试，每个线程数的结果写入单独的JSON文件，便于前后对比。
+ * 其余参数按JMH命令行格式传入，例如：
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar CacheGetBenchmark -p distribution=zipfian
+ * </pre>
+ * 通过-Dbench.threads=1,8可以指定线程数
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String[] threadCounts = System.getProperty("bench.threads", "1,4,16").split(",");
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-t" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.manager.CacheConsistencyManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheConsistencyManager.get基准测试
+ * <ul>
+ *     <li>L1_HIT：所有键都在本地缓存中</li>
+ *     <li>L2_HIT：每次读取前清除该键的本地缓存，读取落到远程缓存，包含一次本地删除的开销</li>
+ *     <li>MISS：键从未写入，本地缓存和远程缓存都未命中</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CacheGetBenchmark {
+
+    @Param({"L1_HIT", "L2_HIT", "MISS"})
+    public String scenario;
+
+    @Param({"uniform", "zipfian"})
+    public String distribution;
+
+    @Param({"10000"})
+    public int keySpace;
+
+    private BenchmarkEnvironment environment;
+    private CacheConsistencyManager cacheManager;
+    private KeySampler sampler;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = BenchmarkEnvironment.start();
+        cacheManager = environment.getBean(CacheConsistencyManager.class);
+        sampler = KeySampler.of(distribution, keySpace);
+
+        String prefix = "MISS".equals(scenario) ? "bench:miss:" : "bench:get:";
+        keys = new String[keySpace];
+        Map<String, Object> batch = new HashMap<>();
+        for (int i = 0; i < keySpace; i++) {
+            keys[i] = prefix + i;
+            batch.put(keys[i], "value-" + i);
+            if (batch.size() == 500 || i == keySpace - 1) {
+                if (!"MISS".equals(scenario)) {
+                    cacheManager.putAll(batch);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public Object get(ThreadRandom random) {
+        String key = keys[sampler.next(random.random)];
+        if ("L2_HIT".equals(scenario)) {
+            cacheManager.clearLocalCache(key);
+        }
+        return cacheManager.get(key);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.listener.CacheUpdateListener;
+import com.example.cache.manager.CacheInvalidationPublisher;
+import com.example.cache.manager.CacheUpdateBatch;
+import com.example.cache.manager.CacheUpdateMessage;
+import com.example.cache.manager.LocalCacheTier;
+import com.example.cache.manager.VersionedValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheUpdateListener.onMessage基准测试
+ * 消息来自其他节点且版本号高于本地条目，每条消息都会触发本地缓存失效。
+ * onMessage每次调用前重新写入本地缓存（不计入测量），decode只测量消息解码
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CacheUpdateListenerBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int batchSize;
+
+    private BenchmarkEnvironment environment;
+    private CacheUpdateListener listener;
+    private LocalCacheTier localTier;
+    private ObjectMapper objectMapper;
+    private Message message;
+    private Map<String, Object> localEntries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start();
+        listener = environment.getBean(CacheUpdateListener.class);
+        localTier = environment.getBean(LocalCacheTier.class);
+        objectMapper = environment.getBean(ObjectMapper.class);
+
+        List<CacheUpdateMessage> messages = new ArrayList<>();
+        localEntries = new HashMap<>();
+        for (int i = 0; i < batchSize; i++) {
+            String key = "bench:listener:" + i;
+            messages.add(new CacheUpdateMessage(key, "update", 2));
+            localEntries.put(key, new VersionedValue("value-" + i, 1));
+        }
+        byte[] body = objectMapper.writeValueAsBytes(new CacheUpdateBatch("benchmark-origin", messages, 0, new ArrayList<>()));
+        message = new DefaultMessage(CacheInvalidationPublisher.UPDATE_TOPIC.getBytes(StandardCharsets.UTF_8), body);
+    }
+
+    /**
+     * 每次调用onMessage前重新写入本地缓存
+     * 单独放在一个状态中，避免decode也执行这一步
+     */
+    @State(Scope.Thread)
+    public static class PopulatedLocalCache {
+
+        @Setup(Level.Invocation)
+        public void populate(CacheUpdateListenerBenchmark benchmark) {
+            benchmark.localTier.putAll(benchmark.localEntries);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public void onMessage(PopulatedLocalCache populated) {
+        listener.onMessage(message, null);
+    }
+
+    @Benchmark
+    public CacheUpdateBatch decode() throws IOException {
+        return objectMapper.readValue(message.getBody(), CacheUpdateBatch.class);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.manager.CacheConsistencyManager;
+import com.example.cache.manager.CacheWriteResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheConsistencyManager.updateCache/deleteCache基准测试
+ * 分别测试加锁写入和乐观写入两种模式，Zipfian分布下热点键的写入竞争更激烈
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CacheWriteBenchmark {
+
+    @Param({"lock", "optimistic"})
+    public String writeMode;
+
+    @Param({"uniform", "zipfian"})
+    public String distribution;
+
+    @Param({"10000"})
+    public int keySpace;
+
+    private BenchmarkEnvironment environment;
+    private CacheConsistencyManager cacheManager;
+    private KeySampler sampler;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = BenchmarkEnvironment.start("cache.write.mode=" + writeMode);
+        cacheManager = environment.getBean(CacheConsistencyManager.class);
+        sampler = KeySampler.of(distribution, keySpace);
+        keys = new String[keySpace];
+        for (int i = 0; i < keySpace; i++) {
+            keys[i] = "bench:write:" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public CacheWriteResult update(ThreadRandom random) {
+        String key = keys[sampler.next(random.random)];
+        return cacheManager.updateCache(key, "value-" + key);
+    }
+
+    @Benchmark
+    public CacheWriteResult delete(ThreadRandom random) {
+        return cacheManager.deleteCache(keys[sampler.next(random.random)]);
+    }
+}
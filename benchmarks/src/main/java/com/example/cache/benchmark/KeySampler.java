@@ -0,0 +1,134 @@
+package com.example.cache.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * 键分布采样器
+ * 支持均匀分布、Zipfian分布和热点分布，Zipfian分布下少量热点键占据大部分访问，
+ * 热点分布下固定比例的热点键占据固定比例的访问，热点内外各自均匀
+ * <p>
+ * Zipfian采样使用YCSB的近似算法，初始化时计算一次zeta常数，采样为O(1)
+ */
+public abstract class KeySampler {
+
+    /**
+     * YCSB默认的Zipfian偏斜系数
+     */
+    public static final double DEFAULT_ZIPFIAN_THETA = 0.99;
+
+    /**
+     * 热点分布中热点键占键空间的比例
+     */
+    public static final double DEFAULT_HOT_SET_FRACTION = 0.2;
+
+    /**
+     * 热点分布中落在热点键上的访问比例
+     */
+    public static final double DEFAULT_HOT_ACCESS_FRACTION = 0.8;
+
+    protected final int keySpace;
+
+    protected KeySampler(int keySpace) {
+        this.keySpace = keySpace;
+    }
+
+    /**
+     * 采样一个键的下标
+     *
+     * @param random 调用线程自己的随机数生成器
+     * @return [0, keySpace)范围内的下标
+     */
+    public abstract int next(SplittableRandom random);
+
+    /**
+     * 按名称创建采样器
+     *
+     * @param distribution uniform、zipfian或hotspot
+     * @param keySpace 键空间大小
+     * @return 采样器
+     */
+    public static KeySampler of(String distribution, int keySpace) {
+        if ("uniform".equals(distribution)) {
+            return new Uniform(keySpace);
+        }
+        if ("zipfian".equals(distribution)) {
+            return new Zipfian(keySpace, DEFAULT_ZIPFIAN_THETA);
+        }
+        if ("hotspot".equals(distribution)) {
+            return new Hotspot(keySpace, DEFAULT_HOT_SET_FRACTION, DEFAULT_HOT_ACCESS_FRACTION);
+        }
+        throw new IllegalArgumentException("Unknown key distribution: " + distribution);
+    }
+
+    static final class Uniform extends KeySampler {
+
+        Uniform(int keySpace) {
+            super(keySpace);
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            return random.nextInt(keySpace);
+        }
+    }
+
+    static final class Zipfian extends KeySampler {
+
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+        private final double halfPowTheta;
+
+        Zipfian(int keySpace, double theta) {
+            super(keySpace);
+            this.theta = theta;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zetaN = zeta(keySpace, theta);
+            this.eta = (1 - Math.pow(2.0 / keySpace, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+            this.halfPowTheta = 1 + Math.pow(0.5, theta);
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < halfPowTheta) {
+                return 1;
+            }
+            int index = (int) (keySpace * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(index, keySpace - 1);
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+
+    static final class Hotspot extends KeySampler {
+
+        private final int hotKeys;
+        private final double hotAccessFraction;
+
+        Hotspot(int keySpace, double hotSetFraction, double hotAccessFraction) {
+            super(keySpace);
+            this.hotKeys = Math.max(1, Math.min(keySpace, (int) (keySpace * hotSetFraction)));
+            this.hotAccessFraction = hotAccessFraction;
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            if (hotKeys == keySpace || random.nextDouble() < hotAccessFraction) {
+                return random.nextInt(hotKeys);
+            }
+            return hotKeys + random.nextInt(keySpace - hotKeys);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.cache.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * 每个基准测试线程独立的随机数生成器
+ * 避免线程间共享随机数状态带来的竞争
+ */
+@State(Scope.Thread)
+public class ThreadRandom {
+
+    final SplittableRandom random = new SplittableRandom();
+}
@@ -0,0 +1,129 @@
+package com.example.cache.benchmark;
+
+import com.alicp.jetcache.CacheValueHolder;
+import com.alicp.jetcache.support.JavaValueDecoder;
+import com.alicp.jetcache.support.JavaValueEncoder;
+import com.example.cache.codec.BinaryValueCodec;
+import com.example.cache.codec.VersionedValueSerializer;
+import com.example.cache.manager.VersionedValue;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 值序列化器基准测试
+ * 对比RedisConfig中配置的紧凑二进制编解码器（含/不含LZ4压缩）、
+ * 升级前RedisTemplate使用的Jackson默认类型序列化器，以及JetCache的Java序列化编码器。
+ * 启动时会打印各序列化器的编码大小
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ValueSerializerBenchmark {
+
+    /**
+     * 用户资料的字段数量，决定值的大小
+     */
+    @Param({"4", "64"})
+    public int fieldCount;
+
+    private BinaryValueCodec binaryCodec;
+    private BinaryValueCodec compressingCodec;
+    private Jackson2JsonRedisSerializer<Object> jacksonSerializer;
+
+    private CacheValueHolder<Object> holder;
+    private VersionedValue value;
+
+    private byte[] binaryBytes;
+    private byte[] compressedBytes;
+    private byte[] jacksonBytes;
+    private byte[] javaBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        binaryCodec = new BinaryValueCodec(0)
+                .register(BinaryValueCodec.FIRST_CUSTOM_TAG, VersionedValue.class, new VersionedValueSerializer());
+        compressingCodec = new BinaryValueCodec(256)
+                .register(BinaryValueCodec.FIRST_CUSTOM_TAG, VersionedValue.class, new VersionedValueSerializer());
+
+        jacksonSerializer = new Jackson2JsonRedisSerializer<>(Object.class);
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        mapper.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
+        jacksonSerializer.setObjectMapper(mapper);
+
+        Map<String, Object> profile = new LinkedHashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            profile.put("field" + i, i % 2 == 0 ? "value of user profile field " + i : (Object) (long) i);
+        }
+        value = new VersionedValue(profile, 42);
+        holder = new CacheValueHolder<>(value, 100000);
+
+        binaryBytes = binaryCodec.encode(holder);
+        compressedBytes = compressingCodec.encode(holder);
+        jacksonBytes = jacksonSerializer.serialize(value);
+        javaBytes = JavaValueEncoder.INSTANCE.apply(holder);
+        System.out.printf("%n[fieldCount=%d] binary=%dB, binary+lz4=%dB, jackson=%dB, java=%dB%n",
+                fieldCount, binaryBytes.length, compressedBytes.length, jacksonBytes.length, javaBytes.length);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return binaryCodec.encode(holder);
+    }
+
+    @Benchmark
+    public Object decodeBinary() {
+        return binaryCodec.decode(binaryBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeBinaryLz4() {
+        return compressingCodec.encode(holder);
+    }
+
+    @Benchmark
+    public Object decodeBinaryLz4() {
+        return compressingCodec.decode(compressedBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeJackson() {
+        return jacksonSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decodeJackson() {
+        return jacksonSerializer.deserialize(jacksonBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeJava() {
+        return JavaValueEncoder.INSTANCE.apply(holder);
+    }
+
+    @Benchmark
+    public Object decodeJava() {
+        return JavaValueDecoder.INSTANCE.apply(javaBytes);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.cache.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 负载模拟配置
+ * 全部通过-Dsim.*系统属性指定，未指定时使用默认值
+ */
+public class WorkloadConfig {
+
+    /**
+     * 模拟的应用节点数量
+     */
+    final int nodes = Integer.getInteger("sim.nodes", 3);
+
+    /**
+     * 所有节点合计的目标请求速率（次/秒），按固定间隔发出，不等待前一个请求完成
+     */
+    final int rate = Integer.getInteger("sim.rate", 2000);
+
+    final int warmupSeconds = Integer.getInteger("sim.warmup-seconds", 10);
+
+    final int durationSeconds = Integer.getInteger("sim.duration-seconds", 60);
+
+    /**
+     * 用户ID的数量
+     */
+    final int keySpace = Integer.getInteger("sim.keys", 10000);
+
+    /**
+     * 键的访问分布：uniform、zipfian或hotspot
+     */
+    final String distribution = System.getProperty("sim.distribution", "zipfian");
+
+    /**
+     * 批量读取的键数量
+     */
+    final int batchSize = Integer.getInteger("sim.batch-size", 10);
+
+    /**
+     * 写入的值大小（字节）
+     */
+    final int valueBytes = Integer.getInteger("sim.value-bytes", 256);
+
+    /**
+     * 缓存更新使用的不同标签数量
+     */
+    final int tagCount = Integer.getInteger("sim.tags", 16);
+
+    /**
+     * 发送请求的客户端线程数量
+     */
+    final int clientThreads = Integer.getInteger("sim.client-threads", 64);
+
+    /**
+     * 两次失效延迟探测之间的间隔（毫秒），0表示不探测
+     */
+    final long lagProbeIntervalMillis = Long.getLong("sim.lag-probe-interval-millis", 200);
+
+    /**
+     * 失效延迟探测等待其他节点读到新值的最长时间（毫秒）
+     */
+    final long lagProbeTimeoutMillis = Long.getLong("sim.lag-probe-timeout-millis", 5000);
+
+    /**
+     * 直方图文件的输出目录
+     */
+    final String outputDir = System.getProperty("sim.output", "workload-report");
+
+    /**
+     * 操作比例
+     */
+    final List<Weighted> mix = parseMix(System.getProperty("sim.mix", "read:90,write:8,delete:2"));
+
+    private final KeySampler sampler = KeySampler.of(distribution, keySpace);
+
+    private final String valuePadding = padding(valueBytes);
+
+    /**
+     * 按比例随机选择一个操作
+     *
+     * @param random 调用线程自己的随机数生成器
+     * @return 操作
+     */
+    public WorkloadOperation nextOperation(SplittableRandom random) {
+        int total = mix.get(mix.size() - 1).cumulative;
+        int pick = random.nextInt(total);
+        for (Weighted weighted : mix) {
+            if (pick < weighted.cumulative) {
+                return weighted.operation;
+            }
+        }
+        throw new IllegalStateException("Operation mix exhausted");
+    }
+
+    /**
+     * 比例中包含的操作
+     */
+    public List<WorkloadOperation> operations() {
+        List<WorkloadOperation> operations = new ArrayList<>();
+        mix.forEach(weighted -> operations.add(weighted.operation));
+        return operations;
+    }
+
+    /**
+     * 按访问分布采样一个用户ID
+     */
+    public String nextUserId(SplittableRandom random) {
+        return String.valueOf(sampler.next(random));
+    }
+
+    /**
+     * 生成一个新的值，长度约为配置的值大小
+     */
+    public String newValue(SplittableRandom random) {
+        String unique = Long.toHexString(random.nextLong());
+        return valuePadding.length() > unique.length() ? unique + valuePadding.substring(unique.length()) : unique;
+    }
+
+    /**
+     * 用户ID所属的标签，同一标签下的键一起失效
+     */
+    public String tagOf(String userId) {
+        return "tag-" + Math.floorMod(userId.hashCode(), tagCount);
+    }
+
+    /**
+     * 随机选择一个标签
+     */
+    public String nextTag(SplittableRandom random) {
+        return "tag-" + random.nextInt(tagCount);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mixText = new StringBuilder();
+        int previous = 0;
+        for (Weighted weighted : mix) {
+            if (mixText.length() > 0) {
+                mixText.append(',');
+            }
+            mixText.append(weighted.operation.getName()).append(':').append(weighted.cumulative - previous);
+            previous = weighted.cumulative;
+        }
+        return "nodes=" + nodes + ", rate=" + rate + "/s, warmup=" + warmupSeconds + "s, duration=" + durationSeconds
+                + "s, keys=" + keySpace + ", distribution=" + distribution + ", mix=" + mixText;
+    }
+
+    /**
+     * 解析形如read:90,write:8,delete:2的操作比例
+     */
+    static List<Weighted> parseMix(String text) {
+        List<Weighted> mix = new ArrayList<>();
+        int cumulative = 0;
+        for (String part : text.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            if (nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Invalid sim.mix entry: " + part);
+            }
+            int weight = Integer.parseInt(nameAndWeight[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in sim.mix: " + part);
+            }
+            if (weight > 0) {
+                cumulative += weight;
+                mix.add(new Weighted(WorkloadOperation.of(nameAndWeight[0].trim()), cumulative));
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("sim.mix has no operation with a positive weight: " + text);
+        }
+        return mix;
+    }
+
+    private static String padding(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append('x');
+        }
+        return builder.toString();
+    }
+
+    static final class Weighted {
+
+        private final WorkloadOperation operation;
+
+        /**
+         * 到该操作为止的累计权重
+         */
+        private final int cumulative;
+
+        Weighted(WorkloadOperation operation, int cumulative) {
+            this.operation = operation;
+            this.cumulative = cumulative;
+        }
+    }
+}
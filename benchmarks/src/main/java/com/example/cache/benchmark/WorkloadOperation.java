@@ -0,0 +1,151 @@
+package com.example.cache.benchmark;
+
+import org.springframework.web.client.RestTemplate;
+
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+
+/**
+ * 负载模拟器发出的请求类型
+ * 用户接口和缓存测试接口中的缓存更新、删除操作使用同一组用户ID，
+ * 读取可以观察到通过任一接口写入、删除或按标签失效的结果
+ */
+public enum WorkloadOperation {
+
+    /**
+     * GET /api/users/{id}
+     */
+    READ("read") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            rest.getForObject(baseUrl + "/api/users/{id}", String.class, config.nextUserId(random));
+        }
+    },
+
+    /**
+     * GET /api/users/batch?ids=...
+     */
+    BATCH_READ("batch-read") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            StringJoiner ids = new StringJoiner(",");
+            for (int i = 0; i < config.batchSize; i++) {
+                ids.add(config.nextUserId(random));
+            }
+            rest.getForObject(baseUrl + "/api/users/batch?ids={ids}", String.class, ids.toString());
+        }
+    },
+
+    /**
+     * POST /api/users/{id}
+     */
+    WRITE("write") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            rest.postForObject(baseUrl + "/api/users/{id}", config.newValue(random), String.class,
+                    config.nextUserId(random));
+        }
+    },
+
+    /**
+     * DELETE /api/users/{id}
+     */
+    DELETE("delete") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            rest.delete(baseUrl + "/api/users/{id}", config.nextUserId(random));
+        }
+    },
+
+    /**
+     * POST /api/cache/update/user:{id}?tags=...，只更新缓存，不写入用户仓库
+     */
+    CACHE_UPDATE("cache-update") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            String userId = config.nextUserId(random);
+            rest.postForObject(baseUrl + "/api/cache/update/{key}?tags={tag}", config.newValue(random), String.class,
+                    USER_KEY_PREFIX + userId, config.tagOf(userId));
+        }
+    },
+
+    /**
+     * DELETE /api/cache/user:{id}
+     */
+    CACHE_DELETE("cache-delete") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            rest.delete(baseUrl + "/api/cache/{key}", USER_KEY_PREFIX + config.nextUserId(random));
+        }
+    },
+
+    /**
+     * DELETE /api/cache/tags/{tag}
+     */
+    TAG_INVALIDATE("tag-invalidate") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            rest.delete(baseUrl + "/api/cache/tags/{tag}", config.nextTag(random));
+        }
+    },
+
+    /**
+     * GET /api/cache/local/{id}，JetCache注解的本地缓存
+     */
+    LOCAL_READ("local-read") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            rest.getForObject(baseUrl + "/api/cache/local/{key}", String.class, config.nextUserId(random));
+        }
+    },
+
+    /**
+     * GET /api/cache/remote/{id}，JetCache注解的远程缓存
+     */
+    REMOTE_READ("remote-read") {
+        @Override
+        void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random) {
+            rest.getForObject(baseUrl + "/api/cache/remote/{key}", String.class, config.nextUserId(random));
+        }
+    };
+
+    /**
+     * 与UserService一致的缓存键前缀
+     */
+    private static final String USER_KEY_PREFIX = "user:";
+
+    private final String name;
+
+    WorkloadOperation(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 向一个节点发出一次请求，非2xx响应抛出异常
+     *
+     * @param rest HTTP客户端
+     * @param baseUrl 节点地址
+     * @param config 负载配置，提供键和值
+     * @param random 调用线程自己的随机数生成器
+     */
+    abstract void execute(RestTemplate rest, String baseUrl, WorkloadConfig config, SplittableRandom random);
+
+    /**
+     * 按名称查找操作
+     *
+     * @param name 操作名称，如read、write、delete
+     * @return 操作
+     */
+    public static WorkloadOperation of(String name) {
+        for (WorkloadOperation operation : values()) {
+            if (operation.name.equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown workload operation: " + name);
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.cache.benchmark;
+
+import com.example.cache.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 端到端负载模拟器
+ * 在同一进程内启动多个共用一个Redis的应用节点，按固定速率向各节点的REST接口发出请求，
+ * 报告各操作的延迟分布、各级缓存的命中率和失效消息在节点间的传播延迟。
+ * <p>
+ * 请求按开环方式发出：第n个请求的计划发出时间固定为 开始时间 + n / 速率，不等待之前的请求完成，
+ * 延迟从计划发出时间算起，服务变慢时排队的时间也计入延迟，不会因为客户端跟着变慢而被掩盖。
+ * <p>
+ * 失效延迟由单独的探测线程测量：先在其他节点上读取探测键使其进入本地缓存，
+ * 再通过一个节点更新该键，轮询其他节点直到读到新值，记录从更新完成到读到新值的时间。
+ * <p>
+ * 配置见{@link WorkloadConfig}，命令行参数按key=value格式作为应用配置传给每个节点，例如：
+ * <pre>
+ * java -Dsim.nodes=3 -Dsim.rate=5000 -Dsim.mix=read:80,write:10,cache-update:5,tag-invalidate:5 \
+ *      -cp target/benchmarks.jar com.example.cache.benchmark.WorkloadSimulator cache.write.mode=optimistic
+ * </pre>
+ * 每个节点使用各自的内存用户仓库，启动时写入相同的初始数据，通过某个节点写入的数据只进入该节点的仓库，
+ * 其他节点在远程缓存过期后会读到自己仓库中的旧值
+ */
+public class WorkloadSimulator {
+
+    /**
+     * 失效延迟探测使用的用户ID数量
+     */
+    private static final int LAG_PROBE_KEYS = 16;
+
+    /**
+     * 输出直方图时的单位换算，记录单位为微秒，输出单位为毫秒
+     */
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private static final String[] TIERS = {"l1", "l1.5", "l2"};
+
+    private final WorkloadConfig config;
+
+    private final BenchmarkEnvironment environment;
+
+    private final RestTemplate rest;
+
+    private final String[] baseUrls;
+
+    private final Map<WorkloadOperation, Recorder> latencies = new EnumMap<>(WorkloadOperation.class);
+
+    private final Map<WorkloadOperation, LongAdder> errors = new EnumMap<>(WorkloadOperation.class);
+
+    private final Recorder lagRecorder = new Recorder(3);
+
+    private final LongAdder lostProbes = new LongAdder();
+
+    private final ThreadLocal<SplittableRandom> clientRandom = ThreadLocal.withInitial(SplittableRandom::new);
+
+    /**
+     * 计划在测量阶段发出的第一个请求的时间，之前的请求和探测不计入结果
+     */
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+
+    private volatile boolean running = true;
+
+    private WorkloadSimulator(WorkloadConfig config, BenchmarkEnvironment environment) {
+        this.config = config;
+        this.environment = environment;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(1000);
+        requestFactory.setReadTimeout(30000);
+        this.rest = new RestTemplate(requestFactory);
+        this.baseUrls = new String[environment.nodeCount()];
+        for (int i = 0; i < baseUrls.length; i++) {
+            baseUrls[i] = "http://127.0.0.1:" + environment.port(i);
+        }
+        for (WorkloadOperation operation : config.operations()) {
+            latencies.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        WorkloadConfig config = new WorkloadConfig();
+        // HttpURLConnection默认每个地址只保持5个空闲连接，超出的请求每次都要重新建连
+        System.setProperty("http.maxConnections", String.valueOf(config.clientThreads));
+        System.out.println("Starting " + config.nodes + " nodes: " + config);
+        try (BenchmarkEnvironment environment = BenchmarkEnvironment.startNodes(config.nodes, args)) {
+            new WorkloadSimulator(config, environment).run();
+        }
+    }
+
+    private void run() throws InterruptedException, IOException {
+        seedRepositories();
+
+        ThreadPoolExecutor clients = new ThreadPoolExecutor(config.clientThreads, config.clientThreads,
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), daemonThreads("workload-client"));
+        Thread lagProbe = null;
+        if (baseUrls.length > 1 && config.lagProbeIntervalMillis > 0) {
+            lagProbe = new Thread(this::probeLagLoop, "workload-lag-probe");
+            lagProbe.setDaemon(true);
+            lagProbe.start();
+        }
+
+        Map<String, double[]> tierGetsBefore = dispatch(clients);
+
+        running = false;
+        clients.shutdown();
+        if (!clients.awaitTermination(60, TimeUnit.SECONDS)) {
+            System.out.println("Requests still in flight after 60s: " + clients.getQueue().size());
+            clients.shutdownNow();
+        }
+        if (lagProbe != null) {
+            lagProbe.join(config.lagProbeTimeoutMillis + 1000);
+        }
+        report(tierGetsBefore, tierGets());
+    }
+
+    /**
+     * 每个节点的用户仓库写入相同的初始数据
+     */
+    private void seedRepositories() {
+        SplittableRandom random = new SplittableRandom(42);
+        Map<String, String> users = new HashMap<>();
+        for (int i = 0; i < config.keySpace; i++) {
+            users.put(String.valueOf(i), config.newValue(random));
+        }
+        for (int node = 0; node < baseUrls.length; node++) {
+            environment.getBean(node, UserRepository.class).saveAll(users);
+        }
+    }
+
+    /**
+     * 按固定速率分派请求，直到预热和测量阶段结束
+     *
+     * @return 测量开始时各级缓存的读取计数
+     */
+    private Map<String, double[]> dispatch(ExecutorService clients) {
+        SplittableRandom random = new SplittableRandom();
+        double intervalNanos = (double) TimeUnit.SECONDS.toNanos(1) / config.rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        Map<String, double[]> tierGetsBefore = null;
+        for (long n = 0; ; n++) {
+            long intended = start + (long) (n * intervalNanos);
+            if (intended >= end) {
+                break;
+            }
+            if (tierGetsBefore == null && intended >= measureFrom) {
+                tierGetsBefore = tierGets();
+                measureFromNanos = measureFrom;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            WorkloadOperation operation = config.nextOperation(random);
+            String baseUrl = baseUrls[random.nextInt(baseUrls.length)];
+            clients.execute(() -> execute(operation, baseUrl, intended));
+        }
+        return tierGetsBefore != null ? tierGetsBefore : tierGets();
+    }
+
+    private void execute(WorkloadOperation operation, String baseUrl, long intendedNanos) {
+        try {
+            operation.execute(rest, baseUrl, config, clientRandom.get());
+        } catch (RuntimeException e) {
+            if (intendedNanos >= measureFromNanos) {
+                errors.get(operation).increment();
+            }
+            return;
+        }
+        if (intendedNanos >= measureFromNanos) {
+            latencies.get(operation).recordValue(
+                    Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos)));
+        }
+    }
+
+    private void probeLagLoop() {
+        SplittableRandom random = new SplittableRandom();
+        long sequence = 0;
+        while (running) {
+            try {
+                probeLag("lag-probe-" + (sequence % LAG_PROBE_KEYS), "probe-" + sequence, random);
+            } catch (RuntimeException e) {
+                if (System.nanoTime() >= measureFromNanos) {
+                    lostProbes.increment();
+                }
+            }
+            sequence++;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(config.lagProbeIntervalMillis));
+        }
+    }
+
+    /**
+     * 进行一次失效延迟探测
+     *
+     * @param userId 探测使用的用户ID
+     * @param token 本次写入的值
+     */
+    private void probeLag(String userId, String token, SplittableRandom random) {
+        int writer = random.nextInt(baseUrls.length);
+        List<String> readers = new ArrayList<>();
+        for (int node = 0; node < baseUrls.length; node++) {
+            if (node != writer) {
+                readers.add(baseUrls[node]);
+            }
+        }
+        // 读两次，本地缓存的准入策略可能要求键被访问过才写入本地缓存
+        for (String reader : readers) {
+            readUser(reader, userId);
+            readUser(reader, userId);
+        }
+        rest.postForObject(baseUrls[writer] + "/api/users/{id}", token, String.class, userId);
+        long writtenAt = System.nanoTime();
+        boolean measured = writtenAt >= measureFromNanos;
+        long deadline = writtenAt + TimeUnit.MILLISECONDS.toNanos(config.lagProbeTimeoutMillis);
+        // 轮流读取各节点，避免一个节点的等待时间计入其他节点的延迟
+        List<String> pending = new ArrayList<>(readers);
+        while (!pending.isEmpty()) {
+            for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+                if (token.equals(readUser(it.next(), userId))) {
+                    if (measured) {
+                        lagRecorder.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - writtenAt)));
+                    }
+                    it.remove();
+                }
+            }
+            if (System.nanoTime() >= deadline) {
+                if (measured) {
+                    lostProbes.add(pending.size());
+                }
+                return;
+            }
+        }
+    }
+
+    private String readUser(String baseUrl, String userId) {
+        return rest.getForObject(baseUrl + "/api/users/{id}", String.class, userId);
+    }
+
+    /**
+     * 所有节点合计的各级缓存读取计数
+     *
+     * @return 级别到{命中数, 未命中数}的映射
+     */
+    private Map<String, double[]> tierGets() {
+        Map<String, double[]> gets = new TreeMap<>();
+        for (String tier : TIERS) {
+            gets.put(tier, new double[2]);
+        }
+        for (int node = 0; node < baseUrls.length; node++) {
+            MeterRegistry registry = environment.getBean(node, MeterRegistry.class);
+            for (Counter counter : registry.find("cache.tier.gets").counters()) {
+                double[] tierGets = gets.computeIfAbsent(counter.getId().getTag("tier"), t -> new double[2]);
+                String result = counter.getId().getTag("result");
+                if ("hit".equals(result)) {
+                    tierGets[0] += counter.count();
+                } else if ("miss".equals(result)) {
+                    tierGets[1] += counter.count();
+                }
+            }
+        }
+        return gets;
+    }
+
+    private void report(Map<String, double[]> tierGetsBefore, Map<String, double[]> tierGetsAfter) throws IOException {
+        Path outputDir = Paths.get(config.outputDir);
+        Files.createDirectories(outputDir);
+        StringWriter summary = new StringWriter();
+        PrintWriter out = new PrintWriter(summary);
+        out.println("Workload: " + config);
+        out.println();
+        out.printf("%-16s %10s %8s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        long completed = 0;
+        for (Map.Entry<WorkloadOperation, Recorder> entry : latencies.entrySet()) {
+            Histogram histogram = entry.getValue().getIntervalHistogram();
+            completed += histogram.getTotalCount();
+            printLatency(out, entry.getKey().getName(), histogram, errors.get(entry.getKey()).sum());
+            writeHistogram(outputDir.resolve(entry.getKey().getName() + ".hgrm"), histogram);
+        }
+        out.printf("throughput: %.1f/s (target %d/s)%n", (double) completed / config.durationSeconds, config.rate);
+
+        out.println();
+        out.printf("%-8s %12s %12s %10s%n", "tier", "hits", "misses", "hit ratio");
+        for (Map.Entry<String, double[]> entry : tierGetsAfter.entrySet()) {
+            double[] before = tierGetsBefore.getOrDefault(entry.getKey(), new double[2]);
+            double hits = entry.getValue()[0] - before[0];
+            double misses = entry.getValue()[1] - before[1];
+            out.printf("%-8s %12.0f %12.0f %10s%n", entry.getKey(), hits, misses,
+                    hits + misses == 0 ? "-" : String.format("%.4f", hits / (hits + misses)));
+        }
+
+        if (baseUrls.length > 1 && config.lagProbeIntervalMillis > 0) {
+            Histogram lag = lagRecorder.getIntervalHistogram();
+            out.println();
+            out.printf("%-16s %10s %8s %10s %10s %10s %10s%n",
+                    "invalidation", "count", "lost", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+            printLatency(out, "lag", lag, lostProbes.sum());
+            writeHistogram(outputDir.resolve("invalidation-lag.hgrm"), lag);
+        }
+        out.flush();
+
+        System.out.println();
+        System.out.print(summary);
+        Files.write(outputDir.resolve("summary.txt"), summary.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println("Histograms written to " + outputDir.toAbsolutePath());
+    }
+
+    private static void printLatency(PrintWriter out, String name, Histogram histogram, long errorCount) {
+        out.printf("%-16s %10d %8d %10.3f %10.3f %10.3f %10.3f%n", name, histogram.getTotalCount(), errorCount,
+                histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                histogram.getMaxValue() / MICROS_PER_MILLI);
+    }
+
+    /**
+     * 以HdrHistogram的百分位分布格式写出直方图，单位为毫秒，可直接用HdrHistogram的绘图工具打开
+     */
+    private static void writeHistogram(Path file, Histogram histogram) throws IOException {
+        try (PrintStream stream = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+            histogram.outputPercentileDistribution(stream, MICROS_PER_MILLI);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
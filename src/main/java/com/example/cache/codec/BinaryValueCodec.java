@@ -0,0 +1,567 @@
+package com.example.cache.codec;
+
+import com.alicp.jetcache.CacheValueHolder;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 紧凑二进制编解码器
+ * 常用类型使用类型标签加变长编码，不在数据中写入类名；业务类型可通过{@link #register}注册专用序列化器，
+ * 其他可序列化类型回退为Java序列化，对象图中的每个类型都必须在{@link #allowJavaPackages}中的包里，
+ * 编码时遇到其他类型直接失败，不会写入解码不了的数据；解码时同样检查，Redis中的数据不能让任意类被反序列化。
+ * 编码结果超过阈值时使用LZ4压缩。
+ * <p>
+ * 格式：魔数(1字节) + 格式版本(1字节) + 标志位(1字节) + 数据体，
+ * 压缩时数据体为原始长度(变长编码) + LZ4压缩数据。
+ * <p>
+ * 列表按{@link ArrayList}、映射按{@link LinkedHashMap}编码，HashMap解码为保持原有顺序的LinkedHashMap；
+ * 其他公开的列表和映射类型（例如TreeMap）可以Java序列化时按Java序列化编码，保持原有类型；
+ * 非公开的实现（例如Arrays.asList和Collections.unmodifiableMap的返回值）和不能Java序列化的类型
+ * 同样按ArrayList和LinkedHashMap编码，解码后的类型与编码前不同。
+ * 解码时所有长度和元素数量都先按剩余输入校验再分配内存，损坏的数据只会解码失败
+ */
+public class BinaryValueCodec implements ValueCodec {
+
+    /**
+     * 魔数
+     * 与Java序列化(0xAC)、JetCache编码器的标识数字和JSON的首字节均不相同，用于识别旧格式
+     */
+    public static final byte MAGIC = (byte) 0xCB;
+
+    /**
+     * 当前格式版本
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    /**
+     * 业务类型可使用的最小类型标签
+     */
+    public static final int FIRST_CUSTOM_TAG = 32;
+
+    private static final int HEADER_LENGTH = 3;
+
+    /**
+     * LZ4的最大压缩比，压缩数据声明的原始长度超过压缩数据长度的这个倍数时视为损坏
+     */
+    private static final int MAX_COMPRESSION_RATIO = 255;
+    private static final byte FLAG_COMPRESSED = 1;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_LONG = 2;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_BOOLEAN = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_BYTES = 6;
+    private static final int TAG_LIST = 7;
+    private static final int TAG_MAP = 8;
+    private static final int TAG_CACHE_VALUE_HOLDER = 9;
+    private static final int TAG_JAVA = 31;
+
+    /**
+     * 压缩阈值（字节），数据体不小于该值时尝试压缩，0表示不压缩
+     */
+    private final int compressionThreshold;
+
+    /**
+     * 默认允许Java序列化的包，只匹配包本身，不包括子包
+     */
+    private static final String[] DEFAULT_JAVA_PACKAGES = {
+            "java.lang", "java.math", "java.time", "java.util", "java.util.concurrent"};
+
+    private final Map<Class<?>, Integer> tagsByType = new HashMap<>();
+
+    /**
+     * 允许Java序列化的包
+     */
+    private final Set<String> javaPackages = new HashSet<>(Arrays.asList(DEFAULT_JAVA_PACKAGES));
+    private final TypeSerializer<?>[] serializersByTag = new TypeSerializer<?>[256];
+
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    public BinaryValueCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * 注册业务类型的序列化器
+     * 类型标签一旦使用不能更改，否则已写入的数据无法解码
+     *
+     * @param tag 类型标签，取值范围[32, 255]
+     * @param type 类型，按精确类型匹配
+     * @param serializer 序列化器
+     * @param <T> 类型
+     * @return 当前编解码器
+     */
+    public <T> BinaryValueCodec register(int tag, Class<T> type, TypeSerializer<T> serializer) {
+        if (tag < FIRST_CUSTOM_TAG || tag > 255) {
+            throw new IllegalArgumentException("Type tag must be in [" + FIRST_CUSTOM_TAG + ", 255]: " + tag);
+        }
+        if (serializersByTag[tag] != null) {
+            throw new IllegalArgumentException("Type tag already registered: " + tag);
+        }
+        serializersByTag[tag] = serializer;
+        tagsByType.put(type, tag);
+        return this;
+    }
+
+    /**
+     * 允许Java序列化这些包中的类型
+     * 没有注册序列化器的业务类型回退为Java序列化时，其所在的包必须在这里声明
+     *
+     * @param packageNames 包名，只匹配包本身，不包括子包
+     * @return 当前编解码器
+     */
+    public BinaryValueCodec allowJavaPackages(String... packageNames) {
+        javaPackages.addAll(Arrays.asList(packageNames));
+        return this;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(0);
+            writeValue(out, value);
+        } catch (IOException e) {
+            throw new CodecException("Error encoding value", e);
+        }
+
+        byte[] raw = bytes.toByteArray();
+        int bodyLength = raw.length - HEADER_LENGTH;
+        if (compressionThreshold > 0 && bodyLength >= compressionThreshold) {
+            byte[] compressed = compress(raw, bodyLength);
+            if (compressed.length < raw.length) {
+                return compressed;
+            }
+        }
+        return raw;
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isEncoded(bytes)) {
+            throw new CodecException("Unknown encoding, first byte: " + bytes[0]);
+        }
+        if (bytes[1] > FORMAT_VERSION) {
+            throw new CodecException("Unsupported format version: " + bytes[1]);
+        }
+
+        try {
+            DataInputStream in;
+            if ((bytes[2] & FLAG_COMPRESSED) != 0) {
+                DataInputStream header = new DataInputStream(
+                        new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH));
+                long rawLength = readVarLong(header);
+                int offset = bytes.length - header.available();
+                if (rawLength < 0 || rawLength > (long) (bytes.length - offset) * MAX_COMPRESSION_RATIO) {
+                    throw new CodecException("Invalid uncompressed length: " + rawLength);
+                }
+                byte[] body = new byte[(int) rawLength];
+                decompressor.decompress(bytes, offset, body, 0, body.length);
+                in = new DataInputStream(new ByteArrayInputStream(body));
+            } else {
+                in = new DataInputStream(new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH));
+            }
+            return readValue(in);
+        } catch (IOException | LZ4Exception e) {
+            throw new CodecException("Error decoding value", e);
+        }
+    }
+
+    /**
+     * 解码Java序列化的数据
+     * 对象图中的每个类型都必须在允许的包中，用于读取升级前按Java序列化写入的旧格式数据
+     *
+     * @param bytes 数据
+     * @param offset Java序列化数据的起始位置
+     * @param extraTypes 本次额外允许的类型，例如旧格式中包装值的类型
+     * @return 解码后的对象
+     */
+    public Object decodeJava(byte[] bytes, int offset, Class<?>... extraTypes) {
+        Set<String> extraNames = new HashSet<>();
+        for (Class<?> type : extraTypes) {
+            extraNames.add(type.getName());
+        }
+        try (ObjectInputStream objectIn = new AllowListObjectInputStream(
+                new ByteArrayInputStream(bytes, offset, bytes.length - offset), extraNames)) {
+            return objectIn.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CodecException("Error decoding Java-serialized value", e);
+        }
+    }
+
+    @Override
+    public boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+
+    /**
+     * 写入一个带类型标签的值
+     * 供类型序列化器写入嵌套的值
+     *
+     * @param out 输出
+     * @param value 值
+     */
+    @SuppressWarnings("unchecked")
+    public void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+
+        Integer tag = tagsByType.get(value.getClass());
+        if (tag != null) {
+            out.writeByte(tag);
+            ((TypeSerializer<Object>) serializersByTag[tag]).write(this, out, value);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(TAG_BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof CacheValueHolder) {
+            CacheValueHolder<?> holder = (CacheValueHolder<?>) value;
+            out.writeByte(TAG_CACHE_VALUE_HOLDER);
+            writeVarLong(out, holder.getExpireTime());
+            writeVarLong(out, holder.getAccessTime());
+            writeValue(out, holder.getValue());
+        } else if (value instanceof List && isGenericCollection(value, ArrayList.class)) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TAG_LIST);
+            writeVarLong(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map && isGenericCollection(value, LinkedHashMap.class, HashMap.class)) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_MAP);
+            writeVarLong(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof Serializable) {
+            if (!isJavaTypeAllowed(value.getClass().getName())) {
+                throw new CodecException("Java serialization not allowed for " + value.getClass().getName()
+                        + ", register a TypeSerializer or allow its package");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            AllowListObjectOutputStream objectOut = new AllowListObjectOutputStream(bytes);
+            try {
+                objectOut.writeObject(value);
+                objectOut.close();
+            } catch (InvalidClassException e) {
+                throw new CodecException("Java serialization not allowed for " + objectOut.rejectedClass + " in "
+                        + value.getClass().getName() + ", register a TypeSerializer or allow its package", e);
+            }
+            out.writeByte(TAG_JAVA);
+            writeBytes(out, bytes.toByteArray());
+        } else {
+            throw new CodecException("Cannot encode non-serializable type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * 读取一个带类型标签的值
+     * 供类型序列化器读取嵌套的值
+     *
+     * @param in 输入
+     * @return 值
+     */
+    public Object readValue(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case TAG_LONG:
+                return unZigZag(readVarLong(in));
+            case TAG_INTEGER:
+                return (int) unZigZag(readVarLong(in));
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_BYTES:
+                return readBytes(in);
+            case TAG_CACHE_VALUE_HOLDER: {
+                CacheValueHolder<Object> holder = new CacheValueHolder<>();
+                holder.setExpireTime(readVarLong(in));
+                holder.setAccessTime(readVarLong(in));
+                holder.setValue(readValue(in));
+                return holder;
+            }
+            case TAG_LIST: {
+                int size = readLength(in, 1);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                int size = readLength(in, 2);
+                Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in), readValue(in));
+                }
+                return map;
+            }
+            case TAG_JAVA:
+                try (ObjectInputStream objectIn = new AllowListObjectInputStream(
+                        new ByteArrayInputStream(readBytes(in)), Collections.emptySet())) {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new CodecException("Class not found while decoding Java-serialized value", e);
+                }
+            default:
+                TypeSerializer<?> serializer = serializersByTag[tag];
+                if (serializer == null) {
+                    throw new CodecException("Unknown type tag: " + tag);
+                }
+                return serializer.read(this, in);
+        }
+    }
+
+    /**
+     * 写入无符号变长整数
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * 读取无符号变长整数
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new CodecException("Malformed variable-length integer");
+    }
+
+    /**
+     * 读取长度或元素数量，并按剩余输入校验
+     * 每个元素至少占用minBytesPerElement字节，超出剩余输入的长度说明数据已损坏，不按其分配内存
+     *
+     * @param in 输入
+     * @param minBytesPerElement 每个元素至少占用的字节数
+     * @return 长度
+     */
+    public static int readLength(DataInput in, int minBytesPerElement) throws IOException {
+        long length = readVarLong(in);
+        long remaining = remaining(in);
+        if (length < 0 || length > Integer.MAX_VALUE || length * minBytesPerElement > remaining) {
+            throw new CodecException("Invalid length " + length + " with " + remaining + " bytes remaining");
+        }
+        return (int) length;
+    }
+
+    /**
+     * 剩余可读的字节数，无法确定时返回Integer.MAX_VALUE
+     * 编解码器自身的输入都是内存中的字节数组，剩余字节数是准确的
+     */
+    private static long remaining(DataInput in) throws IOException {
+        return in instanceof InputStream ? ((InputStream) in).available() : Integer.MAX_VALUE;
+    }
+
+    private byte[] compress(byte[] raw, int bodyLength) {
+        int maxLength = compressor.maxCompressedLength(bodyLength);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(HEADER_LENGTH + 10);
+        try {
+            DataOutputStream out = new DataOutputStream(header);
+            out.writeByte(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(FLAG_COMPRESSED);
+            writeVarLong(out, bodyLength);
+        } catch (IOException e) {
+            throw new CodecException("Error writing header", e);
+        }
+        byte[] headerBytes = header.toByteArray();
+        byte[] compressed = new byte[headerBytes.length + maxLength];
+        System.arraycopy(headerBytes, 0, compressed, 0, headerBytes.length);
+        int length = compressor.compress(raw, HEADER_LENGTH, bodyLength, compressed, headerBytes.length, maxLength);
+        return Arrays.copyOf(compressed, headerBytes.length + length);
+    }
+
+    /**
+     * 列表或映射是否按通用格式编码
+     * 类型是给定的类型之一、不是公开类型，或者无法Java序列化时按通用格式编码，否则按Java序列化保持原有类型
+     *
+     * @param value 列表或映射
+     * @param genericTypes 总是按通用格式编码的类型
+     */
+    private boolean isGenericCollection(Object value, Class<?>... genericTypes) {
+        for (Class<?> type : genericTypes) {
+            if (value.getClass() == type) {
+                return true;
+            }
+        }
+        return !Modifier.isPublic(value.getClass().getModifiers()) || !(value instanceof Serializable)
+                || !isJavaTypeAllowed(value.getClass().getName());
+    }
+
+    /**
+     * 类型是否允许Java序列化
+     * 基本类型数组总是允许，对象数组按元素类型判断。
+     * 其他按类型信息还原对象的解码器（例如旧格式的JSON）也应使用同一个判断
+     *
+     * @param className 类名，数组为JVM描述符形式
+     */
+    public boolean isJavaTypeAllowed(String className) {
+        String name = className;
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.length() == 1) {
+            return true;
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        int lastDot = name.lastIndexOf('.');
+        return lastDot > 0 && javaPackages.contains(name.substring(0, lastDot));
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[readLength(in, 1)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 只写入允许类型的对象输出流
+     * 对象图中的每个类型在写入类描述时检查，与解码时的检查一致
+     */
+    private final class AllowListObjectOutputStream extends ObjectOutputStream {
+
+        /**
+         * 第一个不允许的类型
+         * 写入失败时输出流还会尝试写入异常对象本身，异常中的类名不一定是最初不允许的类型
+         */
+        private String rejectedClass;
+
+        private AllowListObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void annotateClass(Class<?> cl) throws IOException {
+            if (!isJavaTypeAllowed(cl.getName())) {
+                if (rejectedClass == null) {
+                    rejectedClass = cl.getName();
+                }
+                throw new InvalidClassException(cl.getName(), "Java serialization not allowed");
+            }
+        }
+
+        @Override
+        protected void annotateProxyClass(Class<?> cl) throws IOException {
+            if (rejectedClass == null) {
+                rejectedClass = cl.getName();
+            }
+            throw new InvalidClassException(cl.getName(), "Java serialization not allowed");
+        }
+    }
+
+    /**
+     * 只解析允许类型的对象输入流
+     * 在加载类之前检查类名，不允许的类不会被加载，也不会执行其反序列化逻辑
+     */
+    private final class AllowListObjectInputStream extends ObjectInputStream {
+
+        /**
+         * 除允许的包外额外允许的类名
+         */
+        private final Set<String> extraTypes;
+
+        private AllowListObjectInputStream(InputStream in, Set<String> extraTypes) throws IOException {
+            super(in);
+            this.extraTypes = extraTypes;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!extraTypes.contains(desc.getName()) && !isJavaTypeAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Java deserialization not allowed");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy", "Java deserialization not allowed");
+        }
+    }
+}
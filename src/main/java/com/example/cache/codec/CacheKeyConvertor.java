@@ -0,0 +1,39 @@
+package com.example.cache.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.function.Function;
+
+/**
+ * JetCache缓存键转换器
+ * 替代fastjson键转换器：字符串键原样返回，整数键直接转为十进制字符串，都不经过JSON；
+ * 其他类型（例如注解缓存中由多个参数组成的键）才按JSON序列化。
+ * 字符串和整数键的转换结果与fastjson相同，切换后Redis中已有的键仍能命中
+ */
+public class CacheKeyConvertor implements Function<Object, Object> {
+
+    private final ObjectMapper objectMapper;
+
+    public CacheKeyConvertor(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Object apply(Object key) {
+        if (key == null || key instanceof String) {
+            return key;
+        }
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+            return Long.toString(((Number) key).longValue());
+        }
+        if (key instanceof CharSequence) {
+            return key.toString();
+        }
+        try {
+            return objectMapper.writeValueAsString(key);
+        } catch (JsonProcessingException e) {
+            throw new CodecException("Cannot convert cache key of type " + key.getClass().getName(), e);
+        }
+    }
+}
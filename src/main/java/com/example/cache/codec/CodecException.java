@@ -0,0 +1,18 @@
+package com.example.cache.codec;
+
+/**
+ * 编解码异常
+ * 值无法编码或字节无法解码时抛出
+ */
+public class CodecException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CodecException(String message) {
+        super(message);
+    }
+
+    public CodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.cache.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 基于{@link ValueCodec}的Redis值序列化器
+ * 读取时遇到旧格式的字节交给旧序列化器解码，保证滚动发布期间新旧节点可以互相读取
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    private final ValueCodec codec;
+
+    private final RedisSerializer<?> legacySerializer;
+
+    public CodecRedisSerializer(ValueCodec codec, RedisSerializer<?> legacySerializer) {
+        this.codec = codec;
+        this.legacySerializer = legacySerializer;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            return codec.encode(value);
+        } catch (CodecException e) {
+            throw new SerializationException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!codec.isEncoded(bytes)) {
+            return legacySerializer.deserialize(bytes);
+        }
+        try {
+            return codec.decode(bytes);
+        } catch (CodecException e) {
+            throw new SerializationException(e.getMessage(), e);
+        }
+    }
+}
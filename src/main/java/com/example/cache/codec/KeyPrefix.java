@@ -0,0 +1,89 @@
+package com.example.cache.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 带固定前缀的键
+ * 前缀的UTF-8字节只编码一次，编码键时把前缀字节和键的字符直接写入一个数组，
+ * 不经过拼接后的中间字符串；键只含ASCII字符时不再调用字符集编码器。
+ * 编码结果与{@code (prefix + key).getBytes(UTF_8)}逐字节相同，Redis中已有的键不受影响
+ */
+public final class KeyPrefix {
+
+    private final String prefix;
+
+    private final byte[] bytes;
+
+    private KeyPrefix(String prefix) {
+        this.prefix = prefix;
+        this.bytes = prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param prefix 前缀，为null时按空前缀处理
+     * @return 前缀
+     */
+    public static KeyPrefix of(String prefix) {
+        return new KeyPrefix(prefix == null ? "" : prefix);
+    }
+
+    /**
+     * 拼接带前缀的键
+     *
+     * @param id 前缀后的部分
+     * @return 带前缀的键
+     */
+    public String key(String id) {
+        return prefix.concat(id);
+    }
+
+    /**
+     * 拼接带前缀的键
+     *
+     * @param id 前缀后的数字
+     * @return 带前缀的键
+     */
+    public String key(long id) {
+        return new StringBuilder(prefix.length() + 20).append(prefix).append(id).toString();
+    }
+
+    /**
+     * 从带前缀的键中取出前缀后的部分
+     *
+     * @param key 带前缀的键
+     * @return 前缀后的部分
+     * @throws IllegalArgumentException 键不以该前缀开头
+     */
+    public String id(String key) {
+        if (!key.startsWith(prefix)) {
+            throw new IllegalArgumentException("Key " + key + " does not start with " + prefix);
+        }
+        return key.substring(prefix.length());
+    }
+
+    /**
+     * 将带前缀的键编码为UTF-8字节
+     *
+     * @param key 前缀后的部分
+     * @return 前缀字节和键字节组成的新数组
+     */
+    public byte[] encode(String key) {
+        int length = key.length();
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) >= 0x80) {
+                return key(key).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        byte[] encoded = new byte[bytes.length + length];
+        System.arraycopy(bytes, 0, encoded, 0, bytes.length);
+        for (int i = 0; i < length; i++) {
+            encoded[bytes.length + i] = (byte) key.charAt(i);
+        }
+        return encoded;
+    }
+
+    @Override
+    public String toString() {
+        return prefix;
+    }
+}
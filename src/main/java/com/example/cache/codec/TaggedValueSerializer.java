@@ -0,0 +1,40 @@
+package com.example.cache.codec;
+
+import com.example.cache.manager.TaggedValue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 带标签缓存值的序列化器
+ * 版本号和标签数量使用变长编码，标签和实际值按其自身类型嵌套编码
+ */
+public class TaggedValueSerializer implements TypeSerializer<TaggedValue> {
+
+    @Override
+    public void write(BinaryValueCodec codec, DataOutput out, TaggedValue value) throws IOException {
+        BinaryValueCodec.writeVarLong(out, value.getVersion());
+        Set<String> tags = value.getTags();
+        BinaryValueCodec.writeVarLong(out, tags == null ? 0 : tags.size());
+        if (tags != null) {
+            for (String tag : tags) {
+                codec.writeValue(out, tag);
+            }
+        }
+        codec.writeValue(out, value.getValue());
+    }
+
+    @Override
+    public TaggedValue read(BinaryValueCodec codec, DataInput in) throws IOException {
+        long version = BinaryValueCodec.readVarLong(in);
+        int count = BinaryValueCodec.readLength(in, 1);
+        Set<String> tags = new LinkedHashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            tags.add((String) codec.readValue(in));
+        }
+        return new TaggedValue(codec.readValue(in), version, tags);
+    }
+}
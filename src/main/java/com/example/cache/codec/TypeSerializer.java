@@ -0,0 +1,32 @@
+package com.example.cache.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 类型序列化器
+ * 为业务类型提供紧凑的二进制格式，注册到{@link BinaryValueCodec}后使用
+ *
+ * @param <T> 类型
+ */
+public interface TypeSerializer<T> {
+
+    /**
+     * 写入值
+     *
+     * @param codec 编解码器，用于写入嵌套的值
+     * @param out 输出
+     * @param value 值
+     */
+    void write(BinaryValueCodec codec, DataOutput out, T value) throws IOException;
+
+    /**
+     * 读取值
+     *
+     * @param codec 编解码器，用于读取嵌套的值
+     * @param in 输入
+     * @return 值
+     */
+    T read(BinaryValueCodec codec, DataInput in) throws IOException;
+}
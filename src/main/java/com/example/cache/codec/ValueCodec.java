@@ -0,0 +1,33 @@
+package com.example.cache.codec;
+
+/**
+ * 缓存值编解码器
+ * 负责远程缓存和RedisTemplate中值与字节之间的转换
+ */
+public interface ValueCodec {
+
+    /**
+     * 将值编码为字节
+     *
+     * @param value 值，可以为null
+     * @return 编码后的字节
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 将字节解码为值
+     *
+     * @param bytes 编码后的字节
+     * @return 值
+     */
+    Object decode(byte[] bytes);
+
+    /**
+     * 判断字节是否为本编解码器的格式
+     * 滚动发布期间用于区分新旧编码
+     *
+     * @param bytes 字节
+     * @return 是否为本编解码器的格式
+     */
+    boolean isEncoded(byte[] bytes);
+}
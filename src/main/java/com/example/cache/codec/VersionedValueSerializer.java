@@ -0,0 +1,26 @@
+package com.example.cache.codec;
+
+import com.example.cache.manager.VersionedValue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 带版本号缓存值的序列化器
+ * 版本号使用变长编码，实际值按其自身类型嵌套编码
+ */
+public class VersionedValueSerializer implements TypeSerializer<VersionedValue> {
+
+    @Override
+    public void write(BinaryValueCodec codec, DataOutput out, VersionedValue value) throws IOException {
+        BinaryValueCodec.writeVarLong(out, value.getVersion());
+        codec.writeValue(out, value.getValue());
+    }
+
+    @Override
+    public VersionedValue read(BinaryValueCodec codec, DataInput in) throws IOException {
+        long version = BinaryValueCodec.readVarLong(in);
+        return new VersionedValue(codec.readValue(in), version);
+    }
+}
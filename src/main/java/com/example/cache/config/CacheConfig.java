@@ -1,32 +0,0 @@
-package com.example.cache.config;
-
-import com.github.benmanes.caffeine.cache.Caffeine;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Primary;
-
-import java.util.concurrent.TimeUnit;
-
-@Configuration
-public class CacheConfig {
-
-    @Value("${caffeine.cache.maximum-size}")
-    private long maximumSize;
-
-    @Value("${caffeine.cache.expire-after-write}")
-    private long expireAfterWrite;
-
-    @Bean
-    @Primary
-    public CacheManager caffeineCacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCaffeine(Caffeine.newBuilder()
-                .maximumSize(maximumSize)
-                .expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS)
-                .recordStats());
-        return cacheManager;
-    }
-}
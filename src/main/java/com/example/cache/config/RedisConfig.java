@@ -1,77 +1,262 @@
 package com.example.cache.config;
 
+import com.alicp.jetcache.CacheValueHolder;
+import com.example.cache.codec.BinaryValueCodec;
+import com.example.cache.codec.CacheKeyConvertor;
+import com.example.cache.codec.CodecException;
+import com.example.cache.codec.CodecRedisSerializer;
+import com.example.cache.codec.TaggedValueSerializer;
+import com.example.cache.codec.VersionedValueSerializer;
 import com.example.cache.listener.CacheUpdateListener;
+import com.example.cache.manager.CacheInvalidationPublisher;
+import com.example.cache.manager.TaggedValue;
+import com.example.cache.manager.VersionedValue;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
-import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.StringUtils;
 
 import java.time.Duration;
+import java.util.function.Function;
 
 /**
  * Redis配置类
  * 负责配置Redis连接、序列化方式和消息监听器
  */
+@Slf4j
 @Configuration
 public class RedisConfig {
 
+    /**
+     * 升级前JetCache的Java序列化编码器写在数据开头的标识
+     */
+    private static final byte[] LEGACY_JAVA_HEADER = {0x4A, (byte) 0x95, 0x3A, (byte) 0x80};
+
     @Value("${spring.redis.host}")
     private String host;
 
     @Value("${spring.redis.port}")
     private int port;
 
+    /**
+     * 命令超时（毫秒）
+     */
+    @Value("${spring.redis.timeout:30000}")
+    private long timeoutMillis;
+
+    /**
+     * 关闭客户端时等待未完成命令的时间（毫秒）
+     */
+    @Value("${spring.redis.lettuce.shutdown-timeout:30000}")
+    private long shutdownTimeoutMillis;
+
+    /**
+     * 专用连接池的最大连接数
+     * 普通命令共用一个多路复用连接，只有阻塞读取、事务等命令从池中借用专用连接
+     */
+    @Value("${spring.redis.lettuce.pool.max-active:8}")
+    private int poolMaxActive;
+
+    @Value("${spring.redis.lettuce.pool.max-idle:4}")
+    private int poolMaxIdle;
+
+    @Value("${spring.redis.lettuce.pool.min-idle:1}")
+    private int poolMinIdle;
+
+    /**
+     * 借用专用连接的最长等待时间（毫秒），-1表示一直等待
+     */
+    @Value("${spring.redis.lettuce.pool.max-wait:-1}")
+    private long poolMaxWaitMillis;
+
+    /**
+     * Lettuce的IO线程数和计算线程数，所有Redis连接共用
+     */
+    @Value("${cache.redis.io-threads:4}")
+    private int ioThreads;
+
+    /**
+     * 连接名称，通过CLIENT LIST可以统计本应用打开的连接，为空时不设置
+     */
+    @Value("${cache.redis.client-name:multi-level-cache}")
+    private String clientName;
+
+    /**
+     * 值编码后超过该大小（字节）时进行LZ4压缩，0表示不压缩
+     */
+    @Value("${cache.codec.compression-threshold:1024}")
+    private int compressionThreshold;
+
+    /**
+     * 除JDK常用类型外允许Java序列化的包，只匹配包本身
+     * 没有注册序列化器的业务值类型所在的包必须列在这里，否则写入远程缓存时失败
+     */
+    @Value("${cache.codec.java-packages:com.example.cache.manager}")
+    private String[] javaPackages;
+
+    /**
+     * 失效消息的传递方式，stream或pubsub
+     */
+    @Value("${cache.invalidation.transport:stream}")
+    private String invalidationTransport;
+
+    /**
+     * Lettuce客户端资源
+     * 事件循环和定时器由所有连接工厂共用，包括远程缓存的各个分片
+     *
+     * @return 客户端资源
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ClientResources lettuceClientResources() {
+        return DefaultClientResources.builder()
+                .ioThreadPoolSize(ioThreads)
+                .computationThreadPoolSize(ioThreads)
+                .build();
+    }
+
     /**
      * 配置Redis连接工厂
-     * 使用Lettuce连接池
+     * 应用唯一的Redis客户端，分布式锁、远程缓存、版本号、失效消息和RedisTemplate都通过它访问Redis。
+     * 普通命令共用一个多路复用连接，阻塞读取和事务从连接池借用专用连接。
+     * 远程缓存分片复用这里的客户端配置，只替换地址
      *
+     * @param clientResources Lettuce客户端资源
      * @return 配置好的Redis连接工厂
      */
     @Bean
-    public LettuceConnectionFactory redisConnectionFactory() {
+    public LettuceConnectionFactory redisConnectionFactory(ClientResources clientResources) {
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host, port);
-        
-        LettucePoolingClientConfiguration clientConfig = LettucePoolingClientConfiguration.builder()
-                .commandTimeout(Duration.ofSeconds(30))
-                .shutdownTimeout(Duration.ofSeconds(30))
-                .build();
-        
-        return new LettuceConnectionFactory(config, clientConfig);
+
+        GenericObjectPoolConfig<?> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(poolMaxActive);
+        poolConfig.setMaxIdle(poolMaxIdle);
+        poolConfig.setMinIdle(poolMinIdle);
+        poolConfig.setMaxWait(Duration.ofMillis(poolMaxWaitMillis));
+
+        LettucePoolingClientConfiguration.LettucePoolingClientConfigurationBuilder builder =
+                LettucePoolingClientConfiguration.builder()
+                        .poolConfig(poolConfig)
+                        .clientResources(clientResources)
+                        .commandTimeout(Duration.ofMillis(timeoutMillis))
+                        .shutdownTimeout(Duration.ofMillis(shutdownTimeoutMillis));
+        if (StringUtils.hasText(clientName)) {
+            builder.clientName(clientName);
+        }
+        LettucePoolingClientConfiguration clientConfig = builder.build();
+
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(config, clientConfig);
+        connectionFactory.setShareNativeConnection(true);
+        return connectionFactory;
+    }
+
+    /**
+     * 配置缓存值编解码器
+     * 远程缓存和RedisTemplate共用同一个紧凑二进制格式
+     *
+     * @return 缓存值编解码器
+     */
+    @Bean
+    public BinaryValueCodec cacheValueCodec() {
+        return new BinaryValueCodec(compressionThreshold)
+                .register(BinaryValueCodec.FIRST_CUSTOM_TAG, VersionedValue.class, new VersionedValueSerializer())
+                .register(BinaryValueCodec.FIRST_CUSTOM_TAG + 1, TaggedValue.class, new TaggedValueSerializer())
+                .allowJavaPackages(javaPackages);
+    }
+
+    /**
+     * JetCache本地缓存和远程缓存的键转换器
+     * 通过keyConvertor: bean:cacheKeyConvertor引用，字符串和整数键不经过JSON
+     *
+     * @param objectMapper 其他类型的键使用的JSON序列化器
+     * @return 键转换器
+     */
+    @Bean
+    public Function<Object, Object> cacheKeyConvertor(ObjectMapper objectMapper) {
+        return new CacheKeyConvertor(objectMapper);
+    }
+
+    /**
+     * JetCache远程缓存的值编码器
+     * 通过valueEncoder: bean:cacheValueEncoder引用
+     *
+     * @param codec 缓存值编解码器
+     * @return 值编码器
+     */
+    @Bean
+    public Function<Object, byte[]> cacheValueEncoder(BinaryValueCodec codec) {
+        return codec::encode;
+    }
+
+    /**
+     * JetCache远程缓存的值解码器
+     * 通过valueDecoder: bean:cacheValueDecoder引用。
+     * 升级前JetCache按Java序列化写入的旧格式值仍可读取，但与编解码器中的Java序列化一样只允许配置的包中的类型；
+     * 不经过JetCache的解码器，其他标识（例如Kryo）的数据直接解码失败
+     *
+     * @param codec 缓存值编解码器
+     * @return 值解码器
+     */
+    @Bean
+    public Function<byte[], Object> cacheValueDecoder(BinaryValueCodec codec) {
+        return bytes -> {
+            if (codec.isEncoded(bytes)) {
+                return codec.decode(bytes);
+            }
+            if (!isLegacyJavaValue(bytes)) {
+                throw new CodecException("Unknown encoding of remote cache value");
+            }
+            return codec.decodeJava(bytes, LEGACY_JAVA_HEADER.length, CacheValueHolder.class);
+        };
+    }
+
+    private static boolean isLegacyJavaValue(byte[] bytes) {
+        if (bytes == null || bytes.length <= LEGACY_JAVA_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < LEGACY_JAVA_HEADER.length; i++) {
+            if (bytes[i] != LEGACY_JAVA_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * 配置RedisTemplate
-     * 使用Jackson2JsonRedisSerializer作为值序列化器
+     * 使用紧凑二进制编解码器作为值序列化器，旧格式的值仍按Jackson解码
      * 使用StringRedisSerializer作为键序列化器
      *
      * @param connectionFactory Redis连接工厂
+     * @param codec 缓存值编解码器
      * @return 配置好的RedisTemplate实例
      */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       BinaryValueCodec codec) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
-        // 使用Jackson2JsonRedisSerializer来序列化和反序列化redis的value值
-        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(Object.class);
-        ObjectMapper mapper = new ObjectMapper();
-        // 指定要序列化的域，field,get和set,以及修饰符范围，ANY是都有包括private和public
-        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-        // 指定序列化输入的类型，类必须是非final修饰的
-        mapper.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
-        serializer.setObjectMapper(mapper);
+        CodecRedisSerializer serializer = new CodecRedisSerializer(codec, legacyJsonSerializer(codec));
 
         // 设置value的序列化规则和 key的序列化规则
         template.setValueSerializer(serializer);
@@ -83,9 +268,38 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * 升级前使用的Jackson序列化器
+     * 仅用于解码滚动发布期间旧节点写入的值，数据中的类型信息只能指向编解码器允许Java序列化的包中的类型
+     *
+     * @param codec 缓存值编解码器，提供允许的类型
+     * @return Jackson序列化器
+     */
+    private Jackson2JsonRedisSerializer<Object> legacyJsonSerializer(BinaryValueCodec codec) {
+        // 使用Jackson2JsonRedisSerializer来序列化和反序列化redis的value值
+        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(Object.class);
+        ObjectMapper mapper = new ObjectMapper();
+        // 指定要序列化的域，field,get和set,以及修饰符范围，ANY是都有包括private和public
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        // 指定序列化输入的类型，类必须是非final修饰的；只接受允许的包中的类型，数据不能指定任意类
+        PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType(new BasicPolymorphicTypeValidator.TypeMatcher() {
+                    @Override
+                    public boolean match(MapperConfig<?> config, Class<?> type) {
+                        return codec.isJavaTypeAllowed(type.getName());
+                    }
+                })
+                .build();
+        mapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
+        serializer.setObjectMapper(mapper);
+        return serializer;
+    }
+
     /**
      * 配置Redis消息监听器容器
-     * 用于监听缓存更新消息
+     * 用于以发布/订阅方式传递失效消息时监听缓存更新消息，使用Stream方式时不订阅任何主题。
+     * 监听器只在订阅线程上解码并分区，
+     * 失效由按键分区的有界执行器完成，因此消息直接在订阅线程上分发，不为每条消息创建线程
      *
      * @param connectionFactory Redis连接工厂
      * @param cacheUpdateListener 缓存更新监听器
@@ -97,13 +311,16 @@ public class RedisConfig {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
         // 添加订阅主题和监听器
-        container.addMessageListener(cacheUpdateListener, new ChannelTopic("cache:update:topic"));
-        // 设置线程池
+        if (!CacheInvalidationPublisher.TRANSPORT_STREAM.equalsIgnoreCase(invalidationTransport)) {
+            container.addMessageListener(cacheUpdateListener, new ChannelTopic(CacheInvalidationPublisher.UPDATE_TOPIC));
+        }
+        // 在订阅线程上直接分发消息
+        container.setTaskExecutor(new SyncTaskExecutor());
         container.setMaxSubscriptionRegistrationWaitingTime(30000);
         container.setRecoveryInterval(5000);
         container.setErrorHandler(e -> {
             // 记录错误但不中断应用
-            System.err.println("Redis message listener error: " + e.getMessage());
+            log.error("Redis message listener error", e);
         });
         
         return container;
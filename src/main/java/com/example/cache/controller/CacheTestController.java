@@ -3,11 +3,17 @@ package com.example.cache.controller;
 import com.alicp.jetcache.anno.CacheType;
 import com.alicp.jetcache.anno.Cached;
 import com.example.cache.manager.CacheConsistencyManager;
+import com.example.cache.manager.CacheWriteResult;
+import com.example.cache.manager.HotKeyDetector;
+import com.example.cache.manager.KeyBloomFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/cache")
@@ -16,6 +22,12 @@ public class CacheTestController {
     @Autowired
     private CacheConsistencyManager cacheConsistencyManager;
 
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    private KeyBloomFilter keyBloomFilter;
+
     // 测试本地缓存
     @Cached(name = "localCache", cacheType = CacheType.LOCAL, expire = 60)
     @GetMapping("/local/{key}")
@@ -38,27 +50,84 @@ public class CacheTestController {
         return result;
     }
 
+    // 查看当前的热点键
+    @GetMapping("/hot-keys")
+    public Map<String, Object> getHotKeys() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", hotKeyDetector.isEnabled());
+        result.put("capacity", hotKeyDetector.getCapacity());
+        result.put("hotKeys", hotKeyDetector.getHotKeys());
+        return result;
+    }
+
+    // 查看布隆过滤器状态
+    @GetMapping("/bloom")
+    public Map<String, Object> getBloomStatus() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", keyBloomFilter.isEnabled());
+        result.put("ready", keyBloomFilter.isReady());
+        return result;
+    }
+
+    // 重置布隆过滤器，重建完成前不拒绝任何键
+    @PostMapping("/bloom/reset")
+    public Map<String, Object> resetBloom() {
+        keyBloomFilter.reset();
+        return getBloomStatus();
+    }
+
+    // 分批向布隆过滤器添加已知键
+    @PostMapping("/bloom/keys")
+    public Map<String, Object> addBloomKeys(@RequestBody List<String> keys) {
+        keyBloomFilter.addAll(keys);
+        Map<String, Object> result = getBloomStatus();
+        result.put("added", keys.size());
+        return result;
+    }
+
+    // 标记布隆过滤器填充完成
+    @PostMapping("/bloom/complete")
+    public Map<String, Object> completeBloom() {
+        keyBloomFilter.markComplete();
+        return getBloomStatus();
+    }
+
     // 测试缓存更新
     @PostMapping("/update/{key}")
-    public Map<String, Object> updateCache(@PathVariable String key, @RequestBody(required = false) String value) {
+    public CompletableFuture<Map<String, Object>> updateCache(@PathVariable String key, @RequestBody(required = false) String value,
+                                                              @RequestParam(required = false) List<String> tags) {
         // 更新缓存
-        cacheConsistencyManager.updateCache(key, value != null ? value : "Updated value at " + System.currentTimeMillis());
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("status", "success");
-        result.put("message", "Cache updated for key: " + key);
-        return result;
+        return cacheConsistencyManager.updateAsync(key, value != null ? value : "Updated value at " + System.currentTimeMillis(),
+                        tags != null ? tags : Collections.emptyList())
+                .thenApply(writeResult -> toResult(writeResult, "Cache updated for key: " + key));
     }
 
     // 测试缓存删除
     @DeleteMapping("/{key}")
-    public Map<String, Object> deleteCache(@PathVariable String key) {
+    public CompletableFuture<Map<String, Object>> deleteCache(@PathVariable String key) {
         // 删除缓存
-        cacheConsistencyManager.deleteCache(key);
-        
+        return cacheConsistencyManager.deleteAsync(key)
+                .thenApply(writeResult -> toResult(writeResult, "Cache deleted for key: " + key));
+    }
+
+    // 测试按标签删除缓存
+    @DeleteMapping("/tags/{tag}")
+    public CompletableFuture<Map<String, Object>> invalidateTag(@PathVariable String tag) {
+        return cacheConsistencyManager.invalidateTagAsync(tag).thenApply(purged -> {
+            Map<String, Object> result = new HashMap<>();
+            result.put("status", "success");
+            result.put("remoteKeys", purged);
+            result.put("message", "Cache invalidated for tag: " + tag);
+            return result;
+        });
+    }
+
+    private static Map<String, Object> toResult(CacheWriteResult writeResult, String message) {
         Map<String, Object> result = new HashMap<>();
-        result.put("status", "success");
-        result.put("message", "Cache deleted for key: " + key);
+        result.put("status", writeResult.isApplied() ? "success" : "failed");
+        result.put("writeStatus", writeResult.getStatus());
+        result.put("version", writeResult.getVersion());
+        result.put("message", message);
         return result;
     }
 }
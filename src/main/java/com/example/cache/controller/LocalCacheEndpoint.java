@@ -0,0 +1,41 @@
+package com.example.cache.controller;
+
+import com.example.cache.manager.LocalCacheSizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 本地缓存容量管理端点
+ * GET /actuator/localcache 查看容量和调整状态；
+ * POST /actuator/localcache 设置容量（maximumBytes）或启停自动调整（adaptive），
+ * 只设置容量时停止自动调整
+ */
+@Component
+@Endpoint(id = "localcache")
+public class LocalCacheEndpoint {
+
+    @Autowired
+    private LocalCacheSizer localCacheSizer;
+
+    @ReadOperation
+    public Map<String, Object> sizing() {
+        return localCacheSizer.describe();
+    }
+
+    @WriteOperation
+    public Map<String, Object> resize(@Nullable Long maximumBytes, @Nullable Boolean adaptive) {
+        if (maximumBytes != null) {
+            localCacheSizer.setMaximumBytes(maximumBytes);
+        }
+        if (adaptive != null) {
+            localCacheSizer.setAdaptive(adaptive);
+        }
+        return localCacheSizer.describe();
+    }
+}
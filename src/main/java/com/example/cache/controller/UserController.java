@@ -1,13 +1,23 @@
 package com.example.cache.controller;
 
+import com.example.cache.manager.CacheWriteResult;
 import com.example.cache.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 用户控制器
  * 提供用户相关的RESTful API接口
  * 处理用户信息的HTTP请求
+ * 所有接口返回异步结果，等待Redis期间不占用Servlet线程，本地缓存命中时同步完成。
+ * 写入接口在存储已修改、缓存写入未生效时不返回成功：版本冲突返回409，
+ * 获取锁超时或远程缓存熔断返回503，此时其他节点可能在失效补做前读到旧值
  */
 @RestController
 @RequestMapping("/api/users")
@@ -25,9 +35,10 @@ public class UserController {
      * @return 更新结果消息
      */
     @PostMapping("/{userId}")
-    public String updateUser(@PathVariable String userId, @RequestBody String userData) {
-        userService.updateUserInfo(userId, userData);
-        return "User updated successfully";
+    public CompletableFuture<ResponseEntity<String>> updateUser(@PathVariable String userId,
+                                                                @RequestBody String userData) {
+        return userService.updateUserInfoAsync(userId, userData)
+                .thenApply(result -> toResponse(result, "User updated"));
     }
 
     /**
@@ -38,8 +49,8 @@ public class UserController {
      * @return 用户信息
      */
     @GetMapping("/{userId}")
-    public String getUser(@PathVariable String userId) {
-        return userService.getUserInfo(userId);
+    public CompletableFuture<String> getUser(@PathVariable String userId) {
+        return userService.getUserInfoAsync(userId);
     }
 
     /**
@@ -50,8 +61,76 @@ public class UserController {
      * @return 删除结果消息
      */
     @DeleteMapping("/{userId}")
-    public String deleteUser(@PathVariable String userId) {
-        userService.deleteUserInfo(userId);
-        return "User deleted successfully";
+    public CompletableFuture<ResponseEntity<String>> deleteUser(@PathVariable String userId) {
+        return userService.deleteUserInfoAsync(userId).thenApply(result -> toResponse(result, "User deleted"));
+    }
+
+    /**
+     * 批量获取用户信息
+     * HTTP GET请求
+     * 
+     * @param ids 用户ID列表（查询参数，逗号分隔）
+     * @return 用户ID到用户信息的映射，不存在的用户不包含在结果中
+     */
+    @GetMapping("/batch")
+    public CompletableFuture<Map<String, String>> getUsers(@RequestParam List<String> ids) {
+        return userService.getUsersInfoAsync(ids);
+    }
+
+    /**
+     * 批量更新用户信息
+     * HTTP POST请求
+     * 
+     * @param usersData 用户ID到用户数据的映射（请求体）
+     * @return 更新结果消息
+     */
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<String>> updateUsers(@RequestBody Map<String, String> usersData) {
+        return userService.updateUsersInfoAsync(usersData).thenApply(applied -> toResponse(applied, "Users updated"));
+    }
+
+    /**
+     * 批量删除用户信息
+     * HTTP DELETE请求
+     * 
+     * @param ids 用户ID列表（查询参数，逗号分隔）
+     * @return 删除结果消息
+     */
+    @DeleteMapping("/batch")
+    public CompletableFuture<ResponseEntity<String>> deleteUsers(@RequestParam List<String> ids) {
+        return userService.deleteUsersInfoAsync(ids).thenApply(applied -> toResponse(applied, "Users deleted"));
+    }
+
+    /**
+     * 按缓存写入结果构造响应
+     *
+     * @param result 缓存写入结果
+     * @param action 操作描述
+     * @return 写入生效时返回200，版本冲突返回409，获取锁超时或远程缓存熔断返回503
+     */
+    private static ResponseEntity<String> toResponse(CacheWriteResult result, String action) {
+        switch (result.getStatus()) {
+            case APPLIED:
+                return ResponseEntity.ok(action + " successfully");
+            case CONFLICT:
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(action + ", but the cache update conflicted with a concurrent write");
+            default:
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(action + ", but the cache was not updated (" + result.getStatus() + ")");
+        }
+    }
+
+    /**
+     * 按批量缓存写入结果构造响应
+     *
+     * @param applied 缓存是否已写入
+     * @param action 操作描述
+     * @return 写入生效时返回200，否则返回503
+     */
+    private static ResponseEntity<String> toResponse(boolean applied, String action) {
+        return applied ? ResponseEntity.ok(action + " successfully")
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(action + ", but the cache was not updated");
     }
 }
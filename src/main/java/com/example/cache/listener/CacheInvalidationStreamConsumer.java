@@ -0,0 +1,238 @@
+package com.example.cache.listener;
+
+import com.example.cache.manager.CacheConsistencyManager;
+import com.example.cache.manager.CacheInvalidationPublisher;
+import com.example.cache.metrics.CacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存更新Stream的读取器
+ * 一个后台线程从本节点上次读到的位置开始阻塞读取，读到的批量消息交给{@link CacheUpdateListener}处理。
+ * 读取位置只保存在本节点内存中，节点重启后从Stream末尾开始读取。
+ * <p>
+ * Redis断线后每隔一段时间重试，重连后从断线前的位置继续读取，补上断线期间的全部消息，
+ * 不需要清空本地缓存。只有断线前读到的条目已被裁剪、无法确认之后的条目是否都还在时，
+ * 才清空本地缓存和堆外缓存
+ */
+@Slf4j
+@Component
+public class CacheInvalidationStreamConsumer {
+
+    /**
+     * 空Stream的起始位置
+     */
+    private static final String EMPTY_STREAM_ID = "0-0";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private CacheInvalidationPublisher invalidationPublisher;
+
+    @Autowired
+    private CacheUpdateListener cacheUpdateListener;
+
+    @Autowired
+    private CacheConsistencyManager cacheConsistencyManager;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 每次读取的最大条目数
+     */
+    @Value("${cache.invalidation.stream.read-count:100}")
+    private int readCount;
+
+    /**
+     * 每次阻塞读取的最长等待时间（毫秒）
+     */
+    @Value("${cache.invalidation.stream.block-millis:2000}")
+    private long blockMillis;
+
+    /**
+     * 读取失败后的重试间隔（毫秒）
+     */
+    @Value("${cache.invalidation.stream.recovery-interval-millis:1000}")
+    private long recoveryIntervalMillis;
+
+    /**
+     * Stream保留的最大条目数，与发布器的裁剪配置一致
+     */
+    @Value("${cache.invalidation.stream.max-length:100000}")
+    private long streamMaxLength;
+
+    /**
+     * Stream条目的最长保留时间（毫秒），与发布器的裁剪配置一致
+     */
+    @Value("${cache.invalidation.stream.max-age-millis:3600000}")
+    private long streamMaxAgeMillis;
+
+    /**
+     * 本节点读到的最后一个条目ID，尚未连接到Redis时为null
+     */
+    private volatile String lastId;
+
+    /**
+     * 最近一次读取成功的时间
+     */
+    private volatile long lastReadMillis;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    @PostConstruct
+    public void init() {
+        if (!invalidationPublisher.isStreamTransport()) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "cache-invalidation-stream");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(blockMillis + 1000);
+        }
+    }
+
+    /**
+     * 本节点读到的最后一个条目ID
+     */
+    public String getLastId() {
+        return lastId;
+    }
+
+    private void run() {
+        boolean recovering = false;
+        while (running) {
+            try {
+                if (lastId == null) {
+                    lastId = latestId();
+                    lastReadMillis = System.currentTimeMillis();
+                    log.info("Reading cache update stream from {}", lastId);
+                } else if (recovering) {
+                    checkGap();
+                }
+                int read = poll();
+                if (recovering) {
+                    cacheMetrics.recordStreamReplay(read);
+                    log.info("Reconnected to cache update stream, replayed {} entries after {}", read, lastId);
+                    recovering = false;
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                if (!recovering) {
+                    log.warn("Cache update stream read failed, retrying every {} ms", recoveryIntervalMillis, e);
+                }
+                recovering = true;
+                try {
+                    Thread.sleep(recoveryIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从上次的位置阻塞读取一批条目并交给监听器处理
+     *
+     * @return 读到的条目数
+     */
+    private int poll() {
+        StreamReadOptions options = StreamReadOptions.empty()
+                .count(readCount)
+                .block(Duration.ofMillis(blockMillis));
+        StreamOffset<byte[]> offset = StreamOffset.create(CacheInvalidationPublisher.UPDATE_STREAM_BYTES,
+                ReadOffset.from(lastId));
+        List<ByteRecord> records = redisTemplate.execute(
+                (RedisCallback<List<ByteRecord>>) connection -> connection.streamCommands().xRead(options, offset));
+        lastReadMillis = System.currentTimeMillis();
+        if (records == null) {
+            return 0;
+        }
+        for (ByteRecord record : records) {
+            byte[] body = batchOf(record);
+            if (body != null) {
+                cacheUpdateListener.onBatch(body);
+            }
+            lastId = record.getId().getValue();
+        }
+        return records.size();
+    }
+
+    /**
+     * 重连后检查是否可能错过了消息
+     * 上次读到的条目还在Stream中时，之后的条目一定都还在；
+     * 该条目已被裁剪，或者还没读到过任何条目但断线时间超过了保留时间、Stream已达到长度上限时，
+     * 断线期间的条目可能已被裁剪，清空本地缓存后从Stream中现存最早的条目继续读取
+     */
+    private void checkGap() {
+        boolean gap;
+        if (EMPTY_STREAM_ID.equals(lastId)) {
+            Long length = redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.streamCommands().xLen(CacheInvalidationPublisher.UPDATE_STREAM_BYTES));
+            gap = System.currentTimeMillis() - lastReadMillis >= streamMaxAgeMillis
+                    || (length != null && length >= streamMaxLength);
+        } else {
+            List<ByteRecord> last = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                    connection.streamCommands().xRange(CacheInvalidationPublisher.UPDATE_STREAM_BYTES,
+                            Range.closed(lastId, lastId), Limit.limit().count(1)));
+            gap = last == null || last.isEmpty();
+        }
+        if (gap) {
+            log.warn("Cache update stream was trimmed past {}, clearing local caches", lastId);
+            cacheMetrics.recordStreamGap();
+            cacheConsistencyManager.clearLocalCaches();
+            lastId = EMPTY_STREAM_ID;
+        }
+    }
+
+    /**
+     * Stream中最新条目的ID，Stream为空时返回起始位置
+     */
+    private String latestId() {
+        List<ByteRecord> latest = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xRevRange(CacheInvalidationPublisher.UPDATE_STREAM_BYTES,
+                        Range.unbounded(), Limit.limit().count(1)));
+        return latest == null || latest.isEmpty() ? EMPTY_STREAM_ID : latest.get(0).getId().getValue();
+    }
+
+    private static byte[] batchOf(ByteRecord record) {
+        // 字节数组键不能按值查找，逐个比较字段名
+        for (Map.Entry<byte[], byte[]> field : record.getValue().entrySet()) {
+            if (Arrays.equals(CacheInvalidationPublisher.BATCH_FIELD, field.getKey())) {
+                return field.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.cache.listener;
 
 import com.example.cache.manager.CacheConsistencyManager;
+import com.example.cache.manager.CacheNode;
+import com.example.cache.manager.CacheUpdateBatch;
 import com.example.cache.manager.CacheUpdateMessage;
+import com.example.cache.manager.KeyBloomFilter;
+import com.example.cache.manager.VersionedValue;
+import com.example.cache.metrics.CacheMetrics;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +14,11 @@ import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 缓存更新监听器
  * 负责监听Redis的缓存更新消息，并处理本地缓存的更新
@@ -24,37 +34,120 @@ public class CacheUpdateListener implements MessageListener {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CacheNode cacheNode;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private KeyBloomFilter keyBloomFilter;
+
+    @Autowired
+    private PartitionedInvalidationExecutor invalidationExecutor;
+
     /**
-     * 处理接收到的缓存更新消息
+     * 处理接收到的批量缓存更新消息
+     * 忽略本节点发布的消息，其余消息按键分区后交给失效执行器，标签失效先通过本地标签索引展开为键，
+     * 每个分区涉及的本地缓存按版本号在一次操作中失效，并记录处理耗时和从发布到生效的延迟。
+     * 在订阅线程上只做解码和分区，不访问Redis
      * 
      * @param message Redis消息对象，包含消息内容
      * @param pattern 消息匹配模式（未使用）
      */
     @Override
     public void onMessage(Message message, byte[] pattern) {
+        onBatch(message.getBody());
+    }
+
+    /**
+     * 处理一条编码后的批量缓存更新消息
+     * 发布/订阅和Stream两种传递方式共用，无法解码的消息记录日志后跳过
+     *
+     * @param body 批量消息的字节
+     */
+    public void onBatch(byte[] body) {
         try {
-            // 将消息转换为CacheUpdateMessage对象
-            String messageBody = new String(message.getBody());
-            CacheUpdateMessage cacheMessage = objectMapper.readValue(messageBody, CacheUpdateMessage.class);
-            
-            log.info("Received cache update message: {}", messageBody);
-            
-            // 根据操作类型处理缓存
-            String key = cacheMessage.getKey();
-            String operation = cacheMessage.getOperation();
-            
-            if ("delete".equals(operation)) {
-                // 删除本地缓存
-                cacheConsistencyManager.clearLocalCache(key);
-                log.info("Local cache cleared for key: {}", key);
-            } else if ("update".equals(operation)) {
-                // 删除本地缓存，让它在下次访问时从远程缓存重新加载
-                cacheConsistencyManager.clearLocalCache(key);
-                log.info("Local cache invalidated for key: {} to reload from remote", key);
+            // 直接从消息字节解析批量消息
+            CacheUpdateBatch batch = objectMapper.readValue(body, CacheUpdateBatch.class);
+
+            // 本节点写入时已更新本地缓存，无需处理自己发布的消息
+            if (cacheNode.getId().equals(batch.getOrigin())) {
+                return;
+            }
+
+            int partitionCount = invalidationExecutor.getPartitions();
+            @SuppressWarnings("unchecked")
+            Map<String, Long>[] versions = new Map[partitionCount];
+            @SuppressWarnings("unchecked")
+            List<String>[] updatedKeys = new List[partitionCount];
+            for (CacheUpdateMessage cacheMessage : batch.getMessages()) {
+                String operation = cacheMessage.getOperation();
+                String key = cacheMessage.getKey();
+                int partition = invalidationExecutor.partitionOf(key);
+                // 更新操作也只删除本地缓存，让它在下次访问时从远程缓存重新加载
+                if ("delete".equals(operation) || "update".equals(operation)) {
+                    if (versions[partition] == null) {
+                        versions[partition] = new HashMap<>();
+                    }
+                    versions[partition].merge(key, cacheMessage.getVersion(), Math::max);
+                }
+                if ("update".equals(operation)) {
+                    if (updatedKeys[partition] == null) {
+                        updatedKeys[partition] = new ArrayList<>();
+                    }
+                    updatedKeys[partition].add(key);
+                }
+            }
+            // 标签失效按未知版本清除本地索引中的所有键，覆盖同一批次中这些键的版本号
+            if (batch.getTags() != null) {
+                for (String tag : batch.getTags()) {
+                    for (String key : cacheConsistencyManager.localKeysForTag(tag)) {
+                        int partition = invalidationExecutor.partitionOf(key);
+                        if (versions[partition] == null) {
+                            versions[partition] = new HashMap<>();
+                        }
+                        versions[partition].put(key, VersionedValue.UNKNOWN_VERSION);
+                    }
+                }
+            }
+
+            for (int partition = 0; partition < partitionCount; partition++) {
+                Map<String, Long> partitionVersions = versions[partition];
+                List<String> partitionUpdates = updatedKeys[partition];
+                if (partitionVersions != null || partitionUpdates != null) {
+                    invalidationExecutor.execute(partition,
+                            () -> apply(batch, partitionVersions, partitionUpdates));
+                }
             }
-            
         } catch (Exception e) {
             log.error("Error processing cache update message", e);
         }
     }
+
+    /**
+     * 在分区工作线程上失效一个分区的键
+     *
+     * @param batch 键所属的批次
+     * @param versions 缓存键到消息版本号的映射，可能为null
+     * @param updatedKeys 被更新的键，可能为null
+     */
+    private void apply(CacheUpdateBatch batch, Map<String, Long> versions, List<String> updatedKeys) {
+        try {
+            long start = System.nanoTime();
+            if (updatedKeys != null) {
+                // 其他节点写入的键同步到本地布隆过滤器
+                keyBloomFilter.addLocal(updatedKeys);
+            }
+            if (versions == null) {
+                return;
+            }
+            int invalidated = cacheConsistencyManager.invalidateLocalCache(versions);
+            cacheMetrics.recordInvalidation(batch.getPublishedAt(), start, versions.size(), invalidated);
+            log.debug("Applied cache update batch from {}: {} keys, {} invalidated",
+                    batch.getOrigin(), versions.size(), invalidated);
+        } catch (Exception e) {
+            log.error("Error applying cache update batch from {}", batch.getOrigin(), e);
+        }
+    }
 }
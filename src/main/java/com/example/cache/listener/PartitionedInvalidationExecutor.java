@@ -0,0 +1,113 @@
+package com.example.cache.listener;
+
+import com.example.cache.metrics.CacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按键分区的失效消息执行器
+ * 固定数量的工作线程，每个线程有自己的有界队列，同一个键总是分配到同一个分区，
+ * 因此同一个键的失效按收到的顺序执行，不同分区的键并行执行。
+ * <p>
+ * 分区队列已满时在提交线程直接执行并计入溢出次数。失效按版本号比较，
+ * 与队列中的任务乱序执行也不会清除更新的值，只是失去了同一个键的执行顺序
+ */
+@Slf4j
+@Component
+public class PartitionedInvalidationExecutor {
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 工作线程（分区）数量
+     */
+    @Value("${cache.invalidation.workers:4}")
+    private int workers;
+
+    /**
+     * 每个分区的任务队列容量
+     */
+    @Value("${cache.invalidation.queue-capacity:1024}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor[] partitions;
+
+    @PostConstruct
+    public void init() {
+        partitions = new ThreadPoolExecutor[Math.max(1, workers)];
+        for (int i = 0; i < partitions.length; i++) {
+            String name = "cache-invalidation-" + i;
+            partitions[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), r -> {
+                        Thread thread = new Thread(r, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        cacheMetrics.bindInvalidationQueue(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor partition : partitions) {
+            partition.shutdown();
+        }
+    }
+
+    /**
+     * 分区数量
+     */
+    public int getPartitions() {
+        return partitions.length;
+    }
+
+    /**
+     * 计算键所在的分区
+     *
+     * @param key 缓存键
+     * @return 分区序号
+     */
+    public int partitionOf(String key) {
+        int h = key.hashCode();
+        // 混合高位，避免前缀相同的键集中到少数分区
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    /**
+     * 提交一个分区的失效任务
+     *
+     * @param partition 分区序号
+     * @param task 失效任务
+     */
+    public void execute(int partition, Runnable task) {
+        try {
+            partitions[partition].execute(task);
+        } catch (RejectedExecutionException e) {
+            cacheMetrics.recordInvalidationOverflow();
+            log.debug("Invalidation partition {} is full, applying on the subscriber thread", partition);
+            task.run();
+        }
+    }
+
+    /**
+     * 所有分区中排队等待执行的任务数
+     */
+    public int queuedTasks() {
+        int queued = 0;
+        for (ThreadPoolExecutor partition : partitions) {
+            queued += partition.getQueue().size();
+        }
+        return queued;
+    }
+}
@@ -1,20 +1,53 @@
 package com.example.cache.manager;
 
-import com.alicp.jetcache.Cache;
-import com.alicp.jetcache.anno.CacheType;
-import com.alicp.jetcache.anno.CreateCache;
+import com.alicp.jetcache.CacheException;
+import com.alicp.jetcache.CacheGetResult;
+import com.alicp.jetcache.CacheResultCode;
+import com.alicp.jetcache.CacheValueHolder;
+import com.example.cache.codec.KeyPrefix;
+import com.example.cache.metrics.CacheMetrics;
+import com.example.cache.metrics.TierMeters;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 缓存一致性管理器
  * 负责管理本地缓存和远程缓存的一致性
  * 实现了缓存的更新、删除和同步功能
+ * <p>
+ * 远程缓存熔断期间进入降级模式：读取只使用本地缓存（远程读取失败时可以使用宽限期内的旧值）和数据源，
+ * 写入立即以{@link CacheWriteResult.Status#UNAVAILABLE}返回，并清除本节点缓存中的旧值；
+ * 被拒绝写入的键和标签记录下来，熔断器关闭后补做远程缓存的失效，
+ * 降级期间只写入本节点缓存的回源结果同时被清除，之后重新从远程缓存读取
  */
 @Slf4j
 @Component
@@ -22,162 +55,1851 @@ public class CacheConsistencyManager {
 
     /**
      * Redis模板
-     * 用于发布缓存更新消息
+     * 用于集群级加载租约和分配版本号
      */
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
     /**
-     * Redisson客户端
-     * 用于分布式锁
+     * 缓存失效消息发布器
+     * 合并批量发布缓存更新消息
+     */
+    @Autowired
+    private CacheInvalidationPublisher invalidationPublisher;
+
+    /**
+     * 乐观缓存写入器
+     * 乐观写入模式下替代分布式锁
+     */
+    @Autowired
+    private OptimisticCacheWriter optimisticWriter;
+
+    /**
+     * 分布式锁
+     */
+    @Autowired
+    private DistributedLockManager lockManager;
+
+    /**
+     * 本地缓存层
+     * 封装一级缓存的读写、版本号比较和提前刷新
+     */
+    @Autowired
+    private LocalCacheTier localTier;
+
+    /**
+     * 堆外缓存层
+     * 位于本地缓存和远程缓存之间，未启用时所有操作直接返回
+     */
+    @Autowired
+    private OffHeapCacheTier offHeapTier;
+
+    /**
+     * 远程缓存层
+     * 按一致性哈希将缓存值和版本号计数器分布到一个或多个Redis实例
+     */
+    @Autowired
+    private RemoteCacheTier remoteTier;
+
+    /**
+     * 标签索引
+     * 按标签失效时查找要删除的键
+     */
+    @Autowired
+    private CacheTagIndex tagIndex;
+
+    /**
+     * 过期策略
+     * 记录回源耗时，判断命中的条目是否应提前重新计算
+     */
+    @Autowired
+    private ExpirationPolicy expirationPolicy;
+
+    /**
+     * 缓存指标
+     * 记录远程缓存的命中和耗时，以及分布式锁的等待时间
+     */
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 远程缓存指标
+     */
+    private TierMeters remoteMeters;
+
+    /**
+     * 远程缓存熔断器
+     * 熔断期间拒绝写入，关闭后补做被拒绝写入的失效
      */
     @Autowired
-    private RedissonClient redissonClient;
+    private RemoteCircuitBreaker remoteBreaker;
+
+    /**
+     * 已知键的布隆过滤器
+     * 本地判断一定不存在的键不访问远程缓存也不回源
+     */
+    @Autowired
+    private KeyBloomFilter keyBloomFilter;
+
+    /**
+     * 是否为回源不存在的数据写入负缓存条目
+     */
+    @Value("${cache.negative.enabled:true}")
+    private boolean negativeCachingEnabled;
+
+    /**
+     * 负缓存条目的过期时间（毫秒）
+     */
+    @Value("${cache.negative.ttl-millis:30000}")
+    private long negativeTtlMillis;
+
+    /**
+     * 获取分布式锁的最长等待时间（毫秒）
+     * 写入的延迟上限，Redis变慢时调用方最多等待这么久
+     */
+    @Value("${cache.lock.wait-millis:5000}")
+    private long lockWaitMillis;
+
+    /**
+     * 分布式锁的租期（毫秒）
+     */
+    @Value("${cache.lock.lease-millis:30000}")
+    private long lockLeaseMillis;
+
+    /**
+     * 熔断期间最多记录的待补做失效的键或降级回填的键数量
+     */
+    @Value("${cache.remote.breaker.max-pending-keys:10000}")
+    private int maxPendingKeys;
+
+    /**
+     * 熔断期间被拒绝写入以及获取锁超时或版本冲突未写入的键，补做时从远程缓存删除并发布删除消息
+     */
+    private final Set<String> deferredInvalidations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 熔断期间被拒绝失效的标签，熔断器关闭后重新失效
+     */
+    private final Set<String> deferredTags = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 熔断期间回源后只写入了本节点缓存的键，熔断器关闭后从本节点缓存清除
+     */
+    private final Set<String> degradedFills = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 降级回填的键超出记录上限，熔断器关闭后清空本节点缓存
+     */
+    private final AtomicBoolean degradedFillsOverflowed = new AtomicBoolean();
+
+    /**
+     * 待补做失效的键超出记录上限，超出的键在远程缓存中的旧值只能等待过期
+     */
+    private final AtomicBoolean deferredInvalidationsOverflowed = new AtomicBoolean();
+
+    /**
+     * 是否已有等待执行或正在执行的补做任务
+     */
+    private final AtomicBoolean reconcileScheduled = new AtomicBoolean();
+
+    /**
+     * 恢复后每批补做失效的键数量
+     */
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    /**
+     * 版本号前缀
+     * 每个键在Redis中维护一个单调递增的版本号计数器
+     */
+    static final KeyPrefix VERSION_KEYS = KeyPrefix.of("cache:version:");
+
+    /**
+     * 版本号计数器的过期时间（毫秒）
+     * 每次写入时续期，需远大于本地缓存和远程缓存的过期时间，
+     * 保证计数器过期重置前，记录旧版本号的缓存条目都已过期
+     */
+    @Value("${cache.version.ttl-millis:86400000}")
+    private long versionTtlMillis;
+
+    /**
+     * 写入模式
+     * lock：每次写入获取分布式锁；optimistic：通过版本号比较并写入，不加锁
+     */
+    @Value("${cache.write.mode:lock}")
+    private String writeMode;
+
+    /**
+     * 乐观写入模式下版本冲突时的最大重试次数
+     */
+    @Value("${cache.write.max-retries:3}")
+    private int maxWriteRetries;
+
+    /**
+     * 本地缓存后台刷新线程数
+     */
+    @Value("${cache.local.refresh-ahead.threads:2}")
+    private int refreshThreads;
+
+    /**
+     * 本地缓存后台刷新任务队列容量，队列满时放弃本次刷新
+     */
+    @Value("${cache.local.refresh-ahead.queue-capacity:1024}")
+    private int refreshQueueCapacity;
+
+    /**
+     * 本地缓存后台刷新线程池
+     */
+    private ThreadPoolExecutor refreshExecutor;
+
+    /**
+     * 异步接口的工作线程数
+     * 本地缓存命中在调用线程直接返回，只有访问Redis或回源的操作交给工作线程
+     */
+    @Value("${cache.async.threads:16}")
+    private int asyncThreads;
+
+    /**
+     * 异步接口的任务队列容量，队列满时立即以{@link RejectedExecutionException}失败
+     */
+    @Value("${cache.async.queue-capacity:1024}")
+    private int asyncQueueCapacity;
+
+    /**
+     * 异步接口的工作线程池
+     */
+    private ThreadPoolExecutor asyncExecutor;
+
+    /**
+     * 正在后台刷新的键
+     * 保证同一个键同一时刻只有一个刷新任务
+     */
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 加载租约前缀
+     * 用于集群范围内的单飞加载，同一时刻只有持有租约的节点回源
+     */
+    private static final String LEASE_PREFIX = "cache:lease:";
 
     /**
-     * 本地缓存实例
-     * 使用JetCache的LOCAL类型，用于快速访问
+     * 释放租约脚本
+     * 只有租约仍属于自己时才删除，避免误删其他节点在租约过期后重新获取的租约
      */
-    @CreateCache(name = "localCache", cacheType = CacheType.LOCAL)
-    private Cache<String, Object> jetcacheLocal;
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
 
     /**
-     * 远程缓存实例
-     * 使用JetCache的REMOTE类型，用于分布式缓存
+     * 是否启用集群级加载租约
+     * 关闭时只在本JVM内合并并发加载
      */
-    @CreateCache(name = "remoteCache", cacheType = CacheType.REMOTE)
-    private Cache<String, Object> jetcacheRemote;
+    @Value("${cache.load.cluster-lease-enabled:false}")
+    private boolean clusterLeaseEnabled;
 
     /**
-     * 锁前缀
-     * 用于构造分布式锁的键
+     * 加载租约的有效期（毫秒）
+     * 应略大于一次回源加载的耗时
      */
-    private static final String LOCK_PREFIX = "cache:lock:";
+    @Value("${cache.load.lease-millis:3000}")
+    private long leaseMillis;
 
     /**
-     * 缓存更新主题
-     * 用于发布缓存更新消息
+     * 未获得租约时轮询远程缓存的间隔（毫秒）
      */
-    private static final String UPDATE_TOPIC = "cache:update:topic";
+    @Value("${cache.load.lease-poll-millis:50}")
+    private long leasePollMillis;
+
+    /**
+     * 正在进行中的加载任务
+     * 同一个键的并发未命中共享同一个Future
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(refreshQueueCapacity), r -> {
+                    Thread thread = new Thread(r, "cache-refresh-ahead");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        refreshExecutor.allowCoreThreadTimeOut(true);
+        asyncExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(asyncQueueCapacity), r -> {
+                    Thread thread = new Thread(r, "cache-async");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        asyncExecutor.allowCoreThreadTimeOut(true);
+        remoteMeters = cacheMetrics.remote();
+        remoteBreaker.onRecovery(this::scheduleReconcile);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        asyncExecutor.shutdown();
+    }
 
     /**
      * 更新缓存并发布更新消息
+     * 乐观写入模式下版本冲突时按最新版本号重试，直到成功或达到重试上限
      * 
      * @param key 缓存键
      * @param value 缓存值
+     * @return 写入结果，获取锁超时或重试后仍冲突时写入未生效，本节点缓存中的旧值已清除
+     */
+    public CacheWriteResult updateCache(String key, Object value) {
+        return updateCache(key, value, Collections.emptySet());
+    }
+
+    /**
+     * 更新带标签的缓存并发布更新消息
+     * 标签随值一起保存，之后可以通过{@link #invalidateTag(String)}一次删除带有某个标签的所有键
+     *
+     * @param key 缓存键
+     * @param value 缓存值
+     * @param tags 标签，可以为空
+     * @return 写入结果，获取锁超时或重试后仍冲突时写入未生效，本节点缓存中的旧值已清除
      */
-    public void updateCache(String key, Object value) {
-        RLock lock = redissonClient.getLock(LOCK_PREFIX + key);
+    public CacheWriteResult updateCache(String key, Object value, Collection<String> tags) {
+        if (!remoteBreaker.allowsWrites()) {
+            return rejectWrite(Collections.singleton(key));
+        }
+        if (isOptimisticWrite()) {
+            CacheWriteResult result;
+            try {
+                result = compareAndSet(key, value, optimisticWriter.currentVersion(key), tags);
+            } catch (CacheException e) {
+                log.warn("Failed to read cache version for key: {}", key, e);
+                return rejectWrite(Collections.singleton(key));
+            }
+            for (int retry = 0; result.getStatus() == CacheWriteResult.Status.CONFLICT && retry < maxWriteRetries;
+                 retry++) {
+                result = compareAndSet(key, value, result.getVersion(), tags);
+            }
+            return result.getStatus() == CacheWriteResult.Status.CONFLICT
+                    ? abandonWrite(Collections.singleton(key), result) : result;
+        }
+
         try {
-            if (lock.tryLock(5, 30, TimeUnit.SECONDS)) {
+            DistributedLock lock = tryLock(Collections.singleton(key));
+            if (lock != null) {
                 try {
-                    // 更新各级缓存
-                    updateAllCaches(key, value);
-                    // 发布缓存更新消息
-                    publishCacheUpdateMessage(key, "update");
+                    return applyUpdate(key, value, tags);
                 } finally {
-                    lock.unlock();
+                    lockManager.unlock(lock);
                 }
             }
         } catch (InterruptedException e) {
             log.error("获取锁失败", e);
             Thread.currentThread().interrupt();
         }
+        return abandonWrite(Collections.singleton(key), CacheWriteResult.lockTimeout());
     }
 
     /**
      * 删除缓存并发布删除消息
      * 
      * @param key 要删除的缓存键
+     * @return 写入结果，获取锁超时或重试后仍冲突时删除未生效，本节点缓存中的旧值已清除
      */
-    public void deleteCache(String key) {
-        RLock lock = redissonClient.getLock(LOCK_PREFIX + key);
+    public CacheWriteResult deleteCache(String key) {
+        if (!remoteBreaker.allowsWrites()) {
+            return rejectWrite(Collections.singleton(key));
+        }
+        if (isOptimisticWrite()) {
+            CacheWriteResult result;
+            try {
+                result = compareAndDelete(key, optimisticWriter.currentVersion(key));
+            } catch (CacheException e) {
+                log.warn("Failed to read cache version for key: {}", key, e);
+                return rejectWrite(Collections.singleton(key));
+            }
+            for (int retry = 0; result.getStatus() == CacheWriteResult.Status.CONFLICT && retry < maxWriteRetries;
+                 retry++) {
+                result = compareAndDelete(key, result.getVersion());
+            }
+            return result.getStatus() == CacheWriteResult.Status.CONFLICT
+                    ? abandonWrite(Collections.singleton(key), result) : result;
+        }
+
         try {
-            if (lock.tryLock(5, 30, TimeUnit.SECONDS)) {
+            DistributedLock lock = tryLock(Collections.singleton(key));
+            if (lock != null) {
                 try {
-                    // 清除各级缓存
-                    clearAllCaches(key);
-                    // 发布缓存删除消息
-                    publishCacheUpdateMessage(key, "delete");
+                    return applyDelete(key);
                 } finally {
-                    lock.unlock();
+                    lockManager.unlock(lock);
                 }
             }
         } catch (InterruptedException e) {
             log.error("获取锁失败", e);
             Thread.currentThread().interrupt();
         }
+        return abandonWrite(Collections.singleton(key), CacheWriteResult.lockTimeout());
     }
 
     /**
-     * 清除本地缓存
-     * 用于其他实例收到缓存更新消息时清除本地缓存
-     * 
-     * @param key 要清除的缓存键
+     * 异步更新缓存并发布更新消息
+     * 分布式锁由定时线程重试获取，等待锁期间不占用工作线程
+     *
+     * @param key 缓存键
+     * @param value 缓存值
+     * @return 写入结果，获取锁超时或重试后仍冲突时写入未生效，本节点缓存中的旧值已清除
      */
-    public void clearLocalCache(String key) {
-        jetcacheLocal.remove(key);
-        log.info("Local cache cleared for key: {}", key);
+    public CompletableFuture<CacheWriteResult> updateAsync(String key, Object value) {
+        return updateAsync(key, value, Collections.emptySet());
     }
 
     /**
-     * 更新所有缓存
-     * 
+     * 异步更新带标签的缓存并发布更新消息
+     *
      * @param key 缓存键
      * @param value 缓存值
+     * @param tags 标签，可以为空
+     * @return 写入结果，获取锁超时或重试后仍冲突时写入未生效，本节点缓存中的旧值已清除
      */
-    private void updateAllCaches(String key, Object value) {
-        // 更新本地缓存
-        jetcacheLocal.put(key, value);
-        // 更新远程缓存
-        jetcacheRemote.put(key, value);
-        log.info("All caches updated for key: {}", key);
+    public CompletableFuture<CacheWriteResult> updateAsync(String key, Object value, Collection<String> tags) {
+        if (!remoteBreaker.allowsWrites()) {
+            return CompletableFuture.completedFuture(rejectWrite(Collections.singleton(key)));
+        }
+        if (isOptimisticWrite()) {
+            return supplyAsync(() -> updateCache(key, value, tags));
+        }
+        return withLockAsync(Collections.singleton(key), () -> applyUpdate(key, value, tags),
+                () -> abandonWrite(Collections.singleton(key), CacheWriteResult.lockTimeout()));
     }
 
     /**
-     * 清除所有缓存
+     * 异步删除缓存并发布删除消息
+     *
+     * @param key 要删除的缓存键
+     * @return 写入结果，获取锁超时或重试后仍冲突时删除未生效，本节点缓存中的旧值已清除
+     */
+    public CompletableFuture<CacheWriteResult> deleteAsync(String key) {
+        if (!remoteBreaker.allowsWrites()) {
+            return CompletableFuture.completedFuture(rejectWrite(Collections.singleton(key)));
+        }
+        if (isOptimisticWrite()) {
+            return supplyAsync(() -> deleteCache(key));
+        }
+        return withLockAsync(Collections.singleton(key), () -> applyDelete(key),
+                () -> abandonWrite(Collections.singleton(key), CacheWriteResult.lockTimeout()));
+    }
+
+    /**
+     * 版本号匹配时更新缓存并发布更新消息
+     * 不获取分布式锁，由Redis端脚本原子地比较并递增版本号
      * 
      * @param key 缓存键
+     * @param value 缓存值
+     * @param expectedVersion 期望的当前版本号，可通过{@link #getVersion(String)}获取
+     * @return 写入结果，冲突时包含远程缓存中的当前版本号
      */
-    private void clearAllCaches(String key) {
-        // 清除本地缓存
-        jetcacheLocal.remove(key);
-        // 清除远程缓存
-        jetcacheRemote.remove(key);
-        log.info("All caches cleared for key: {}", key);
+    public CacheWriteResult compareAndSet(String key, Object value, long expectedVersion) {
+        return compareAndSet(key, value, expectedVersion, Collections.emptySet());
+    }
+
+    /**
+     * 版本号匹配时更新带标签的缓存并发布更新消息
+     * 写入前把键加入远程标签索引，版本冲突时索引中多出的键只会在失效时多一次无效的删除
+     *
+     * @param key 缓存键
+     * @param value 缓存值
+     * @param expectedVersion 期望的当前版本号
+     * @param tags 标签，可以为空
+     * @return 写入结果，冲突时包含远程缓存中的当前版本号
+     */
+    public CacheWriteResult compareAndSet(String key, Object value, long expectedVersion, Collection<String> tags) {
+        if (!remoteBreaker.allowsWrites()) {
+            return rejectWrite(Collections.singleton(key));
+        }
+        tagIndex.indexRemote(key, tags);
+        CacheWriteResult result = optimisticWriter.compareAndSet(key, value, expectedVersion, tags);
+        if (result.getStatus() == CacheWriteResult.Status.UNAVAILABLE) {
+            return rejectWrite(Collections.singleton(key));
+        }
+        if (result.isApplied()) {
+            keyBloomFilter.add(key);
+            VersionedValue versioned = VersionedValue.of(value, result.getVersion(), tags);
+            localTier.putIfNewer(key, versioned);
+            offHeapTier.putIfNewer(key, versioned);
+            publishCacheUpdateMessage(key, "update", result.getVersion());
+        } else {
+            log.debug("Cache update conflict for key: {}, expected version {}, current version {}",
+                    key, expectedVersion, result.getVersion());
+        }
+        return result;
     }
 
     /**
-     * 发布缓存更新消息到Redis
+     * 版本号匹配时删除缓存并发布删除消息
      * 
      * @param key 缓存键
-     * @param operation 操作类型（update或delete）
+     * @param expectedVersion 期望的当前版本号
+     * @return 写入结果，冲突时包含远程缓存中的当前版本号
      */
-    private void publishCacheUpdateMessage(String key, String operation) {
-        CacheUpdateMessage message = new CacheUpdateMessage(key, operation);
-        redisTemplate.convertAndSend(UPDATE_TOPIC, message);
-        log.info("Published cache {} message for key: {}", operation, key);
+    public CacheWriteResult compareAndDelete(String key, long expectedVersion) {
+        if (!remoteBreaker.allowsWrites()) {
+            return rejectWrite(Collections.singleton(key));
+        }
+        CacheWriteResult result = optimisticWriter.compareAndDelete(key, expectedVersion);
+        if (result.getStatus() == CacheWriteResult.Status.UNAVAILABLE) {
+            return rejectWrite(Collections.singleton(key));
+        }
+        if (result.isApplied()) {
+            localTier.remove(key);
+            offHeapTier.remove(key);
+            publishCacheUpdateMessage(key, "delete", result.getVersion());
+        } else {
+            log.debug("Cache delete conflict for key: {}, expected version {}, current version {}",
+                    key, expectedVersion, result.getVersion());
+        }
+        return result;
     }
 
     /**
-     * 获取缓存值
-     * 先从本地缓存获取，如果没有则从远程缓存获取
+     * 获取键在远程缓存中的当前版本号
      * 
      * @param key 缓存键
-     * @return 缓存值
+     * @return 当前版本号，从未写入过时为0
+     * @throws CacheException 远程缓存熔断或读取失败时抛出
      */
-    public Object get(String key) {
-        // 先从本地缓存获取
-        Object value = jetcacheLocal.get(key);
-        if (value == null) {
-            // 本地缓存未命中，从远程缓存获取
-            value = jetcacheRemote.get(key);
-            if (value != null) {
-                // 将远程缓存的值放入本地缓存
-                jetcacheLocal.put(key, value);
-                log.info("Cache value fetched from remote and stored in local cache for key: {}", key);
+    public long getVersion(String key) {
+        return optimisticWriter.currentVersion(key);
+    }
+
+    /**
+     * 批量获取缓存值
+     * 本地缓存命中的键直接返回，未命中的键通过一次管道请求从远程缓存获取
+     * 
+     * @param keys 缓存键集合
+     * @return 命中的键值对，未命中或已知不存在的键不包含在结果中
+     */
+    public Map<String, Object> getAll(Collection<String> keys) {
+        Map<String, Object> result = new HashMap<>();
+        getAllCached(keys).forEach((key, cached) -> {
+            if (!VersionedValue.isAbsent(cached)) {
+                result.put(key, VersionedValue.unwrap(cached));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 批量获取缓存值，未命中时通过批量加载器回源
+     * 加载结果批量回填各级缓存，不发布更新消息；加载器未返回的键写入负缓存条目
+     * 
+     * @param keys 缓存键集合
+     * @param loader 批量回源加载器，只需返回存在的键
+     * @param <V> 值类型
+     * @return 命中或加载到的键值对
+     */
+    public <V> Map<String, V> getAll(Collection<String> keys, Function<Set<String>, Map<String, V>> loader) {
+        return loadMissing(keys, getAllCached(keys), loader);
+    }
+
+    /**
+     * 异步批量获取缓存值，未命中时通过批量加载器回源
+     * 所有键都在本地缓存或堆外缓存命中时在调用线程直接返回，否则远程读取和回源在工作线程执行
+     *
+     * @param keys 缓存键集合
+     * @param loader 批量回源加载器，只需返回存在的键
+     * @param <V> 值类型
+     * @return 命中或加载到的键值对
+     */
+    public <V> CompletableFuture<Map<String, V>> getAllAsync(Collection<String> keys,
+                                                             Function<Set<String>, Map<String, V>> loader) {
+        Set<String> keySet = new HashSet<>(keys);
+        Map<String, Object> cached = getAllNearCached(keySet);
+        if (cached.size() == keySet.size()) {
+            return CompletableFuture.completedFuture(loadMissing(keySet, cached, loader));
+        }
+        return supplyAsync(() -> {
+            getAllRemoteCached(keySet, cached);
+            return loadMissing(keySet, cached, loader);
+        });
+    }
+
+    /**
+     * 返回缓存中的值，并通过批量加载器回源缓存中没有的键
+     * 加载结果批量回填各级缓存，加载器未返回的键写入负缓存条目
+     *
+     * @param keys 缓存键集合
+     * @param cached 已从缓存获取到的键值对，包括负缓存条目
+     * @param loader 批量回源加载器
+     * @param <V> 值类型
+     * @return 命中或加载到的键值对
+     */
+    @SuppressWarnings("unchecked")
+    private <V> Map<String, V> loadMissing(Collection<String> keys, Map<String, Object> cached,
+                                           Function<Set<String>, Map<String, V>> loader) {
+        Map<String, V> result = new HashMap<>();
+        cached.forEach((key, entry) -> {
+            if (!VersionedValue.isAbsent(entry)) {
+                result.put(key, (V) VersionedValue.unwrap(entry));
             }
+        });
+        // 已知不存在的键不再回源
+        Set<String> misses = new HashSet<>(keys);
+        misses.removeAll(cached.keySet());
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        long loadStart = System.nanoTime();
+        Map<String, V> loaded = loader.apply(misses);
+        if (loaded != null) {
+            expirationPolicy.recordLoadAll(loaded.keySet(), misses.size(), loadStart);
+        }
+        if (loaded != null && !loaded.isEmpty()) {
+            Map<String, VersionedValue> fills = new HashMap<>();
+            loaded.forEach((key, value) -> fills.put(key, new VersionedValue(value, VersionedValue.UNKNOWN_VERSION)));
+            if (!remotePutAll(fills)) {
+                recordDegradedFills(fills.keySet());
+            }
+            fillLocalAll(fills);
+            result.putAll(loaded);
+            log.debug("Batch loaded {} of {} missing keys from source", loaded.size(), misses.size());
+        }
+        if (negativeCachingEnabled) {
+            Map<String, VersionedValue> absents = new HashMap<>();
+            for (String key : misses) {
+                if (loaded == null || !loaded.containsKey(key)) {
+                    absents.put(key, VersionedValue.absent());
+                }
+            }
+            if (!absents.isEmpty()) {
+                long start = System.nanoTime();
+                if (!remoteTier.putAll(absents, negativeTtlMillis, TimeUnit.MILLISECONDS)) {
+                    recordDegradedFills(absents.keySet());
+                }
+                remoteMeters.recordPutAll(start);
+                fillLocalAll(absents);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量更新缓存并发布更新消息
+     * 所有键的锁通过一次脚本调用获取，远程写入和消息发布均通过管道批量发送
+     * 
+     * @param entries 要更新的键值对
+     * @return 是否获取到锁并完成更新，未完成时本节点缓存中的旧值已清除
+     */
+    public boolean putAll(Map<String, ?> entries) {
+        return putAll(entries, Collections.emptySet());
+    }
+
+    /**
+     * 批量更新缓存并发布更新消息，所有键带有相同的标签
+     *
+     * @param entries 要更新的键值对
+     * @param tags 标签，可以为空
+     * @return 是否获取到锁并完成更新，远程缓存熔断时为false
+     */
+    public boolean putAll(Map<String, ?> entries, Collection<String> tags) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+        if (!remoteBreaker.allowsWrites()) {
+            rejectWrite(entries.keySet());
+            return false;
+        }
+        try {
+            DistributedLock lock = tryLock(entries.keySet());
+            if (lock != null) {
+                try {
+                    return applyPutAll(entries, tags);
+                } finally {
+                    lockManager.unlock(lock);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("获取锁失败", e);
+            Thread.currentThread().interrupt();
+        }
+        abandonWrite(entries.keySet(), CacheWriteResult.lockTimeout());
+        return false;
+    }
+
+    /**
+     * 异步批量更新缓存并发布更新消息
+     *
+     * @param entries 要更新的键值对
+     * @return 是否获取到锁并完成更新，未完成时本节点缓存中的旧值已清除
+     */
+    public CompletableFuture<Boolean> putAllAsync(Map<String, ?> entries) {
+        return putAllAsync(entries, Collections.emptySet());
+    }
+
+    /**
+     * 异步批量更新缓存并发布更新消息，所有键带有相同的标签
+     *
+     * @param entries 要更新的键值对
+     * @param tags 标签，可以为空
+     * @return 是否获取到锁并完成更新，远程缓存熔断时为false
+     */
+    public CompletableFuture<Boolean> putAllAsync(Map<String, ?> entries, Collection<String> tags) {
+        if (entries.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (!remoteBreaker.allowsWrites()) {
+            rejectWrite(entries.keySet());
+            return CompletableFuture.completedFuture(false);
+        }
+        return withLockAsync(entries.keySet(), () -> applyPutAll(entries, tags), () -> {
+            abandonWrite(entries.keySet(), CacheWriteResult.lockTimeout());
+            return false;
+        });
+    }
+
+    /**
+     * 批量删除缓存并发布删除消息
+     * 
+     * @param keys 要删除的缓存键集合
+     * @return 是否获取到锁并完成删除，远程缓存熔断时为false，未完成时本节点缓存中的旧值已清除
+     */
+    public boolean removeAll(Collection<String> keys) {
+        Set<String> keySet = new HashSet<>(keys);
+        if (keySet.isEmpty()) {
+            return true;
+        }
+        if (!remoteBreaker.allowsWrites()) {
+            rejectWrite(keySet);
+            return false;
+        }
+        try {
+            DistributedLock lock = tryLock(keySet);
+            if (lock != null) {
+                try {
+                    return applyRemoveAll(keySet);
+                } finally {
+                    lockManager.unlock(lock);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("获取锁失败", e);
+            Thread.currentThread().interrupt();
+        }
+        abandonWrite(keySet, CacheWriteResult.lockTimeout());
+        return false;
+    }
+
+    /**
+     * 异步批量删除缓存并发布删除消息
+     *
+     * @param keys 要删除的缓存键集合
+     * @return 是否获取到锁并完成删除，远程缓存熔断时为false
+     */
+    public CompletableFuture<Boolean> removeAllAsync(Collection<String> keys) {
+        Set<String> keySet = new HashSet<>(keys);
+        if (keySet.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (!remoteBreaker.allowsWrites()) {
+            rejectWrite(keySet);
+            return CompletableFuture.completedFuture(false);
+        }
+        return withLockAsync(keySet, () -> applyRemoveAll(keySet), () -> {
+            abandonWrite(keySet, CacheWriteResult.lockTimeout());
+            return false;
+        });
+    }
+
+    /**
+     * 删除带有某个标签的所有缓存并发布一条标签失效消息
+     * 远程缓存中的键通过Redis中的标签索引查找并分批删除，不扫描键空间；
+     * 其他节点收到消息后按各自的本地标签索引删除本地缓存和堆外缓存中的条目。
+     * 不获取键的分布式锁，与之并发写入的键要么被删除，要么保留并发写入的新值。
+     * 远程缓存熔断时只删除本节点的条目，标签在熔断器关闭后重新失效
+     *
+     * @param tag 标签
+     * @return 从远程缓存删除的键数量
+     */
+    public int invalidateTag(String tag) {
+        if (!remoteBreaker.allowsWrites()) {
+            Set<String> localKeys = tagIndex.removeLocal(tag);
+            localTier.removeAll(localKeys);
+            offHeapTier.removeAll(localKeys);
+            deferredTags.add(tag);
+            log.warn("Remote cache circuit open, tag {} invalidated locally ({} keys), remote purge deferred",
+                    tag, localKeys.size());
+            return 0;
+        }
+        long start = System.nanoTime();
+        int purged = tagIndex.purgeRemote(tag, keys -> {
+            if (!remoteTier.removeAll(keys)) {
+                deferInvalidations(keys);
+            }
+        });
+        remoteMeters.recordDeleteAll(start);
+        Set<String> localKeys = tagIndex.removeLocal(tag);
+        if (!localKeys.isEmpty()) {
+            localTier.removeAll(localKeys);
+            offHeapTier.removeAll(localKeys);
+        }
+        invalidationPublisher.publishTag(tag);
+        log.info("Cache tag {} invalidated: {} remote keys, {} local keys", tag, purged, localKeys.size());
+        return purged;
+    }
+
+    /**
+     * 异步删除带有某个标签的所有缓存
+     *
+     * @param tag 标签
+     * @return 从远程缓存删除的键数量
+     */
+    public CompletableFuture<Integer> invalidateTagAsync(String tag) {
+        return supplyAsync(() -> invalidateTag(tag));
+    }
+
+    /**
+     * 从本地标签索引中取出带有某个标签的键
+     * 用于处理其他节点发布的标签失效消息，取出的键随后按未知版本失效
+     *
+     * @param tag 标签
+     * @return 本节点上可能带有该标签的键
+     */
+    public Set<String> localKeysForTag(String tag) {
+        return tagIndex.removeLocal(tag);
+    }
+
+    /**
+     * 清除本地缓存
+     * 用于其他实例收到缓存更新消息时清除本地缓存
+     * 
+     * @param key 要清除的缓存键
+     */
+    public void clearLocalCache(String key) {
+        localTier.remove(key);
+        offHeapTier.remove(key);
+        log.info("Local cache cleared for key: {}", key);
+    }
+
+    /**
+     * 清空本节点的本地缓存和堆外缓存
+     * 只在无法确认是否错过了失效消息时使用，清空后的读取全部落到远程缓存
+     */
+    public void clearLocalCaches() {
+        localTier.clear();
+        offHeapTier.clear();
+        log.warn("Local and off-heap caches cleared");
+    }
+
+    /**
+     * 按版本号批量失效本地缓存
+     * 用于一次性处理一批缓存更新消息，本地条目的版本号不低于消息版本号时保留，
+     * 避免延迟或乱序到达的消息清除更新的值
+     * 
+     * @param versions 缓存键到消息版本号的映射
+     * @return 实际清除的键数量
+     */
+    public int invalidateLocalCache(Map<String, Long> versions) {
+        int invalidated = localTier.invalidate(versions);
+        offHeapTier.invalidate(versions);
+        log.debug("Local cache invalidated for {} of {} keys", invalidated, versions.size());
+        return invalidated;
+    }
+
+    /**
+     * 分配版本号、更新各级缓存并发布更新消息，需在持有键的锁时调用
+     *
+     * @param key 缓存键
+     * @param value 缓存值
+     * @param tags 标签，可以为空
+     * @return 写入结果
+     */
+    private CacheWriteResult applyUpdate(String key, Object value, Collection<String> tags) {
+        Map<String, Long> versions = nextVersions(Collections.singleton(key));
+        if (versions == null) {
+            return rejectWrite(Collections.singleton(key));
+        }
+        long version = versions.get(key);
+        // 先写入标签索引，再更新各级缓存
+        tagIndex.indexRemote(key, tags);
+        updateAllCaches(key, VersionedValue.of(value, version, tags));
+        // 发布缓存更新消息
+        publishCacheUpdateMessage(key, "update", version);
+        return CacheWriteResult.applied(version);
+    }
+
+    /**
+     * 分配版本号、清除各级缓存并发布删除消息，需在持有键的锁时调用
+     *
+     * @param key 缓存键
+     * @return 写入结果
+     */
+    private CacheWriteResult applyDelete(String key) {
+        Map<String, Long> versions = nextVersions(Collections.singleton(key));
+        if (versions == null) {
+            return rejectWrite(Collections.singleton(key));
+        }
+        long version = versions.get(key);
+        // 清除各级缓存
+        clearAllCaches(key);
+        // 发布缓存删除消息
+        publishCacheUpdateMessage(key, "delete", version);
+        return CacheWriteResult.applied(version);
+    }
+
+    /**
+     * 批量分配版本号、更新各级缓存并发布更新消息，需在持有所有键的锁时调用
+     *
+     * @param entries 要更新的键值对
+     * @param tags 所有键共同的标签，可以为空
+     * @return 是否已更新，无法分配版本号时为false
+     */
+    private boolean applyPutAll(Map<String, ?> entries, Collection<String> tags) {
+        Map<String, Long> versions = nextVersions(entries.keySet());
+        if (versions == null) {
+            rejectWrite(entries.keySet());
+            return false;
+        }
+        tagIndex.indexRemote(entries.keySet(), tags);
+        Map<String, VersionedValue> versioned = new HashMap<>();
+        entries.forEach((key, value) -> versioned.put(key, VersionedValue.of(value, versions.get(key), tags)));
+        // 更新各级缓存
+        localTier.putAll(versioned);
+        offHeapTier.putAll(versioned);
+        if (!remotePutAll(versioned)) {
+            deferInvalidations(versioned.keySet());
+        }
+        log.info("All caches updated for {} keys", entries.size());
+        // 发布缓存更新消息
+        publishCacheUpdateMessages(versions, "update");
+        return true;
+    }
+
+    /**
+     * 批量分配版本号、清除各级缓存并发布删除消息，需在持有所有键的锁时调用
+     *
+     * @param keySet 要删除的缓存键集合
+     * @return 是否已删除，无法分配版本号时为false
+     */
+    private boolean applyRemoveAll(Set<String> keySet) {
+        Map<String, Long> versions = nextVersions(keySet);
+        if (versions == null) {
+            rejectWrite(keySet);
+            return false;
+        }
+        // 清除各级缓存
+        localTier.removeAll(keySet);
+        offHeapTier.removeAll(keySet);
+        long start = System.nanoTime();
+        if (!remoteTier.removeAll(keySet)) {
+            deferInvalidations(keySet);
+        }
+        remoteMeters.recordDeleteAll(start);
+        log.info("All caches cleared for {} keys", keySet.size());
+        // 发布缓存删除消息
+        publishCacheUpdateMessages(versions, "delete");
+        return true;
+    }
+
+    /**
+     * 更新所有缓存
+     * 
+     * @param key 缓存键
+     * @param value 带版本号的缓存值
+     */
+    private void updateAllCaches(String key, VersionedValue value) {
+        // 更新本地缓存和堆外缓存
+        localTier.put(key, value);
+        offHeapTier.put(key, value);
+        // 更新远程缓存，失败时远程缓存中可能留有旧值，恢复后补做失效
+        if (!remotePut(key, value)) {
+            deferInvalidations(Collections.singleton(key));
+        }
+        log.info("All caches updated for key: {}", key);
+    }
+
+    /**
+     * 清除所有缓存
+     * 
+     * @param key 缓存键
+     */
+    private void clearAllCaches(String key) {
+        // 清除本地缓存和堆外缓存
+        localTier.remove(key);
+        offHeapTier.remove(key);
+        // 清除远程缓存
+        long start = System.nanoTime();
+        if (!remoteTier.remove(key)) {
+            deferInvalidations(Collections.singleton(key));
+        }
+        remoteMeters.recordDelete(start);
+        log.info("All caches cleared for key: {}", key);
+    }
+
+    /**
+     * 发布缓存更新消息
+     * 消息先进入发布器缓冲区，合并后批量发布
+     * 
+     * @param key 缓存键
+     * @param operation 操作类型（update或delete）
+     * @param version 本次操作分配的版本号
+     */
+    private void publishCacheUpdateMessage(String key, String operation, long version) {
+        invalidationPublisher.publish(key, operation, version);
+        log.debug("Queued cache {} message for key: {}", operation, key);
+    }
+
+    /**
+     * 批量发布缓存更新消息
+     * 
+     * @param versions 缓存键到本次操作分配的版本号的映射
+     * @param operation 操作类型（update或delete）
+     */
+    private void publishCacheUpdateMessages(Map<String, Long> versions, String operation) {
+        invalidationPublisher.publishAll(versions, operation);
+        log.debug("Queued cache {} messages for {} keys", operation, versions.size());
+    }
+
+    /**
+     * 为一组键分配新的版本号
+     * 版本号计数器与缓存值保存在同一个分片上，每个分片的自增和续期通过一个管道发送，
+     * 需在持有键的锁时调用，保证版本号顺序与写入顺序一致
+     * 
+     * 每个分片的管道请求经过熔断器执行并记录结果，被熔断器拒绝或执行失败时不分配版本号
+     * 
+     * @param keys 缓存键集合
+     * @return 缓存键到新版本号的映射，任一分片被熔断器拒绝或执行失败时为null
+     */
+    private Map<String, Long> nextVersions(Collection<String> keys) {
+        Map<String, Long> versions = new HashMap<>();
+        for (Map.Entry<RemoteShard, List<String>> entry : remoteTier.partition(keys).entrySet()) {
+            List<String> orderedKeys = entry.getValue();
+            if (!remoteBreaker.allowsWrites()) {
+                return null;
+            }
+            long start = System.nanoTime();
+            List<Object> results;
+            try {
+                results = entry.getKey().getRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+                    for (String key : orderedKeys) {
+                        byte[] versionKey = VERSION_KEYS.encode(key);
+                        connection.incr(versionKey);
+                        connection.pExpire(versionKey, versionTtlMillis);
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                remoteBreaker.recordFailure();
+                log.warn("Failed to allocate versions for {} keys", orderedKeys.size(), e);
+                return null;
+            }
+            remoteBreaker.recordSuccess(start, true);
+            for (int i = 0; i < orderedKeys.size(); i++) {
+                // 每个键对应自增和续期两个结果，取自增结果
+                versions.put(orderedKeys.get(i), (Long) results.get(i * 2));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * 批量获取缓存中保存的对象
+     * 本地缓存命中的键直接返回，布隆过滤器判断一定不存在的键以负缓存条目返回，
+     * 其余键通过一次管道请求从远程缓存获取
+     * 
+     * @param keys 缓存键集合
+     * @return 命中的键到缓存中保存的对象的映射，包括负缓存条目
+     */
+    private Map<String, Object> getAllCached(Collection<String> keys) {
+        Set<String> keySet = new HashSet<>(keys);
+        Map<String, Object> result = getAllNearCached(keySet);
+        if (result.size() < keySet.size()) {
+            getAllRemoteCached(keySet, result);
+        }
+        return result;
+    }
+
+    /**
+     * 批量从本节点的本地缓存和堆外缓存获取，不访问Redis
+     * 布隆过滤器判断一定不存在的键以负缓存条目返回
+     *
+     * @param keySet 缓存键集合
+     * @return 命中的键到缓存中保存的对象的映射，包括负缓存条目
+     */
+    private Map<String, Object> getAllNearCached(Set<String> keySet) {
+        Map<String, Object> result = new HashMap<>();
+        if (keySet.isEmpty()) {
+            return result;
+        }
+        // 先从本地缓存获取
+        result.putAll(localTier.getAll(keySet, key -> scheduleRefresh(key, null)));
+        if (result.size() == keySet.size()) {
+            return result;
+        }
+        if (offHeapTier.isEnabled()) {
+            // 再从堆外缓存获取，命中的值按准入规则提升到本地缓存
+            Set<String> onHeapMisses = new HashSet<>(keySet);
+            onHeapMisses.removeAll(result.keySet());
+            Map<String, Object> offHeapHits = offHeapTier.getAll(onHeapMisses);
+            if (!offHeapHits.isEmpty()) {
+                localTier.admitAll(offHeapHits);
+                result.putAll(offHeapHits);
+            }
+        }
+
+        // 排除一定不存在的键
+        for (String key : keySet) {
+            if (!result.containsKey(key) && !keyBloomFilter.mightContain(key)) {
+                result.put(key, VersionedValue.absent());
+                cacheMetrics.recordBloomRejection();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 通过一次管道请求从远程缓存获取本节点未命中的键
+     *
+     * @param keySet 缓存键集合
+     * @param result 本节点已命中的结果，远程命中的键追加到其中
+     */
+    private void getAllRemoteCached(Set<String> keySet, Map<String, Object> result) {
+        Set<String> localMisses = new HashSet<>(keySet);
+        localMisses.removeAll(result.keySet());
+        if (localMisses.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Set<String> unavailable = new HashSet<>();
+        Map<String, Object> remoteHits = remoteTier.getAll(localMisses, unavailable);
+        if (unavailable.isEmpty()) {
+            remoteMeters.recordGetAll(start, localMisses.size(), remoteHits.size());
+        } else {
+            remoteMeters.recordGetError(start);
+        }
+        if (!remoteHits.isEmpty()) {
+            // 本地缓存保留远程缓存中的版本号，只写入准入的键
+            fillLocalAll(remoteHits);
+            result.putAll(remoteHits);
+        }
+        // 远程缓存读取失败或熔断的键使用本地缓存中宽限期内的旧值
+        int stale = 0;
+        for (String key : unavailable) {
+            Object value = localTier.getStale(key);
+            if (value != null) {
+                result.put(key, value);
+                stale++;
+            }
+        }
+        log.debug("Batch get for {} keys: {} remote lookups, {} remote hits, {} unavailable, {} served stale",
+                keySet.size(), localMisses.size(), remoteHits.size(), unavailable.size(), stale);
+    }
+
+    /**
+     * 将远程缓存读到或回源加载的值写入本节点的各级缓存
+     * 堆外缓存直接写入，本地缓存按准入规则写入
+     *
+     * @param key 缓存键
+     * @param cached 要保存的对象
+     * @return 是否写入了本地缓存
+     */
+    private boolean fillLocal(String key, Object cached) {
+        offHeapTier.put(key, cached);
+        return localTier.admit(key, cached);
+    }
+
+    /**
+     * 批量将远程缓存读到或回源加载的值写入本节点的各级缓存
+     *
+     * @param entries 要保存的键值对
+     */
+    private void fillLocalAll(Map<String, ?> entries) {
+        offHeapTier.putAll(entries);
+        localTier.admitAll(entries);
+    }
+
+    /**
+     * 获取一组键的分布式锁并记录等待时间
+     *
+     * @param keys 缓存键集合
+     * @return 已获取的锁，等待超时返回null
+     */
+    private DistributedLock tryLock(Collection<String> keys) throws InterruptedException {
+        long start = System.nanoTime();
+        DistributedLock lock = null;
+        try {
+            lock = lockManager.tryLock(keys, lockWaitMillis, lockLeaseMillis);
+            return lock;
+        } catch (RuntimeException e) {
+            remoteBreaker.recordFailure();
+            throw e;
+        } finally {
+            cacheMetrics.recordLockWait(start, lock != null);
+        }
+    }
+
+    /**
+     * 异步获取一组键的分布式锁后在工作线程执行操作，完成后释放锁
+     *
+     * @param keys 缓存键集合
+     * @param action 持有锁时执行的操作
+     * @param onTimeout 等待超时未获取到锁时的结果
+     * @param <T> 结果类型
+     * @return 操作结果
+     */
+    private <T> CompletableFuture<T> withLockAsync(Collection<String> keys, Supplier<T> action, Supplier<T> onTimeout) {
+        long start = System.nanoTime();
+        return lockManager.tryLockAsync(keys, lockWaitMillis, lockLeaseMillis)
+                .whenComplete((lock, error) -> {
+                    if (error != null) {
+                        remoteBreaker.recordFailure();
+                    }
+                })
+                .thenCompose(lock -> {
+                    cacheMetrics.recordLockWait(start, lock != null);
+                    if (lock == null) {
+                        return CompletableFuture.completedFuture(onTimeout.get());
+                    }
+                    CompletableFuture<T> result = supplyAsync(action);
+                    result.whenComplete((value, error) -> lockManager.unlock(lock));
+                    return result;
+                });
+    }
+
+    /**
+     * 在异步工作线程执行任务，线程池已满时返回失败的Future而不阻塞调用线程
+     *
+     * @param task 任务
+     * @param <T> 结果类型
+     * @return 任务结果
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, asyncExecutor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    /**
+     * 读取远程缓存并记录命中和耗时
+     *
+     * @param key 缓存键
+     * @return 读取结果
+     */
+    private CacheGetResult<Object> remoteGet(String key) {
+        long start = System.nanoTime();
+        CacheGetResult<Object> result = remoteTier.GET(key);
+        if (result.getResultCode() == CacheResultCode.FAIL) {
+            remoteMeters.recordGetError(start);
+        } else {
+            remoteMeters.recordGet(start, result.isSuccess());
+        }
+        return result;
+    }
+
+    /**
+     * 写入远程缓存并把键加入布隆过滤器，记录耗时
+     */
+    private boolean remotePut(String key, Object value) {
+        long start = System.nanoTime();
+        boolean success = remoteTier.putKnown(key, value);
+        remoteMeters.recordPut(start);
+        return success;
+    }
+
+    /**
+     * 批量写入远程缓存并把键加入布隆过滤器，记录耗时
+     */
+    private boolean remotePutAll(Map<String, ?> entries) {
+        long start = System.nanoTime();
+        boolean success = remoteTier.putAllKnown(entries);
+        remoteMeters.recordPutAll(start);
+        return success;
+    }
+
+    /**
+     * 远程缓存熔断或不可用时拒绝写入
+     * 清除本节点缓存中的旧值，避免本节点继续读到写入前的值，远程缓存的失效在熔断器关闭后补做
+     *
+     * @param keys 被拒绝写入的键
+     * @return 写入结果
+     */
+    private CacheWriteResult rejectWrite(Set<String> keys) {
+        localTier.removeAll(keys);
+        offHeapTier.removeAll(keys);
+        deferInvalidations(keys);
+        log.warn("Remote cache unavailable, write rejected for {} keys", keys.size());
+        return CacheWriteResult.unavailable();
+    }
+
+    /**
+     * 写入因获取锁超时或版本冲突未生效
+     * 调用方可能已经修改了数据源，远程缓存和其他节点中仍是旧值：与熔断时拒绝写入相同，
+     * 清除本节点缓存中的旧值，并在工作线程上补做远程缓存的失效
+     *
+     * @param keys 写入未生效的键
+     * @param result 写入结果
+     * @return 写入结果
+     */
+    private CacheWriteResult abandonWrite(Set<String> keys, CacheWriteResult result) {
+        localTier.removeAll(keys);
+        offHeapTier.removeAll(keys);
+        deferInvalidations(keys);
+        scheduleReconcile();
+        log.warn("Cache write {} for {} keys, remote invalidation deferred", result.getStatus(), keys.size());
+        return result;
+    }
+
+    /**
+     * 记录远程缓存中可能留有旧值的键，熔断器关闭后或下一次补做时从远程缓存删除并发布删除消息
+     *
+     * @param keys 缓存键
+     */
+    private void deferInvalidations(Set<String> keys) {
+        if (deferredInvalidations.size() + keys.size() > maxPendingKeys) {
+            if (deferredInvalidationsOverflowed.compareAndSet(false, true)) {
+                log.error("More than {} keys awaiting remote invalidation, further keys will only expire by TTL",
+                        maxPendingKeys);
+            }
+            return;
+        }
+        deferredInvalidations.addAll(keys);
+    }
+
+    /**
+     * 记录降级期间只写入了本节点缓存的回源结果
+     *
+     * @param keys 缓存键
+     */
+    private void recordDegradedFills(Set<String> keys) {
+        if (degradedFills.size() + keys.size() > maxPendingKeys) {
+            degradedFillsOverflowed.set(true);
+            return;
+        }
+        degradedFills.addAll(keys);
+    }
+
+    /**
+     * 在工作线程上补做降级期间或写入未生效时的失效，同一时刻最多一个补做任务
+     */
+    private void scheduleReconcile() {
+        if (!reconcileScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            asyncExecutor.execute(() -> {
+                try {
+                    reconcile();
+                } catch (RuntimeException e) {
+                    log.warn("Reconcile of deferred invalidations failed", e);
+                } finally {
+                    reconcileScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reconcileScheduled.set(false);
+            log.warn("Async queue full, reconcile deferred to the next recovery or abandoned write");
+        }
+    }
+
+    /**
+     * 补做降级期间或写入未生效时的失效
+     * 清除只写入了本节点缓存的回源结果，从远程缓存删除被拒绝写入的键并发布删除消息，
+     * 重新失效被拒绝的标签；期间熔断器再次打开或获取锁超时时，未完成的键已重新记录，
+     * 本次补做到此为止，由下次恢复或下一次写入未生效时继续
+     */
+    private void reconcile() {
+        if (!remoteBreaker.allowsWrites()) {
+            // 熔断器关闭时会再次补做
+            return;
+        }
+        if (degradedFillsOverflowed.compareAndSet(true, false)) {
+            degradedFills.clear();
+            clearLocalCaches();
+        } else {
+            Set<String> fills = drain(degradedFills, Integer.MAX_VALUE);
+            localTier.removeAll(fills);
+            offHeapTier.removeAll(fills);
+        }
+        deferredInvalidationsOverflowed.set(false);
+        int invalidated = 0;
+        for (Set<String> keys = drain(deferredInvalidations, RECONCILE_BATCH_SIZE); !keys.isEmpty();
+             keys = drain(deferredInvalidations, RECONCILE_BATCH_SIZE)) {
+            if (!removeAll(keys)) {
+                log.info("Reconcile paused after {} deferred keys invalidated", invalidated);
+                return;
+            }
+            invalidated += keys.size();
+        }
+        for (String tag : drain(deferredTags, Integer.MAX_VALUE)) {
+            invalidateTag(tag);
+        }
+        log.info("Reconciled deferred invalidations: {} keys invalidated", invalidated);
+    }
+
+    /**
+     * 从并发集合中取出最多limit个元素
+     */
+    private static Set<String> drain(Set<String> source, int limit) {
+        Set<String> drained = new HashSet<>();
+        for (String element : source) {
+            if (drained.size() >= limit) {
+                break;
+            }
+            if (source.remove(element)) {
+                drained.add(element);
+            }
+        }
+        return drained;
+    }
+
+    private boolean isOptimisticWrite() {
+        return "optimistic".equalsIgnoreCase(writeMode);
+    }
+
+    /**
+     * 获取缓存值
+     * 先从本地缓存获取，如果没有则从远程缓存获取
+     * 
+     * @param key 缓存键
+     * @return 缓存值
+     */
+    public Object get(String key) {
+        return VersionedValue.unwrap(getCached(key, null));
+    }
+
+    /**
+     * 获取缓存值，未命中时通过加载器回源
+     * 同一个键的并发未命中在本JVM内只会触发一次加载，其余调用等待同一个Future；
+     * 启用集群租约后，整个集群同一时刻也只有一个节点回源。
+     * 回源失败时，如果本地缓存中还有宽限期内的旧值则返回旧值。
+     * 已知不存在的键（负缓存命中或布隆过滤器判断不存在）直接返回null，不回源
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器，返回null表示数据不存在
+     * @param <V> 值类型
+     * @return 缓存值或加载结果
+     */
+    public <V> V get(String key, Function<String, V> loader) {
+        return getOrLoad(key, getCached(key, loader), loader);
+    }
+
+    /**
+     * 异步获取缓存值，未命中时通过加载器回源
+     * 本地缓存或堆外缓存命中时在调用线程直接返回已完成的Future；
+     * 同一个键已有加载在进行时直接返回依赖该加载的Future，不占用工作线程；
+     * 否则远程读取和回源在工作线程执行，调用线程不等待Redis
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器，返回null表示数据不存在
+     * @param <V> 值类型
+     * @return 缓存值或加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> getAsync(String key, Function<String, V> loader) {
+        Object cached = getNearCached(key, loader);
+        if (cached != null) {
+            return CompletableFuture.completedFuture((V) VersionedValue.unwrap(cached));
+        }
+        CompletableFuture<Object> inFlight = inFlightLoads.get(key);
+        if (inFlight != null) {
+            return withStaleFallback(key, inFlight);
+        }
+        return supplyAsync(() -> getRemoteCached(key, loader)).thenCompose(remote -> remote != null
+                ? CompletableFuture.completedFuture((V) VersionedValue.unwrap(remote))
+                : withStaleFallback(key, loadShared(key, loader)));
+    }
+
+    /**
+     * 返回缓存中的值，缓存未命中时单飞回源
+     * 回源失败时，如果本地缓存中还有宽限期内的旧值则返回旧值
+     *
+     * @param key 缓存键
+     * @param cached 缓存中保存的对象，未命中时为null
+     * @param loader 回源加载器
+     * @param <V> 值类型
+     * @return 缓存值或加载结果
+     */
+    @SuppressWarnings("unchecked")
+    private <V> V getOrLoad(String key, Object cached, Function<String, V> loader) {
+        if (cached != null) {
+            return (V) VersionedValue.unwrap(cached);
+        }
+
+        try {
+            return (V) awaitLoad(loadShared(key, loader));
+        } catch (RuntimeException e) {
+            return serveStale(key, e);
+        }
+    }
+
+    /**
+     * 加载完成后返回结果，加载失败时如果本地缓存中还有宽限期内的旧值则返回旧值
+     * 不等待加载，结果在完成加载的线程上计算
+     *
+     * @param key 缓存键
+     * @param load 加载任务
+     * @param <V> 值类型
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    private <V> CompletableFuture<V> withStaleFallback(String key, CompletableFuture<Object> load) {
+        return load.handle((value, error) -> {
+            if (error == null) {
+                return (V) value;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (!(cause instanceof RuntimeException)) {
+                throw new CompletionException(cause);
+            }
+            return serveStale(key, (RuntimeException) cause);
+        });
+    }
+
+    /**
+     * 回源失败时返回本地缓存中宽限期内的旧值，没有旧值时抛出原始异常
+     */
+    @SuppressWarnings("unchecked")
+    private <V> V serveStale(String key, RuntimeException e) {
+        Object stale = localTier.getStale(key);
+        if (stale == null) {
+            throw e;
+        }
+        log.warn("Load failed, serving stale local value for key: {}", key, e);
+        return (V) VersionedValue.unwrap(stale);
+    }
+
+    /**
+     * 依次从本地缓存和远程缓存获取缓存中保存的对象
+     * 远程缓存读取失败时，如果本地缓存中还有宽限期内的旧值则返回旧值；
+     * 布隆过滤器判断一定不存在的键不访问远程缓存，直接返回负缓存条目
+     *
+     * @param key 缓存键
+     * @param loader 本地缓存提前刷新时使用的回源加载器，可以为null
+     * @return 缓存中保存的对象，已知不存在时为负缓存条目，未命中时返回null
+     */
+    private Object getCached(String key, Function<String, ?> loader) {
+        Object value = getNearCached(key, loader);
+        return value != null ? value : getRemoteCached(key, loader);
+    }
+
+    /**
+     * 从本节点的本地缓存和堆外缓存获取，不访问Redis
+     *
+     * @param key 缓存键
+     * @param loader 本地缓存提前刷新时使用的回源加载器，可以为null
+     * @return 缓存中保存的对象，已知不存在时为负缓存条目，未命中时返回null
+     */
+    private Object getNearCached(String key, Function<String, ?> loader) {
+        // 先从本地缓存获取
+        Object value = localTier.get(key, k -> scheduleRefresh(k, loader));
+        if (value != null) {
+            return value;
+        }
+        if (!keyBloomFilter.mightContain(key)) {
+            cacheMetrics.recordBloomRejection();
+            return VersionedValue.absent();
+        }
+        // 本地缓存未命中，从堆外缓存获取，命中的值按准入规则提升到本地缓存
+        value = offHeapTier.get(key);
+        if (value != null) {
+            localTier.admit(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 从远程缓存获取并回填本节点的各级缓存
+     * 远程缓存读取失败时，如果本地缓存中还有宽限期内的旧值则返回旧值；
+     * 命中的条目临近过期时按概率在后台提前回源
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器，可以为null
+     * @return 缓存中保存的对象，未命中时返回null
+     */
+    private Object getRemoteCached(String key, Function<String, ?> loader) {
+        Object value = null;
+        CacheGetResult<Object> remote = remoteGet(key);
+        if (remote.isSuccess()) {
+            value = remote.getValue();
+            if (loader != null && shouldRecomputeEarly(key, remote)) {
+                scheduleRecompute(key, loader);
+            }
+            // 写入堆外缓存，访问频率达到准入阈值时同时放入本地缓存
+            boolean admitted = fillLocal(key, value);
+            log.debug("Cache value fetched from remote for key: {}, stored in local cache: {}", key, admitted);
+        } else if (remote.getResultCode() == CacheResultCode.FAIL) {
+            value = localTier.getStale(key);
+            if (value != null) {
+                log.warn("Remote cache read failed, serving stale local value for key: {}", key);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 合并同一个键的并发加载
+     * 没有进行中的加载时在当前线程执行加载并返回已完成的Future；
+     * 已有加载在进行时直接返回其Future，由调用方决定同步等待还是异步组合
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器
+     * @return 加载任务
+     */
+    private CompletableFuture<Object> loadShared(String key, Function<String, ?> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlightLoads.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            future.complete(loadThrough(key, loader));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlightLoads.remove(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * 提交本地缓存的后台刷新任务
+     * 同一个键同一时刻只有一个刷新任务，队列已满时放弃本次刷新
+     *
+     * @param key 缓存键
+     * @param loader 远程缓存也未命中时使用的回源加载器，可以为null
+     */
+    private void scheduleRefresh(String key, Function<String, ?> loader) {
+        if (!refreshingKeys.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refreshLocal(key, loader);
+                } catch (Exception e) {
+                    log.warn("Refresh-ahead failed for key: {}", key, e);
+                } finally {
+                    refreshingKeys.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(key);
+            log.debug("Refresh-ahead queue full, skipped key: {}", key);
+        }
+    }
+
+    /**
+     * 提交提前回源任务
+     * 与后台刷新共用线程池，同一个键同一时刻只有一个刷新或回源任务，队列已满时放弃
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器
+     */
+    private void scheduleRecompute(String key, Function<String, ?> loader) {
+        if (!refreshingKeys.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    recompute(key, loader);
+                } catch (Exception e) {
+                    log.warn("Early recompute failed for key: {}", key, e);
+                } finally {
+                    refreshingKeys.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(key);
+            log.debug("Refresh-ahead queue full, skipped early recompute for key: {}", key);
+        }
+    }
+
+    /**
+     * 远程缓存命中的条目是否应提前回源
+     * 负缓存条目不提前回源
+     */
+    private boolean shouldRecomputeEarly(String key, CacheGetResult<Object> remote) {
+        CacheValueHolder<Object> holder = RemoteCacheTier.holder(remote);
+        return holder != null && !VersionedValue.isAbsent(holder.getValue())
+                && expirationPolicy.shouldRecomputeEarly(key, holder.getExpireTime());
+    }
+
+    /**
+     * 从远程缓存刷新本地缓存，远程缓存未命中时通过加载器回源
+     * 远程缓存中的条目也临近过期时按概率直接回源，同时刷新远程缓存
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器，可以为null
+     */
+    private void refreshLocal(String key, Function<String, ?> loader) {
+        CacheGetResult<Object> remote = remoteGet(key);
+        if (remote.isSuccess() && loader != null && shouldRecomputeEarly(key, remote)) {
+            recompute(key, loader);
+        } else if (remote.isSuccess()) {
+            localTier.replaceIfNotOlder(key, remote.getValue());
+            offHeapTier.put(key, remote.getValue());
+        } else if (remote.getResultCode() == CacheResultCode.FAIL) {
+            log.warn("Refresh-ahead could not read remote cache for key: {}", key);
+        } else if (loader != null) {
+            loadThrough(key, loader);
+        }
+    }
+
+    /**
+     * 执行一次回源加载并回填各级缓存
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器
+     * @return 加载结果
+     */
+    private Object loadThrough(String key, Function<String, ?> loader) {
+        // 再次检查远程缓存，可能在排队期间已被其他调用回填
+        Object value = remoteGet(key).getValue();
+        if (value != null) {
+            fillLocal(key, value);
+            return VersionedValue.unwrap(value);
+        }
+
+        // 熔断期间Redis不可用，不获取集群租约，本节点直接回源
+        if (!clusterLeaseEnabled || remoteBreaker.getState() != RemoteCircuitBreaker.State.CLOSED) {
+            return loadAndFill(key, loader);
+        }
+
+        String leaseKey = LEASE_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(leaseKey, token, leaseMillis, TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(acquired)) {
+            try {
+                return loadAndFill(key, loader);
+            } finally {
+                redisTemplate.execute(RELEASE_LEASE_SCRIPT, Collections.singletonList(leaseKey), token);
+            }
+        }
+
+        // 其他节点持有租约，等待其回填远程缓存
+        value = awaitRemoteFill(key);
+        if (value != null) {
+            return VersionedValue.unwrap(value);
+        }
+        log.warn("Lease holder did not fill cache in time, loading locally for key: {}", key);
+        return loadAndFill(key, loader);
+    }
+
+    /**
+     * 调用加载器并将结果写入远程缓存和本地缓存
+     * 回填不改变数据本身，因此不发布更新消息；数据不存在时写入过期时间较短的负缓存条目
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器
+     * @return 加载结果
+     */
+    private Object loadAndFill(String key, Function<String, ?> loader) {
+        long loadStart = System.nanoTime();
+        Object value = loader.apply(key);
+        expirationPolicy.recordLoad(key, loadStart);
+        if (value != null) {
+            // 回源的值没有对应的写入版本
+            VersionedValue fill = new VersionedValue(value, VersionedValue.UNKNOWN_VERSION);
+            if (!remotePut(key, fill)) {
+                recordDegradedFills(Collections.singleton(key));
+            }
+            fillLocal(key, fill);
+            log.debug("Cache value loaded from source for key: {}", key);
+        } else if (negativeCachingEnabled) {
+            long start = System.nanoTime();
+            if (!remoteTier.put(key, VersionedValue.absent(), negativeTtlMillis, TimeUnit.MILLISECONDS)) {
+                recordDegradedFills(Collections.singleton(key));
+            }
+            remoteMeters.recordPut(start);
+            fillLocal(key, VersionedValue.absent());
+            log.debug("Source has no value, negative entry cached for key: {}", key);
+        }
+        return value;
+    }
+
+    /**
+     * 提前回源并在键的版本号没有变化时回填各级缓存
+     * 回源前读取版本号，通过比较并写入脚本回填远程缓存；回源期间有更新或删除时版本号已变化，
+     * 放弃回填，不用回源前读到的旧数据覆盖更新后的值。更新方会发布失效消息，这里不需要额外通知
+     *
+     * @param key 缓存键
+     * @param loader 回源加载器
+     */
+    private void recompute(String key, Function<String, ?> loader) {
+        long observedVersion = optimisticWriter.currentVersion(key);
+        long loadStart = System.nanoTime();
+        Object value = loader.apply(key);
+        expirationPolicy.recordLoad(key, loadStart);
+        Object fill;
+        long ttlMillis;
+        if (value != null) {
+            fill = new VersionedValue(value, VersionedValue.UNKNOWN_VERSION);
+            ttlMillis = remoteTier.config().getExpireAfterWriteInMillis();
+        } else if (negativeCachingEnabled) {
+            fill = VersionedValue.absent();
+            ttlMillis = negativeTtlMillis;
+        } else {
+            return;
+        }
+        long start = System.nanoTime();
+        CacheWriteResult result = optimisticWriter.fillIfUnchanged(key, fill, ttlMillis, observedVersion);
+        remoteMeters.recordPut(start);
+        if (!result.isApplied()) {
+            log.debug("Skipped early recompute fill for key {}, result: {}", key, result.getStatus());
+            return;
+        }
+        // 提前回源的键已经在远程缓存中，布隆过滤器中已有对应的位
+        fillLocal(key, fill);
+        log.debug("Recomputed key ahead of expiry: {}", key);
+    }
+
+    /**
+     * 在租约有效期内轮询远程缓存，等待持有租约的节点回填
+     *
+     * @param key 缓存键
+     * @return 回填到缓存中的对象，可能是负缓存条目，超时返回null
+     */
+    private Object awaitRemoteFill(String key) {
+        long deadline = System.currentTimeMillis() + leaseMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(leasePollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Object value = remoteGet(key).getValue();
+            if (value != null) {
+                fillLocal(key, value);
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 等待加载完成，并还原加载器抛出的原始异常
+     *
+     * @param future 加载任务
+     * @return 加载结果
+     */
+    private static Object awaitLoad(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
         }
-        return value;
     }
 }
@@ -0,0 +1,302 @@
+package com.example.cache.manager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存失效消息发布器
+ * 将缓存更新消息缓冲几毫秒或累积到一定数量后，去重合并为一条批量消息发布
+ * 写入密集时大幅减少发布/订阅消息数量和各节点监听器的处理开销
+ * <p>
+ * 默认通过Redis Stream传递批量消息，各节点记录自己读到的位置，断线重连后从该位置继续读取，
+ * 不会错过断线期间的消息；Stream按长度和时间定期裁剪。
+ * 也可以配置为发布/订阅方式，断线期间的消息会丢失。所有节点必须使用相同的方式
+ */
+@Slf4j
+@Component
+public class CacheInvalidationPublisher {
+
+    /**
+     * 缓存更新主题
+     * 用于发布缓存更新消息
+     */
+    public static final String UPDATE_TOPIC = "cache:update:topic";
+
+    private static final byte[] UPDATE_TOPIC_BYTES = UPDATE_TOPIC.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 缓存更新Stream
+     * 每个条目只有一个字段，保存一条批量消息
+     */
+    public static final String UPDATE_STREAM = "cache:update:stream";
+
+    public static final byte[] UPDATE_STREAM_BYTES = UPDATE_STREAM.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Stream条目中保存批量消息的字段
+     */
+    public static final byte[] BATCH_FIELD = "batch".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Stream传递方式
+     */
+    public static final String TRANSPORT_STREAM = "stream";
+
+    /**
+     * 按最小ID近似裁剪Stream的脚本
+     * KEYS[1]为Stream，ARGV[1]为保留的最小ID。
+     * 通用的execute按批量字符串读取回复，无法接收XTRIM返回的整数，因此通过脚本执行
+     */
+    private static final byte[] TRIM_BY_MIN_ID_SCRIPT =
+            "return redis.call('xtrim', KEYS[1], 'MINID', '~', ARGV[1])".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheNode cacheNode;
+
+    /**
+     * 缓冲区刷新间隔（毫秒）
+     */
+    @Value("${cache.invalidation.flush-interval-millis:5}")
+    private long flushIntervalMillis;
+
+    /**
+     * 单批次最多包含的键数量，达到后立即刷新
+     */
+    @Value("${cache.invalidation.max-batch-size:500}")
+    private int maxBatchSize;
+
+    /**
+     * 消息传递方式，stream或pubsub
+     */
+    @Value("${cache.invalidation.transport:stream}")
+    private String transport;
+
+    /**
+     * Stream保留的最大条目数，近似裁剪
+     */
+    @Value("${cache.invalidation.stream.max-length:100000}")
+    private long streamMaxLength;
+
+    /**
+     * Stream条目的最长保留时间（毫秒），节点断线超过该时间后重连时清空本地缓存
+     */
+    @Value("${cache.invalidation.stream.max-age-millis:3600000}")
+    private long streamMaxAgeMillis;
+
+    /**
+     * 裁剪Stream的间隔（毫秒）
+     */
+    @Value("${cache.invalidation.stream.trim-interval-millis:10000}")
+    private long streamTrimIntervalMillis;
+
+    /**
+     * 缓冲区锁
+     */
+    private final Object bufferLock = new Object();
+
+    /**
+     * 待发布的消息，按键去重，保留版本号最高的操作
+     */
+    private Map<String, CacheUpdateMessage> buffer = new LinkedHashMap<>();
+
+    /**
+     * 待发布的标签失效，随下一个批次发布
+     */
+    private Set<String> tagBuffer = new LinkedHashSet<>();
+
+    /**
+     * 刷新线程
+     * 单线程保证批次按顺序发布
+     */
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (isStreamTransport()) {
+            scheduler.scheduleWithFixedDelay(this::trimQuietly, streamTrimIntervalMillis, streamTrimIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isStreamTransport() {
+        return TRANSPORT_STREAM.equalsIgnoreCase(transport);
+    }
+
+    /**
+     * 应用关闭时发布缓冲区中剩余的消息
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        flushQuietly();
+    }
+
+    /**
+     * 缓冲一条缓存更新消息
+     * 
+     * @param key 缓存键
+     * @param operation 操作类型（update或delete）
+     * @param version 本次操作分配的版本号
+     */
+    public void publish(String key, String operation, long version) {
+        boolean full;
+        synchronized (bufferLock) {
+            full = enqueue(new CacheUpdateMessage(key, operation, version));
+        }
+        if (full) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 缓冲一组相同操作的缓存更新消息
+     * 
+     * @param versions 缓存键到本次操作分配的版本号的映射
+     * @param operation 操作类型（update或delete）
+     */
+    public void publishAll(Map<String, Long> versions, String operation) {
+        boolean full = false;
+        synchronized (bufferLock) {
+            for (Map.Entry<String, Long> entry : versions.entrySet()) {
+                full |= enqueue(new CacheUpdateMessage(entry.getKey(), operation, entry.getValue()));
+            }
+        }
+        if (full) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 缓冲一条标签失效消息
+     * 与键的消息一起合并发布，同一个标签在一个批次中只出现一次
+     *
+     * @param tag 标签
+     */
+    public void publishTag(String tag) {
+        synchronized (bufferLock) {
+            tagBuffer.add(tag);
+        }
+        scheduler.execute(this::flushQuietly);
+    }
+
+    /**
+     * 将缓冲区中的消息合并为一条批量消息发布
+     * 标签失效随第一条批量消息发布
+     */
+    public void flush() throws JsonProcessingException {
+        List<CacheUpdateMessage> pending;
+        List<String> tags;
+        synchronized (bufferLock) {
+            if (buffer.isEmpty() && tagBuffer.isEmpty()) {
+                return;
+            }
+            pending = new ArrayList<>(buffer.values());
+            buffer = new LinkedHashMap<>();
+            tags = new ArrayList<>(tagBuffer);
+            tagBuffer = new LinkedHashSet<>();
+        }
+
+        // 超出批次上限的部分拆分为多条消息，只有标签失效时也发布一条消息
+        int from = 0;
+        do {
+            List<CacheUpdateMessage> chunk = pending.subList(from, Math.min(from + maxBatchSize, pending.size()));
+            byte[] body = objectMapper.writeValueAsBytes(new CacheUpdateBatch(cacheNode.getId(),
+                    new ArrayList<>(chunk), System.currentTimeMillis(), from == 0 ? tags : new ArrayList<>()));
+            if (isStreamTransport()) {
+                redisTemplate.execute((RedisCallback<Object>) connection -> connection.streamCommands()
+                        .xAdd(MapRecord.create(UPDATE_STREAM_BYTES, Collections.singletonMap(BATCH_FIELD, body))));
+            } else {
+                redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(UPDATE_TOPIC_BYTES, body));
+            }
+            log.debug("Published cache update batch with {} keys", chunk.size());
+            from += maxBatchSize;
+        } while (from < pending.size());
+    }
+
+    /**
+     * 按长度和时间裁剪Stream
+     * 各节点都会定期执行，重复裁剪没有副作用。按时间裁剪使用Redis服务器时间，需要Redis 6.2及以上
+     */
+    public void trim() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.streamCommands().xTrim(UPDATE_STREAM_BYTES, streamMaxLength, true);
+            Long now = connection.serverCommands().time();
+            if (now != null) {
+                byte[] minId = ((now - streamMaxAgeMillis) + "-0").getBytes(StandardCharsets.UTF_8);
+                connection.scriptingCommands().eval(TRIM_BY_MIN_ID_SCRIPT, ReturnType.INTEGER, 1,
+                        UPDATE_STREAM_BYTES, minId);
+            }
+            return null;
+        });
+    }
+
+    private void trimQuietly() {
+        try {
+            trim();
+        } catch (Exception e) {
+            log.warn("Error trimming cache update stream", e);
+        }
+    }
+
+    /**
+     * 刷新缓冲区，异常只记录日志，不中断定时任务
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error publishing cache update batch", e);
+        }
+    }
+
+    /**
+     * 将消息放入缓冲区，同一个键只保留版本号最高的操作
+     * 调用方需持有缓冲区锁
+     * 
+     * @param message 缓存更新消息
+     * @return 缓冲区是否已达到批次上限
+     */
+    private boolean enqueue(CacheUpdateMessage message) {
+        CacheUpdateMessage previous = buffer.remove(message.getKey());
+        if (previous != null && previous.getVersion() > message.getVersion()) {
+            message = previous;
+        }
+        buffer.put(message.getKey(), message);
+        return buffer.size() >= maxBatchSize;
+    }
+}
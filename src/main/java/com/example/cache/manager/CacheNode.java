@@ -0,0 +1,34 @@
+package com.example.cache.manager;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+
+/**
+ * 缓存节点标识
+ * 用于标记缓存更新消息的来源节点，使节点可以忽略自己发布的消息
+ */
+@Component
+public class CacheNode {
+
+    /**
+     * 配置的节点ID，未配置时启动时随机生成
+     */
+    @Value("${cache.node-id:}")
+    private String configuredId;
+
+    /**
+     * 当前节点ID
+     */
+    @Getter
+    private String id;
+
+    @PostConstruct
+    public void init() {
+        id = StringUtils.hasText(configuredId) ? configuredId : UUID.randomUUID().toString();
+    }
+}
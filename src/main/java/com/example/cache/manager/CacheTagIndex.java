@@ -0,0 +1,258 @@
+package com.example.cache.manager;
+
+import com.example.cache.codec.KeyPrefix;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 缓存标签索引
+ * 按标签失效时通过索引找到要删除的键，不扫描Redis的键空间。
+ * <p>
+ * 远程索引是Redis中每个标签一个集合（cache:tag:&lt;标签&gt;），写入带标签的值之前把键加入集合，
+ * 集合的过期时间随每次写入续期为远程缓存的过期时间，集合中的键过期后集合也随之过期。
+ * 失效时先把集合原子地改名，之后写入的键进入新的集合，再分批读取改名后的集合并删除其中的键。
+ * <p>
+ * 本地索引记录本节点本地缓存和堆外缓存中带标签的键，由两级缓存在写入时维护，
+ * 收到标签失效消息时据此删除本节点上的条目。被淘汰或过期的键不会立即从索引中移除，
+ * 超过保留时间后由后台线程清理，期间只会多一次无效的删除
+ */
+@Slf4j
+@Component
+public class CacheTagIndex {
+
+    /**
+     * 标签集合前缀
+     */
+    static final KeyPrefix TAG_KEYS = KeyPrefix.of("cache:tag:");
+
+    /**
+     * 改名脚本
+     * 集合存在时改名并返回1，不存在时返回0
+     */
+    private static final RedisScript<Long> RENAME_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then redis.call('rename', KEYS[1], KEYS[2]) return 1 "
+                    + "else return 0 end",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RemoteCacheTier remoteTier;
+
+    /**
+     * 本地索引条目的保留时间（毫秒）
+     * 不应小于本地缓存（含热点键和宽限期）和堆外缓存中条目的最长存活时间
+     */
+    @Value("${cache.tag.local-retention-millis:600000}")
+    private long localRetentionMillis;
+
+    /**
+     * 清理本地索引的间隔（毫秒）
+     */
+    @Value("${cache.tag.sweep-interval-millis:60000}")
+    private long sweepIntervalMillis;
+
+    /**
+     * 失效时每批读取和删除的键数量
+     */
+    @Value("${cache.tag.purge-batch-size:500}")
+    private int purgeBatchSize;
+
+    /**
+     * 本地索引
+     * 标签到键的映射，值为键最近一次写入本地缓存或堆外缓存的时间
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Long>> localIndex = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    public void init() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-tag-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, sweepIntervalMillis, sweepIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 记录写入本节点本地缓存或堆外缓存的条目
+     * 没有标签的条目直接忽略
+     *
+     * @param key 缓存键
+     * @param cached 缓存中保存的对象
+     */
+    public void indexLocal(String key, Object cached) {
+        Set<String> tags = VersionedValue.tagsOf(cached);
+        if (tags.isEmpty()) {
+            return;
+        }
+        Long now = System.currentTimeMillis();
+        for (String tag : tags) {
+            localIndex.computeIfAbsent(tag, t -> new ConcurrentHashMap<>()).put(key, now);
+        }
+    }
+
+    /**
+     * 批量记录写入本节点本地缓存或堆外缓存的条目
+     *
+     * @param entries 缓存键到缓存中保存的对象的映射
+     */
+    public void indexLocalAll(Map<String, ?> entries) {
+        entries.forEach(this::indexLocal);
+    }
+
+    /**
+     * 从本地索引中取出并移除一个标签的所有键
+     *
+     * @param tag 标签
+     * @return 本节点上可能带有该标签的键
+     */
+    public Set<String> removeLocal(String tag) {
+        Map<String, Long> keys = localIndex.remove(tag);
+        return keys == null ? Collections.emptySet() : new HashSet<>(keys.keySet());
+    }
+
+    /**
+     * 本地索引中的标签数量
+     */
+    public int localTagCount() {
+        return localIndex.size();
+    }
+
+    /**
+     * 将带标签的键加入远程索引
+     * 所有集合的写入和续期通过一个管道发送，需在写入远程缓存之前调用，
+     * 保证与之并发的失效要么删除该键，要么发生在写入之前
+     *
+     * @param key 缓存键
+     * @param tags 标签
+     */
+    public void indexRemote(String key, Collection<String> tags) {
+        indexRemote(Collections.singleton(key), tags);
+    }
+
+    /**
+     * 将一组带相同标签的键加入远程索引
+     *
+     * @param keys 缓存键集合
+     * @param tags 标签
+     */
+    public void indexRemote(Collection<String> keys, Collection<String> tags) {
+        if (keys.isEmpty() || tags == null || tags.isEmpty()) {
+            return;
+        }
+        byte[][] members = new byte[keys.size()][];
+        int i = 0;
+        for (String key : keys) {
+            members[i++] = key.getBytes(StandardCharsets.UTF_8);
+        }
+        long ttlMillis = remoteTier.config().getExpireAfterWriteInMillis();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String tag : tags) {
+                byte[] tagKey = TAG_KEYS.encode(tag);
+                connection.setCommands().sAdd(tagKey, members);
+                connection.keyCommands().pExpire(tagKey, ttlMillis);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 取出远程索引中一个标签的所有键并分批处理
+     * 集合先改名再读取，失效开始后写入的键不受影响；处理完成后删除改名后的集合
+     *
+     * @param tag 标签
+     * @param batchHandler 每批键的处理，通常是删除远程缓存
+     * @return 处理的键数量
+     */
+    public int purgeRemote(String tag, Consumer<Set<String>> batchHandler) {
+        String purgingKey = tagKey(tag) + ":purging:" + UUID.randomUUID();
+        Long renamed = redisTemplate.execute(RENAME_SCRIPT, Arrays.asList(tagKey(tag), purgingKey));
+        if (renamed == null || renamed == 0) {
+            return 0;
+        }
+        byte[] purgingKeyBytes = purgingKey.getBytes(StandardCharsets.UTF_8);
+        try {
+            Integer purged = redisTemplate.execute((RedisCallback<Integer>) connection -> {
+                int count = 0;
+                Set<String> batch = new HashSet<>();
+                try (Cursor<byte[]> cursor = connection.setCommands().sScan(purgingKeyBytes,
+                        ScanOptions.scanOptions().count(purgeBatchSize).build())) {
+                    while (cursor.hasNext()) {
+                        batch.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                        if (batch.size() >= purgeBatchSize) {
+                            batchHandler.accept(batch);
+                            count += batch.size();
+                            batch = new HashSet<>();
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    batchHandler.accept(batch);
+                    count += batch.size();
+                }
+                return count;
+            });
+            return purged == null ? 0 : purged;
+        } finally {
+            redisTemplate.delete(purgingKey);
+        }
+    }
+
+    /**
+     * 清理超过保留时间的本地索引条目
+     */
+    public void sweep() {
+        long expiredBefore = System.currentTimeMillis() - localRetentionMillis;
+        for (Map.Entry<String, ConcurrentMap<String, Long>> entry : localIndex.entrySet()) {
+            entry.getValue().values().removeIf(indexedAt -> indexedAt < expiredBefore);
+            localIndex.computeIfPresent(entry.getKey(), (tag, keys) -> keys.isEmpty() ? null : keys);
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.warn("Error sweeping local tag index", e);
+        }
+    }
+
+    private static String tagKey(String tag) {
+        return TAG_KEYS.key(tag);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.cache.manager;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量缓存更新消息类
+ * 将一段时间内合并、去重后的多条缓存更新消息作为一条消息发布
+ * 监听器收到后一次性处理整批消息
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheUpdateBatch implements Serializable {
+
+    /**
+     * 序列化版本ID
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 发布该批次的节点ID
+     * 节点收到自己发布的批次时直接忽略
+     */
+    private String origin;
+
+    /**
+     * 本批次包含的缓存更新消息
+     * 同一个键在一个批次中最多出现一次
+     */
+    private List<CacheUpdateMessage> messages = new ArrayList<>();
+
+    /**
+     * 批次的发布时间（毫秒时间戳）
+     * 接收节点据此统计失效消息从发布到生效的延迟，旧版本节点发布的批次中为0
+     */
+    private long publishedAt;
+
+    /**
+     * 本批次包含的标签失效
+     * 接收节点删除本地标签索引中带有这些标签的所有键，旧版本节点发布的批次中为空
+     */
+    private List<String> tags = new ArrayList<>();
+}
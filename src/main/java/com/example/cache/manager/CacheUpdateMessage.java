@@ -33,4 +33,10 @@ public class CacheUpdateMessage implements Serializable {
      * - "delete": 表示删除缓存
      */
     private String operation;  // "update" or "delete"
+
+    /**
+     * 本次操作分配的版本号
+     * 本地缓存中版本号不低于该值的条目不会被清除
+     */
+    private long version;
 }
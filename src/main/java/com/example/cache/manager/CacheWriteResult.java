@@ -0,0 +1,66 @@
+package com.example.cache.manager;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 缓存写入结果
+ * 让调用方明确知道写入是否生效，而不是在冲突或获取锁超时时被静默丢弃
+ */
+@Data
+@AllArgsConstructor
+public class CacheWriteResult {
+
+    /**
+     * 写入状态
+     */
+    public enum Status {
+        /**
+         * 写入已生效
+         */
+        APPLIED,
+        /**
+         * 版本号不匹配，写入未生效
+         */
+        CONFLICT,
+        /**
+         * 等待分布式锁超时，写入未生效
+         */
+        LOCK_TIMEOUT,
+        /**
+         * 远程缓存熔断中，写入未生效，本地缓存中的旧值已清除，远程缓存的失效在Redis恢复后补做
+         */
+        UNAVAILABLE
+    }
+
+    /**
+     * 写入状态
+     */
+    private Status status;
+
+    /**
+     * 版本号
+     * 写入生效时为新版本号，版本冲突时为远程缓存中的当前版本号
+     */
+    private long version;
+
+    public static CacheWriteResult applied(long version) {
+        return new CacheWriteResult(Status.APPLIED, version);
+    }
+
+    public static CacheWriteResult conflict(long currentVersion) {
+        return new CacheWriteResult(Status.CONFLICT, currentVersion);
+    }
+
+    public static CacheWriteResult lockTimeout() {
+        return new CacheWriteResult(Status.LOCK_TIMEOUT, VersionedValue.UNKNOWN_VERSION);
+    }
+
+    public static CacheWriteResult unavailable() {
+        return new CacheWriteResult(Status.UNAVAILABLE, VersionedValue.UNKNOWN_VERSION);
+    }
+
+    public boolean isApplied() {
+        return status == Status.APPLIED;
+    }
+}
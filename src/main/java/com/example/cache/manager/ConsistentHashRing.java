@@ -0,0 +1,113 @@
+package com.example.cache.manager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 一致性哈希环
+ * 每个节点按名称在环上放置若干虚拟节点，键顺时针归属于遇到的第一个虚拟节点。
+ * 增加或移除一个节点时只有约1/N的键改变归属，虚拟节点使各节点分到的键数量接近均匀。
+ * <p>
+ * 创建后不可修改，可以被多个线程并发读取
+ *
+ * @param <T> 节点类型
+ */
+public final class ConsistentHashRing<T> {
+
+    private final NavigableMap<Long, T> ring = new TreeMap<>();
+
+    private final List<T> nodes;
+
+    /**
+     * 创建哈希环
+     *
+     * @param nodes 节点名称到节点的映射，名称决定虚拟节点的位置，同一节点在不同进程中必须使用相同的名称
+     * @param virtualNodes 每个节点的虚拟节点数量
+     */
+    public ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Consistent hash ring needs at least one node");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes.values()));
+        for (Map.Entry<String, T> node : nodes.entrySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node.getKey() + "#" + i), node.getValue());
+            }
+        }
+    }
+
+    /**
+     * 键所属的节点
+     *
+     * @param key 键
+     * @return 节点
+     */
+    public T nodeFor(String key) {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * 按所属节点对键分组
+     *
+     * @param keys 键集合
+     * @return 节点到其所属键的映射，不包含没有键的节点
+     */
+    public Map<T, List<String>> partition(Collection<String> keys) {
+        Map<T, List<String>> partitions = new LinkedHashMap<>();
+        for (String key : keys) {
+            partitions.computeIfAbsent(nodeFor(key), n -> new ArrayList<>()).add(key);
+        }
+        return partitions;
+    }
+
+    /**
+     * 所有节点
+     */
+    public List<T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * 64位FNV-1a哈希，再经过MurmurHash3的混合函数打散，使相近的键在环上均匀分布
+     * 按键的UTF-8字节计算；只含ASCII字符的键直接逐个字符计算，不编码出字节数组
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        int length = key.length();
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (c >= 0x80) {
+                h = fnv1a(key.getBytes(StandardCharsets.UTF_8));
+                break;
+            }
+            h ^= c;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long fnv1a(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
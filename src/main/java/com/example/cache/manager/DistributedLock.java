@@ -0,0 +1,32 @@
+package com.example.cache.manager;
+
+/**
+ * 已获取的分布式锁
+ * 一次加锁可以覆盖多个键，释放时只删除仍属于本次加锁的键。
+ * 锁键和标识在创建时编码一次，重试加锁和释放时直接作为脚本参数
+ */
+public final class DistributedLock {
+
+    private final byte[][] lockKeys;
+
+    private final byte[] token;
+
+    DistributedLock(byte[][] lockKeys, byte[] token) {
+        this.lockKeys = lockKeys;
+        this.token = token;
+    }
+
+    /**
+     * 锁在Redis中的键，按缓存键的字典序排列
+     */
+    byte[][] getLockKeys() {
+        return lockKeys;
+    }
+
+    /**
+     * 本次加锁的持有者标识
+     */
+    byte[] getToken() {
+        return token;
+    }
+}
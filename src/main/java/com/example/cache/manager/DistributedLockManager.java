@@ -0,0 +1,208 @@
+package com.example.cache.manager;
+
+import com.example.cache.codec.KeyPrefix;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Redis的分布式锁
+ * 通过Lua脚本一次性获取一组键的锁：任一键已被持有时整体失败，全部空闲时同时写入本次加锁的标识和租期，
+ * 多键加锁只需一次往返，也不会出现部分加锁导致的死锁。释放时只删除值仍为本次标识的键。
+ * <p>
+ * 与应用的其他Redis访问共用同一个连接工厂。获取失败时按指数退避重试直到等待时间用尽，
+ * 异步加锁的重试由定时线程调度，等待期间不占用调用线程
+ */
+@Slf4j
+@Component
+public class DistributedLockManager {
+
+    /**
+     * 锁前缀
+     * 用于构造分布式锁的键
+     */
+    static final KeyPrefix LOCK_KEYS = KeyPrefix.of("cache:lock:");
+
+    /**
+     * 加锁脚本
+     * KEYS为各个锁键，ARGV[1]为持有者标识，ARGV[2]为租期（毫秒）
+     */
+    private static final byte[] ACQUIRE_SCRIPT = (
+            "for i = 1, #KEYS do if redis.call('exists', KEYS[i]) == 1 then return 0 end end "
+                    + "for i = 1, #KEYS do redis.call('set', KEYS[i], ARGV[1], 'px', ARGV[2]) end "
+                    + "return 1"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 释放锁脚本
+     * 只删除仍属于自己的锁键，避免误删租期过期后被其他节点重新获取的锁
+     */
+    private static final byte[] RELEASE_SCRIPT = (
+            "local released = 0 "
+                    + "for i = 1, #KEYS do if redis.call('get', KEYS[i]) == ARGV[1] then "
+                    + "released = released + redis.call('del', KEYS[i]) end end "
+                    + "return released"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 获取失败后的最短重试间隔（毫秒）
+     */
+    @Value("${cache.lock.retry-min-millis:5}")
+    private long retryMinMillis;
+
+    /**
+     * 获取失败后的最长重试间隔（毫秒）
+     */
+    @Value("${cache.lock.retry-max-millis:50}")
+    private long retryMaxMillis;
+
+    /**
+     * 异步加锁的重试线程
+     */
+    private ScheduledExecutorService retryScheduler;
+
+    @PostConstruct
+    public void init() {
+        retryScheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "cache-lock-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * 获取一组键的锁，等待时间内获取不到时返回null
+     *
+     * @param keys 缓存键集合
+     * @param waitMillis 最长等待时间（毫秒）
+     * @param leaseMillis 锁的租期（毫秒），超过后自动释放
+     * @return 已获取的锁，超时返回null
+     */
+    public DistributedLock tryLock(Collection<String> keys, long waitMillis, long leaseMillis)
+            throws InterruptedException {
+        DistributedLock lock = newLock(keys);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        long backoff = retryMinMillis;
+        while (true) {
+            if (acquire(lock, leaseMillis)) {
+                return lock;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return null;
+            }
+            Thread.sleep(Math.min(remaining, jitter(backoff)));
+            backoff = Math.min(backoff * 2, retryMaxMillis);
+        }
+    }
+
+    /**
+     * 异步获取一组键的锁
+     *
+     * @param keys 缓存键集合
+     * @param waitMillis 最长等待时间（毫秒）
+     * @param leaseMillis 锁的租期（毫秒）
+     * @return 已获取的锁，超时时为null
+     */
+    public CompletableFuture<DistributedLock> tryLockAsync(Collection<String> keys, long waitMillis, long leaseMillis) {
+        DistributedLock lock = newLock(keys);
+        CompletableFuture<DistributedLock> result = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        retryScheduler.execute(() -> attempt(lock, leaseMillis, deadline, retryMinMillis, result));
+        return result;
+    }
+
+    /**
+     * 释放锁
+     *
+     * @param lock 已获取的锁
+     */
+    public void unlock(DistributedLock lock) {
+        Long released = redisTemplate.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                .eval(RELEASE_SCRIPT, ReturnType.INTEGER, lock.getLockKeys().length, keysAndArgs(lock)));
+        if (released == null || released < lock.getLockKeys().length) {
+            log.warn("Lease expired before unlock for {} of {} lock keys",
+                    lock.getLockKeys().length - (released == null ? 0 : released), lock.getLockKeys().length);
+        }
+    }
+
+    private void attempt(DistributedLock lock, long leaseMillis, long deadline, long backoff,
+                         CompletableFuture<DistributedLock> result) {
+        try {
+            if (acquire(lock, leaseMillis)) {
+                result.complete(lock);
+                return;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                result.complete(null);
+                return;
+            }
+            long next = Math.min(backoff * 2, retryMaxMillis);
+            retryScheduler.schedule(() -> attempt(lock, leaseMillis, deadline, next, result),
+                    Math.min(remaining, jitter(backoff)), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private boolean acquire(DistributedLock lock, long leaseMillis) {
+        byte[][] keysAndArgs = keysAndArgs(lock, Long.toString(leaseMillis).getBytes(StandardCharsets.UTF_8));
+        Long acquired = redisTemplate.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                .eval(ACQUIRE_SCRIPT, ReturnType.INTEGER, lock.getLockKeys().length, keysAndArgs));
+        return acquired != null && acquired == 1;
+    }
+
+    /**
+     * 构造锁键，按字典序排列并去重
+     */
+    private static DistributedLock newLock(Collection<String> keys) {
+        TreeSet<String> sorted = new TreeSet<>(keys);
+        byte[][] lockKeys = new byte[sorted.size()][];
+        int i = 0;
+        for (String key : sorted) {
+            lockKeys[i++] = LOCK_KEYS.encode(key);
+        }
+        return new DistributedLock(lockKeys, UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[][] keysAndArgs(DistributedLock lock, byte[]... extraArgs) {
+        byte[][] lockKeys = lock.getLockKeys();
+        byte[][] keysAndArgs = new byte[lockKeys.length + 1 + extraArgs.length][];
+        System.arraycopy(lockKeys, 0, keysAndArgs, 0, lockKeys.length);
+        keysAndArgs[lockKeys.length] = lock.getToken();
+        System.arraycopy(extraArgs, 0, keysAndArgs, lockKeys.length + 1, extraArgs.length);
+        return keysAndArgs;
+    }
+
+    /**
+     * 在退避间隔的一半到全部之间随机取值，避免多个等待者同时重试
+     */
+    private static long jitter(long backoff) {
+        return Math.max(1, backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+    }
+}
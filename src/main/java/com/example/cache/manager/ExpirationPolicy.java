@@ -0,0 +1,188 @@
+package com.example.cache.manager;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存过期策略
+ * 负责打散各级缓存条目的过期时间，以及按概率提前重新计算即将过期的条目，
+ * 避免同一时间写入的大量键在同一时刻一起过期、一起回源。
+ * <p>
+ * 过期时间抖动：每个条目的过期时间在配置值的基础上随机缩短最多一定比例，只缩短不延长，
+ * 因此条目的最长存活时间不变，依赖过期时间上限的版本号计数器和标签集合不受影响。
+ * <p>
+ * 提前重新计算（XFetch）：读取命中时，如果 当前时间 - 上次加载耗时 × beta × ln(随机数) 已超过过期时间，
+ * 就在后台提前重新加载。越接近过期、上次加载越慢，触发的概率越高；
+ * 没有加载耗时记录的键不会提前重新计算
+ */
+@Component
+public class ExpirationPolicy {
+
+    /**
+     * 本地缓存过期时间的最大缩短比例，0表示不抖动
+     */
+    @Value("${cache.expiration.jitter.local:0}")
+    private double localJitter;
+
+    /**
+     * 堆外缓存过期时间的最大缩短比例
+     */
+    @Value("${cache.expiration.jitter.offheap:0}")
+    private double offHeapJitter;
+
+    /**
+     * 远程缓存过期时间的最大缩短比例
+     */
+    @Value("${cache.expiration.jitter.remote:0}")
+    private double remoteJitter;
+
+    /**
+     * 是否启用提前重新计算
+     */
+    @Value("${cache.expiration.early-recompute.enabled:false}")
+    private boolean earlyRecomputeEnabled;
+
+    /**
+     * 提前程度，大于1时更早触发，小于1时更晚触发
+     */
+    @Value("${cache.expiration.early-recompute.beta:1.0}")
+    private double beta;
+
+    /**
+     * 最多记录加载耗时的键数量
+     */
+    @Value("${cache.expiration.early-recompute.tracked-keys:10000}")
+    private long trackedKeys;
+
+    /**
+     * 加载耗时记录的保留时间（毫秒），应不小于远程缓存的过期时间
+     */
+    @Value("${cache.expiration.early-recompute.retention-millis:600000}")
+    private long retentionMillis;
+
+    /**
+     * 键最近一次回源加载的耗时（毫秒）
+     */
+    private com.github.benmanes.caffeine.cache.Cache<String, Long> loadMillis;
+
+    @PostConstruct
+    public void init() {
+        checkRatio("local", localJitter);
+        checkRatio("offheap", offHeapJitter);
+        checkRatio("remote", remoteJitter);
+        loadMillis = Caffeine.newBuilder()
+                .maximumSize(trackedKeys)
+                .expireAfterWrite(retentionMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * 本地缓存条目的实际过期时间
+     *
+     * @param ttlMillis 配置的过期时间（毫秒）
+     * @return 抖动后的过期时间（毫秒）
+     */
+    public long localTtl(long ttlMillis) {
+        return jitter(ttlMillis, localJitter);
+    }
+
+    /**
+     * 堆外缓存条目的实际过期时间
+     */
+    public long offHeapTtl(long ttlMillis) {
+        return jitter(ttlMillis, offHeapJitter);
+    }
+
+    /**
+     * 远程缓存条目的实际过期时间
+     */
+    public long remoteTtl(long ttlMillis) {
+        return jitter(ttlMillis, remoteJitter);
+    }
+
+    /**
+     * 本地缓存是否启用了抖动
+     */
+    public boolean isLocalJitterEnabled() {
+        return localJitter > 0;
+    }
+
+    /**
+     * 远程缓存是否启用了抖动
+     */
+    public boolean isRemoteJitterEnabled() {
+        return remoteJitter > 0;
+    }
+
+    public boolean isEarlyRecomputeEnabled() {
+        return earlyRecomputeEnabled;
+    }
+
+    /**
+     * 记录一次回源加载的耗时
+     *
+     * @param key 缓存键
+     * @param startNanos 加载开始时的{@link System#nanoTime()}
+     */
+    public void recordLoad(String key, long startNanos) {
+        if (earlyRecomputeEnabled) {
+            loadMillis.put(key, Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+        }
+    }
+
+    /**
+     * 批量回源后记录每个键分摊的加载耗时
+     *
+     * @param keys 加载到的键
+     * @param count 本次请求加载的键数量，用于分摊耗时
+     * @param startNanos 加载开始时的{@link System#nanoTime()}
+     */
+    public void recordLoadAll(Iterable<String> keys, int count, long startNanos) {
+        if (!earlyRecomputeEnabled || count == 0) {
+            return;
+        }
+        long perKey = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) / count);
+        for (String key : keys) {
+            loadMillis.put(key, perKey);
+        }
+    }
+
+    /**
+     * 判断命中的条目是否应提前重新计算
+     *
+     * @param key 缓存键
+     * @param expireAtMillis 条目的过期时间戳（毫秒）
+     * @return 是否应在后台重新加载
+     */
+    public boolean shouldRecomputeEarly(String key, long expireAtMillis) {
+        if (!earlyRecomputeEnabled) {
+            return false;
+        }
+        Long delta = loadMillis.getIfPresent(key);
+        if (delta == null) {
+            return false;
+        }
+        // 1 - nextDouble() 取值 (0, 1]，对数不为负无穷
+        double gap = -delta * beta * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= expireAtMillis;
+    }
+
+    private static long jitter(long ttlMillis, double ratio) {
+        if (ratio <= 0 || ttlMillis <= 1) {
+            return ttlMillis;
+        }
+        long maxReduction = (long) (ttlMillis * ratio);
+        return maxReduction <= 0 ? ttlMillis : ttlMillis - ThreadLocalRandom.current().nextLong(maxReduction + 1);
+    }
+
+    private static void checkRatio(String tier, double ratio) {
+        if (ratio < 0 || ratio >= 1) {
+            throw new IllegalArgumentException("cache.expiration.jitter." + tier + " must be in [0, 1): " + ratio);
+        }
+    }
+}
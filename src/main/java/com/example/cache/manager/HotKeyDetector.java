@@ -0,0 +1,256 @@
+package com.example.cache.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 热点键探测器
+ * 用Count-Min Sketch统计最近一段时间内各键的访问频率，决定哪些键可以进入本地缓存，
+ * 并维护一个容量有限的热点键集合。
+ * <p>
+ * 计数器的递增不加锁，并发时偶尔丢失一次计数只会让估计值略偏低；
+ * 累计访问次数达到采样窗口后所有计数器减半，使频率反映的是最近的访问
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+
+    /**
+     * 每个键在Sketch中占用的计数器行数
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * 是否启用准入控制和热点键探测
+     * 关闭时所有键都直接进入本地缓存
+     */
+    @Value("${cache.local.hot-key.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 每行计数器数量，向上取整为2的幂
+     */
+    @Value("${cache.local.hot-key.sketch-width:4096}")
+    private int sketchWidth;
+
+    /**
+     * 采样窗口，累计访问次数达到后所有计数器减半，默认为每行计数器数量的10倍
+     */
+    @Value("${cache.local.hot-key.sample-size:0}")
+    private int sampleSize;
+
+    /**
+     * 进入本地缓存所需的最低访问频率
+     */
+    @Value("${cache.local.hot-key.admit-threshold:2}")
+    private int admitThreshold;
+
+    /**
+     * 成为热点键所需的最低访问频率
+     */
+    @Value("${cache.local.hot-key.hot-threshold:16}")
+    private int hotThreshold;
+
+    /**
+     * 热点键集合的容量
+     */
+    @Value("${cache.local.hot-key.capacity:64}")
+    private int capacity;
+
+    private int[] counters;
+
+    private int mask;
+
+    /**
+     * 当前采样窗口内的访问次数
+     */
+    private final AtomicInteger samples = new AtomicInteger();
+
+    /**
+     * 当前的热点键
+     */
+    private final Set<String> hotKeys = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        int width = Integer.highestOneBit(Math.max(sketchWidth - 1, 1)) << 1;
+        counters = new int[DEPTH * width];
+        mask = width - 1;
+        if (sampleSize <= 0) {
+            sampleSize = width * 10;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 热点键集合的容量
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @param key 缓存键
+     */
+    public void recordAccess(String key) {
+        if (!enabled) {
+            return;
+        }
+        int hash = spread(key.hashCode());
+        int step = rehash(hash);
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, step, i);
+            if (counters[index] < Integer.MAX_VALUE) {
+                counters[index]++;
+            }
+        }
+        if (samples.incrementAndGet() >= sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * 估计键在最近一段时间内的访问频率
+     *
+     * @param key 缓存键
+     * @return 频率估计值，只会偏高不会偏低（不计并发丢失的计数）
+     */
+    public int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int step = rehash(hash);
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, counters[indexOf(hash, step, i)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * 判断键是否可以进入本地缓存
+     * 频率达到热点阈值的键同时尝试加入热点键集合
+     *
+     * @param key 缓存键
+     * @return 是否准入
+     */
+    public boolean admit(String key) {
+        if (!enabled) {
+            return true;
+        }
+        int frequency = frequency(key);
+        if (frequency >= hotThreshold && !hotKeys.contains(key)) {
+            promote(key, frequency);
+        }
+        return frequency >= admitThreshold;
+    }
+
+    /**
+     * 判断键当前是否为热点键
+     *
+     * @param key 缓存键
+     * @return 是否为热点键
+     */
+    public boolean isHot(String key) {
+        return enabled && hotKeys.contains(key);
+    }
+
+    /**
+     * 当前的热点键数量
+     */
+    public int hotKeyCount() {
+        return hotKeys.size();
+    }
+
+    /**
+     * 获取当前的热点键及其频率估计值
+     *
+     * @return 按频率从高到低排列的热点键
+     */
+    public Map<String, Integer> getHotKeys() {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        for (String key : hotKeys) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(key, frequency(key)));
+        }
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 将键加入热点键集合
+     * 集合已满时，只有频率高于集合中最冷的键才能替换它
+     */
+    private void promote(String key, int frequency) {
+        synchronized (hotKeys) {
+            if (hotKeys.contains(key)) {
+                return;
+            }
+            if (hotKeys.size() >= capacity) {
+                String coldest = null;
+                int coldestFrequency = Integer.MAX_VALUE;
+                for (String hotKey : hotKeys) {
+                    int hotFrequency = frequency(hotKey);
+                    if (hotFrequency < coldestFrequency) {
+                        coldest = hotKey;
+                        coldestFrequency = hotFrequency;
+                    }
+                }
+                if (coldest == null || coldestFrequency >= frequency) {
+                    return;
+                }
+                hotKeys.remove(coldest);
+            }
+            hotKeys.add(key);
+            log.info("Hot key detected: {}, estimated frequency {}", key, frequency);
+        }
+    }
+
+    /**
+     * 所有计数器减半，并移出频率已低于热点阈值的键
+     */
+    private void age() {
+        synchronized (hotKeys) {
+            if (samples.get() < sampleSize) {
+                return;
+            }
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>>= 1;
+            }
+            samples.set(0);
+            hotKeys.removeIf(key -> frequency(key) < hotThreshold);
+        }
+    }
+
+    private int indexOf(int hash, int step, int row) {
+        return row * (mask + 1) + ((hash + row * step) & mask);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int rehash(int hash) {
+        hash *= 0x31848bab;
+        return (hash ^ (hash >>> 14)) | 1;
+    }
+}
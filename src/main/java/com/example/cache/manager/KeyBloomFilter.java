@@ -0,0 +1,443 @@
+package com.example.cache.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 已知键的布隆过滤器
+ * 记录所有写入过或回源加载到的键，本地判断一定不存在的键直接返回空，不访问Redis也不回源。
+ * <p>
+ * 过滤器的位数组以Redis位图的形式保存在远程缓存中，各节点在本地保留一份副本：
+ * 本节点写入时同时设置本地和Redis中的位，其他节点的写入通过失效消息同步到本地，
+ * 并定期与Redis中的位图合并。写入远程缓存的值时，设置位的命令与值的写入通过同一个管道发送。
+ * <p>
+ * 写入Redis的位图经过远程缓存熔断器：熔断或写入失败时只设置本地的位，
+ * 下一次同步时把本地副本合并到Redis中的位图，避免其他节点把这些键判断为一定不存在。
+ * <p>
+ * 过滤器只能添加不能删除，需要先用数据源中的全部键填充并标记完成后才会拒绝请求。
+ * 重建时先调用{@link #reset()}，再分批调用{@link #addAll(Collection)}填充，最后调用{@link #markComplete()}，
+ * 重建期间各节点不拒绝任何键。所有节点的容量和误判率配置必须一致
+ */
+@Slf4j
+@Component
+public class KeyBloomFilter {
+
+    /**
+     * 位图在Redis中的键
+     */
+    private static final String BITS_KEY = "cache:bloom:bits";
+
+    /**
+     * 填充完成标记
+     */
+    private static final String COMPLETE_KEY = "cache:bloom:complete";
+
+    /**
+     * 过滤器代数，每次重置时递增，各节点据此清空本地副本
+     */
+    private static final String GENERATION_KEY = "cache:bloom:generation";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 远程缓存熔断器
+     * 熔断期间只更新本地副本
+     */
+    @Autowired
+    private RemoteCircuitBreaker remoteBreaker;
+
+    /**
+     * 是否启用布隆过滤器
+     */
+    @Value("${cache.bloom.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 预计的键数量
+     */
+    @Value("${cache.bloom.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    /**
+     * 期望的误判率
+     */
+    @Value("${cache.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    /**
+     * 与Redis中的位图同步的间隔（毫秒）
+     */
+    @Value("${cache.bloom.sync-interval-millis:30000}")
+    private long syncIntervalMillis;
+
+    /**
+     * 位数组长度
+     */
+    private int numBits;
+
+    /**
+     * 每个键设置的位数
+     */
+    private int numHashes;
+
+    /**
+     * 本地位数组副本
+     */
+    private volatile AtomicLongArray words;
+
+    /**
+     * 本地副本对应的过滤器代数
+     */
+    private volatile long generation = -1;
+
+    /**
+     * 过滤器是否已填充完成，未完成时不拒绝任何键
+     */
+    private volatile boolean ready;
+
+    /**
+     * 本地副本中是否有未写入Redis的位
+     */
+    private final AtomicBoolean unsynced = new AtomicBoolean();
+
+    /**
+     * 合并本地副本时使用的临时键，每个节点不同
+     */
+    private final byte[] mergeKey = ("cache:bloom:merge:" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        numBits = (int) Math.min(Math.max(bits, 64), Integer.MAX_VALUE - 63);
+        numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        words = new AtomicLongArray((numBits + 63) >>> 6);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-bloom-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, 0, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        // Redis恢复后尽快补写熔断期间只设置在本地的位
+        remoteBreaker.onRecovery(() -> scheduler.execute(this::syncQuietly));
+        log.info("Key bloom filter enabled with {} bits and {} hash functions", numBits, numHashes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 过滤器是否已填充完成并开始拒绝请求
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * 判断键是否可能存在
+     * 只读取本地副本，不访问网络
+     *
+     * @param key 缓存键
+     * @return 未启用或未填充完成时总是返回true；返回false表示键一定不存在
+     */
+    public boolean mightContain(String key) {
+        if (!enabled || !ready) {
+            return true;
+        }
+        AtomicLongArray bits = words;
+        long hash = hash64(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            int index = indexOf(hash1, hash2, i);
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 添加一个键
+     *
+     * @param key 缓存键
+     */
+    public void add(String key) {
+        addAll(Collections.singleton(key));
+    }
+
+    /**
+     * 添加一批键，本地副本和Redis中的位图同时更新
+     * 所有位通过一个管道写入Redis，可用于分批填充过滤器。
+     * 熔断或写入失败时只更新本地副本，位图在下一次同步时补写
+     *
+     * @param keys 缓存键集合
+     */
+    public void addAll(Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        if (!remoteBreaker.allowsWrites()) {
+            addLocal(keys);
+            unsynced.set(true);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                appendBits(connection, keys);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            remoteBreaker.recordFailure();
+            // 连接失败时管道中的命令可能还没有追加，本地的位也要补设
+            addLocal(keys);
+            unsynced.set(true);
+            log.debug("Failed to write bloom filter bits, kept locally for {} keys", keys.size(), e);
+            return;
+        }
+        remoteBreaker.recordSuccess(start, true);
+    }
+
+    /**
+     * 设置一批键对应的本地位，并在连接上追加设置Redis中对应位的命令
+     * 用于在写入远程缓存值的同一个管道中更新位图，连接必须属于Spring配置的Redis。
+     * 管道执行失败时调用方需调用{@link #markUnsynced()}
+     *
+     * @param connection 处于管道模式的连接
+     * @param keys 缓存键集合
+     */
+    public void appendBits(RedisConnection connection, Collection<String> keys) {
+        if (!enabled) {
+            return;
+        }
+        byte[] bitsKey = BITS_KEY.getBytes(StandardCharsets.UTF_8);
+        for (String key : keys) {
+            long hash = hash64(key);
+            for (int i = 1; i <= numHashes; i++) {
+                int index = indexOf((int) hash, (int) (hash >>> 32), i);
+                setLocal(index);
+                connection.setBit(bitsKey, index, true);
+            }
+        }
+    }
+
+    /**
+     * 记录本地副本中有未写入Redis的位，下一次同步时合并到Redis
+     */
+    public void markUnsynced() {
+        if (enabled) {
+            unsynced.set(true);
+        }
+    }
+
+    /**
+     * 只在本地副本中添加一批键
+     * 用于同步其他节点的写入，这些键已由写入节点写入Redis
+     *
+     * @param keys 缓存键集合
+     */
+    public void addLocal(Collection<String> keys) {
+        if (!enabled) {
+            return;
+        }
+        for (String key : keys) {
+            long hash = hash64(key);
+            for (int i = 1; i <= numHashes; i++) {
+                setLocal(indexOf((int) hash, (int) (hash >>> 32), i));
+            }
+        }
+    }
+
+    /**
+     * 标记过滤器已用数据源中的全部键填充完成
+     * 各节点在下一次同步后开始拒绝一定不存在的键
+     */
+    public void markComplete() {
+        if (!enabled) {
+            return;
+        }
+        redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.set(COMPLETE_KEY.getBytes(StandardCharsets.UTF_8), new byte[]{1}));
+        syncQuietly();
+    }
+
+    /**
+     * 清空过滤器，准备重建
+     * 各节点在下一次同步后清空本地副本，并在重新标记完成前不再拒绝任何键
+     */
+    public void reset() {
+        if (!enabled) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.del(COMPLETE_KEY.getBytes(StandardCharsets.UTF_8), BITS_KEY.getBytes(StandardCharsets.UTF_8));
+            connection.incr(GENERATION_KEY.getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        syncQuietly();
+    }
+
+    /**
+     * 与Redis同步
+     * 代数变化时清空本地副本，否则把只设置在本地的位合并到Redis中的位图；
+     * 然后将Redis中的位图合并到本地，并更新填充完成状态
+     */
+    public synchronized void sync() {
+        byte[][] state = redisTemplate.execute((RedisCallback<byte[][]>) connection -> new byte[][]{
+                connection.get(GENERATION_KEY.getBytes(StandardCharsets.UTF_8)),
+                connection.get(BITS_KEY.getBytes(StandardCharsets.UTF_8)),
+                connection.get(COMPLETE_KEY.getBytes(StandardCharsets.UTF_8))
+        });
+        if (state == null) {
+            return;
+        }
+        long remoteGeneration = state[0] == null ? 0 : Long.parseLong(new String(state[0], StandardCharsets.UTF_8));
+        if (generation < 0) {
+            // 第一次同步，启动后只设置在本地的位属于当前代数，保留并合并到Redis
+            generation = remoteGeneration;
+        } else if (remoteGeneration != generation) {
+            ready = false;
+            unsynced.set(false);
+            words = new AtomicLongArray(words.length());
+            generation = remoteGeneration;
+            log.info("Key bloom filter reset to generation {}", remoteGeneration);
+        }
+        if (unsynced.getAndSet(false)) {
+            boolean merged = false;
+            try {
+                merged = mergeLocal();
+            } finally {
+                if (!merged) {
+                    unsynced.set(true);
+                }
+            }
+        }
+        byte[] remoteBits = state[1];
+        if (remoteBits != null) {
+            // Redis位图中每个字节的最高位对应最小的偏移量
+            int length = Math.min(remoteBits.length, (numBits + 7) >>> 3);
+            for (int i = 0; i < length; i++) {
+                int b = remoteBits[i] & 0xFF;
+                for (int bit = 0; b != 0 && bit < 8; bit++) {
+                    if ((b & (0x80 >>> bit)) != 0) {
+                        setLocal((i << 3) + bit);
+                    }
+                }
+            }
+        }
+        boolean complete = state[2] != null;
+        if (complete != ready) {
+            ready = complete;
+            log.info("Key bloom filter {}", complete ? "is complete, rejecting unknown keys" : "is not complete");
+        }
+    }
+
+    /**
+     * 把本地副本按位或合并到Redis中的位图
+     * 本地副本先写入本节点的临时键，再通过BITOP合并，过滤器代数变化后不再合并
+     *
+     * @return 是否已合并
+     */
+    private boolean mergeLocal() {
+        AtomicLongArray bits = words;
+        long currentGeneration = generation;
+        byte[] local = new byte[(numBits + 7) >>> 3];
+        for (int word = 0; word < bits.length(); word++) {
+            long value = bits.get(word);
+            while (value != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(value);
+                // Redis位图中每个字节的最高位对应最小的偏移量
+                local[index >>> 3] |= (byte) (0x80 >>> (index & 7));
+                value &= value - 1;
+            }
+        }
+        byte[] bitsKey = BITS_KEY.getBytes(StandardCharsets.UTF_8);
+        Boolean merged = redisTemplate.execute((RedisCallback<Boolean>) connection -> {
+            byte[] remoteGeneration = connection.get(GENERATION_KEY.getBytes(StandardCharsets.UTF_8));
+            long parsed = remoteGeneration == null ? 0 : Long.parseLong(new String(remoteGeneration, StandardCharsets.UTF_8));
+            if (parsed != currentGeneration) {
+                return false;
+            }
+            connection.stringCommands().set(mergeKey, local, Expiration.seconds(60), RedisStringCommands.SetOption.UPSERT);
+            connection.stringCommands().bitOp(RedisStringCommands.BitOperation.OR, bitsKey, bitsKey, mergeKey);
+            connection.keyCommands().del(mergeKey);
+            return true;
+        });
+        if (Boolean.TRUE.equals(merged)) {
+            log.info("Merged locally kept bloom filter bits into Redis");
+        }
+        return Boolean.TRUE.equals(merged);
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (Exception e) {
+            log.warn("Error syncing key bloom filter", e);
+        }
+    }
+
+    private void setLocal(int index) {
+        AtomicLongArray bits = words;
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current = bits.get(word);
+        while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+            current = bits.get(word);
+        }
+    }
+
+    private int indexOf(int hash1, int hash2, int i) {
+        int combined = hash1 + i * hash2;
+        return (combined & Integer.MAX_VALUE) % numBits;
+    }
+
+    /**
+     * 计算键的64位哈希，高低32位作为两个独立的哈希值
+     */
+    private static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.CacheValueHolder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存的一个分段
+ * 直接基于Caffeine，条目以CacheValueHolder保存，每个条目按自身的过期时间失效，与JetCache本地缓存的存储格式相同。
+ * 按权重限制容量时，容量是条目估算字节数之和的上限，可以在运行时调整；不指定权重时按条目数量限制
+ */
+class LocalCacheSegment {
+
+    private final Cache<String, CacheValueHolder<Object>> cache;
+
+    private final Policy.Eviction<String, CacheValueHolder<Object>> eviction;
+
+    /**
+     * @param maximum 容量，指定权重时为最大权重，否则为最大条目数量
+     * @param weigher 条目权重，为null时按条目数量限制
+     */
+    LocalCacheSegment(long maximum, Weigher<String, CacheValueHolder<Object>> weigher) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (weigher != null) {
+            builder.maximumWeight(maximum).weigher(weigher);
+        } else {
+            builder.maximumSize(maximum);
+        }
+        cache = builder.expireAfter(new HolderExpiry()).build();
+        eviction = cache.policy().eviction()
+                .orElseThrow(() -> new IllegalStateException("Local cache segment has no eviction policy"));
+    }
+
+    /**
+     * 读取未过期的条目
+     *
+     * @param key 缓存键
+     * @return 条目，不存在或已过期时返回null
+     */
+    CacheValueHolder<Object> getHolder(String key) {
+        CacheValueHolder<Object> holder = cache.getIfPresent(key);
+        return holder == null || isExpired(holder, System.currentTimeMillis()) ? null : holder;
+    }
+
+    /**
+     * 读取未过期条目的值
+     */
+    Object get(String key) {
+        CacheValueHolder<Object> holder = getHolder(key);
+        return holder == null ? null : holder.getValue();
+    }
+
+    /**
+     * 批量读取未过期条目的值
+     */
+    Map<String, Object> getAll(Set<String> keys) {
+        Map<String, CacheValueHolder<Object>> holders = cache.getAllPresent(keys);
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new HashMap<>(holders.size() * 2);
+        holders.forEach((key, holder) -> {
+            if (!isExpired(holder, now)) {
+                result.put(key, holder.getValue());
+            }
+        });
+        return result;
+    }
+
+    void put(String key, Object value, long ttl, TimeUnit timeUnit) {
+        cache.put(key, new CacheValueHolder<>(value, timeUnit.toMillis(ttl)));
+    }
+
+    void putAll(Map<String, ?> entries, long ttl, TimeUnit timeUnit) {
+        long ttlMillis = timeUnit.toMillis(ttl);
+        Map<String, CacheValueHolder<Object>> holders = new HashMap<>(entries.size() * 2);
+        entries.forEach((key, value) -> holders.put(key, new CacheValueHolder<>(value, ttlMillis)));
+        cache.putAll(holders);
+    }
+
+    void remove(String key) {
+        cache.invalidate(key);
+    }
+
+    void removeAll(Set<String> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 按访问热度从高到低导出未过期的条目
+     *
+     * @param limit 最多导出的条目数量
+     * @return 缓存键到条目的映射，按热度从高到低排列
+     */
+    Map<String, CacheValueHolder<Object>> hottest(int limit) {
+        long now = System.currentTimeMillis();
+        Map<String, CacheValueHolder<Object>> result = new LinkedHashMap<>();
+        eviction.hottest(limit).forEach((key, holder) -> {
+            if (!isExpired(holder, now)) {
+                result.put(key, holder);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 当前容量
+     */
+    long getMaximum() {
+        return eviction.getMaximum();
+    }
+
+    /**
+     * 调整容量，缩小时超出的条目按淘汰策略异步淘汰
+     */
+    void setMaximum(long maximum) {
+        eviction.setMaximum(maximum);
+    }
+
+    /**
+     * 当前条目的权重之和，按条目数量限制时为条目数量
+     */
+    long weightedSize() {
+        return eviction.weightedSize().orElse(cache.estimatedSize());
+    }
+
+    long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    private static boolean isExpired(CacheValueHolder<Object> holder, long now) {
+        return holder.getExpireTime() <= now;
+    }
+
+    /**
+     * 按条目自身的过期时间失效，更新时使用新条目的过期时间，读取不延长
+     */
+    private static class HolderExpiry implements Expiry<String, CacheValueHolder<Object>> {
+
+        @Override
+        public long expireAfterCreate(String key, CacheValueHolder<Object> holder, long currentTime) {
+            long remainingMillis = holder.getExpireTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CacheValueHolder<Object> holder, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, holder, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CacheValueHolder<Object> holder, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
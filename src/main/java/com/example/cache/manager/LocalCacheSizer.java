@@ -0,0 +1,373 @@
+package com.example.cache.manager;
+
+import com.example.cache.metrics.CacheMetrics;
+import com.example.cache.metrics.TierMeters;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存容量调节器
+ * 按固定间隔调整本地缓存普通分段的容量（字节），调整范围为最小容量到最大容量与堆上限比例中的较小值：
+ * <ul>
+ *     <li>最近一次GC后的堆占用超过高水位时缩容，缩容量不少于一个步长，也不少于超出高水位的部分</li>
+ *     <li>堆占用低于低水位、缓存已接近装满时扩容一个步长，不超过低水位以下的剩余空间</li>
+ *     <li>扩容后缓存再次装满时比较命中率，提升不足最小收益时视为命中率曲线进入平台期，
+ *     不再扩容，直到命中率比平台期下降超过最小收益</li>
+ * </ul>
+ * 堆占用取自GC通知中每次回收后各堆内存池的使用量之和，包括尚未回收的老年代垃圾，偏保守。
+ * 手动设置容量后停止自动调整，直到重新启用
+ */
+@Slf4j
+@Component
+public class LocalCacheSizer {
+
+    /**
+     * 已用容量达到该比例时视为已装满
+     */
+    private static final double FULL_RATIO = 0.9;
+
+    @Autowired
+    private LocalCacheTier localTier;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 是否自动调整容量
+     */
+    @Value("${cache.local.sizing.adaptive:true}")
+    private volatile boolean adaptive;
+
+    /**
+     * 最小容量（字节）
+     */
+    @Value("${cache.local.sizing.min-bytes:16777216}")
+    private long minBytes;
+
+    /**
+     * 最大容量（字节）
+     */
+    @Value("${cache.local.sizing.max-bytes:1073741824}")
+    private long maxBytes;
+
+    /**
+     * 容量占最大堆内存的最大比例
+     */
+    @Value("${cache.local.sizing.max-heap-fraction:0.25}")
+    private double maxHeapFraction;
+
+    /**
+     * GC后堆占用比例超过该值时缩容
+     */
+    @Value("${cache.local.sizing.heap-high-watermark:0.7}")
+    private double heapHighWatermark;
+
+    /**
+     * GC后堆占用比例低于该值时才允许扩容
+     */
+    @Value("${cache.local.sizing.heap-low-watermark:0.5}")
+    private double heapLowWatermark;
+
+    /**
+     * 每次调整的容量比例
+     */
+    @Value("${cache.local.sizing.step-fraction:0.1}")
+    private double stepFraction;
+
+    /**
+     * 一次扩容至少带来的命中率提升
+     */
+    @Value("${cache.local.sizing.min-hit-ratio-gain:0.005}")
+    private double minHitRatioGain;
+
+    /**
+     * 一个周期内的读取次数少于该值时不按命中率调整
+     */
+    @Value("${cache.local.sizing.min-requests:1000}")
+    private long minRequests;
+
+    /**
+     * 调整间隔（毫秒）
+     */
+    @Value("${cache.local.sizing.interval-millis:10000}")
+    private long intervalMillis;
+
+    private TierMeters meters;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 堆内存池名称，用于从GC通知中汇总堆占用
+     */
+    private final Set<String> heapPools = new HashSet<>();
+
+    private final List<NotificationEmitter> gcEmitters = new ArrayList<>();
+
+    private final NotificationListener gcListener = (notification, handback) -> {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            onGc(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()));
+        }
+    };
+
+    /**
+     * 最近一次GC后的堆占用（字节），尚未发生GC时为-1
+     */
+    private volatile long heapUsedAfterGc = -1;
+
+    private double lastHits;
+
+    private double lastMisses;
+
+    /**
+     * 最近一个读取次数足够的周期内的命中率，尚未统计时为-1
+     */
+    private volatile double lastHitRatio = -1;
+
+    /**
+     * 最近一次扩容前的命中率，扩容后缓存再次装满时据此判断扩容的收益，没有待判断的扩容时为-1
+     */
+    private double hitRatioBeforeGrowth = -1;
+
+    /**
+     * 进入平台期时的命中率，未进入平台期时为-1
+     */
+    private double plateauHitRatio = -1;
+
+    private volatile String lastAdjustment = "none";
+
+    @PostConstruct
+    public void init() {
+        if (heapLowWatermark <= 0 || heapLowWatermark > heapHighWatermark || heapHighWatermark >= 1) {
+            throw new IllegalArgumentException("cache.local.sizing heap watermarks must satisfy 0 < low <= high < 1: "
+                    + heapLowWatermark + ", " + heapHighWatermark);
+        }
+        meters = cacheMetrics.local();
+        localTier.setMaximumBytes(clamp(localTier.getMaximumBytes()));
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(gcListener, null, null);
+                gcEmitters.add((NotificationEmitter) collector);
+            }
+        }
+        cacheMetrics.bindLocalSizing(this);
+        if (intervalMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "cache-local-sizer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::adjustSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        log.info("Local cache capacity {} bytes, adaptive sizing {} within [{}, {}] bytes",
+                localTier.getMaximumBytes(), adaptive ? "enabled" : "disabled", minBytes, ceilingBytes());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (NotificationEmitter emitter : gcEmitters) {
+            try {
+                emitter.removeNotificationListener(gcListener);
+            } catch (ListenerNotFoundException e) {
+                // 已移除
+            }
+        }
+    }
+
+    /**
+     * 手动设置容量，停止自动调整
+     *
+     * @param bytes 容量（字节），限制在允许的范围内
+     * @return 实际设置的容量
+     */
+    public synchronized long setMaximumBytes(long bytes) {
+        adaptive = false;
+        hitRatioBeforeGrowth = -1;
+        plateauHitRatio = -1;
+        return resize(bytes, "manual");
+    }
+
+    /**
+     * 启用或停止自动调整
+     *
+     * @param adaptive 是否自动调整
+     */
+    public synchronized void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        hitRatioBeforeGrowth = -1;
+        plateauHitRatio = -1;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public long getMaximumBytes() {
+        return localTier.getMaximumBytes();
+    }
+
+    public long getWeightedBytes() {
+        return localTier.weightedBytes();
+    }
+
+    /**
+     * 最近一次GC后的堆占用比例，尚未发生GC时为-1
+     */
+    public double getHeapOccupancyAfterGc() {
+        long used = heapUsedAfterGc;
+        return used < 0 ? -1 : (double) used / Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * 当前的容量和调整状态
+     *
+     * @return 状态描述
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("maximumBytes", localTier.getMaximumBytes());
+        state.put("weightedBytes", localTier.weightedBytes());
+        state.put("entries", localTier.size());
+        state.put("minBytes", minBytes);
+        state.put("ceilingBytes", ceilingBytes());
+        state.put("adaptive", adaptive);
+        state.put("heapOccupancyAfterGc", getHeapOccupancyAfterGc());
+        state.put("hitRatio", lastHitRatio);
+        state.put("lastAdjustment", lastAdjustment);
+        return state;
+    }
+
+    private void adjustSafely() {
+        try {
+            adjust();
+        } catch (Exception e) {
+            log.warn("Local cache sizing failed", e);
+        }
+    }
+
+    /**
+     * 执行一次调整
+     */
+    synchronized void adjust() {
+        double hits = meters.hitCount();
+        double misses = meters.missCount();
+        double requests = hits - lastHits + misses - lastMisses;
+        double hitRatio = requests > 0 ? (hits - lastHits) / requests : 0;
+        lastHits = hits;
+        lastMisses = misses;
+        if (requests >= minRequests) {
+            lastHitRatio = hitRatio;
+        }
+        if (!adaptive) {
+            return;
+        }
+
+        long current = localTier.getMaximumBytes();
+        double occupancy = getHeapOccupancyAfterGc();
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        if (occupancy > heapHighWatermark) {
+            long excess = (long) ((occupancy - heapHighWatermark) * maxHeap);
+            hitRatioBeforeGrowth = -1;
+            resize(current - Math.max(step(current), excess),
+                    String.format("heap %.2f after GC above %.2f", occupancy, heapHighWatermark));
+            return;
+        }
+        if (requests < minRequests) {
+            return;
+        }
+        boolean full = localTier.weightedBytes() >= current * FULL_RATIO;
+        if (hitRatioBeforeGrowth >= 0) {
+            if (!full) {
+                // 扩容后的空间还未填满，命中率尚未反映新的容量
+                return;
+            }
+            if (hitRatio - hitRatioBeforeGrowth < minHitRatioGain) {
+                plateauHitRatio = hitRatio;
+                log.info("Local cache hit ratio {} after growth, {} before, holding capacity at {} bytes",
+                        hitRatio, hitRatioBeforeGrowth, current);
+            }
+            hitRatioBeforeGrowth = -1;
+        }
+        if (plateauHitRatio >= 0) {
+            if (hitRatio >= plateauHitRatio - minHitRatioGain) {
+                return;
+            }
+            // 命中率下降，访问的键集合可能变大，重新探测
+            plateauHitRatio = -1;
+        }
+        if (full && occupancy >= 0 && occupancy < heapLowWatermark && current < ceilingBytes()) {
+            long headroom = (long) ((heapLowWatermark - occupancy) * maxHeap);
+            hitRatioBeforeGrowth = hitRatio;
+            resize(current + Math.min(step(current), headroom),
+                    String.format("hit ratio %.4f with heap %.2f after GC", hitRatio, occupancy));
+        }
+    }
+
+    private long resize(long bytes, String reason) {
+        long current = localTier.getMaximumBytes();
+        long target = clamp(bytes);
+        if (target != current) {
+            localTier.setMaximumBytes(target);
+            lastAdjustment = reason + ": " + current + " -> " + target;
+            log.info("Local cache capacity changed from {} to {} bytes ({})", current, target, reason);
+        }
+        return target;
+    }
+
+    private void onGc(GarbageCollectionNotificationInfo info) {
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) {
+                used += pool.getValue().getUsed();
+            }
+        }
+        heapUsedAfterGc = used;
+    }
+
+    private long step(long current) {
+        return Math.max((long) (current * stepFraction), 1);
+    }
+
+    /**
+     * 容量上限：最大容量与最大堆内存比例中的较小值，不低于最小容量
+     */
+    private long ceilingBytes() {
+        long heapLimit = (long) (Runtime.getRuntime().maxMemory() * maxHeapFraction);
+        return Math.max(minBytes, Math.min(maxBytes, heapLimit));
+    }
+
+    private long clamp(long bytes) {
+        return Math.max(minBytes, Math.min(bytes, ceilingBytes()));
+    }
+}
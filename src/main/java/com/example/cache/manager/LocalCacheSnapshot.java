@@ -0,0 +1,307 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.CacheValueHolder;
+import com.example.cache.codec.ValueCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存快照
+ * 关闭时（以及可选地定期）将本地缓存中最热的条目连同剩余存活时间和版本号写入本地文件，
+ * 启动时在接收请求前通过内存映射读取快照并恢复，避免重启后所有请求都落到远程缓存。
+ * <p>
+ * 恢复前按分片通过管道请求读取各键在Redis中的版本号计数器，丢弃节点停机期间被修改过的条目：
+ * <ul>
+ *     <li>有版本号的条目，只有计数器仍等于该版本号时保留</li>
+ *     <li>版本号未知的条目（回源加载的值），只有计数器不存在、即近期没有任何写入时保留</li>
+ * </ul>
+ * 超过最大有效期的快照整体丢弃，该有效期需小于版本号计数器的过期时间
+ */
+@Slf4j
+@Component
+public class LocalCacheSnapshot {
+
+    /**
+     * 快照文件标识
+     */
+    private static final int MAGIC = 0x4C435331;
+
+    @Autowired
+    private LocalCacheTier localTier;
+
+    @Autowired
+    private ValueCodec valueCodec;
+
+    @Autowired
+    private RemoteCacheTier remoteTier;
+
+    /**
+     * 是否启用本地缓存快照
+     */
+    @Value("${cache.local.snapshot.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 快照文件路径
+     */
+    @Value("${cache.local.snapshot.path:${java.io.tmpdir}/multi-level-cache/local-cache.snapshot}")
+    private String path;
+
+    /**
+     * 快照最多包含的条目数量
+     */
+    @Value("${cache.local.snapshot.max-entries:10000}")
+    private int maxEntries;
+
+    /**
+     * 定期写入快照的间隔（毫秒），0表示只在关闭时写入
+     */
+    @Value("${cache.local.snapshot.interval-millis:0}")
+    private long intervalMillis;
+
+    /**
+     * 快照的最大有效期（毫秒），更早写入的快照不再恢复
+     */
+    @Value("${cache.local.snapshot.max-age-millis:600000}")
+    private long maxAgeMillis;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            restore();
+        } catch (Exception e) {
+            log.warn("Failed to restore local cache snapshot from {}, starting cold", path, e);
+        }
+        if (intervalMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "cache-local-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::saveQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 关闭时写入快照
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        saveQuietly();
+    }
+
+    /**
+     * 写入快照
+     * 先写入临时文件再原子替换，写入过程中崩溃不会留下不完整的快照
+     *
+     * @return 写入的条目数量
+     */
+    public synchronized int save() throws IOException {
+        long now = System.currentTimeMillis();
+        Map<String, CacheValueHolder<Object>> hotEntries = localTier.hottest(true, maxEntries);
+        Map<String, CacheValueHolder<Object>> entries = localTier.hottest(false, maxEntries - hotEntries.size());
+
+        Path target = Paths.get(path);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        int count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(now);
+            count += writeEntries(out, hotEntries, true, now);
+            count += writeEntries(out, entries, false, now);
+            // 结束标记
+            out.writeInt(-1);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Local cache snapshot saved with {} entries to {}", count, target);
+        return count;
+    }
+
+    /**
+     * 读取快照并恢复本地缓存
+     *
+     * @return 恢复的条目数量
+     */
+    public int restore() throws IOException {
+        Path source = Paths.get(path);
+        if (!Files.exists(source)) {
+            return 0;
+        }
+        List<SnapshotEntry> entries = new ArrayList<>();
+        int expired = 0;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+                log.warn("Ignoring unrecognized local cache snapshot {}", source);
+                return 0;
+            }
+            long savedAt = buffer.getLong();
+            // 快照中保存的是写入时的剩余存活时间，停机期间已经过去的时间要扣掉
+            long elapsedMillis = Math.max(System.currentTimeMillis() - savedAt, 0);
+            if (elapsedMillis > maxAgeMillis) {
+                log.info("Ignoring local cache snapshot older than {} ms", maxAgeMillis);
+                return 0;
+            }
+            int keyLength;
+            while ((keyLength = buffer.getInt()) >= 0) {
+                byte[] key = new byte[keyLength];
+                buffer.get(key);
+                boolean hot = buffer.get() != 0;
+                long version = buffer.getLong();
+                long remainingTtlMillis = buffer.getLong() - elapsedMillis;
+                byte[] value = new byte[buffer.getInt()];
+                buffer.get(value);
+                if (remainingTtlMillis <= 0) {
+                    expired++;
+                    continue;
+                }
+                entries.add(new SnapshotEntry(new String(key, StandardCharsets.UTF_8), hot, version,
+                        remainingTtlMillis, value));
+            }
+        }
+
+        if (entries.isEmpty()) {
+            log.info("Local cache restored no snapshot entries, {} expired during downtime", expired);
+            return 0;
+        }
+        List<Long> currentVersions = currentVersions(entries);
+        int restored = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            SnapshotEntry entry = entries.get(i);
+            Long current = currentVersions.get(i);
+            boolean fresh = entry.version == VersionedValue.UNKNOWN_VERSION ? current == null
+                    : current != null && current == entry.version;
+            if (fresh) {
+                localTier.restore(entry.key, valueCodec.decode(entry.value), entry.remainingTtlMillis, entry.hot);
+                restored++;
+            }
+        }
+        log.info("Local cache restored {} of {} snapshot entries, {} dropped as stale, {} expired during downtime",
+                restored, entries.size() + expired, entries.size() - restored, expired);
+        return restored;
+    }
+
+    private int writeEntries(DataOutputStream out, Map<String, CacheValueHolder<Object>> entries,
+                             boolean hot, long now) throws IOException {
+        int count = 0;
+        for (Map.Entry<String, CacheValueHolder<Object>> entry : entries.entrySet()) {
+            CacheValueHolder<Object> holder = entry.getValue();
+            long remainingTtlMillis = holder.getExpireTime() - now;
+            if (remainingTtlMillis <= 0) {
+                continue;
+            }
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = valueCodec.encode(holder.getValue());
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeBoolean(hot);
+            out.writeLong(VersionedValue.versionOf(holder.getValue()));
+            out.writeLong(remainingTtlMillis);
+            out.writeInt(value.length);
+            out.write(value);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 读取各键当前的版本号计数器，每个分片一次管道请求
+     *
+     * @return 与entries顺序对应的版本号，计数器不存在时为null
+     */
+    private List<Long> currentVersions(List<SnapshotEntry> entries) {
+        Map<String, SnapshotEntry> byKey = new HashMap<>();
+        for (SnapshotEntry entry : entries) {
+            byKey.put(entry.key, entry);
+        }
+        Map<String, Long> current = new HashMap<>();
+        remoteTier.partition(byKey.keySet()).forEach((shard, keys) -> {
+            List<Object> results = shard.getRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.get(CacheConsistencyManager.VERSION_KEYS.encode(key));
+                }
+                return null;
+            }, StringRedisSerializer.UTF_8);
+            for (int i = 0; i < keys.size(); i++) {
+                Object result = results.get(i);
+                if (result != null) {
+                    current.put(keys.get(i), Long.valueOf((String) result));
+                }
+            }
+        });
+        List<Long> versions = new ArrayList<>(entries.size());
+        for (SnapshotEntry entry : entries) {
+            versions.add(current.get(entry.key));
+        }
+        return versions;
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (Exception e) {
+            log.warn("Failed to save local cache snapshot to {}", path, e);
+        }
+    }
+
+    /**
+     * 快照中的一个条目
+     */
+    private static final class SnapshotEntry {
+
+        private final String key;
+
+        private final boolean hot;
+
+        private final long version;
+
+        private final long remainingTtlMillis;
+
+        private final byte[] value;
+
+        private SnapshotEntry(String key, boolean hot, long version, long remainingTtlMillis, byte[] value) {
+            this.key = key;
+            this.hot = hot;
+            this.version = version;
+            this.remainingTtlMillis = remainingTtlMillis;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.CacheValueHolder;
+import com.example.cache.metrics.CacheMetrics;
+import com.example.cache.metrics.TierMeters;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 本地缓存层
+ * 封装一级缓存的读写，统一处理版本号比较和提前刷新
+ * <p>
+ * 启用提前刷新后，条目的实际存活时间为过期时间加宽限期：
+ * 超过过期时间一定比例时读取仍返回当前值，同时触发一次后台刷新；
+ * 超过过期时间后按未命中处理，回源失败时在宽限期内仍可返回旧值
+ * <p>
+ * 启用热点键探测后，远程缓存读到的值只有在键的近期访问频率达到准入阈值时才写入本地缓存，
+ * 避免只访问一次的键挤出真正的热点键。热点键保存在单独的热点分段中，
+ * 过期时间更长，且只与其他热点键竞争容量，不会被普通键淘汰
+ * <p>
+ * 启用过期时间抖动后，每个条目的存活时间随机缩短，逻辑上的过期时间随之提前同样的量；
+ * 启用提前重新计算后，命中的条目越接近过期越可能触发一次后台刷新
+ * <p>
+ * 普通分段的容量是条目估算字节数之和的上限，而不是条目数量，可以在运行时调整，
+ * 由{@link LocalCacheSizer}按堆占用和命中率自动调整
+ */
+@Slf4j
+@Component
+public class LocalCacheTier {
+
+    /**
+     * 普通分段
+     * 按条目估算的字节数限制容量
+     */
+    private LocalCacheSegment normalLocal;
+
+    /**
+     * 热点分段
+     * 只保存热点键，容量与热点键集合相同，未启用热点键探测时为null
+     */
+    private LocalCacheSegment hotLocal;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 标签索引
+     * 写入带标签的条目时记录到本地索引
+     */
+    @Autowired
+    private CacheTagIndex tagIndex;
+
+    /**
+     * 过期策略
+     * 打散条目的过期时间，并按概率提前刷新即将过期的条目
+     */
+    @Autowired
+    private ExpirationPolicy expirationPolicy;
+
+    /**
+     * 本地缓存指标
+     */
+    private TierMeters meters;
+
+    /**
+     * 本地缓存的过期时间（毫秒）
+     */
+    @Value("${jetcache.local.default.expireAfterWriteInMillis:100000}")
+    private long expireAfterWriteMillis;
+
+    /**
+     * 是否启用提前刷新
+     */
+    @Value("${cache.local.refresh-ahead.enabled:false}")
+    private boolean refreshAheadEnabled;
+
+    /**
+     * 触发后台刷新的存活时间比例
+     */
+    @Value("${cache.local.refresh-ahead.refresh-ratio:0.75}")
+    private double refreshRatio;
+
+    /**
+     * 过期后回源失败时仍可返回旧值的宽限期（毫秒）
+     */
+    @Value("${cache.local.refresh-ahead.stale-grace-millis:30000}")
+    private long staleGraceMillis;
+
+    /**
+     * 热点键的过期时间相对普通键的倍数
+     */
+    @Value("${cache.local.hot-key.ttl-multiplier:4}")
+    private int hotTtlMultiplier;
+
+    /**
+     * 负缓存条目的过期时间（毫秒）
+     * 不超过普通条目的过期时间，也不参与提前刷新
+     */
+    @Value("${cache.negative.ttl-millis:30000}")
+    private long negativeTtlMillis;
+
+    /**
+     * 普通分段的初始容量（字节）
+     */
+    @Value("${cache.local.sizing.initial-bytes:67108864}")
+    private long initialBytes;
+
+    /**
+     * 无法识别类型的值按该大小（字节）计算权重
+     */
+    @Value("${cache.local.sizing.unknown-value-bytes:256}")
+    private int unknownValueBytes;
+
+    /**
+     * 本地缓存写入锁分段
+     * 乐观写入不持有分布式锁，同一节点上并发写入同一个键时通过分段锁保证本地缓存只保留更高版本的值
+     */
+    private final Object[] writeStripes = createStripes(64);
+
+    @PostConstruct
+    public void init() {
+        meters = cacheMetrics.local();
+        normalLocal = new LocalCacheSegment(initialBytes, new LocalEntryWeigher(unknownValueBytes));
+        if (hotKeyDetector.isEnabled()) {
+            hotLocal = new LocalCacheSegment(hotKeyDetector.getCapacity(), null);
+        }
+    }
+
+    /**
+     * 普通分段的容量（字节）
+     */
+    public long getMaximumBytes() {
+        return normalLocal.getMaximum();
+    }
+
+    /**
+     * 调整普通分段的容量，缩小时超出的条目按淘汰策略淘汰
+     *
+     * @param maximumBytes 容量（字节）
+     */
+    public void setMaximumBytes(long maximumBytes) {
+        normalLocal.setMaximum(maximumBytes);
+    }
+
+    /**
+     * 普通分段中条目估算字节数之和
+     */
+    public long weightedBytes() {
+        return normalLocal.weightedSize();
+    }
+
+    /**
+     * 所有分段的条目数量
+     */
+    public long size() {
+        return normalLocal.estimatedSize() + (hotLocal != null ? hotLocal.estimatedSize() : 0);
+    }
+
+    /**
+     * 读取本地缓存
+     * 启用提前刷新时，存活时间超过刷新比例的条目会通过refreshTrigger触发刷新
+     *
+     * @param key 缓存键
+     * @param refreshTrigger 需要刷新时的回调，可以为null
+     * @return 缓存中保存的对象，未命中或已过期时返回null
+     */
+    public Object get(String key, Consumer<String> refreshTrigger) {
+        hotKeyDetector.recordAccess(key);
+        long start = System.nanoTime();
+        Object value = read(key, refreshTrigger);
+        meters.recordGet(start, value != null);
+        return value;
+    }
+
+    /**
+     * 批量读取本地缓存
+     *
+     * @param keys 缓存键集合
+     * @param refreshTrigger 需要刷新时的回调，可以为null
+     * @return 命中的键值对，值为缓存中保存的对象
+     */
+    public Map<String, Object> getAll(Set<String> keys, Consumer<String> refreshTrigger) {
+        for (String key : keys) {
+            hotKeyDetector.recordAccess(key);
+        }
+        long start = System.nanoTime();
+        Map<String, Object> result;
+        if (refreshAheadEnabled) {
+            result = new HashMap<>();
+            for (String key : keys) {
+                Object cached = read(key, refreshTrigger);
+                if (cached != null) {
+                    result.put(key, cached);
+                }
+            }
+        } else if (hotLocal == null) {
+            result = normalLocal.getAll(keys);
+        } else {
+            result = new HashMap<>(hotLocal.getAll(keys));
+            Set<String> remaining = new HashSet<>(keys);
+            remaining.removeAll(result.keySet());
+            if (!remaining.isEmpty()) {
+                result.putAll(normalLocal.getAll(remaining));
+            }
+        }
+        meters.recordGetAll(start, keys.size(), result.size());
+        return result;
+    }
+
+    /**
+     * 读取已过期但仍在宽限期内的旧值
+     * 仅在回源失败时使用
+     *
+     * @param key 缓存键
+     * @return 旧值，未启用提前刷新或已超出宽限期时返回null
+     */
+    public Object getStale(String key) {
+        return refreshAheadEnabled ? lookup(key) : null;
+    }
+
+    /**
+     * 写入本地缓存
+     * 热点键写入热点分段，其余键写入普通分段，并清除另一分段中的旧副本
+     *
+     * @param key 缓存键
+     * @param cached 要保存的对象
+     */
+    public void put(String key, Object cached) {
+        long start = System.nanoTime();
+        boolean hot = hotKeyDetector.isHot(key);
+        long ttl;
+        if (VersionedValue.isAbsent(cached)) {
+            ttl = expirationPolicy.localTtl(Math.min(negativeTtlMillis, storageTtlMillis(hot)));
+        } else {
+            // 只按逻辑过期时间抖动，宽限期保持不变
+            long expireMillis = expireMillis(hot);
+            ttl = storageTtlMillis(hot) - (expireMillis - expirationPolicy.localTtl(expireMillis));
+        }
+        segment(hot).put(key, cached, ttl, TimeUnit.MILLISECONDS);
+        if (hotLocal != null) {
+            segment(!hot).remove(key);
+        }
+        tagIndex.indexLocal(key, cached);
+        meters.recordPut(start);
+    }
+
+    /**
+     * 批量写入本地缓存
+     *
+     * @param entries 要保存的键值对
+     */
+    public void putAll(Map<String, ?> entries) {
+        if (expirationPolicy.isLocalJitterEnabled() || entries.values().stream().anyMatch(VersionedValue::isAbsent)) {
+            // 启用抖动时每个条目的过期时间不同，负缓存条目的过期时间也不同，逐个写入
+            entries.forEach(this::put);
+            return;
+        }
+        long start = System.nanoTime();
+        if (hotLocal == null) {
+            normalLocal.putAll(entries, storageTtlMillis(false), TimeUnit.MILLISECONDS);
+        } else {
+            Map<String, Object> hotEntries = new HashMap<>();
+            Map<String, Object> coldEntries = new HashMap<>();
+            entries.forEach((key, cached) -> (hotKeyDetector.isHot(key) ? hotEntries : coldEntries).put(key, cached));
+            if (!hotEntries.isEmpty()) {
+                hotLocal.putAll(hotEntries, storageTtlMillis(true), TimeUnit.MILLISECONDS);
+                normalLocal.removeAll(hotEntries.keySet());
+            }
+            if (!coldEntries.isEmpty()) {
+                normalLocal.putAll(coldEntries, storageTtlMillis(false), TimeUnit.MILLISECONDS);
+                hotLocal.removeAll(coldEntries.keySet());
+            }
+        }
+        tagIndex.indexLocalAll(entries);
+        meters.recordPutAll(start);
+    }
+
+    /**
+     * 将远程缓存读到或回源加载的值写入本地缓存
+     * 只有近期访问频率达到准入阈值的键才会写入
+     *
+     * @param key 缓存键
+     * @param cached 要保存的对象
+     * @return 是否已写入
+     */
+    public boolean admit(String key, Object cached) {
+        boolean admitted = hotKeyDetector.admit(key);
+        cacheMetrics.recordAdmission(admitted);
+        if (admitted) {
+            put(key, cached);
+        }
+        return admitted;
+    }
+
+    /**
+     * 批量准入写入本地缓存
+     *
+     * @param entries 要保存的键值对
+     */
+    public void admitAll(Map<String, ?> entries) {
+        Map<String, Object> admitted = new HashMap<>();
+        entries.forEach((key, cached) -> {
+            boolean admit = hotKeyDetector.admit(key);
+            cacheMetrics.recordAdmission(admit);
+            if (admit) {
+                admitted.put(key, cached);
+            }
+        });
+        if (!admitted.isEmpty()) {
+            putAll(admitted);
+        }
+    }
+
+    /**
+     * 本地缓存中没有更高版本的值时写入
+     *
+     * @param key 缓存键
+     * @param value 带版本号的缓存值
+     */
+    public void putIfNewer(String key, VersionedValue value) {
+        synchronized (writeStripe(key)) {
+            if (VersionedValue.versionOf(lookup(key)) < value.getVersion()) {
+                put(key, value);
+            }
+        }
+    }
+
+    /**
+     * 用刷新得到的值替换本地缓存
+     * 刷新得到的值版本号未知或不低于当前值时替换，同版本的值也会替换以重置存活时间
+     *
+     * @param key 缓存键
+     * @param cached 刷新得到的对象
+     */
+    public void replaceIfNotOlder(String key, Object cached) {
+        long version = VersionedValue.versionOf(cached);
+        synchronized (writeStripe(key)) {
+            if (version == VersionedValue.UNKNOWN_VERSION
+                    || VersionedValue.versionOf(lookup(key)) <= version) {
+                put(key, cached);
+            }
+        }
+    }
+
+    /**
+     * 删除本地缓存
+     *
+     * @param key 缓存键
+     */
+    public void remove(String key) {
+        long start = System.nanoTime();
+        synchronized (writeStripe(key)) {
+            normalLocal.remove(key);
+            if (hotLocal != null) {
+                hotLocal.remove(key);
+            }
+        }
+        meters.recordDelete(start);
+    }
+
+    /**
+     * 批量删除本地缓存
+     *
+     * @param keys 缓存键集合
+     */
+    public void removeAll(Set<String> keys) {
+        long start = System.nanoTime();
+        normalLocal.removeAll(keys);
+        if (hotLocal != null) {
+            hotLocal.removeAll(keys);
+        }
+        meters.recordDeleteAll(start);
+    }
+
+    /**
+     * 清空本地缓存的所有分段
+     * 失效消息可能丢失时调用
+     */
+    public void clear() {
+        normalLocal.clear();
+        if (hotLocal != null) {
+            hotLocal.clear();
+        }
+    }
+
+    /**
+     * 按版本号批量失效本地缓存
+     * 本地条目的版本号不低于消息版本号时保留，避免延迟或乱序到达的消息清除更新的值
+     *
+     * @param versions 缓存键到消息版本号的映射
+     * @return 实际清除的键数量
+     */
+    public int invalidate(Map<String, Long> versions) {
+        int invalidated = invalidate(normalLocal, versions);
+        if (hotLocal != null) {
+            invalidated += invalidate(hotLocal, versions);
+        }
+        return invalidated;
+    }
+
+    /**
+     * 按访问热度从高到低导出一个分段中的条目
+     * 用于写入本地缓存快照
+     *
+     * @param hot 是否导出热点分段
+     * @param limit 最多导出的条目数量
+     * @return 缓存键到缓存条目的映射，按热度从高到低排列
+     */
+    public Map<String, CacheValueHolder<Object>> hottest(boolean hot, int limit) {
+        LocalCacheSegment segment = segment(hot);
+        if (segment == null || limit <= 0) {
+            return Collections.emptyMap();
+        }
+        return segment.hottest(limit);
+    }
+
+    /**
+     * 从快照恢复一个条目
+     * 直接写入快照记录的分段，保留条目剩余的存活时间
+     *
+     * @param key 缓存键
+     * @param cached 缓存中保存的对象
+     * @param remainingTtlMillis 剩余存活时间（毫秒）
+     * @param hot 是否写入热点分段
+     */
+    public void restore(String key, Object cached, long remainingTtlMillis, boolean hot) {
+        segment(hot && hotLocal != null).put(key, cached, remainingTtlMillis, TimeUnit.MILLISECONDS);
+        tagIndex.indexLocal(key, cached);
+    }
+
+    /**
+     * 按版本号批量失效一个分段
+     */
+    private int invalidate(LocalCacheSegment segment, Map<String, Long> versions) {
+        Set<String> staleKeys = new HashSet<>();
+        Map<String, Object> cached = segment.getAll(versions.keySet());
+        for (Map.Entry<String, Object> entry : cached.entrySet()) {
+            long version = versions.get(entry.getKey());
+            // 未知版本的消息或条目一律清除
+            if (version == VersionedValue.UNKNOWN_VERSION
+                    || VersionedValue.versionOf(entry.getValue()) < version) {
+                staleKeys.add(entry.getKey());
+            }
+        }
+        // 检查与清除之间写入的新值可能被一并清除，只会多一次远程读取，不会读到旧值
+        if (!staleKeys.isEmpty()) {
+            segment.removeAll(staleKeys);
+        }
+        return staleKeys.size();
+    }
+
+    /**
+     * 依次从热点分段和普通分段读取，过期的条目按未命中处理
+     */
+    private Object read(String key, Consumer<String> refreshTrigger) {
+        if (hotLocal != null) {
+            Object value = read(hotLocal, true, key, refreshTrigger);
+            if (value != null) {
+                return value;
+            }
+        }
+        return read(normalLocal, false, key, refreshTrigger);
+    }
+
+    private Object read(LocalCacheSegment segment, boolean hot, String key, Consumer<String> refreshTrigger) {
+        if (!refreshAheadEnabled && !expirationPolicy.isEarlyRecomputeEnabled()) {
+            return segment.get(key);
+        }
+        CacheValueHolder<Object> holder = segment.getHolder(key);
+        if (holder == null) {
+            return null;
+        }
+        if (VersionedValue.isAbsent(holder.getValue())) {
+            // 负缓存条目只按自身较短的过期时间失效
+            return holder.getValue();
+        }
+        if (!refreshAheadEnabled) {
+            if (refreshTrigger != null && expirationPolicy.shouldRecomputeEarly(key, holder.getExpireTime())) {
+                refreshTrigger.accept(key);
+            }
+            return holder.getValue();
+        }
+        long expireMillis = expireMillis(hot);
+        // 抖动缩短的存活时间计入条目年龄，逻辑过期时间同样提前
+        long age = System.currentTimeMillis() - (holder.getExpireTime() - storageTtlMillis(hot));
+        if (age >= expireMillis) {
+            // 已过期，按未命中处理，回源失败时再通过getStale使用旧值
+            return null;
+        }
+        if (refreshTrigger != null && (age >= expireMillis * refreshRatio
+                || expirationPolicy.shouldRecomputeEarly(key, holder.getExpireTime() - staleGraceMillis))) {
+            refreshTrigger.accept(key);
+        }
+        return holder.getValue();
+    }
+
+    /**
+     * 读取任一分段中的条目，不检查是否已过期
+     */
+    private Object lookup(String key) {
+        Object cached = hotLocal != null ? hotLocal.get(key) : null;
+        return cached != null ? cached : normalLocal.get(key);
+    }
+
+    private LocalCacheSegment segment(boolean hot) {
+        return hot ? hotLocal : normalLocal;
+    }
+
+    /**
+     * 条目的过期时间，热点键按倍数延长
+     */
+    private long expireMillis(boolean hot) {
+        return hot ? expireAfterWriteMillis * hotTtlMultiplier : expireAfterWriteMillis;
+    }
+
+    /**
+     * 条目的实际存活时间
+     * 启用提前刷新时额外保留宽限期，用于回源失败时返回旧值
+     */
+    private long storageTtlMillis(boolean hot) {
+        return refreshAheadEnabled ? expireMillis(hot) + staleGraceMillis : expireMillis(hot);
+    }
+
+    private Object writeStripe(String key) {
+        return writeStripes[(key.hashCode() & 0x7fffffff) % writeStripes.length];
+    }
+
+    private static Object[] createStripes(int count) {
+        Object[] stripes = new Object[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Object();
+        }
+        return stripes;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.CacheValueHolder;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 本地缓存条目的权重，即估算的堆内存占用（字节）
+ * 按64位JVM开启压缩指针时的对象布局估算常见值类型，不通过反射遍历对象图；
+ * 无法识别的类型按固定大小计算，嵌套超过一定深度的部分同样按固定大小计算
+ */
+class LocalEntryWeigher implements Weigher<String, CacheValueHolder<Object>> {
+
+    /**
+     * 每个条目的固定开销：Caffeine节点、CacheValueHolder和哈希表槽位
+     */
+    static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * 集合和映射最多逐个估算的元素数量，超出部分按已估算元素的平均大小计算
+     */
+    private static final int MAX_SAMPLED_ELEMENTS = 64;
+
+    /**
+     * 无法识别类型的值按该大小计算
+     */
+    private final int unknownValueBytes;
+
+    LocalEntryWeigher(int unknownValueBytes) {
+        this.unknownValueBytes = unknownValueBytes;
+    }
+
+    @Override
+    public int weigh(String key, CacheValueHolder<Object> holder) {
+        long bytes = ENTRY_OVERHEAD_BYTES + estimate(key, 0) + estimate(holder.getValue(), 0);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 估算一个值占用的字节数
+     *
+     * @param value 值
+     * @return 估算的字节数
+     */
+    long estimate(Object value) {
+        return estimate(value, 0);
+    }
+
+    private long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            // String对象24字节，char数组16字节头加每个字符2字节
+            return align(24) + align(16 + 2L * ((String) value).length());
+        }
+        if (value instanceof byte[]) {
+            return align(16 + ((byte[]) value).length);
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return 24;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 16;
+        }
+        if (depth >= MAX_DEPTH) {
+            return unknownValueBytes;
+        }
+        if (value instanceof VersionedValue) {
+            VersionedValue versioned = (VersionedValue) value;
+            long bytes = 24 + estimate(versioned.getValue(), depth + 1);
+            if (value instanceof TaggedValue) {
+                bytes += estimate(((TaggedValue) value).getTags(), depth + 1);
+            }
+            return bytes;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long sampled = 0;
+            int count = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (count == MAX_SAMPLED_ELEMENTS) {
+                    break;
+                }
+                // 哈希表节点32字节加表中的一个引用
+                sampled += 36 + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+                count++;
+            }
+            return 48 + extrapolate(sampled, count, map.size());
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            long sampled = 0;
+            int count = 0;
+            for (Object element : collection) {
+                if (count == MAX_SAMPLED_ELEMENTS) {
+                    break;
+                }
+                // 集合类型不同，每个元素的额外开销按引用和哈希节点之间取中间值
+                sampled += 16 + estimate(element, depth + 1);
+                count++;
+            }
+            return 40 + extrapolate(sampled, count, collection.size());
+        }
+        if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long sampled = 0;
+            int count = Math.min(array.length, MAX_SAMPLED_ELEMENTS);
+            for (int i = 0; i < count; i++) {
+                sampled += estimate(array[i], depth + 1);
+            }
+            return align(16 + 4L * array.length) + extrapolate(sampled, count, array.length);
+        }
+        return unknownValueBytes;
+    }
+
+    private static long extrapolate(long sampled, int count, int size) {
+        return count == 0 || count == size ? sampled : sampled / count * size;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
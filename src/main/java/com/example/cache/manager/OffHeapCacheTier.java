@@ -0,0 +1,448 @@
+package com.example.cache.manager;
+
+import com.example.cache.codec.ValueCodec;
+import com.example.cache.metrics.CacheMetrics;
+import com.example.cache.metrics.TierMeters;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 堆外缓存层（L1.5）
+ * 位于本地缓存和远程缓存之间，将序列化后的值保存在堆外直接内存中，
+ * 每个节点可以在本地保留大量数据而不增加GC压力。
+ * <p>
+ * 容量按字节计算，平均分给若干分段。每个分段是一块环形写入的直接内存，
+ * 新值追加写入，空间不足时从最早写入的条目开始淘汰（FIFO）；
+ * 键、位置、过期时间和版本号等索引信息保存在堆上，按版本号失效时无需反序列化
+ */
+@Slf4j
+@Component
+public class OffHeapCacheTier {
+
+    /**
+     * 是否启用堆外缓存层
+     */
+    @Value("${cache.offheap.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 总容量（字节）
+     */
+    @Value("${cache.offheap.capacity-bytes:268435456}")
+    private long capacityBytes;
+
+    /**
+     * 分段数量，向上取整为2的幂
+     */
+    @Value("${cache.offheap.segments:16}")
+    private int segmentCount;
+
+    /**
+     * 条目的过期时间（毫秒）
+     */
+    @Value("${cache.offheap.ttl-millis:600000}")
+    private long ttlMillis;
+
+    /**
+     * 负缓存条目的过期时间（毫秒）
+     */
+    @Value("${cache.negative.ttl-millis:30000}")
+    private long negativeTtlMillis;
+
+    /**
+     * 缓存值编解码器，与远程缓存使用相同的编码
+     */
+    @Autowired
+    private ValueCodec valueCodec;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 标签索引
+     * 写入带标签的条目时记录到本地索引
+     */
+    @Autowired
+    private CacheTagIndex tagIndex;
+
+    /**
+     * 过期策略
+     * 打散条目的过期时间
+     */
+    @Autowired
+    private ExpirationPolicy expirationPolicy;
+
+    private TierMeters meters;
+
+    private Segment[] segments;
+
+    @PostConstruct
+    public void init() {
+        meters = cacheMetrics.offHeap();
+        if (!enabled) {
+            return;
+        }
+        int count = Integer.highestOneBit(Math.max(segmentCount - 1, 1)) << 1;
+        long segmentBytes = capacityBytes / count;
+        if (segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap segment larger than 2GB, increase cache.offheap.segments");
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((int) segmentBytes);
+        }
+        cacheMetrics.bindOffHeap(this);
+        log.info("Off-heap cache tier enabled with {} bytes in {} segments", segmentBytes * count, count);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 读取堆外缓存
+     *
+     * @param key 缓存键
+     * @return 缓存中保存的对象，未命中或已过期时返回null
+     */
+    public Object get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long start = System.nanoTime();
+        byte[] bytes = segmentFor(key).read(key, System.currentTimeMillis());
+        Object cached = bytes == null ? null : valueCodec.decode(bytes);
+        meters.recordGet(start, cached != null);
+        return cached;
+    }
+
+    /**
+     * 批量读取堆外缓存
+     *
+     * @param keys 缓存键集合
+     * @return 命中的键值对，值为缓存中保存的对象
+     */
+    public Map<String, Object> getAll(Set<String> keys) {
+        Map<String, Object> result = new HashMap<>();
+        if (!enabled) {
+            return result;
+        }
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            byte[] bytes = segmentFor(key).read(key, now);
+            if (bytes != null) {
+                result.put(key, valueCodec.decode(bytes));
+            }
+        }
+        meters.recordGetAll(start, keys.size(), result.size());
+        return result;
+    }
+
+    /**
+     * 写入堆外缓存
+     * 超过分段容量的值不写入
+     *
+     * @param key 缓存键
+     * @param cached 要保存的对象
+     */
+    public void put(String key, Object cached) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        write(key, cached, false);
+        meters.recordPut(start);
+    }
+
+    /**
+     * 批量写入堆外缓存
+     *
+     * @param entries 要保存的键值对
+     */
+    public void putAll(Map<String, ?> entries) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        entries.forEach((key, cached) -> write(key, cached, false));
+        meters.recordPutAll(start);
+    }
+
+    /**
+     * 堆外缓存中没有更高版本的值时写入
+     *
+     * @param key 缓存键
+     * @param value 带版本号的缓存值
+     */
+    public void putIfNewer(String key, VersionedValue value) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        write(key, value, true);
+        meters.recordPut(start);
+    }
+
+    /**
+     * 删除堆外缓存
+     *
+     * @param key 缓存键
+     */
+    public void remove(String key) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        segmentFor(key).remove(key, Long.MAX_VALUE);
+        meters.recordDelete(start);
+    }
+
+    /**
+     * 批量删除堆外缓存
+     *
+     * @param keys 缓存键集合
+     */
+    public void removeAll(Set<String> keys) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (String key : keys) {
+            segmentFor(key).remove(key, Long.MAX_VALUE);
+        }
+        meters.recordDeleteAll(start);
+    }
+
+    /**
+     * 按版本号批量失效堆外缓存
+     * 条目的版本号不低于消息版本号时保留，未知版本的消息或条目一律清除
+     *
+     * @param versions 缓存键到消息版本号的映射
+     * @return 实际清除的键数量
+     */
+    public int invalidate(Map<String, Long> versions) {
+        if (!enabled) {
+            return 0;
+        }
+        int invalidated = 0;
+        for (Map.Entry<String, Long> entry : versions.entrySet()) {
+            long version = entry.getValue();
+            if (segmentFor(entry.getKey()).remove(entry.getKey(),
+                    version == VersionedValue.UNKNOWN_VERSION ? Long.MAX_VALUE : version)) {
+                invalidated++;
+            }
+        }
+        return invalidated;
+    }
+
+    /**
+     * 清空堆外缓存
+     * 失效消息可能丢失时调用
+     */
+    public void clear() {
+        if (!enabled) {
+            return;
+        }
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 当前条目数量
+     */
+    public long size() {
+        long size = 0;
+        if (segments != null) {
+            for (Segment segment : segments) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 当前有效条目占用的字节数
+     */
+    public long usedBytes() {
+        long used = 0;
+        if (segments != null) {
+            for (Segment segment : segments) {
+                used += segment.usedBytes();
+            }
+        }
+        return used;
+    }
+
+    private void write(String key, Object cached, boolean onlyIfNewer) {
+        byte[] bytes = valueCodec.encode(cached);
+        long ttl = expirationPolicy.offHeapTtl(
+                VersionedValue.isAbsent(cached) ? Math.min(negativeTtlMillis, ttlMillis) : ttlMillis);
+        segmentFor(key).write(key, bytes, VersionedValue.versionOf(cached),
+                System.currentTimeMillis() + ttl, onlyIfNewer);
+        tagIndex.indexLocal(key, cached);
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    /**
+     * 条目索引
+     */
+    private static final class Entry {
+
+        private final String key;
+
+        private final int offset;
+
+        private final int length;
+
+        private final long version;
+
+        private final long expireAt;
+
+        private Entry(String key, int offset, int length, long version, long expireAt) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+            this.version = version;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 分段
+     * 一块环形写入的直接内存，以及按写入顺序排列的索引
+     */
+    private static final class Segment {
+
+        private final ByteBuffer buffer;
+
+        private final int capacity;
+
+        /**
+         * 键到条目索引的映射
+         */
+        private final Map<String, Entry> index = new HashMap<>();
+
+        /**
+         * 按写入顺序排列的条目，包括已被覆盖或删除的条目
+         * 队首是最早写入的条目，也就是下一次写入位置之后最先被覆盖的条目
+         */
+        private final ArrayDeque<Entry> ring = new ArrayDeque<>();
+
+        /**
+         * 下一次写入的位置
+         */
+        private int tail;
+
+        private long usedBytes;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        synchronized byte[] read(String key, long now) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expireAt <= now) {
+                unlink(entry);
+                return null;
+            }
+            byte[] bytes = new byte[entry.length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(entry.offset);
+            view.get(bytes);
+            return bytes;
+        }
+
+        synchronized void write(String key, byte[] bytes, long version, long expireAt, boolean onlyIfNewer) {
+            Entry existing = index.get(key);
+            if (onlyIfNewer && existing != null && existing.version >= version) {
+                return;
+            }
+            if (existing != null) {
+                unlink(existing);
+            }
+            int length = bytes.length;
+            if (length > capacity) {
+                return;
+            }
+            if (tail + length > capacity) {
+                // 剩余空间不足，回到开头写入，尾部空间中的条目一并淘汰
+                int wrapFrom = tail;
+                while (!ring.isEmpty() && ring.peekFirst().offset >= wrapFrom) {
+                    unlink(ring.pollFirst());
+                }
+                tail = 0;
+            }
+            int end = tail + length;
+            while (!ring.isEmpty() && ring.peekFirst().offset >= tail && ring.peekFirst().offset < end) {
+                unlink(ring.pollFirst());
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position(tail);
+            view.put(bytes);
+            Entry entry = new Entry(key, tail, length, version, expireAt);
+            index.put(key, entry);
+            ring.addLast(entry);
+            usedBytes += length;
+            tail = end;
+        }
+
+        /**
+         * 删除版本号低于给定版本号的条目
+         *
+         * @return 是否删除了条目
+         */
+        synchronized boolean remove(String key, long belowVersion) {
+            Entry entry = index.get(key);
+            if (entry == null || entry.version >= belowVersion) {
+                return false;
+            }
+            unlink(entry);
+            return true;
+        }
+
+        synchronized void clear() {
+            index.clear();
+            ring.clear();
+            tail = 0;
+            usedBytes = 0;
+        }
+
+        synchronized int size() {
+            return index.size();
+        }
+
+        synchronized long usedBytes() {
+            return usedBytes;
+        }
+
+        /**
+         * 从索引中移除条目，占用的空间在写入位置经过时回收
+         * 已被覆盖或删除的条目再次移除时不做任何事
+         */
+        private void unlink(Entry entry) {
+            if (index.remove(entry.key, entry)) {
+                usedBytes -= entry.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.CacheException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * 乐观缓存写入器
+ * 通过Lua脚本在Redis端原子地比较并更新键的版本号，同时写入或删除远程缓存的值，
+ * 无需分布式锁即可保证按版本号的最后写入者获胜。
+ * 远程缓存分片时，脚本在键所属的分片上执行，版本号计数器和值总在同一个分片。
+ * 读取版本号和执行脚本都经过远程缓存熔断器，与远程缓存层的其他操作一起统计
+ */
+@Slf4j
+@Component
+public class OptimisticCacheWriter {
+
+    /**
+     * 比较并写入脚本
+     * KEYS[1]为版本号键，KEYS[2]为远程缓存的值键；
+     * ARGV[1]为期望版本号，ARGV[2]为版本号过期时间，ARGV[3]为操作类型（update、delete或fill），
+     * ARGV[4]为编码后的值，ARGV[5]为值的过期时间。
+     * 成功时返回新版本号（大于0），冲突时返回当前版本号的相反数；
+     * fill只写入值，不递增版本号，成功时返回当前版本号
+     */
+    private static final byte[] COMPARE_AND_SET_SCRIPT = (
+            "local current = tonumber(redis.call('get', KEYS[1]) or '0') "
+                    + "if current ~= tonumber(ARGV[1]) then return -current end "
+                    + "if ARGV[3] == 'fill' then "
+                    + "redis.call('set', KEYS[2], ARGV[4], 'px', ARGV[5]) return current end "
+                    + "local next = current + 1 "
+                    + "redis.call('set', KEYS[1], next, 'px', ARGV[2]) "
+                    + "if ARGV[3] == 'delete' then redis.call('del', KEYS[2]) "
+                    + "else redis.call('set', KEYS[2], ARGV[4], 'px', ARGV[5]) end "
+                    + "return next"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 远程缓存层
+     * 用于定位键所属的分片，并按远程缓存配置的键前缀、键转换器和值编码器构造脚本参数，
+     * 保证写入的值可以被正常读取
+     */
+    @Autowired
+    private RemoteCacheTier remoteTier;
+
+    /**
+     * 版本号计数器的过期时间（毫秒）
+     */
+    @Value("${cache.version.ttl-millis:86400000}")
+    private long versionTtlMillis;
+
+    /**
+     * 过期策略
+     * 打散远程缓存条目的过期时间
+     */
+    @Autowired
+    private ExpirationPolicy expirationPolicy;
+
+    /**
+     * 远程缓存熔断器
+     */
+    @Autowired
+    private RemoteCircuitBreaker remoteBreaker;
+
+    /**
+     * 读取键的当前版本号
+     * 
+     * @param key 缓存键
+     * @return 当前版本号，从未写入过时为0
+     * @throws CacheException 熔断器拒绝或读取失败时抛出
+     */
+    public long currentVersion(String key) {
+        if (!remoteBreaker.tryAcquire()) {
+            throw new CacheException("Remote cache circuit open, cannot read version for key: " + key);
+        }
+        long start = System.nanoTime();
+        byte[] version;
+        try {
+            version = remoteTier.shardFor(key).getRedisTemplate()
+                    .execute((RedisCallback<byte[]>) connection -> connection.get(versionKey(key)));
+        } catch (RuntimeException e) {
+            remoteBreaker.recordFailure();
+            throw new CacheException("Failed to read version for key: " + key, e);
+        }
+        remoteBreaker.recordSuccess(start, false);
+        return version == null ? VersionedValue.UNKNOWN_VERSION : Long.parseLong(new String(version, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 版本号匹配时写入远程缓存
+     * 
+     * @param key 缓存键
+     * @param value 缓存值
+     * @param expectedVersion 期望的当前版本号
+     * @param tags 标签，可以为空
+     * @return 写入结果，熔断器拒绝或执行失败时为{@link CacheWriteResult#unavailable()}
+     */
+    public CacheWriteResult compareAndSet(String key, Object value, long expectedVersion, Collection<String> tags) {
+        long ttlMillis = expirationPolicy.remoteTtl(remoteTier.config().getExpireAfterWriteInMillis());
+        // 值中携带写入后的版本号和标签，读取远程缓存的节点据此记录本地缓存条目的版本和标签
+        VersionedValue versioned = VersionedValue.of(value, expectedVersion + 1, tags);
+        byte[] payload = remoteTier.encode(versioned, ttlMillis);
+        return toResult(execute(key, expectedVersion, "update", payload, ttlMillis));
+    }
+
+    /**
+     * 版本号没有变化时回填远程缓存
+     * 用于提前回源：回源前读取版本号，回源期间有更新或删除时放弃回填，
+     * 避免回源读到的旧数据覆盖更新后的值。回填不递增版本号，也不需要发布失效消息
+     *
+     * @param key 缓存键
+     * @param stored 写入远程缓存的值，带有版本信息的值或负缓存标记
+     * @param ttlMillis 过期时间（毫秒），打散前的值
+     * @param observedVersion 回源前读取的版本号
+     * @return 写入结果，版本号已变化时为冲突，熔断器拒绝或执行失败时为{@link CacheWriteResult#unavailable()}
+     */
+    public CacheWriteResult fillIfUnchanged(String key, Object stored, long ttlMillis, long observedVersion) {
+        long remoteTtl = expirationPolicy.remoteTtl(ttlMillis);
+        byte[] payload = remoteTier.encode(stored, remoteTtl);
+        Long result = execute(key, observedVersion, "fill", payload, remoteTtl);
+        if (result == null) {
+            return CacheWriteResult.unavailable();
+        }
+        return result == observedVersion ? CacheWriteResult.applied(result) : CacheWriteResult.conflict(-result);
+    }
+
+    /**
+     * 版本号匹配时删除远程缓存
+     * 
+     * @param key 缓存键
+     * @param expectedVersion 期望的当前版本号
+     * @return 写入结果，熔断器拒绝或执行失败时为{@link CacheWriteResult#unavailable()}
+     */
+    public CacheWriteResult compareAndDelete(String key, long expectedVersion) {
+        return toResult(execute(key, expectedVersion, "delete", EMPTY, 0));
+    }
+
+    /**
+     * 经过熔断器执行比较并写入脚本，并记录结果
+     * 脚本会写入远程缓存，只在熔断器关闭时执行
+     *
+     * @return 脚本的返回值，熔断器拒绝或执行失败时为null
+     */
+    private Long execute(String key, long expectedVersion, String operation, byte[] payload, long ttlMillis) {
+        if (!remoteBreaker.allowsWrites()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        byte[][] keysAndArgs = {
+                versionKey(key),
+                remoteTier.dataKey(key),
+                toBytes(expectedVersion),
+                toBytes(versionTtlMillis),
+                operation.getBytes(StandardCharsets.UTF_8),
+                payload,
+                toBytes(ttlMillis)
+        };
+        Long result;
+        try {
+            result = remoteTier.shardFor(key).getRedisTemplate().execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                    .eval(COMPARE_AND_SET_SCRIPT, ReturnType.INTEGER, 2, keysAndArgs));
+        } catch (RuntimeException e) {
+            log.warn("Compare-and-set failed for key: {}", key, e);
+            result = null;
+        }
+        if (result == null) {
+            remoteBreaker.recordFailure();
+            return null;
+        }
+        remoteBreaker.recordSuccess(start, true);
+        return result;
+    }
+
+    private static CacheWriteResult toResult(Long result) {
+        if (result == null) {
+            return CacheWriteResult.unavailable();
+        }
+        return result > 0 ? CacheWriteResult.applied(result) : CacheWriteResult.conflict(-result);
+    }
+
+    private static byte[] versionKey(String key) {
+        // 与加锁写入路径共用同一个版本号计数器
+        return CacheConsistencyManager.VERSION_KEYS.encode(key);
+    }
+
+    private static byte[] toBytes(long number) {
+        return Long.toString(number).getBytes(StandardCharsets.UTF_8);
+    }
+}
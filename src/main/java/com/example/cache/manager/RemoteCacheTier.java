@@ -0,0 +1,589 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.Cache;
+import com.alicp.jetcache.CacheConfig;
+import com.alicp.jetcache.CacheGetResult;
+import com.alicp.jetcache.CacheResult;
+import com.alicp.jetcache.CacheResultCode;
+import com.alicp.jetcache.CacheValueHolder;
+import com.alicp.jetcache.MultiGetResult;
+import com.alicp.jetcache.anno.CacheType;
+import com.alicp.jetcache.anno.CreateCache;
+import com.alicp.jetcache.external.ExternalCacheConfig;
+import com.alicp.jetcache.redis.springdata.RedisSpringDataCacheBuilder;
+import com.example.cache.codec.KeyPrefix;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 远程缓存层
+ * 默认只有一个分片，即JetCache配置的远程缓存和Spring配置的Redis。
+ * 配置cache.remote.shards后，缓存值和版本号计数器按一致性哈希分布到多个Redis实例，
+ * 批量操作按分片拆分，每个分片一次批量请求。
+ * 启用过期时间抖动后，写入的每个键使用各自随机缩短的过期时间。
+ * <p>
+ * 所有操作经过远程缓存熔断器：熔断期间读取立即返回失败结果，写入和删除立即返回false；
+ * 操作失败或超出延迟预算时计入熔断统计。启用对冲读取后，读取在独立线程上发出，
+ * 超过对冲延迟仍未返回时通过独立连接再发一次，取先返回的结果，超出读取延迟预算时按失败返回，
+ * 调用线程等待Redis的时间不超过读取延迟预算。
+ * <p>
+ * 各分片的连接复用主连接工厂的客户端配置（共享事件循环、超时和连接池设置），每个分片一个多路复用连接。
+ * 分布式锁、加载租约、布隆过滤器和失效消息仍然只使用Spring配置的Redis；
+ * 写入已知存在的键时，属于该Redis的键在写入值的同一个管道中更新布隆过滤器的位图。
+ * 分片列表变化后，改变归属的键在新分片上从头开始计数版本号，
+ * 因此修改分片列表需要停止所有节点后再启动，不能滚动发布
+ */
+@Slf4j
+@Component
+public class RemoteCacheTier {
+
+    /**
+     * JetCache配置的远程缓存，未配置分片时作为唯一的分片，配置分片时作为各分片的配置模板
+     */
+    @CreateCache(name = "remoteCache", cacheType = CacheType.REMOTE)
+    private Cache<String, Object> jetcacheRemote;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 过期策略
+     * 打散条目的过期时间
+     */
+    @Autowired
+    private ExpirationPolicy expirationPolicy;
+
+    /**
+     * 主连接工厂，分片连接复用它的客户端配置
+     */
+    @Autowired
+    private LettuceConnectionFactory redisConnectionFactory;
+
+    /**
+     * 远程缓存熔断器
+     */
+    @Autowired
+    private RemoteCircuitBreaker breaker;
+
+    /**
+     * 已知键的布隆过滤器
+     */
+    @Autowired
+    private KeyBloomFilter keyBloomFilter;
+
+    /**
+     * 分片列表，逗号分隔的host:port，为空时不分片
+     */
+    @Value("${cache.remote.shards:}")
+    private String shards;
+
+    /**
+     * 每个分片在哈希环上的虚拟节点数量
+     */
+    @Value("${cache.remote.virtual-nodes:160}")
+    private int virtualNodes;
+
+    /**
+     * 是否启用对冲读取
+     */
+    @Value("${cache.remote.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    /**
+     * 读取超过该时间（毫秒）仍未返回时发出对冲请求
+     */
+    @Value("${cache.remote.hedge.delay-millis:20}")
+    private long hedgeDelayMillis;
+
+    /**
+     * 对冲读取的工作线程数
+     */
+    @Value("${cache.remote.hedge.threads:8}")
+    private int hedgeThreads;
+
+    /**
+     * 对冲读取的任务队列容量，队列满时在调用线程直接读取，不对冲
+     */
+    @Value("${cache.remote.hedge.queue-capacity:256}")
+    private int hedgeQueueCapacity;
+
+    private ConsistentHashRing<RemoteShard> ring;
+
+    private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+
+    private ThreadPoolExecutor hedgeExecutor;
+
+    /**
+     * 远程缓存的键前缀
+     */
+    private KeyPrefix dataKeyPrefix;
+
+    @PostConstruct
+    public void init() {
+        dataKeyPrefix = KeyPrefix.of(config().getKeyPrefix());
+        if (hedgeEnabled) {
+            hedgeExecutor = new ThreadPoolExecutor(hedgeThreads, hedgeThreads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(hedgeQueueCapacity), r -> {
+                        Thread thread = new Thread(r, "cache-remote-read");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            hedgeExecutor.allowCoreThreadTimeOut(true);
+        }
+        Map<String, RemoteShard> nodes = new LinkedHashMap<>();
+        if (!StringUtils.hasText(shards)) {
+            Cache<String, Object> hedgeCache = hedgeEnabled
+                    ? buildCache(createConnectionFactory(redisConnectionFactory.getStandaloneConfiguration(), false))
+                    : null;
+            nodes.put("default", new RemoteShard("default", jetcacheRemote, redisTemplate, hedgeCache));
+        } else {
+            for (String address : StringUtils.commaDelimitedListToSet(shards.replace(" ", ""))) {
+                nodes.put(address, createShard(address));
+            }
+            log.info("Remote cache sharded across {} Redis instances: {}", nodes.size(), nodes.keySet());
+        }
+        ring = new ConsistentHashRing<>(nodes, virtualNodes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    /**
+     * 所有分片
+     */
+    public List<RemoteShard> getShards() {
+        return ring.getNodes();
+    }
+
+    /**
+     * 键所属的分片
+     *
+     * @param key 缓存键
+     * @return 分片
+     */
+    public RemoteShard shardFor(String key) {
+        return ring.nodeFor(key);
+    }
+
+    /**
+     * 按所属分片对键分组
+     *
+     * @param keys 缓存键集合
+     * @return 分片到其所属键的映射
+     */
+    public Map<RemoteShard, List<String>> partition(Collection<String> keys) {
+        return ring.partition(keys);
+    }
+
+    /**
+     * 远程缓存的配置，所有分片相同
+     */
+    @SuppressWarnings("unchecked")
+    public ExternalCacheConfig<String, Object> config() {
+        return (ExternalCacheConfig<String, Object>) jetcacheRemote.config();
+    }
+
+    /**
+     * 读取远程缓存
+     *
+     * @param key 缓存键
+     * @return 读取结果，熔断、失败或超出读取延迟预算时结果码为FAIL
+     */
+    public CacheGetResult<Object> GET(String key) {
+        if (!breaker.tryAcquire()) {
+            return failed("remote cache circuit open");
+        }
+        long start = System.nanoTime();
+        RemoteShard shard = shardFor(key);
+        CacheGetResult<Object> result = hedgeEnabled ? hedgedGet(shard, key) : shard.getCache().GET(key);
+        record(result.getResultCode() != CacheResultCode.FAIL, start, false);
+        return result;
+    }
+
+    /**
+     * 取出读取结果中的缓存条目
+     * JetCache的CacheGetResult不公开条目，条目保存在结果数据的原始数据中
+     *
+     * @param result 读取结果
+     * @return 缓存条目，未命中或失败时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static CacheValueHolder<Object> holder(CacheGetResult<Object> result) {
+        if (!result.isSuccess()) {
+            return null;
+        }
+        Object origin = result.future().toCompletableFuture().join().getOriginData();
+        return origin instanceof CacheValueHolder ? (CacheValueHolder<Object>) origin : null;
+    }
+
+    /**
+     * 批量读取，每个分片一次批量请求
+     *
+     * @param keys 缓存键集合
+     * @param unavailable 收集因熔断或读取失败而无法确定是否存在的键
+     * @return 命中的键值对
+     */
+    public Map<String, Object> getAll(Set<String> keys, Set<String> unavailable) {
+        Map<String, Object> result = new HashMap<>();
+        partition(keys).forEach((shard, shardKeys) -> {
+            Set<String> shardKeySet = new HashSet<>(shardKeys);
+            if (!breaker.tryAcquire()) {
+                unavailable.addAll(shardKeySet);
+                return;
+            }
+            long start = System.nanoTime();
+            MultiGetResult<String, Object> shardResult = shard.getCache().GET_ALL(shardKeySet);
+            if (record(shardResult.isSuccess(), start, false)) {
+                result.putAll(shardResult.unwrapValues());
+            } else {
+                unavailable.addAll(shardKeySet);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 按配置的过期时间写入
+     *
+     * @return 是否写入成功，熔断或失败时返回false
+     */
+    public boolean put(String key, Object value) {
+        return put(key, value, config().getExpireAfterWriteInMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按指定过期时间写入
+     *
+     * @return 是否写入成功，熔断或失败时返回false
+     */
+    public boolean put(String key, Object value, long expire, TimeUnit timeUnit) {
+        long ttlMillis = expirationPolicy.remoteTtl(timeUnit.toMillis(expire));
+        return write(() -> shardFor(key).getCache().PUT(key, value, ttlMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 批量写入，每个分片一次批量请求
+     *
+     * @param entries 要写入的键值对
+     * @return 是否所有分片都写入成功
+     */
+    public boolean putAll(Map<String, ?> entries) {
+        return putAll(entries, config().getExpireAfterWriteInMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按指定过期时间批量写入，每个分片一次批量请求
+     * 启用抖动时每个键的过期时间不同，按远程缓存的编码直接通过管道写入
+     *
+     * @param entries 要写入的键值对
+     * @param expire 过期时间
+     * @param timeUnit 过期时间单位
+     * @return 是否所有分片都写入成功
+     */
+    public boolean putAll(Map<String, ?> entries, long expire, TimeUnit timeUnit) {
+        long ttlMillis = timeUnit.toMillis(expire);
+        boolean success = true;
+        for (Map.Entry<RemoteShard, Map<String, Object>> shard : split(entries).entrySet()) {
+            if (!expirationPolicy.isRemoteJitterEnabled()) {
+                success &= write(() -> shard.getKey().getCache().PUT_ALL(shard.getValue(), ttlMillis, TimeUnit.MILLISECONDS));
+                continue;
+            }
+            success &= write(() -> {
+                shard.getKey().getRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+                    shard.getValue().forEach((key, value) -> {
+                        long keyTtl = expirationPolicy.remoteTtl(ttlMillis);
+                        connection.stringCommands().pSetEx(dataKey(key), keyTtl, encode(value, keyTtl));
+                    });
+                    return null;
+                });
+                return CacheResult.SUCCESS_WITHOUT_MSG;
+            });
+        }
+        return success;
+    }
+
+    /**
+     * 写入已知存在的键，并把键加入布隆过滤器
+     *
+     * @return 是否写入成功，熔断或失败时返回false
+     */
+    public boolean putKnown(String key, Object value) {
+        return putAllKnown(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * 批量写入已知存在的键，并把键加入布隆过滤器
+     * 键所在分片就是布隆过滤器所在的Redis时，设置位的命令与值的写入通过同一个管道发送，不增加往返；
+     * 其他分片的键单独更新位图。熔断或写入失败时位图只更新本地副本，Redis中的位图由布隆过滤器补写
+     *
+     * @param entries 要写入的键值对
+     * @return 是否所有分片都写入成功
+     */
+    public boolean putAllKnown(Map<String, ?> entries) {
+        if (!keyBloomFilter.isEnabled()) {
+            return putAll(entries);
+        }
+        long ttlMillis = config().getExpireAfterWriteInMillis();
+        boolean success = true;
+        for (Map.Entry<RemoteShard, Map<String, Object>> shard : split(entries).entrySet()) {
+            Map<String, Object> shardEntries = shard.getValue();
+            if (shard.getKey().getRedisTemplate() != redisTemplate) {
+                keyBloomFilter.addAll(shardEntries.keySet());
+                success &= putAll(shardEntries);
+                continue;
+            }
+            boolean written = write(() -> {
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    shardEntries.forEach((key, value) -> {
+                        long keyTtl = expirationPolicy.remoteTtl(ttlMillis);
+                        connection.stringCommands().pSetEx(dataKey(key), keyTtl, encode(value, keyTtl));
+                    });
+                    keyBloomFilter.appendBits(connection, shardEntries.keySet());
+                    return null;
+                });
+                return CacheResult.SUCCESS_WITHOUT_MSG;
+            });
+            if (!written) {
+                keyBloomFilter.addLocal(shardEntries.keySet());
+                keyBloomFilter.markUnsynced();
+            }
+            success &= written;
+        }
+        return success;
+    }
+
+    /**
+     * 按远程缓存的键前缀构造值在Redis中的键
+     * 字符串键经过键转换器后不变，直接与预先编码的前缀字节拼接
+     *
+     * @param key 缓存键
+     * @return Redis中的键
+     */
+    public byte[] dataKey(String key) {
+        return dataKeyPrefix.encode(key);
+    }
+
+    /**
+     * 按远程缓存的值编码器编码，保证直接写入Redis的值可以被正常读取
+     *
+     * @param value 缓存中保存的对象
+     * @param ttlMillis 过期时间（毫秒）
+     * @return 编码后的值
+     */
+    public byte[] encode(Object value, long ttlMillis) {
+        return config().getValueEncoder().apply(new CacheValueHolder<>(value, ttlMillis));
+    }
+
+    /**
+     * 删除
+     *
+     * @param key 缓存键
+     * @return 是否删除成功，熔断或失败时返回false
+     */
+    public boolean remove(String key) {
+        return write(() -> shardFor(key).getCache().REMOVE(key));
+    }
+
+    /**
+     * 批量删除，每个分片一次批量请求
+     *
+     * @param keys 缓存键集合
+     * @return 是否所有分片都删除成功
+     */
+    public boolean removeAll(Set<String> keys) {
+        boolean success = true;
+        for (Map.Entry<RemoteShard, List<String>> shard : partition(keys).entrySet()) {
+            success &= write(() -> shard.getKey().getCache().REMOVE_ALL(new HashSet<>(shard.getValue())));
+        }
+        return success;
+    }
+
+    /**
+     * 经过熔断器执行一次写入或删除，并记录结果
+     * 只在熔断器关闭时放行，半开状态的探测只使用读取，回填等写入不占用探测次数
+     *
+     * @param operation 写入或删除操作
+     * @return 是否成功
+     */
+    private boolean write(Supplier<CacheResult> operation) {
+        if (!breaker.allowsWrites()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            success = operation.get().isSuccess();
+        } catch (RuntimeException e) {
+            log.warn("Remote cache write failed", e);
+            success = false;
+        }
+        return record(success, start, true);
+    }
+
+    private boolean record(boolean success, long startNanos, boolean write) {
+        if (success) {
+            breaker.recordSuccess(startNanos, write);
+        } else {
+            breaker.recordFailure();
+        }
+        return success;
+    }
+
+    /**
+     * 对冲读取
+     * 主请求在工作线程上发出，超过对冲延迟仍未返回时通过独立连接再发一次，
+     * 取先返回的结果；超出读取延迟预算时不再等待，按失败返回
+     */
+    @SuppressWarnings("unchecked")
+    private CacheGetResult<Object> hedgedGet(RemoteShard shard, String key) {
+        CompletableFuture<CacheGetResult<Object>> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(() -> completed(shard.getCache().GET(key)), hedgeExecutor);
+        } catch (RejectedExecutionException e) {
+            return shard.getCache().GET(key);
+        }
+        try {
+            return primary.get(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 主请求未在对冲延迟内返回，发出对冲请求
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed("interrupted");
+        } catch (ExecutionException e) {
+            return failed(String.valueOf(e.getCause()));
+        }
+        CompletableFuture<Object> first = primary.thenApply(result -> (Object) result);
+        try {
+            first = CompletableFuture.anyOf(primary,
+                    CompletableFuture.supplyAsync(() -> completed(shard.getHedgeCache().GET(key)), hedgeExecutor));
+        } catch (RejectedExecutionException e) {
+            log.debug("Hedge queue full, waiting for primary read of key: {}", key);
+        }
+        long remainingMillis = Math.max(1, breaker.getReadBudgetMillis() - hedgeDelayMillis);
+        try {
+            return (CacheGetResult<Object>) first.get(remainingMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return failed("read budget exceeded");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed("interrupted");
+        } catch (ExecutionException e) {
+            return failed(String.valueOf(e.getCause()));
+        }
+    }
+
+    /**
+     * 在工作线程上等待读取完成，调用线程拿到的结果不再阻塞
+     */
+    private static CacheGetResult<Object> completed(CacheGetResult<Object> result) {
+        result.getResultCode();
+        return result;
+    }
+
+    private static CacheGetResult<Object> failed(String message) {
+        return new CacheGetResult<>(CacheResultCode.FAIL, message, null);
+    }
+
+    private Map<RemoteShard, Map<String, Object>> split(Map<String, ?> entries) {
+        Map<RemoteShard, Map<String, Object>> split = new LinkedHashMap<>();
+        entries.forEach((key, value) -> split.computeIfAbsent(shardFor(key), s -> new HashMap<>()).put(key, value));
+        return split;
+    }
+
+    /**
+     * 按JetCache远程缓存的配置为一个Redis实例创建分片
+     * 键前缀、键转换器、值编解码器和过期时间与模板相同，保证任一分片写入的值都能被正常读取
+     */
+    @SuppressWarnings("unchecked")
+    private RemoteShard createShard(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid remote cache shard address: " + address);
+        }
+        String host = address.substring(0, separator);
+        int port = Integer.parseInt(address.substring(separator + 1));
+
+        LettuceConnectionFactory connectionFactory = createConnectionFactory(
+                new RedisStandaloneConfiguration(host, port), true);
+        Cache<String, Object> cache = buildCache(connectionFactory);
+        Cache<String, Object> hedgeCache = hedgeEnabled
+                ? buildCache(createConnectionFactory(new RedisStandaloneConfiguration(host, port), false))
+                : null;
+
+        RedisTemplate<String, Object> shardTemplate = new RedisTemplate<>();
+        shardTemplate.setConnectionFactory(connectionFactory);
+        shardTemplate.setKeySerializer(redisTemplate.getKeySerializer());
+        shardTemplate.setValueSerializer(redisTemplate.getValueSerializer());
+        shardTemplate.setHashKeySerializer(redisTemplate.getHashKeySerializer());
+        shardTemplate.setHashValueSerializer(redisTemplate.getHashValueSerializer());
+        shardTemplate.afterPropertiesSet();
+
+        return new RemoteShard(address, cache, shardTemplate, hedgeCache);
+    }
+
+    /**
+     * 创建访问一个Redis实例的连接工厂，复用主连接工厂的客户端配置
+     *
+     * @param standalone Redis实例地址
+     * @param shareNativeConnection 是否共享一个多路复用连接，为false时每次操作从连接池借用独立连接
+     * @return 已初始化的连接工厂
+     */
+    private LettuceConnectionFactory createConnectionFactory(RedisStandaloneConfiguration standalone,
+                                                             boolean shareNativeConnection) {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                standalone, redisConnectionFactory.getClientConfiguration());
+        connectionFactory.setShareNativeConnection(shareNativeConnection);
+        connectionFactory.afterPropertiesSet();
+        connectionFactories.add(connectionFactory);
+        return connectionFactory;
+    }
+
+    /**
+     * 按JetCache远程缓存的配置创建访问指定连接工厂的远程缓存
+     */
+    @SuppressWarnings("unchecked")
+    private Cache<String, Object> buildCache(LettuceConnectionFactory connectionFactory) {
+        ExternalCacheConfig<Object, Object> template =
+                (ExternalCacheConfig<Object, Object>) (CacheConfig<?, ?>) jetcacheRemote.config();
+        return (Cache<String, Object>) (Cache<?, ?>) RedisSpringDataCacheBuilder.createBuilder()
+                .connectionFactory(connectionFactory)
+                .keyPrefix(template.getKeyPrefix())
+                .keyConvertor(template.getKeyConvertor())
+                .valueEncoder(template.getValueEncoder())
+                .valueDecoder(template.getValueDecoder())
+                .expireAfterWrite(template.getExpireAfterWriteInMillis(), TimeUnit.MILLISECONDS)
+                .buildCache();
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.cache.manager;
+
+import com.example.cache.metrics.CacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 远程缓存熔断器
+ * 统计最近若干次远程缓存操作的结果，失败或超出延迟预算的比例达到阈值时打开，
+ * 打开期间远程缓存操作立即失败，读取由本地缓存（必要时是宽限期内的旧值）或数据源提供，写入快速拒绝。
+ * <p>
+ * 打开一段时间后进入半开状态，放行少量读取作为探测：探测全部成功则关闭并通知恢复监听器，
+ * 任一探测失败则重新打开。半开状态下仍拒绝写入，恢复后由监听器补做被拒绝写入的失效
+ * <p>
+ * 关闭状态下判断是否放行只读取一个volatile字段；记录结果时持有对象锁，临界区只更新计数，
+ * 相对于一次Redis往返可以忽略
+ */
+@Slf4j
+@Component
+public class RemoteCircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /**
+         * 正常放行
+         */
+        CLOSED,
+        /**
+         * 拒绝所有远程缓存操作
+         */
+        OPEN,
+        /**
+         * 放行少量读取探测Redis是否恢复，拒绝写入
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * 是否启用熔断
+     */
+    @Value("${cache.remote.breaker.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 统计的最近操作次数
+     */
+    @Value("${cache.remote.breaker.window-size:100}")
+    private int windowSize;
+
+    /**
+     * 窗口内至少有多少次操作才判断是否打开
+     */
+    @Value("${cache.remote.breaker.minimum-calls:20}")
+    private int minimumCalls;
+
+    /**
+     * 失败或超出延迟预算的操作比例达到该值时打开
+     */
+    @Value("${cache.remote.breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    /**
+     * 打开后进入半开状态前的等待时间（毫秒）
+     */
+    @Value("${cache.remote.breaker.open-millis:5000}")
+    private long openMillis;
+
+    /**
+     * 半开状态下放行的探测次数，全部成功后关闭
+     */
+    @Value("${cache.remote.breaker.half-open-calls:5}")
+    private int halfOpenCalls;
+
+    /**
+     * 远程缓存读取的延迟预算（毫秒），超出的读取按失败统计
+     */
+    @Value("${cache.remote.budget.read-millis:100}")
+    private long readBudgetMillis;
+
+    /**
+     * 远程缓存写入和删除的延迟预算（毫秒），超出的写入按失败统计
+     */
+    @Value("${cache.remote.budget.write-millis:200}")
+    private long writeBudgetMillis;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    private volatile State state = State.CLOSED;
+
+    /**
+     * 最近操作的结果，true表示失败或超出延迟预算
+     */
+    private boolean[] outcomes;
+
+    /**
+     * 下一次记录的位置
+     */
+    private int nextOutcome;
+
+    /**
+     * 窗口内已记录的操作次数
+     */
+    private int recordedCalls;
+
+    /**
+     * 窗口内失败或超出延迟预算的操作次数
+     */
+    private int badCalls;
+
+    /**
+     * 最近一次打开或进入半开状态的时间
+     */
+    private long stateChangedAtMillis;
+
+    /**
+     * 半开状态下剩余可放行的探测次数
+     */
+    private int probePermits;
+
+    /**
+     * 半开状态下已成功的探测次数
+     */
+    private int probeSuccesses;
+
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException(
+                    "cache.remote.breaker.failure-rate-threshold must be in (0, 1]: " + failureRateThreshold);
+        }
+        outcomes = new boolean[Math.max(windowSize, 1)];
+        cacheMetrics.bindRemoteBreaker(this);
+    }
+
+    /**
+     * 注册恢复监听器
+     * 熔断器从半开状态关闭时在记录最后一次探测结果的线程上调用，监听器应尽快返回
+     *
+     * @param listener 恢复监听器
+     */
+    public void onRecovery(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    /**
+     * 判断是否放行一次远程缓存读取
+     * 打开期间超过等待时间后转为半开状态，放行有限次数的探测
+     *
+     * @return 是否放行，放行后必须调用{@link #recordSuccess}或{@link #recordFailure}
+     */
+    public boolean tryAcquire() {
+        if (!enabled || state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (state == State.OPEN && now - stateChangedAtMillis >= openMillis) {
+                state = State.HALF_OPEN;
+                stateChangedAtMillis = now;
+                probePermits = halfOpenCalls;
+                probeSuccesses = 0;
+                log.info("Remote cache circuit half-open, probing with {} calls", halfOpenCalls);
+            } else if (state == State.HALF_OPEN && probePermits == 0 && now - stateChangedAtMillis >= openMillis) {
+                // 放行的探测没有记录结果（例如调用方异常退出），重新放行一轮
+                stateChangedAtMillis = now;
+                probePermits = halfOpenCalls - probeSuccesses;
+            }
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.HALF_OPEN && probePermits > 0) {
+                probePermits--;
+                return true;
+            }
+        }
+        cacheMetrics.recordBreakerRejection();
+        return false;
+    }
+
+    /**
+     * 判断是否放行写入
+     * 只有关闭状态放行，半开状态的探测只使用读取
+     *
+     * @return 是否放行
+     */
+    public boolean allowsWrites() {
+        if (!enabled || state == State.CLOSED) {
+            return true;
+        }
+        cacheMetrics.recordBreakerRejection();
+        return false;
+    }
+
+    /**
+     * 记录一次成功的远程缓存操作，耗时超出延迟预算时按失败统计
+     * 半开状态只统计探测读取，打开前发出、半开后才完成的写入不计入探测
+     *
+     * @param startNanos 开始操作时的System.nanoTime()
+     * @param write 是否为写入或删除
+     */
+    public void recordSuccess(long startNanos, boolean write) {
+        if (!enabled || (write && state == State.HALF_OPEN)) {
+            return;
+        }
+        long budgetMillis = write ? writeBudgetMillis : readBudgetMillis;
+        record(System.nanoTime() - startNanos > TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+    }
+
+    /**
+     * 记录一次失败的远程缓存操作
+     */
+    public void recordFailure() {
+        if (enabled) {
+            record(true);
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getReadBudgetMillis() {
+        return readBudgetMillis;
+    }
+
+    private void record(boolean bad) {
+        boolean recovered = false;
+        synchronized (this) {
+            switch (state) {
+                case HALF_OPEN:
+                    if (bad) {
+                        open("a probe call failed or exceeded the latency budget");
+                    } else if (++probeSuccesses >= halfOpenCalls) {
+                        state = State.CLOSED;
+                        resetWindow();
+                        recovered = true;
+                    }
+                    break;
+                case CLOSED:
+                    if (recordedCalls == outcomes.length) {
+                        if (outcomes[nextOutcome]) {
+                            badCalls--;
+                        }
+                    } else {
+                        recordedCalls++;
+                    }
+                    outcomes[nextOutcome] = bad;
+                    nextOutcome = (nextOutcome + 1) % outcomes.length;
+                    if (bad) {
+                        badCalls++;
+                    }
+                    if (recordedCalls >= minimumCalls && badCalls >= failureRateThreshold * recordedCalls) {
+                        open(badCalls + " of " + recordedCalls + " recent calls failed or exceeded the latency budget");
+                    }
+                    break;
+                default:
+                    // 打开前发出的操作在打开后才完成，结果不再统计
+                    break;
+            }
+        }
+        if (recovered) {
+            log.info("Remote cache circuit closed, Redis recovered");
+            for (Runnable listener : recoveryListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    log.warn("Remote cache recovery listener failed", e);
+                }
+            }
+        }
+    }
+
+    private void open(String reason) {
+        log.warn("Remote cache circuit opened: {}, serving from local caches for {} ms", reason, openMillis);
+        state = State.OPEN;
+        stateChangedAtMillis = System.currentTimeMillis();
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        Arrays.fill(outcomes, false);
+        nextOutcome = 0;
+        recordedCalls = 0;
+        badCalls = 0;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.Cache;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 远程缓存分片
+ * 一个Redis实例上的远程缓存，以及访问同一实例的RedisTemplate。
+ * 键的缓存值和版本号计数器总是保存在同一个分片上，乐观写入脚本可以原子地同时修改两者。
+ * 启用对冲读取时另有一个访问同一实例、但每次操作从连接池借用独立连接的远程缓存，
+ * 对冲请求不会排在共享连接上卡住的请求之后
+ */
+public final class RemoteShard {
+
+    private final String name;
+
+    private final Cache<String, Object> cache;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final Cache<String, Object> hedgeCache;
+
+    RemoteShard(String name, Cache<String, Object> cache, RedisTemplate<String, Object> redisTemplate,
+                Cache<String, Object> hedgeCache) {
+        this.name = name;
+        this.cache = cache;
+        this.redisTemplate = redisTemplate;
+        this.hedgeCache = hedgeCache;
+    }
+
+    /**
+     * 分片名称，即host:port，决定分片在哈希环上的位置
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Cache<String, Object> getCache() {
+        return cache;
+    }
+
+    public RedisTemplate<String, Object> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    /**
+     * 对冲读取使用的远程缓存，未启用对冲读取时为null
+     */
+    public Cache<String, Object> getHedgeCache() {
+        return hedgeCache;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.cache.manager;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * 带标签的缓存值
+ * 写入时附带的标签随值一起保存在远程缓存中，任一节点把它读入本地缓存时都能据此建立本地标签索引，
+ * 按标签失效时不需要事先知道其他节点缓存了哪些键
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class TaggedValue extends VersionedValue {
+
+    /**
+     * 序列化版本ID
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 写入时附带的标签
+     */
+    private Set<String> tags;
+
+    public TaggedValue(Object value, long version, Set<String> tags) {
+        super(value, version);
+        this.tags = tags;
+    }
+}
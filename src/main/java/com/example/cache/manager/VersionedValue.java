@@ -0,0 +1,113 @@
+package com.example.cache.manager;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 带版本号的缓存值
+ * 本地缓存和远程缓存中保存的值都带有写入时的版本号，
+ * 使延迟或乱序到达的失效消息不会清除更新的值
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionedValue implements Serializable {
+
+    /**
+     * 序列化版本ID
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 未知版本
+     * 回源加载的值没有对应的写入版本，任何失效消息都会清除它
+     */
+    public static final long UNKNOWN_VERSION = 0L;
+
+    /**
+     * 实际缓存的值
+     */
+    private Object value;
+
+    /**
+     * 写入时分配的版本号
+     * 同一个键的版本号单调递增
+     */
+    private long version;
+
+    /**
+     * 创建表示数据不存在的负缓存条目
+     * 负缓存条目的值为null，版本号未知，任何失效消息都会清除它
+     * 
+     * @return 负缓存条目
+     */
+    public static VersionedValue absent() {
+        return new VersionedValue(null, UNKNOWN_VERSION);
+    }
+
+    /**
+     * 创建带版本号的缓存值，有标签时创建带标签的缓存值
+     *
+     * @param value 实际值
+     * @param version 版本号
+     * @param tags 标签，可以为空
+     * @return 缓存值
+     */
+    public static VersionedValue of(Object value, long version, Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return new VersionedValue(value, version);
+        }
+        return new TaggedValue(value, version, new LinkedHashSet<>(tags));
+    }
+
+    /**
+     * 判断缓存中保存的对象是否为负缓存条目
+     * 
+     * @param cached 缓存中读取到的对象
+     * @return 是否为负缓存条目
+     */
+    public static boolean isAbsent(Object cached) {
+        return cached instanceof VersionedValue && ((VersionedValue) cached).getValue() == null;
+    }
+
+    /**
+     * 取出缓存中保存的实际值
+     * 兼容升级前写入的未包装的值
+     * 
+     * @param cached 缓存中读取到的对象
+     * @return 实际值
+     */
+    public static Object unwrap(Object cached) {
+        return cached instanceof VersionedValue ? ((VersionedValue) cached).getValue() : cached;
+    }
+
+    /**
+     * 获取缓存中保存的版本号
+     * 
+     * @param cached 缓存中读取到的对象
+     * @return 版本号，未包装的值返回未知版本
+     */
+    public static long versionOf(Object cached) {
+        return cached instanceof VersionedValue ? ((VersionedValue) cached).getVersion() : UNKNOWN_VERSION;
+    }
+
+    /**
+     * 获取缓存中保存的标签
+     *
+     * @param cached 缓存中读取到的对象
+     * @return 标签，没有标签时返回空集合
+     */
+    public static Set<String> tagsOf(Object cached) {
+        if (cached instanceof TaggedValue && ((TaggedValue) cached).getTags() != null) {
+            return ((TaggedValue) cached).getTags();
+        }
+        return Collections.emptySet();
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.cache.metrics;
+
+import com.example.cache.listener.PartitionedInvalidationExecutor;
+import com.example.cache.manager.HotKeyDetector;
+import com.example.cache.manager.LocalCacheSizer;
+import com.example.cache.manager.OffHeapCacheTier;
+import com.example.cache.manager.RemoteCircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存指标
+ * 统一注册各级缓存的命中、耗时、锁等待和失效消息延迟指标，通过Actuator导出。
+ * 所有计量器在启动时创建并保存为字段，热点路径上只做计数和记录，不查找计量器也不分配对象
+ * <ul>
+ *     <li>cache.tier.gets：各级缓存的读取次数，按cache、tier、result（hit/miss/error）区分</li>
+ *     <li>cache.tier.hit.ratio：各级缓存启动以来的命中率</li>
+ *     <li>cache.offheap.used.bytes、cache.offheap.entries：堆外缓存层占用的字节数和条目数量</li>
+ *     <li>cache.tier.latency：各级缓存的操作耗时直方图，按operation区分，批量操作单独记录</li>
+ *     <li>cache.local.admissions：远程缓存读到的值是否准入本地缓存，按result（admitted/rejected）区分</li>
+ *     <li>cache.local.hot.keys：当前的热点键数量</li>
+ *     <li>cache.local.max.bytes、cache.local.weighted.bytes：本地缓存的容量和条目估算字节数之和</li>
+ *     <li>cache.local.heap.after.gc：最近一次GC后的堆占用比例，本地缓存据此调整容量</li>
+ *     <li>cache.bloom.rejections：布隆过滤器判断一定不存在、未访问远程缓存的读取次数</li>
+ *     <li>cache.lock.wait：获取分布式锁的等待时间，按result（acquired/timeout）区分</li>
+ *     <li>cache.invalidation.lag：失效消息从发布到在本节点生效的延迟</li>
+ *     <li>cache.invalidation.apply：监听器处理一批失效消息的耗时</li>
+ *     <li>cache.invalidation.keys：收到的失效键数量，按result（invalidated/skipped）区分</li>
+ *     <li>cache.invalidation.queue.size：失效分区队列中等待执行的任务数</li>
+ *     <li>cache.invalidation.queue.overflow：分区队列已满、在订阅线程直接执行的失效任务数</li>
+ *     <li>cache.invalidation.stream.replayed：重连后从Stream补读的条目数</li>
+ *     <li>cache.invalidation.stream.gaps：因Stream已被裁剪、可能错过消息而清空本地缓存的次数</li>
+ *     <li>cache.remote.breaker.state：远程缓存熔断器的状态，0关闭、1半开、2打开</li>
+ *     <li>cache.remote.breaker.rejections：熔断期间被立即拒绝的远程缓存操作和写入次数</li>
+ * </ul>
+ */
+@Component
+public class CacheMetrics {
+
+    private static final Duration MIN_EXPECTED_LATENCY = Duration.ofNanos(1000);
+
+    private static final Duration MAX_EXPECTED_LATENCY = Duration.ofSeconds(30);
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    private TierMeters local;
+
+    private TierMeters offHeap;
+
+    private TierMeters remote;
+
+    private Counter admitted;
+
+    private Counter rejected;
+
+    private Counter bloomRejections;
+
+    private Timer lockAcquired;
+
+    private Timer lockTimeout;
+
+    private Timer invalidationLag;
+
+    private Timer invalidationApply;
+
+    private Counter invalidatedKeys;
+
+    private Counter skippedKeys;
+
+    private Counter invalidationOverflow;
+
+    private Counter streamReplayed;
+
+    private Counter streamGaps;
+
+    private Counter breakerRejections;
+
+    @PostConstruct
+    public void init() {
+        local = new TierMeters(registry, "localCache", "l1");
+        offHeap = new TierMeters(registry, "offHeapCache", "l1.5");
+        remote = new TierMeters(registry, "remoteCache", "l2");
+        admitted = Counter.builder("cache.local.admissions").tag("result", "admitted").register(registry);
+        rejected = Counter.builder("cache.local.admissions").tag("result", "rejected").register(registry);
+        Gauge.builder("cache.local.hot.keys", hotKeyDetector, HotKeyDetector::hotKeyCount)
+                .description("当前的热点键数量")
+                .register(registry);
+        bloomRejections = Counter.builder("cache.bloom.rejections").register(registry);
+        lockAcquired = latencyTimer("cache.lock.wait", "获取分布式锁的等待时间").tag("result", "acquired").register(registry);
+        lockTimeout = latencyTimer("cache.lock.wait", "获取分布式锁的等待时间").tag("result", "timeout").register(registry);
+        invalidationLag = latencyTimer("cache.invalidation.lag", "失效消息从发布到在本节点生效的延迟").register(registry);
+        invalidationApply = latencyTimer("cache.invalidation.apply", "处理一批失效消息的耗时").register(registry);
+        invalidatedKeys = Counter.builder("cache.invalidation.keys").tag("result", "invalidated").register(registry);
+        skippedKeys = Counter.builder("cache.invalidation.keys").tag("result", "skipped").register(registry);
+        invalidationOverflow = Counter.builder("cache.invalidation.queue.overflow").register(registry);
+        streamReplayed = Counter.builder("cache.invalidation.stream.replayed").register(registry);
+        streamGaps = Counter.builder("cache.invalidation.stream.gaps").register(registry);
+        breakerRejections = Counter.builder("cache.remote.breaker.rejections").register(registry);
+    }
+
+    /**
+     * 本地缓存（一级缓存）指标
+     */
+    public TierMeters local() {
+        return local;
+    }
+
+    /**
+     * 堆外缓存层指标
+     */
+    public TierMeters offHeap() {
+        return offHeap;
+    }
+
+    /**
+     * 注册堆外缓存层的容量指标
+     *
+     * @param tier 已启用的堆外缓存层
+     */
+    public void bindOffHeap(OffHeapCacheTier tier) {
+        Gauge.builder("cache.offheap.used.bytes", tier, OffHeapCacheTier::usedBytes)
+                .description("堆外缓存层有效条目占用的字节数")
+                .register(registry);
+        Gauge.builder("cache.offheap.entries", tier, OffHeapCacheTier::size)
+                .description("堆外缓存层的条目数量")
+                .register(registry);
+    }
+
+    /**
+     * 注册本地缓存的容量指标
+     *
+     * @param sizer 本地缓存容量调节器
+     */
+    public void bindLocalSizing(LocalCacheSizer sizer) {
+        Gauge.builder("cache.local.max.bytes", sizer, LocalCacheSizer::getMaximumBytes)
+                .description("本地缓存的容量（字节）")
+                .register(registry);
+        Gauge.builder("cache.local.weighted.bytes", sizer, LocalCacheSizer::getWeightedBytes)
+                .description("本地缓存条目估算字节数之和")
+                .register(registry);
+        Gauge.builder("cache.local.heap.after.gc", sizer, LocalCacheSizer::getHeapOccupancyAfterGc)
+                .description("最近一次GC后的堆占用比例，尚未发生GC时为-1")
+                .register(registry);
+    }
+
+    /**
+     * 注册失效分区队列的长度指标
+     *
+     * @param executor 失效消息执行器
+     */
+    public void bindInvalidationQueue(PartitionedInvalidationExecutor executor) {
+        Gauge.builder("cache.invalidation.queue.size", executor, PartitionedInvalidationExecutor::queuedTasks)
+                .description("失效分区队列中等待执行的任务数")
+                .register(registry);
+    }
+
+    /**
+     * 注册远程缓存熔断器的状态指标
+     *
+     * @param breaker 远程缓存熔断器
+     */
+    public void bindRemoteBreaker(RemoteCircuitBreaker breaker) {
+        Gauge.builder("cache.remote.breaker.state", breaker, b -> breakerStateCode(b.getState()))
+                .description("远程缓存熔断器的状态，0关闭、1半开、2打开")
+                .register(registry);
+    }
+
+    /**
+     * 远程缓存（二级缓存）指标
+     */
+    public TierMeters remote() {
+        return remote;
+    }
+
+    /**
+     * 记录一次本地缓存准入判断
+     *
+     * @param admit 是否准入
+     */
+    public void recordAdmission(boolean admit) {
+        (admit ? admitted : rejected).increment();
+    }
+
+    /**
+     * 记录一次被布隆过滤器拒绝的读取
+     */
+    public void recordBloomRejection() {
+        bloomRejections.increment();
+    }
+
+    /**
+     * 记录一次获取分布式锁的等待时间
+     *
+     * @param startNanos 开始等待时的System.nanoTime()
+     * @param acquired 是否获取成功
+     */
+    public void recordLockWait(long startNanos, boolean acquired) {
+        (acquired ? lockAcquired : lockTimeout).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一批失效消息的处理情况
+     *
+     * @param publishedAtMillis 批次的发布时间，未知时为0
+     * @param startNanos 开始处理时的System.nanoTime()
+     * @param keys 批次中的键数量
+     * @param invalidated 实际清除的键数量
+     */
+    public void recordInvalidation(long publishedAtMillis, long startNanos, int keys, int invalidated) {
+        invalidationApply.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (publishedAtMillis > 0) {
+            // 跨节点的时钟偏差可能导致负值，按0记录
+            invalidationLag.record(Math.max(0, System.currentTimeMillis() - publishedAtMillis), TimeUnit.MILLISECONDS);
+        }
+        invalidatedKeys.increment(invalidated);
+        skippedKeys.increment(keys - invalidated);
+    }
+
+    /**
+     * 记录一次分区队列溢出
+     */
+    public void recordInvalidationOverflow() {
+        invalidationOverflow.increment();
+    }
+
+    /**
+     * 记录重连后补读的Stream条目数
+     *
+     * @param entries 补读的条目数
+     */
+    public void recordStreamReplay(int entries) {
+        streamReplayed.increment(entries);
+    }
+
+    /**
+     * 记录一次因可能错过消息而清空本地缓存
+     */
+    public void recordStreamGap() {
+        streamGaps.increment();
+    }
+
+    /**
+     * 记录一次被熔断器拒绝的远程缓存操作或写入
+     */
+    public void recordBreakerRejection() {
+        breakerRejections.increment();
+    }
+
+    private static double breakerStateCode(RemoteCircuitBreaker.State state) {
+        switch (state) {
+            case HALF_OPEN:
+                return 1;
+            case OPEN:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    static Timer.Builder latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY);
+    }
+}
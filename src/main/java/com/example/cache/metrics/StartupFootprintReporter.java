@@ -0,0 +1,79 @@
+package com.example.cache.metrics;
+
+import com.example.cache.manager.RemoteCacheTier;
+import com.example.cache.manager.RemoteShard;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.RedisClientInfo;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动资源占用报告
+ * 应用就绪后输出启动耗时、堆内存、线程数，以及本应用在每个Redis实例上打开的连接数，
+ * 连接按cache.redis.client-name在CLIENT LIST中识别，用于对比调整连接配置前后的资源占用
+ */
+@Slf4j
+@Component
+public class StartupFootprintReporter {
+
+    @Value("${cache.redis.client-name:multi-level-cache}")
+    private String clientName;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RemoteCacheTier remoteTier;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        log.info("Startup footprint: ready in {} ms, heap used {} KB, {} live threads, Redis connections {}",
+                ManagementFactory.getRuntimeMXBean().getUptime(), heap.getUsed() / 1024,
+                ManagementFactory.getThreadMXBean().getThreadCount(), redisConnections());
+    }
+
+    /**
+     * 统计每个Redis实例上名称为本应用连接名称的连接数
+     * 远程缓存未分片时只统计主实例
+     */
+    private Map<String, Object> redisConnections() {
+        Map<String, Object> connections = new LinkedHashMap<>();
+        if (!StringUtils.hasText(clientName)) {
+            return connections;
+        }
+        connections.put("primary", countConnections(redisTemplate));
+        if (remoteTier.getShards().size() > 1) {
+            for (RemoteShard shard : remoteTier.getShards()) {
+                connections.put(shard.getName(), countConnections(shard.getRedisTemplate()));
+            }
+        }
+        return connections;
+    }
+
+    private Object countConnections(RedisTemplate<String, Object> template) {
+        try {
+            List<RedisClientInfo> clients = template.execute(
+                    (RedisCallback<List<RedisClientInfo>>) connection -> connection.serverCommands().getClientList());
+            if (clients == null) {
+                return "unknown";
+            }
+            return clients.stream().filter(client -> clientName.equals(client.getName())).count();
+        } catch (Exception e) {
+            log.debug("CLIENT LIST failed", e);
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.cache.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单级缓存的指标
+ * 读取次数按命中、未命中、失败分别计数，各操作的耗时记录到独立的直方图
+ */
+public class TierMeters {
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter errors;
+
+    private final Timer getTimer;
+
+    private final Timer getAllTimer;
+
+    private final Timer putTimer;
+
+    private final Timer putAllTimer;
+
+    private final Timer deleteTimer;
+
+    private final Timer deleteAllTimer;
+
+    TierMeters(MeterRegistry registry, String cacheName, String tier) {
+        hits = getCounter(registry, cacheName, tier, "hit");
+        misses = getCounter(registry, cacheName, tier, "miss");
+        errors = getCounter(registry, cacheName, tier, "error");
+        getTimer = latencyTimer(registry, cacheName, tier, "get");
+        getAllTimer = latencyTimer(registry, cacheName, tier, "get_all");
+        putTimer = latencyTimer(registry, cacheName, tier, "put");
+        putAllTimer = latencyTimer(registry, cacheName, tier, "put_all");
+        deleteTimer = latencyTimer(registry, cacheName, tier, "delete");
+        deleteAllTimer = latencyTimer(registry, cacheName, tier, "delete_all");
+        Gauge.builder("cache.tier.hit.ratio", this, TierMeters::hitRatio)
+                .description("启动以来的缓存命中率")
+                .tag("cache", cacheName)
+                .tag("tier", tier)
+                .register(registry);
+    }
+
+    /**
+     * 记录一次单键读取
+     *
+     * @param startNanos 开始读取时的System.nanoTime()
+     * @param hit 是否命中
+     */
+    public void recordGet(long startNanos, boolean hit) {
+        getTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        (hit ? hits : misses).increment();
+    }
+
+    /**
+     * 记录一次失败的单键读取
+     *
+     * @param startNanos 开始读取时的System.nanoTime()
+     */
+    public void recordGetError(long startNanos) {
+        getTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        errors.increment();
+    }
+
+    /**
+     * 记录一次批量读取
+     *
+     * @param startNanos 开始读取时的System.nanoTime()
+     * @param requested 请求的键数量
+     * @param found 命中的键数量
+     */
+    public void recordGetAll(long startNanos, int requested, int found) {
+        getAllTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        hits.increment(found);
+        misses.increment(requested - found);
+    }
+
+    public void recordPut(long startNanos) {
+        putTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPutAll(long startNanos) {
+        putAllTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDelete(long startNanos) {
+        deleteTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDeleteAll(long startNanos) {
+        deleteAllTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 启动以来的命中次数
+     */
+    public double hitCount() {
+        return hits.count();
+    }
+
+    /**
+     * 启动以来的未命中次数
+     */
+    public double missCount() {
+        return misses.count();
+    }
+
+    /**
+     * 启动以来的命中率，失败的读取不计入
+     */
+    double hitRatio() {
+        double hitCount = hits.count();
+        double total = hitCount + misses.count();
+        return total == 0 ? 0 : hitCount / total;
+    }
+
+    private static Counter getCounter(MeterRegistry registry, String cacheName, String tier, String result) {
+        return Counter.builder("cache.tier.gets")
+                .tag("cache", cacheName)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Timer latencyTimer(MeterRegistry registry, String cacheName, String tier, String operation) {
+        return CacheMetrics.latencyTimer("cache.tier.latency", "缓存操作耗时")
+                .tag("cache", cacheName)
+                .tag("tier", tier)
+                .tag("operation", operation)
+                .register(registry);
+    }
+}
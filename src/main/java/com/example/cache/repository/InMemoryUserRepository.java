@@ -0,0 +1,76 @@
+package com.example.cache.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于内存的用户信息存储
+ * 用于演示和测试，进程重启后数据丢失
+ */
+@Slf4j
+@Repository
+public class InMemoryUserRepository implements UserRepository {
+
+    private final Map<String, String> users = new ConcurrentHashMap<>();
+
+    /**
+     * 累计的写入调用次数，便于观察写入合并的效果
+     */
+    private final LongAdder writeCalls = new LongAdder();
+
+    @Override
+    public String findById(String userId) {
+        log.debug("Loading user info from store for userId: {}", userId);
+        return users.get(userId);
+    }
+
+    @Override
+    public Map<String, String> findAllById(Collection<String> userIds) {
+        log.debug("Loading {} users from store", userIds.size());
+        Map<String, String> result = new HashMap<>();
+        for (String userId : userIds) {
+            String userInfo = users.get(userId);
+            if (userInfo != null) {
+                result.put(userId, userInfo);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void save(String userId, String userInfo) {
+        writeCalls.increment();
+        users.put(userId, userInfo);
+    }
+
+    @Override
+    public void saveAll(Map<String, String> usersInfo) {
+        writeCalls.increment();
+        users.putAll(usersInfo);
+    }
+
+    @Override
+    public void delete(String userId) {
+        writeCalls.increment();
+        users.remove(userId);
+    }
+
+    @Override
+    public void deleteAll(Collection<String> userIds) {
+        writeCalls.increment();
+        users.keySet().removeAll(userIds);
+    }
+
+    /**
+     * 累计的写入调用次数
+     */
+    public long getWriteCalls() {
+        return writeCalls.sum();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.cache.repository;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 用户信息存储
+ * 缓存背后的数据源，读取未命中缓存时回源，写入时同步或由后台批量写入
+ */
+public interface UserRepository {
+
+    /**
+     * 查询用户信息
+     *
+     * @param userId 用户ID
+     * @return 用户信息，不存在时返回null
+     */
+    String findById(String userId);
+
+    /**
+     * 批量查询用户信息
+     *
+     * @param userIds 用户ID集合
+     * @return 用户ID到用户信息的映射，不存在的用户不包含在结果中
+     */
+    Map<String, String> findAllById(Collection<String> userIds);
+
+    /**
+     * 保存用户信息，已存在时覆盖
+     *
+     * @param userId 用户ID
+     * @param userInfo 用户信息
+     */
+    void save(String userId, String userInfo);
+
+    /**
+     * 按顺序批量保存用户信息
+     *
+     * @param usersInfo 用户ID到用户信息的映射
+     */
+    void saveAll(Map<String, String> usersInfo);
+
+    /**
+     * 删除用户信息
+     *
+     * @param userId 用户ID
+     */
+    void delete(String userId);
+
+    /**
+     * 批量删除用户信息
+     *
+     * @param userIds 用户ID集合
+     */
+    void deleteAll(Collection<String> userIds);
+}
@@ -0,0 +1,442 @@
+package com.example.cache.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 用户信息的延迟写入队列
+ * 写入先追加到本地日志并放入内存队列，由后台线程按写入顺序分批写入存储。
+ * 同一个用户在写入存储前的多次修改合并为最后一次，突发的大量写入只产生少量批量写入。
+ * <p>
+ * 等待写入的数量达到上限时，提交写入的线程阻塞等待，超时后抛出{@link WriteBehindOverflowException}。
+ * 批量写入失败时整批保留在队列头部，下一轮重试。
+ * 进程重启时重放日志中最后一个检查点之后的写入
+ */
+@Slf4j
+@Component
+public class UserWriteBehindQueue {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * 是否启用延迟写入，未启用时写入直接同步写入存储
+     */
+    @Value("${cache.write-behind.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 每批写入存储的最大条数
+     */
+    @Value("${cache.write-behind.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 后台写入的间隔（毫秒）
+     */
+    @Value("${cache.write-behind.flush-interval-millis:100}")
+    private long flushIntervalMillis;
+
+    /**
+     * 等待写入存储的最大用户数，达到后提交写入的线程阻塞
+     */
+    @Value("${cache.write-behind.max-pending:10000}")
+    private int maxPending;
+
+    /**
+     * 队列已满时提交写入的最长等待时间（毫秒）
+     */
+    @Value("${cache.write-behind.offer-timeout-millis:1000}")
+    private long offerTimeoutMillis;
+
+    /**
+     * 日志文件路径
+     */
+    @Value("${cache.write-behind.journal-path:${java.io.tmpdir}/multi-level-cache/write-behind.journal}")
+    private String journalPath;
+
+    /**
+     * 每次追加日志后是否强制刷盘，开启后可以在机器掉电时不丢写入，但写入延迟明显增加
+     */
+    @Value("${cache.write-behind.journal-sync:false}")
+    private boolean journalSync;
+
+    /**
+     * 队列清空时日志超过该大小（字节）则截断
+     */
+    @Value("${cache.write-behind.journal-compact-bytes:67108864}")
+    private long journalCompactBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 队列有空位时通知等待的提交线程
+     */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * 等待写入的用户，按最后一次修改的序号排序
+     */
+    private final LinkedHashMap<String, PendingWrite> pending = new LinkedHashMap<>();
+
+    /**
+     * 正在写入存储的批次
+     */
+    private final Map<String, PendingWrite> inFlight = new HashMap<>();
+
+    /**
+     * 下一个写入序号
+     */
+    private long nextSeq = 1;
+
+    private WriteBehindJournal journal;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = new WriteBehindJournal(Paths.get(journalPath), journalSync);
+        recover();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("User write-behind enabled, journal: {}, recovered {} pending writes", journalPath, pendingCount());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            // 停止前尽量写完，没写完的由下次启动时重放日志
+            while (pendingCount() > 0 && flush() > 0) {
+                // 继续写入下一批
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Failed to drain write-behind queue, {} writes left in journal", pendingCount(), e);
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Failed to close write-behind journal", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交一个用户的修改
+     *
+     * @param userId 用户ID
+     * @param userInfo 新的用户信息，null表示删除
+     */
+    public void submit(String userId, String userInfo) {
+        lock.lock();
+        try {
+            awaitCapacity(pending.containsKey(userId) ? 0 : 1);
+            enqueue(userId, userInfo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批量提交用户修改
+     *
+     * @param usersInfo 用户ID到新用户信息的映射
+     */
+    public void submitAll(Map<String, String> usersInfo) {
+        lock.lock();
+        try {
+            for (Map.Entry<String, String> entry : usersInfo.entrySet()) {
+                awaitCapacity(pending.containsKey(entry.getKey()) ? 0 : 1);
+                enqueue(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批量提交用户删除
+     *
+     * @param userIds 用户ID集合
+     */
+    public void submitDeletes(Collection<String> userIds) {
+        lock.lock();
+        try {
+            for (String userId : userIds) {
+                awaitCapacity(pending.containsKey(userId) ? 0 : 1);
+                enqueue(userId, null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 查询尚未写入存储的修改
+     * 回源时优先使用，避免读到存储中的旧值
+     *
+     * @param userId 用户ID
+     * @return 最新的未写入修改，没有时返回null
+     */
+    public PendingWrite lookup(String userId) {
+        if (!enabled) {
+            return null;
+        }
+        lock.lock();
+        try {
+            PendingWrite write = pending.get(userId);
+            return write != null ? write : inFlight.get(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待写入存储的用户数
+     */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将最早的一批修改写入存储
+     *
+     * @return 本次写入的用户数
+     */
+    public int flush() {
+        Map<String, PendingWrite> batch = takeBatch();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, String> saves = new LinkedHashMap<>();
+        List<String> deletes = new ArrayList<>();
+        batch.forEach((userId, write) -> {
+            if (write.isDelete()) {
+                deletes.add(userId);
+            } else {
+                saves.put(userId, write.getUserInfo());
+            }
+        });
+
+        try {
+            if (!deletes.isEmpty()) {
+                userRepository.deleteAll(deletes);
+            }
+            if (!saves.isEmpty()) {
+                userRepository.saveAll(saves);
+            }
+        } catch (RuntimeException e) {
+            requeue(batch);
+            throw e;
+        }
+        complete(batch);
+        return batch.size();
+    }
+
+    /**
+     * 在锁内追加日志并放入队列
+     * 同一个用户的旧修改被替换，新修改移到队尾以保持按序号排序
+     */
+    private void enqueue(String userId, String userInfo) {
+        long seq = nextSeq++;
+        journal.append(seq, userId, userInfo);
+        pending.remove(userId);
+        pending.put(userId, new PendingWrite(seq, userInfo));
+    }
+
+    /**
+     * 在锁内等待队列腾出空位
+     */
+    private void awaitCapacity(int required) {
+        if (required == 0 || pending.size() + required <= maxPending) {
+            return;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        try {
+            while (pending.size() + required > maxPending) {
+                if (remaining <= 0) {
+                    throw new WriteBehindOverflowException("Write-behind queue full with " + pending.size()
+                            + " pending writes");
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WriteBehindOverflowException("Interrupted while waiting for write-behind capacity");
+        }
+    }
+
+    /**
+     * 取出最早的一批修改并标记为正在写入
+     */
+    private Map<String, PendingWrite> takeBatch() {
+        lock.lock();
+        try {
+            Map<String, PendingWrite> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, PendingWrite>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<String, PendingWrite> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                inFlight.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            if (!batch.isEmpty()) {
+                notFull.signalAll();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入失败时把未被新修改替换的条目放回队列头部
+     */
+    private void requeue(Map<String, PendingWrite> batch) {
+        lock.lock();
+        try {
+            LinkedHashMap<String, PendingWrite> merged = new LinkedHashMap<>();
+            batch.forEach((userId, write) -> {
+                inFlight.remove(userId);
+                if (!pending.containsKey(userId)) {
+                    merged.put(userId, write);
+                }
+            });
+            merged.putAll(pending);
+            pending.clear();
+            pending.putAll(merged);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入成功后记录检查点，队列清空且日志过大时截断日志
+     */
+    private void complete(Map<String, PendingWrite> batch) {
+        lock.lock();
+        try {
+            batch.keySet().forEach(inFlight::remove);
+            if (pending.isEmpty() && inFlight.isEmpty() && journal.size() > journalCompactBytes) {
+                journal.truncate();
+                return;
+            }
+            // 队列按序号排序，检查点之前的修改都已写入存储
+            long checkpoint = nextSeq - 1;
+            if (!pending.isEmpty()) {
+                checkpoint = pending.values().iterator().next().getSeq() - 1;
+            }
+            for (PendingWrite write : inFlight.values()) {
+                checkpoint = Math.min(checkpoint, write.getSeq() - 1);
+            }
+            journal.checkpoint(checkpoint);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 重放日志中最后一个检查点之后的修改
+     */
+    private void recover() throws IOException {
+        List<WriteBehindJournal.Record> records = journal.readAll();
+        long checkpoint = 0;
+        long maxSeq = 0;
+        for (WriteBehindJournal.Record record : records) {
+            maxSeq = Math.max(maxSeq, record.getSeq());
+            if (record.isCheckpoint()) {
+                checkpoint = Math.max(checkpoint, record.getSeq());
+            }
+        }
+        for (WriteBehindJournal.Record record : records) {
+            if (record.isCheckpoint() || record.getSeq() <= checkpoint) {
+                continue;
+            }
+            pending.remove(record.getUserId());
+            pending.put(record.getUserId(), new PendingWrite(record.getSeq(), record.getUserInfo()));
+        }
+        nextSeq = maxSeq + 1;
+    }
+
+    private void flushQuietly() {
+        try {
+            while (flush() >= batchSize) {
+                // 队列中还有完整的批次，继续写入
+            }
+        } catch (Exception e) {
+            log.warn("Write-behind flush failed, {} writes pending", pendingCount(), e);
+        }
+    }
+
+    /**
+     * 尚未写入存储的修改
+     */
+    public static final class PendingWrite {
+
+        private final long seq;
+
+        private final String userInfo;
+
+        PendingWrite(long seq, String userInfo) {
+            this.seq = seq;
+            this.userInfo = userInfo;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        /**
+         * 新的用户信息，删除时为null
+         */
+        public String getUserInfo() {
+            return userInfo;
+        }
+
+        public boolean isDelete() {
+            return userInfo == null;
+        }
+    }
+}
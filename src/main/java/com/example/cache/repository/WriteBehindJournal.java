@@ -0,0 +1,264 @@
+package com.example.cache.repository;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 延迟写入日志
+ * 每个被接受的写入在进入内存队列前先追加到本地文件，批次写入存储后追加检查点，
+ * 进程崩溃重启后重放最后一个检查点之后的写入。
+ * <p>
+ * 每条记录以长度开头，崩溃时写了一半的末尾记录在恢复时被截掉，之后的记录从最后一条完整记录之后追加
+ */
+public class WriteBehindJournal implements Closeable {
+
+    static final byte TYPE_SAVE = 1;
+
+    static final byte TYPE_DELETE = 2;
+
+    static final byte TYPE_CHECKPOINT = 3;
+
+    /**
+     * 记录内容的最小长度：类型和序号
+     */
+    private static final int MIN_PAYLOAD_LENGTH = 1 + 8;
+
+    private final Path path;
+
+    private final boolean syncOnWrite;
+
+    private final FileChannel channel;
+
+    public WriteBehindJournal(Path path, boolean syncOnWrite) throws IOException {
+        this.path = path;
+        this.syncOnWrite = syncOnWrite;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // FileChannel不允许同时以READ和APPEND打开，定位到末尾后追加；截断时位置随之移到新的末尾
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.channel.position(this.channel.size());
+    }
+
+    /**
+     * 追加一条写入记录
+     *
+     * @param seq 写入序号
+     * @param userId 用户ID
+     * @param userInfo 用户信息，null表示删除
+     */
+    public synchronized void append(long seq, String userId, String userInfo) {
+        write(encode(userInfo == null ? TYPE_DELETE : TYPE_SAVE, seq, userId, userInfo));
+    }
+
+    /**
+     * 追加检查点，序号不大于检查点的写入均已写入存储
+     *
+     * @param seq 检查点序号
+     */
+    public synchronized void checkpoint(long seq) {
+        write(encode(TYPE_CHECKPOINT, seq, null, null));
+    }
+
+    /**
+     * 清空日志
+     * 只能在所有已接受的写入都写入存储后调用
+     */
+    public synchronized void truncate() {
+        try {
+            channel.truncate(0);
+            if (syncOnWrite) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 当前日志大小（字节）
+     */
+    public synchronized long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按顺序读取日志中的全部完整记录，并截掉最后一条完整记录之后的内容
+     * 必须在第一次追加之前调用，否则新记录会接在不完整的记录之后，下次恢复时被其长度吞掉
+     *
+     * @return 日志记录
+     */
+    public synchronized List<Record> readAll() throws IOException {
+        List<Record> records = new ArrayList<>();
+        long fileSize = channel.size();
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (fileSize - validLength >= 4) {
+                int length = in.readInt();
+                if (length < MIN_PAYLOAD_LENGTH || length > fileSize - validLength - 4) {
+                    // 末尾记录不完整
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                Record record = decode(payload);
+                if (record == null) {
+                    break;
+                }
+                records.add(record);
+                validLength += 4 + length;
+            }
+        } catch (EOFException e) {
+            // 读取期间文件被截短，按已读取的完整记录处理
+        }
+        if (validLength < fileSize) {
+            channel.truncate(validLength);
+            channel.force(false);
+        }
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void write(byte[] record) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (syncOnWrite) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encode(byte type, long seq, String userId, String userInfo) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            // 长度占位，写完后回填
+            out.writeInt(0);
+            out.writeByte(type);
+            out.writeLong(seq);
+            if (type != TYPE_CHECKPOINT) {
+                writeString(out, userId);
+                writeString(out, userInfo);
+            }
+            byte[] record = bytes.toByteArray();
+            ByteBuffer.wrap(record).putInt(record.length - 4);
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 解码一条记录
+     *
+     * @return 记录，内容不完整或类型未知时返回null
+     */
+    private static Record decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        byte type = buffer.get();
+        long seq = buffer.getLong();
+        if (type == TYPE_CHECKPOINT) {
+            return new Record(type, seq, null, null);
+        }
+        if (type != TYPE_SAVE && type != TYPE_DELETE) {
+            return null;
+        }
+        try {
+            String userId = readString(buffer);
+            String userInfo = readString(buffer);
+            return userId == null ? null : new Record(type, seq, userId, userInfo);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 日志记录
+     */
+    public static final class Record {
+
+        private final byte type;
+
+        private final long seq;
+
+        private final String userId;
+
+        private final String userInfo;
+
+        Record(byte type, long seq, String userId, String userInfo) {
+            this.type = type;
+            this.seq = seq;
+            this.userId = userId;
+            this.userInfo = userInfo;
+        }
+
+        public boolean isCheckpoint() {
+            return type == TYPE_CHECKPOINT;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUserInfo() {
+            return userInfo;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.cache.repository;
+
+/**
+ * 延迟写入队列已满异常
+ * 等待的写入数量达到上限，并且在超时时间内没有腾出空间时抛出
+ */
+public class WriteBehindOverflowException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WriteBehindOverflowException(String message) {
+        super(message);
+    }
+}
@@ -1,14 +1,30 @@
 package com.example.cache.service;
 
+import com.example.cache.codec.KeyPrefix;
 import com.example.cache.manager.CacheConsistencyManager;
+import com.example.cache.manager.CacheWriteResult;
+import com.example.cache.repository.UserRepository;
+import com.example.cache.repository.UserWriteBehindQueue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 用户服务类
  * 提供用户信息的增删改查操作
  * 演示了缓存在实际业务中的应用
+ * <p>
+ * 读取采用旁路缓存，未命中时回源存储；写入默认同步写入存储后更新缓存，
+ * 启用延迟写入后先放入写入队列并立即更新缓存，由后台线程合并后分批写入存储
  */
 @Slf4j
 @Service
@@ -17,54 +33,307 @@ public class UserService {
     @Autowired
     private CacheConsistencyManager cacheManager;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserWriteBehindQueue writeBehindQueue;
+
     /**
      * 用户缓存键的前缀
      * 用于构造缓存键
      */
-    private static final String USER_KEY_PREFIX = "user:";
+    private static final KeyPrefix USER_KEYS = KeyPrefix.of("user:");
 
     /**
      * 获取用户信息
-     * 模拟从数据库获取数据并更新缓存
+     * 优先读取缓存，未命中时回源数据库，并发未命中只会回源一次
      * 
      * @param userId 用户ID
      * @return 用户信息
      */
     public String getUserInfo(String userId) {
-        String key = USER_KEY_PREFIX + userId;
-        // 模拟从数据库获取用户信息
-        String userInfo = "User info for " + userId + " at " + System.currentTimeMillis();
-        // 更新缓存
-        cacheManager.updateCache(key, userInfo);
-        return userInfo;
+        String key = USER_KEYS.key(userId);
+        return cacheManager.get(key, k -> loadUserInfo(userId));
+    }
+
+    /**
+     * 异步获取用户信息
+     * 本地缓存命中时直接返回，否则在缓存工作线程读取远程缓存或回源
+     * 
+     * @param userId 用户ID
+     * @return 用户信息
+     */
+    public CompletableFuture<String> getUserInfoAsync(String userId) {
+        return cacheManager.getAsync(USER_KEYS.key(userId), k -> loadUserInfo(userId));
+    }
+
+    /**
+     * 回源获取用户信息
+     * 尚未写入存储的修改优先于存储中的值
+     * 
+     * @param userId 用户ID
+     * @return 用户信息，不存在时返回null
+     */
+    private String loadUserInfo(String userId) {
+        UserWriteBehindQueue.PendingWrite pendingWrite = writeBehindQueue.lookup(userId);
+        if (pendingWrite != null) {
+            return pendingWrite.getUserInfo();
+        }
+        return userRepository.findById(userId);
     }
 
     /**
      * 更新用户信息
-     * 模拟更新数据库并同步更新缓存
+     * 写入存储（或延迟写入队列）后更新缓存
      * 
      * @param userId 用户ID
      * @param userInfo 新的用户信息
+     * @return 缓存写入结果，未生效时存储已更新，其他节点可能在失效补做前读到旧值
      */
-    public void updateUserInfo(String userId, String userInfo) {
-        String key = USER_KEY_PREFIX + userId;
-        // 模拟更新数据库
+    public CacheWriteResult updateUserInfo(String userId, String userInfo) {
+        String key = USER_KEYS.key(userId);
+        saveToStore(userId, userInfo);
         // 更新缓存
-        cacheManager.updateCache(key, userInfo);
-        log.info("User info updated and cache updated for userId: {}", userId);
+        CacheWriteResult result = cacheManager.updateCache(key, userInfo);
+        log.info("User info updated and cache {} for userId: {}", result.getStatus(), userId);
+        return result;
+    }
+
+    /**
+     * 异步更新用户信息
+     * 写入存储（或延迟写入队列）后异步更新缓存，等待分布式锁和Redis时不占用调用线程
+     * 
+     * @param userId 用户ID
+     * @param userInfo 新的用户信息
+     * @return 缓存写入结果
+     */
+    public CompletableFuture<CacheWriteResult> updateUserInfoAsync(String userId, String userInfo) {
+        saveToStore(userId, userInfo);
+        return cacheManager.updateAsync(USER_KEYS.key(userId), userInfo)
+                .whenComplete((result, error) -> log.info("User info updated and cache {} for userId: {}",
+                        result != null ? result.getStatus() : error, userId));
     }
 
     /**
      * 删除用户信息
-     * 模拟从数据库删除并清除缓存
+     * 从存储（或延迟写入队列）删除后清除缓存
      * 
      * @param userId 用户ID
+     * @return 缓存删除结果，未生效时存储已删除，其他节点可能在失效补做前读到旧值
      */
-    public void deleteUserInfo(String userId) {
-        String key = USER_KEY_PREFIX + userId;
-        // 模拟从数据库删除
+    public CacheWriteResult deleteUserInfo(String userId) {
+        String key = USER_KEYS.key(userId);
+        deleteFromStore(userId);
         // 删除缓存
-        cacheManager.deleteCache(key);
-        log.info("User info deleted and cache evicted for userId: {}", userId);
+        CacheWriteResult result = cacheManager.deleteCache(key);
+        log.info("User info deleted and cache {} for userId: {}", result.getStatus(), userId);
+        return result;
+    }
+
+    /**
+     * 异步删除用户信息
+     * 
+     * @param userId 用户ID
+     * @return 缓存删除结果
+     */
+    public CompletableFuture<CacheWriteResult> deleteUserInfoAsync(String userId) {
+        deleteFromStore(userId);
+        return cacheManager.deleteAsync(USER_KEYS.key(userId))
+                .whenComplete((result, error) -> log.info("User info deleted and cache {} for userId: {}",
+                        result != null ? result.getStatus() : error, userId));
+    }
+
+    /**
+     * 批量获取用户信息
+     * 本地缓存未命中的用户通过一次管道请求从远程缓存获取，仍未命中的批量回源
+     * 
+     * @param userIds 用户ID集合
+     * @return 用户ID到用户信息的映射
+     */
+    public Map<String, String> getUsersInfo(Collection<String> userIds) {
+        Map<String, String> keyToUserId = toKeyMap(userIds);
+        return toUserMap(keyToUserId, cacheManager.getAll(keyToUserId.keySet(), this::loadUsersInfo));
+    }
+
+    /**
+     * 异步批量获取用户信息
+     * 
+     * @param userIds 用户ID集合
+     * @return 用户ID到用户信息的映射
+     */
+    public CompletableFuture<Map<String, String>> getUsersInfoAsync(Collection<String> userIds) {
+        Map<String, String> keyToUserId = toKeyMap(userIds);
+        return cacheManager.getAllAsync(keyToUserId.keySet(), this::loadUsersInfo)
+                .thenApply(cached -> toUserMap(keyToUserId, cached));
+    }
+
+    /**
+     * 批量更新用户信息
+     * 
+     * @param usersInfo 用户ID到新用户信息的映射
+     * @return 缓存是否已更新，未更新时存储已更新，其他节点可能在失效补做前读到旧值
+     */
+    public boolean updateUsersInfo(Map<String, String> usersInfo) {
+        Map<String, String> entries = new HashMap<>();
+        usersInfo.forEach((userId, userInfo) -> entries.put(USER_KEYS.key(userId), userInfo));
+        saveAllToStore(usersInfo);
+        // 批量更新缓存
+        boolean applied = cacheManager.putAll(entries);
+        log.info("User info updated for {} users, cache updated: {}", usersInfo.size(), applied);
+        return applied;
+    }
+
+    /**
+     * 异步批量更新用户信息
+     * 
+     * @param usersInfo 用户ID到新用户信息的映射
+     * @return 缓存是否已更新
+     */
+    public CompletableFuture<Boolean> updateUsersInfoAsync(Map<String, String> usersInfo) {
+        Map<String, String> entries = new HashMap<>();
+        usersInfo.forEach((userId, userInfo) -> entries.put(USER_KEYS.key(userId), userInfo));
+        saveAllToStore(usersInfo);
+        return cacheManager.putAllAsync(entries)
+                .whenComplete((applied, error) -> log.info("User info updated for {} users, cache updated: {}",
+                        usersInfo.size(), applied != null ? applied : error));
+    }
+
+    /**
+     * 批量删除用户信息
+     * 
+     * @param userIds 用户ID集合
+     * @return 缓存是否已删除，未删除时存储已删除，其他节点可能在失效补做前读到旧值
+     */
+    public boolean deleteUsersInfo(Collection<String> userIds) {
+        deleteAllFromStore(userIds);
+        // 批量删除缓存
+        boolean applied = cacheManager.removeAll(toKeyMap(userIds).keySet());
+        log.info("User info deleted for {} users, cache evicted: {}", userIds.size(), applied);
+        return applied;
+    }
+
+    /**
+     * 异步批量删除用户信息
+     * 
+     * @param userIds 用户ID集合
+     * @return 缓存是否已删除
+     */
+    public CompletableFuture<Boolean> deleteUsersInfoAsync(Collection<String> userIds) {
+        deleteAllFromStore(userIds);
+        return cacheManager.removeAllAsync(toKeyMap(userIds).keySet())
+                .whenComplete((applied, error) -> log.info("User info deleted for {} users, cache evicted: {}",
+                        userIds.size(), applied != null ? applied : error));
+    }
+
+    /**
+     * 写入存储，启用延迟写入时放入写入队列
+     * 
+     * @param userId 用户ID
+     * @param userInfo 用户信息
+     */
+    private void saveToStore(String userId, String userInfo) {
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.submit(userId, userInfo);
+        } else {
+            userRepository.save(userId, userInfo);
+        }
+    }
+
+    /**
+     * 从存储删除，启用延迟写入时放入写入队列
+     * 
+     * @param userId 用户ID
+     */
+    private void deleteFromStore(String userId) {
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.submit(userId, null);
+        } else {
+            userRepository.delete(userId);
+        }
+    }
+
+    /**
+     * 批量写入存储，启用延迟写入时放入写入队列
+     * 
+     * @param usersInfo 用户ID到用户信息的映射
+     */
+    private void saveAllToStore(Map<String, String> usersInfo) {
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.submitAll(usersInfo);
+        } else {
+            userRepository.saveAll(usersInfo);
+        }
+    }
+
+    /**
+     * 批量从存储删除，启用延迟写入时放入写入队列
+     * 
+     * @param userIds 用户ID集合
+     */
+    private void deleteAllFromStore(Collection<String> userIds) {
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.submitDeletes(userIds);
+        } else {
+            userRepository.deleteAll(userIds);
+        }
+    }
+
+    /**
+     * 批量回源获取用户信息
+     * 尚未写入存储的修改优先于存储中的值，其余用户通过一次批量查询获取
+     * 
+     * @param keys 缓存键集合
+     * @return 缓存键到用户信息的映射，不存在的用户不包含在结果中
+     */
+    private Map<String, String> loadUsersInfo(Set<String> keys) {
+        Map<String, String> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            String userId = USER_KEYS.id(key);
+            UserWriteBehindQueue.PendingWrite pendingWrite = writeBehindQueue.lookup(userId);
+            if (pendingWrite == null) {
+                missing.add(userId);
+            } else if (!pendingWrite.isDelete()) {
+                result.put(key, pendingWrite.getUserInfo());
+            }
+        }
+        if (!missing.isEmpty()) {
+            userRepository.findAllById(missing)
+                    .forEach((userId, userInfo) -> result.put(USER_KEYS.key(userId), userInfo));
+        }
+        return result;
+    }
+
+    /**
+     * 将缓存键到用户信息的映射转换为用户ID到用户信息的映射，保持请求中的顺序
+     * 
+     * @param keyToUserId 缓存键到用户ID的映射
+     * @param cached 缓存键到用户信息的映射
+     * @return 用户ID到用户信息的映射
+     */
+    private static Map<String, String> toUserMap(Map<String, String> keyToUserId, Map<String, String> cached) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : keyToUserId.entrySet()) {
+            String userInfo = cached.get(entry.getKey());
+            if (userInfo != null) {
+                result.put(entry.getValue(), userInfo);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 构造缓存键到用户ID的映射，保持请求中的顺序
+     * 
+     * @param userIds 用户ID集合
+     * @return 缓存键到用户ID的映射
+     */
+    private static Map<String, String> toKeyMap(Collection<String> userIds) {
+        Map<String, String> keyToUserId = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            keyToUserId.put(USER_KEYS.key(userId), userId);
+        }
+        return keyToUserId;
     }
 }
@@ -0,0 +1,192 @@
+package com.example.cache.codec;
+
+import com.alicp.jetcache.CacheValueHolder;
+import com.example.cache.manager.TaggedValue;
+import com.example.cache.manager.VersionedValue;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryValueCodecTest {
+
+    private final BinaryValueCodec codec = newCodec();
+
+    @Test
+    void roundTripsBuiltInTypes() {
+        List<Object> values = Arrays.asList(null, "", "用户信息", Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE,
+                Integer.MIN_VALUE, 42, true, false, -0.5d, Double.NaN, new byte[]{0, 1, (byte) 0xFF});
+
+        for (Object value : values) {
+            assertThat(roundTrip(value)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void roundTripsNestedListsAndMaps() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("z", Arrays.asList(1L, "two", null));
+        map.put("a", Collections.singletonMap("nested", 3));
+        List<Object> list = new ArrayList<>(Arrays.asList(map, "tail"));
+
+        Object decoded = roundTrip(list);
+
+        assertThat(decoded).isInstanceOf(ArrayList.class).isEqualTo(list);
+        assertThat(new ArrayList<Object>(((Map<?, ?>) ((List<?>) decoded).get(0)).keySet())).containsExactly("z", "a");
+    }
+
+    @Test
+    void decodesHashMapAsLinkedHashMapInOriginalOrder() {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            map.put("key" + i, i);
+        }
+
+        Object decoded = roundTrip(map);
+
+        assertThat(decoded).isInstanceOf(LinkedHashMap.class).isEqualTo(map);
+        assertThat(new ArrayList<Object>(((Map<?, ?>) decoded).keySet())).containsExactlyElementsOf(map.keySet());
+    }
+
+    @Test
+    void keepsConcreteTypeOfOtherSerializableCollections() {
+        TreeMap<String, Integer> treeMap = new TreeMap<>(Collections.singletonMap("a", 1));
+        LinkedList<String> linkedList = new LinkedList<>(Arrays.asList("a", "b"));
+
+        assertThat(roundTrip(treeMap)).isInstanceOf(TreeMap.class).isEqualTo(treeMap);
+        assertThat(roundTrip(linkedList)).isInstanceOf(LinkedList.class).isEqualTo(linkedList);
+    }
+
+    @Test
+    void encodesJdkWrapperCollectionsGenerically() {
+        List<Object> fixedSize = Arrays.asList(1L, "two", null);
+        Map<String, Object> unmodifiable = Collections.unmodifiableMap(Collections.singletonMap("a", fixedSize));
+
+        assertThat(roundTrip(fixedSize)).isInstanceOf(ArrayList.class).isEqualTo(fixedSize);
+        assertThat(roundTrip(unmodifiable)).isInstanceOf(LinkedHashMap.class).isEqualTo(unmodifiable);
+    }
+
+    @Test
+    void roundTripsRegisteredTypes() {
+        VersionedValue versioned = VersionedValue.of("alice", 7, null);
+        VersionedValue tagged = VersionedValue.of(Arrays.asList("a", "b"), 8, Arrays.asList("tenant:1", "users"));
+
+        assertThat(roundTrip(versioned)).isEqualTo(versioned);
+        assertThat(roundTrip(tagged)).isInstanceOf(TaggedValue.class).isEqualTo(tagged);
+        assertThat(VersionedValue.isAbsent(roundTrip(VersionedValue.absent()))).isTrue();
+    }
+
+    @Test
+    void roundTripsCacheValueHolder() {
+        CacheValueHolder<Object> holder = new CacheValueHolder<>(VersionedValue.of("alice", 3, null), 60_000);
+
+        CacheValueHolder<?> decoded = (CacheValueHolder<?>) roundTrip(holder);
+
+        assertThat(decoded.getExpireTime()).isEqualTo(holder.getExpireTime());
+        assertThat(decoded.getAccessTime()).isEqualTo(holder.getAccessTime());
+        assertThat(decoded.getValue()).isEqualTo(holder.getValue());
+    }
+
+    @Test
+    void roundTripsAllowedJavaSerializableTypes() {
+        assertThat(roundTrip(new BigDecimal("12.345"))).isEqualTo(new BigDecimal("12.345"));
+    }
+
+    @Test
+    void compressesLargeValues() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append("user-").append(i % 10).append(';');
+        }
+
+        byte[] encoded = codec.encode(value.toString());
+
+        assertThat(encoded.length).isLessThan(value.length() / 2);
+        assertThat(codec.decode(encoded)).isEqualTo(value.toString());
+    }
+
+    @Test
+    void rejectsJavaSerializationOutsideAllowedPackages() {
+        assertThatThrownBy(() -> codec.encode(new Payload("x")))
+                .isInstanceOf(CodecException.class)
+                .hasMessageContaining(Payload.class.getName());
+
+        byte[] encoded = newCodec().allowJavaPackages(Payload.class.getPackage().getName()).encode(new Payload("x"));
+        assertThatThrownBy(() -> codec.decode(encoded)).isInstanceOf(CodecException.class);
+    }
+
+    @Test
+    void checksEveryJavaSerializedTypeWhenEncoding() {
+        // 集合本身允许Java序列化，其中的元素不允许，编码时就失败，不写入解码不了的数据
+        LinkedList<Object> list = new LinkedList<>(Collections.singletonList(new Payload("x")));
+
+        assertThatThrownBy(() -> codec.encode(list))
+                .isInstanceOf(CodecException.class)
+                .hasMessageContaining(Payload.class.getName());
+        assertThat(newCodec().allowJavaPackages(Payload.class.getPackage().getName()).encode(list)).isNotEmpty();
+    }
+
+    @Test
+    void rejectsLengthsBeyondRemainingInput() {
+        // 列表声明了Integer.MAX_VALUE个元素，但后面没有数据
+        byte[] list = {BinaryValueCodec.MAGIC, BinaryValueCodec.FORMAT_VERSION, 0, 7, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, 0x07};
+        // 压缩数据声明了远超压缩比的原始长度
+        byte[] compressed = {BinaryValueCodec.MAGIC, BinaryValueCodec.FORMAT_VERSION, 1, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, 0x07, 0x10, 0x01};
+
+        assertThatThrownBy(() -> codec.decode(list)).isInstanceOf(CodecException.class);
+        assertThatThrownBy(() -> codec.decode(compressed)).isInstanceOf(CodecException.class);
+    }
+
+    @Test
+    void rejectsTruncatedInput() {
+        byte[] encoded = codec.encode(Arrays.asList("alice", "bob"));
+
+        for (int length = 3; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThatThrownBy(() -> codec.decode(truncated)).isInstanceOf(CodecException.class);
+        }
+    }
+
+    @Test
+    void recognizesOnlyOwnFormat() {
+        assertThat(codec.isEncoded(codec.encode("alice"))).isTrue();
+        assertThat(codec.isEncoded("{\"name\":\"alice\"}".getBytes())).isFalse();
+        assertThat(codec.isEncoded(new byte[]{(byte) 0xAC, (byte) 0xED, 0, 5})).isFalse();
+        assertThatThrownBy(() -> codec.decode("alice".getBytes())).isInstanceOf(CodecException.class);
+    }
+
+    private Object roundTrip(Object value) {
+        return codec.decode(codec.encode(value));
+    }
+
+    private static BinaryValueCodec newCodec() {
+        return new BinaryValueCodec(256)
+                .register(BinaryValueCodec.FIRST_CUSTOM_TAG, VersionedValue.class, new VersionedValueSerializer())
+                .register(BinaryValueCodec.FIRST_CUSTOM_TAG + 1, TaggedValue.class, new TaggedValueSerializer());
+    }
+
+    static class Payload implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        Payload(String name) {
+            this.name = name;
+        }
+    }
+}
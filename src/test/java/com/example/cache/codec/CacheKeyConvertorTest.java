@@ -0,0 +1,28 @@
+package com.example.cache.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheKeyConvertorTest {
+
+    private final CacheKeyConvertor convertor = new CacheKeyConvertor(new ObjectMapper());
+
+    @Test
+    void passesStringAndIntegralKeysWithoutJson() {
+        // 与fastjson转换器的结果相同，切换后已有的键仍能命中
+        assertThat(convertor.apply("user:42")).isEqualTo("user:42");
+        assertThat(convertor.apply(42L)).isEqualTo("42");
+        assertThat(convertor.apply(7)).isEqualTo("7");
+        assertThat(convertor.apply(new StringBuilder("user:7"))).isEqualTo("user:7");
+        assertThat(convertor.apply(null)).isNull();
+    }
+
+    @Test
+    void serializesCompositeKeysAsJson() {
+        assertThat(convertor.apply(Arrays.asList("user", 42))).isEqualTo("[\"user\",42]");
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.cache.codec;
+
+import com.alicp.jetcache.CacheValueHolder;
+import com.alicp.jetcache.support.JavaValueEncoder;
+import com.example.cache.config.RedisConfig;
+import com.example.cache.manager.TaggedValue;
+import com.example.cache.manager.VersionedValue;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.File;
+import java.io.InvalidClassException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 滚动发布期间新节点读取旧节点写入的值
+ */
+class CodecRedisSerializerTest {
+
+    private final BinaryValueCodec codec = new BinaryValueCodec(256)
+            .register(BinaryValueCodec.FIRST_CUSTOM_TAG, VersionedValue.class, new VersionedValueSerializer())
+            .register(BinaryValueCodec.FIRST_CUSTOM_TAG + 1, TaggedValue.class, new TaggedValueSerializer())
+            .allowJavaPackages("com.example.cache.manager");
+
+    /**
+     * 旧节点的值序列化器，只用于写入旧格式的数据
+     */
+    private final Jackson2JsonRedisSerializer<Object> legacySerializer = legacyJsonSerializer();
+
+    @SuppressWarnings("unchecked")
+    private final RedisSerializer<Object> serializer = (RedisSerializer<Object>) new RedisConfig()
+            .redisTemplate(mock(RedisConnectionFactory.class), codec).getValueSerializer();
+
+    private final Function<byte[], Object> remoteDecoder = new RedisConfig().cacheValueDecoder(codec);
+
+    @Test
+    void writesCodecFormat() {
+        byte[] bytes = serializer.serialize("alice");
+
+        assertThat(codec.isEncoded(bytes)).isTrue();
+        assertThat(serializer.deserialize(bytes)).isEqualTo("alice");
+    }
+
+    @Test
+    void readsLegacyJsonValues() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("name", "alice");
+        value.put("roles", Arrays.asList("admin", "user"));
+
+        assertThat(serializer.deserialize(legacySerializer.serialize("alice"))).isEqualTo("alice");
+        assertThat(serializer.deserialize(legacySerializer.serialize(value))).isEqualTo(value);
+    }
+
+    @Test
+    void mapsNullToEmptyBytes() {
+        assertThat(serializer.serialize(null)).isEmpty();
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+        assertThat(serializer.deserialize(null)).isNull();
+    }
+
+    @Test
+    void wrapsCodecErrorsInSerializationException() {
+        byte[] corrupted = Arrays.copyOf(serializer.serialize(Arrays.asList("alice", "bob")), 6);
+
+        assertThatThrownBy(() -> serializer.deserialize(corrupted)).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void rejectsLegacyJsonWithTypesOutsideAllowedPackages() {
+        byte[] gadget = "[\"java.net.URL\",\"http://example.com\"]".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> serializer.deserialize(gadget)).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void remoteCacheDecoderReadsLegacyJetCacheValues() {
+        VersionedValue value = VersionedValue.of("alice", 3, Arrays.asList("users"));
+
+        byte[] legacy = JavaValueEncoder.INSTANCE.apply(new CacheValueHolder<>(value, 60_000));
+
+        assertThat(codec.isEncoded(legacy)).isFalse();
+        assertThat(((CacheValueHolder<?>) remoteDecoder.apply(legacy)).getValue()).isEqualTo(value);
+        assertThat(remoteDecoder.apply(codec.encode(value))).isEqualTo(value);
+    }
+
+    @Test
+    void remoteCacheDecoderRejectsLegacyValuesOutsideAllowedPackages() {
+        byte[] legacy = JavaValueEncoder.INSTANCE.apply(new CacheValueHolder<>(new File("/tmp"), 60_000));
+
+        assertThatThrownBy(() -> remoteDecoder.apply(legacy))
+                .isInstanceOf(CodecException.class)
+                .hasRootCauseInstanceOf(InvalidClassException.class);
+    }
+
+    @Test
+    void remoteCacheDecoderRejectsOtherJetCacheEncodings() {
+        // 与Java序列化只差最后一个字节的标识，JetCache会交给对应的解码器（例如Kryo）
+        byte[] other = {0x4A, (byte) 0x95, 0x3A, (byte) 0x81, 1, 2, 3};
+
+        assertThatThrownBy(() -> remoteDecoder.apply(other)).isInstanceOf(CodecException.class);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Jackson2JsonRedisSerializer<Object> legacyJsonSerializer() {
+        // 与升级前RedisTemplate的值序列化器配置相同
+        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(Object.class);
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        mapper.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
+        serializer.setObjectMapper(mapper);
+        return serializer;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.cache.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyPrefixTest {
+
+    private final KeyPrefix prefix = KeyPrefix.of("cache:version:");
+
+    @Test
+    void encodesLikeTheConcatenatedString() {
+        assertThat(prefix.encode("user:42")).isEqualTo("cache:version:user:42".getBytes(StandardCharsets.UTF_8));
+        // 非ASCII键回退为按UTF-8编码拼接后的字符串
+        assertThat(prefix.encode("用户:42")).isEqualTo("cache:version:用户:42".getBytes(StandardCharsets.UTF_8));
+        assertThat(KeyPrefix.of(null).encode("user:42")).isEqualTo("user:42".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void buildsAndSplitsKeys() {
+        KeyPrefix users = KeyPrefix.of("user:");
+
+        assertThat(users.key("42")).isEqualTo("user:42");
+        assertThat(users.key(42L)).isEqualTo("user:42");
+        assertThat(users.id("user:42")).isEqualTo("42");
+        assertThatThrownBy(() -> users.id("order:42")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.cache.listener;
+
+import com.example.cache.manager.CacheConsistencyManager;
+import com.example.cache.manager.CacheInvalidationPublisher;
+import com.example.cache.manager.CacheNode;
+import com.example.cache.manager.CacheUpdateBatch;
+import com.example.cache.manager.CacheUpdateMessage;
+import com.example.cache.manager.KeyBloomFilter;
+import com.example.cache.metrics.CacheMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class CacheUpdateListenerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final CacheConsistencyManager cacheManager = mock(CacheConsistencyManager.class);
+
+    private PartitionedInvalidationExecutor invalidationExecutor;
+
+    private CacheUpdateListener listener;
+
+    @BeforeEach
+    void setUp() {
+        CacheNode cacheNode = new CacheNode();
+        ReflectionTestUtils.setField(cacheNode, "configuredId", "node-a");
+        cacheNode.init();
+        // 单个分区，一批消息中的所有键在同一个任务中失效
+        invalidationExecutor = new PartitionedInvalidationExecutor();
+        ReflectionTestUtils.setField(invalidationExecutor, "cacheMetrics", mock(CacheMetrics.class));
+        ReflectionTestUtils.setField(invalidationExecutor, "workers", 1);
+        ReflectionTestUtils.setField(invalidationExecutor, "queueCapacity", 16);
+        invalidationExecutor.init();
+        listener = new CacheUpdateListener();
+        ReflectionTestUtils.setField(listener, "cacheConsistencyManager", cacheManager);
+        ReflectionTestUtils.setField(listener, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(listener, "cacheNode", cacheNode);
+        ReflectionTestUtils.setField(listener, "cacheMetrics", mock(CacheMetrics.class));
+        ReflectionTestUtils.setField(listener, "keyBloomFilter", mock(KeyBloomFilter.class));
+        ReflectionTestUtils.setField(listener, "invalidationExecutor", invalidationExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        invalidationExecutor.shutdown();
+    }
+
+    @Test
+    void ignoresBatchesFromThisNode() throws Exception {
+        listener.onMessage(message(batch("node-a", new CacheUpdateMessage("a", "update", 1))), null);
+
+        verify(cacheManager, never()).invalidateLocalCache(anyMap());
+    }
+
+    @Test
+    void invalidatesWithTheHighestVersionOfEachKey() throws Exception {
+        listener.onMessage(message(batch("node-b",
+                new CacheUpdateMessage("a", "update", 1),
+                new CacheUpdateMessage("a", "delete", 3),
+                new CacheUpdateMessage("b", "update", 2))), null);
+
+        Map<String, Long> expected = new HashMap<>();
+        expected.put("a", 3L);
+        expected.put("b", 2L);
+        verify(cacheManager, timeout(5_000)).invalidateLocalCache(expected);
+    }
+
+    private CacheUpdateBatch batch(String origin, CacheUpdateMessage... messages) {
+        CacheUpdateBatch batch = new CacheUpdateBatch();
+        batch.setOrigin(origin);
+        batch.setMessages(Arrays.asList(messages));
+        return batch;
+    }
+
+    private DefaultMessage message(CacheUpdateBatch batch) throws Exception {
+        return new DefaultMessage(CacheInvalidationPublisher.UPDATE_TOPIC.getBytes(StandardCharsets.UTF_8),
+                objectMapper.writeValueAsBytes(batch));
+    }
+}
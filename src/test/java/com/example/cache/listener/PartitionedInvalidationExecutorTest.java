@@ -0,0 +1,96 @@
+package com.example.cache.listener;
+
+import com.example.cache.metrics.CacheMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionedInvalidationExecutorTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private PartitionedInvalidationExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        CacheMetrics metrics = new CacheMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", registry);
+        metrics.init();
+        executor = new PartitionedInvalidationExecutor();
+        ReflectionTestUtils.setField(executor, "cacheMetrics", metrics);
+        ReflectionTestUtils.setField(executor, "workers", 2);
+        ReflectionTestUtils.setField(executor, "queueCapacity", 1);
+        executor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void keyAlwaysMapsToTheSamePartition() {
+        for (int i = 0; i < 100; i++) {
+            String key = "user:" + i;
+            assertThat(executor.partitionOf(key)).isEqualTo(executor.partitionOf(key)).isBetween(0, 1);
+        }
+    }
+
+    @Test
+    void partitionRunsTasksInSubmissionOrder() throws InterruptedException {
+        ReflectionTestUtils.setField(executor, "queueCapacity", 64);
+        executor.shutdown();
+        executor.init();
+        List<Integer> applied = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            int task = i;
+            executor.execute(0, () -> {
+                applied.add(task);
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 50; i++) {
+            assertThat(applied.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void fullPartitionRunsOnTheSubmittingThread() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(0, () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(0, () -> { });
+        assertThat(executor.queuedTasks()).isEqualTo(1);
+
+        // 分区的工作线程和队列都已占满，任务在提交线程执行
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        executor.execute(0, () -> ranOn.set(Thread.currentThread()));
+
+        assertThat(ranOn.get()).isSameAs(Thread.currentThread());
+        assertThat(registry.get("cache.invalidation.queue.overflow").counter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.invalidation.queue.size").gauge().value()).isEqualTo(1);
+        release.countDown();
+    }
+}
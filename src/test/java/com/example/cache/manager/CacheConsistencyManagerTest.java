@@ -0,0 +1,250 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class CacheConsistencyManagerTest extends RedisIntegrationTest {
+
+    private static final int CALLERS = 16;
+
+    @Autowired
+    private CacheConsistencyManager cacheManager;
+
+    @Autowired
+    private RemoteCacheTier remoteTier;
+
+    @Test
+    void concurrentMissesLoadOnce() throws Exception {
+        String key = uniqueKey("user");
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, String> loader = slowLoader(loads, "alice");
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cacheManager.get(key, loader);
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo("alice");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        // 之后的读取直接命中缓存
+        assertThat(cacheManager.get(key, loader)).isEqualTo("alice");
+        assertThat(cacheManager.get(key)).isEqualTo("alice");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentAsyncMissesLoadOnce() throws Exception {
+        String key = uniqueKey("user");
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, String> loader = slowLoader(loads, "bob");
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(cacheManager.getAsync(key, loader));
+        }
+
+        for (CompletableFuture<String> future : futures) {
+            assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo("bob");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void asyncCallersJoiningALoadDoNotHoldWorkerThreads() throws Exception {
+        String key = uniqueKey("user");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, String> loader = k -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "dave";
+        };
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = caller.submit(() -> cacheManager.get(key, loader));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // 等待进行中加载的调用比工作线程多，也不占用工作线程
+            List<CompletableFuture<String>> waiters = new ArrayList<>();
+            for (int i = 0; i < CALLERS * 4; i++) {
+                waiters.add(cacheManager.getAsync(key, loader));
+            }
+            ThreadPoolExecutor asyncExecutor =
+                    (ThreadPoolExecutor) ReflectionTestUtils.getField(cacheManager, "asyncExecutor");
+            assertThat(asyncExecutor.getActiveCount()).isZero();
+            assertThat(waiters).noneMatch(CompletableFuture::isDone);
+
+            release.countDown();
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("dave");
+            for (CompletableFuture<String> waiter : waiters) {
+                assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo("dave");
+            }
+        } finally {
+            release.countDown();
+            caller.shutdownNow();
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void failedLoadPropagatesAndNextCallRetries() {
+        String key = uniqueKey("user");
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThatThrownBy(() -> cacheManager.get(key, k -> {
+            loads.incrementAndGet();
+            throw new IllegalStateException("source down");
+        })).isInstanceOf(IllegalStateException.class).hasMessageContaining("source down");
+
+        // 失败的加载不留在缓存中，下一次调用重新回源
+        String loaded = cacheManager.get(key, k -> {
+            loads.incrementAndGet();
+            return "carol";
+        });
+        assertThat(loaded).isEqualTo("carol");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void batchGetLoadsOnlyMissingKeysInOneCall() {
+        String cached = uniqueKey("a");
+        String loaded = uniqueKey("b");
+        String missing = uniqueKey("c");
+        cacheManager.updateCache(cached, "alice");
+        List<Set<String>> requests = new ArrayList<>();
+        Function<Set<String>, Map<String, String>> loader = keys -> {
+            requests.add(new HashSet<>(keys));
+            return Collections.singletonMap(loaded, "bob");
+        };
+
+        Map<String, String> result = cacheManager.getAll(Arrays.asList(cached, loaded, missing), loader);
+
+        assertThat(result).containsOnly(entry(cached, "alice"), entry(loaded, "bob"));
+        assertThat(requests).containsExactly(new HashSet<>(Arrays.asList(loaded, missing)));
+        // 回源的结果已回填缓存
+        assertThat(cacheManager.getAll(Arrays.asList(cached, loaded)))
+                .containsOnly(entry(cached, "alice"), entry(loaded, "bob"));
+    }
+
+    @Test
+    void batchPutAndRemoveApplyToBothTiers() {
+        Map<String, Object> entries = new HashMap<>();
+        entries.put(uniqueKey("a"), "alice");
+        entries.put(uniqueKey("b"), "bob");
+
+        cacheManager.putAll(entries);
+
+        assertThat(cacheManager.getAll(entries.keySet())).isEqualTo(entries);
+        // 清除本地缓存后从远程缓存读到批量写入的值
+        entries.keySet().forEach(cacheManager::clearLocalCache);
+        assertThat(cacheManager.getAll(entries.keySet())).isEqualTo(entries);
+
+        cacheManager.removeAll(entries.keySet());
+
+        assertThat(cacheManager.getAll(entries.keySet())).isEmpty();
+    }
+
+    @Test
+    void invalidationOlderThanTheLocalEntryIsSkipped() {
+        String key = uniqueKey("user");
+        cacheManager.updateCache(key, "alice");
+        cacheManager.updateCache(key, "bob");
+
+        // 延迟到达的旧版本消息不清除更新后的值
+        assertThat(cacheManager.invalidateLocalCache(Collections.singletonMap(key, 1L))).isZero();
+        assertThat(cacheManager.invalidateLocalCache(Collections.singletonMap(key, 3L))).isEqualTo(1);
+    }
+
+    @Test
+    void missingValueIsNegativeCached() {
+        String key = uniqueKey("user");
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, String> loader = k -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        assertThat(cacheManager.get(key, loader)).isNull();
+        assertThat(cacheManager.get(key, loader)).isNull();
+        assertThat(cacheManager.get(key)).isNull();
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void earlyRecomputeDoesNotOverwriteConcurrentUpdate() {
+        String key = uniqueKey("user");
+        cacheManager.updateCache(key, "alice");
+
+        // 回源期间另一个调用更新了这个键，回源读到的旧数据不写入缓存
+        Function<String, String> racingLoader = k -> {
+            cacheManager.updateCache(k, "bob");
+            return "alice";
+        };
+        ReflectionTestUtils.invokeMethod(cacheManager, "recompute", key, racingLoader);
+
+        assertThat(cacheManager.get(key)).isEqualTo("bob");
+        assertThat(VersionedValue.unwrap(remoteTier.GET(key).getValue())).isEqualTo("bob");
+
+        // 版本号没有变化时正常回填
+        Function<String, String> loader = k -> "carol";
+        ReflectionTestUtils.invokeMethod(cacheManager, "recompute", key, loader);
+
+        assertThat(VersionedValue.unwrap(remoteTier.GET(key).getValue())).isEqualTo("carol");
+    }
+
+    /**
+     * 加载较慢的回源加载器，让并发调用在加载期间到达
+     */
+    private static Function<String, String> slowLoader(AtomicInteger loads, String value) {
+        return key -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        };
+    }
+}
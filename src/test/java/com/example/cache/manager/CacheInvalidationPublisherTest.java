@@ -0,0 +1,108 @@
+package com.example.cache.manager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheInvalidationPublisherTest {
+
+    private static final int MAX_BATCH_SIZE = 3;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 发布到Redis的批量消息
+     */
+    private final List<CacheUpdateBatch> published = new CopyOnWriteArrayList<>();
+
+    private CacheInvalidationPublisher publisher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.publish(any(), any())).thenAnswer(invocation -> {
+            published.add(objectMapper.readValue(invocation.<byte[]>getArgument(1), CacheUpdateBatch.class));
+            return 1L;
+        });
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+
+        publisher = new CacheInvalidationPublisher();
+        ReflectionTestUtils.setField(publisher, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(publisher, "objectMapper", objectMapper);
+        CacheNode cacheNode = new CacheNode();
+        ReflectionTestUtils.setField(cacheNode, "configuredId", "node-a");
+        cacheNode.init();
+        ReflectionTestUtils.setField(publisher, "cacheNode", cacheNode);
+        // 只在测试中显式刷新或缓冲区满时发布
+        ReflectionTestUtils.setField(publisher, "flushIntervalMillis", 3_600_000L);
+        ReflectionTestUtils.setField(publisher, "maxBatchSize", MAX_BATCH_SIZE);
+        publisher.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        publisher.shutdown();
+    }
+
+    @Test
+    void coalescesRepeatedKeysKeepingTheHighestVersion() throws Exception {
+        publisher.publish("a", "update", 1);
+        publisher.publish("b", "update", 1);
+        publisher.publish("a", "delete", 3);
+        publisher.publish("a", "update", 2);
+
+        publisher.flush();
+
+        assertThat(published).hasSize(1);
+        assertThat(published.get(0).getOrigin()).isEqualTo("node-a");
+        List<CacheUpdateMessage> messages = published.get(0).getMessages();
+        assertThat(messages).extracting(CacheUpdateMessage::getKey).containsExactly("b", "a");
+        assertThat(messages.get(1).getOperation()).isEqualTo("delete");
+        assertThat(messages.get(1).getVersion()).isEqualTo(3);
+    }
+
+    @Test
+    void splitsBatchesLargerThanTheLimit() throws Exception {
+        Map<String, Long> versions = new LinkedHashMap<>();
+        for (String key : new String[]{"a", "b", "c", "d", "e", "f", "g"}) {
+            versions.put(key, 1L);
+        }
+
+        publisher.publishAll(versions, "delete");
+        publisher.flush();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (publishedKeys().size() < versions.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // 缓冲区满时在刷新线程上发布，每个键只发布一次
+        assertThat(publishedKeys()).containsExactlyInAnyOrderElementsOf(versions.keySet());
+        assertThat(published).allSatisfy(batch -> assertThat(batch.getMessages()).hasSizeLessThanOrEqualTo(MAX_BATCH_SIZE));
+    }
+
+    private List<String> publishedKeys() {
+        return published.stream()
+                .flatMap(batch -> batch.getMessages().stream())
+                .map(CacheUpdateMessage::getKey)
+                .collect(Collectors.toList());
+    }
+}
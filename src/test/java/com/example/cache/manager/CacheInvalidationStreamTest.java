@@ -0,0 +1,148 @@
+package com.example.cache.manager;
+
+import com.example.cache.listener.CacheInvalidationStreamConsumer;
+import com.example.cache.listener.CacheUpdateListener;
+import com.example.cache.metrics.CacheMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheInvalidationStreamTest extends RedisIntegrationTest {
+
+    private static final long BLOCK_MILLIS = 100;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private CacheInvalidationPublisher publisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final CacheUpdateListener listener = mock(CacheUpdateListener.class);
+
+    private final CacheConsistencyManager cacheManager = mock(CacheConsistencyManager.class);
+
+    /**
+     * 模拟本节点与Redis断开连接
+     */
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+
+    private CacheInvalidationStreamConsumer consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void startConsumer() throws Exception {
+        RedisTemplate<String, Object> flakyTemplate = mock(RedisTemplate.class);
+        when(flakyTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation -> {
+            if (disconnected.get()) {
+                throw new RedisConnectionFailureException("disconnected");
+            }
+            return redisTemplate.execute(invocation.<RedisCallback<?>>getArgument(0));
+        });
+        // 先写入一个条目，让读取位置从一个具体的条目开始
+        append("a");
+
+        consumer = new CacheInvalidationStreamConsumer();
+        ReflectionTestUtils.setField(consumer, "redisTemplate", flakyTemplate);
+        ReflectionTestUtils.setField(consumer, "invalidationPublisher", publisher);
+        ReflectionTestUtils.setField(consumer, "cacheUpdateListener", listener);
+        ReflectionTestUtils.setField(consumer, "cacheConsistencyManager", cacheManager);
+        ReflectionTestUtils.setField(consumer, "cacheMetrics", mock(CacheMetrics.class));
+        ReflectionTestUtils.setField(consumer, "readCount", 100);
+        ReflectionTestUtils.setField(consumer, "blockMillis", BLOCK_MILLIS);
+        ReflectionTestUtils.setField(consumer, "recoveryIntervalMillis", 50L);
+        ReflectionTestUtils.setField(consumer, "streamMaxLength", 100_000L);
+        ReflectionTestUtils.setField(consumer, "streamMaxAgeMillis", 3_600_000L);
+        consumer.init();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (consumer.getLastId() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(consumer.getLastId()).isNotNull();
+    }
+
+    @AfterEach
+    void stopConsumer() throws InterruptedException {
+        consumer.shutdown();
+    }
+
+    @Test
+    void deliversAppendedBatches() throws Exception {
+        byte[] body = append("b");
+
+        verify(listener, timeout(5_000)).onBatch(body);
+    }
+
+    @Test
+    void replaysEntriesMissedWhileDisconnected() throws Exception {
+        disconnect();
+        byte[] first = append("b");
+        byte[] second = append("c");
+
+        disconnected.set(false);
+
+        verify(listener, timeout(5_000)).onBatch(first);
+        verify(listener, timeout(5_000)).onBatch(second);
+        verify(cacheManager, never()).clearLocalCaches();
+    }
+
+    @Test
+    void clearsLocalCachesWhenTheLastReadEntryWasTrimmed() throws Exception {
+        disconnect();
+        append("b");
+        redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.streamCommands().xTrim(CacheInvalidationPublisher.UPDATE_STREAM_BYTES, 0));
+        byte[] afterTrim = append("c");
+
+        disconnected.set(false);
+
+        verify(cacheManager, timeout(5_000)).clearLocalCaches();
+        verify(listener, timeout(5_000)).onBatch(afterTrim);
+        verify(listener, after(2 * BLOCK_MILLIS).times(1)).onBatch(any());
+    }
+
+    /**
+     * 断开连接并等待读取线程发现读取失败
+     */
+    private void disconnect() {
+        disconnected.set(true);
+        verify(listener, after(3 * BLOCK_MILLIS).never()).onBatch(any());
+    }
+
+    /**
+     * 以另一个节点的身份向Stream追加一条批量消息
+     */
+    private byte[] append(String name) throws Exception {
+        CacheUpdateBatch batch = new CacheUpdateBatch("node-b",
+                Collections.singletonList(new CacheUpdateMessage(uniqueKey(name), "delete", 1)),
+                System.currentTimeMillis(), Collections.emptyList());
+        byte[] body = objectMapper.writeValueAsBytes(batch);
+        RecordId id = redisTemplate.execute((RedisCallback<RecordId>) connection -> connection.streamCommands()
+                .xAdd(MapRecord.create(CacheInvalidationPublisher.UPDATE_STREAM_BYTES,
+                        Collections.singletonMap(CacheInvalidationPublisher.BATCH_FIELD, body))));
+        assertThat(id).isNotNull();
+        return body;
+    }
+}
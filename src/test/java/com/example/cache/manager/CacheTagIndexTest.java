@@ -0,0 +1,67 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheTagIndexTest extends RedisIntegrationTest {
+
+    @Autowired
+    private CacheConsistencyManager cacheManager;
+
+    @Autowired
+    private RemoteCacheTier remoteTier;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Test
+    void invalidatesOnlyKeysWithTheTag() {
+        String tag = uniqueKey("tenant");
+        String first = uniqueKey("user");
+        String second = uniqueKey("user");
+        String untagged = uniqueKey("user");
+        cacheManager.updateCache(first, "alice", Collections.singleton(tag));
+        cacheManager.updateCache(second, "bob", Collections.singleton(tag));
+        cacheManager.updateCache(untagged, "carol");
+
+        assertThat(cacheManager.invalidateTag(tag)).isEqualTo(2);
+
+        assertThat(remoteTier.GET(first).isSuccess()).isFalse();
+        assertThat(remoteTier.GET(second).isSuccess()).isFalse();
+        assertThat(cacheManager.get(first)).isNull();
+        assertThat(cacheManager.get(untagged)).isEqualTo("carol");
+        // 失效后标签集合已删除，本地索引中也不再有这些键
+        assertThat(redisTemplate.hasKey(CacheTagIndex.TAG_KEYS.key(tag))).isFalse();
+        assertThat(cacheManager.localKeysForTag(tag)).isEmpty();
+    }
+
+    @Test
+    void keysWrittenAfterInvalidationGoToANewIndex() {
+        String tag = uniqueKey("tenant");
+        String before = uniqueKey("user");
+        String after = uniqueKey("user");
+        cacheManager.updateCache(before, "alice", Collections.singleton(tag));
+        cacheManager.invalidateTag(tag);
+
+        cacheManager.updateCache(after, "bob", Collections.singleton(tag));
+
+        assertThat(cacheManager.invalidateTag(tag)).isEqualTo(1);
+        assertThat(remoteTier.GET(after).isSuccess()).isFalse();
+    }
+
+    @Test
+    void localIndexTracksTaggedEntriesForRemoteMessages() {
+        String tag = uniqueKey("tenant");
+        String key = uniqueKey("user");
+        cacheManager.updateCache(key, "alice", Collections.singleton(tag));
+
+        // 其他节点发布的标签失效消息按本地索引删除，取出后索引中不再保留
+        assertThat(cacheManager.localKeysForTag(tag)).containsExactly(key);
+        assertThat(cacheManager.localKeysForTag(tag)).isEmpty();
+    }
+}
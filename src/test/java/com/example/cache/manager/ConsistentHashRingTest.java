@@ -0,0 +1,142 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsistentHashRingTest {
+
+    private static final int VIRTUAL_NODES = 160;
+
+    private static final int KEY_COUNT = 100_000;
+
+    @Test
+    void distributesKeysEvenlyAcrossNodes() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(4), VIRTUAL_NODES);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String key : keys(KEY_COUNT)) {
+            counts.merge(ring.nodeFor(key), 1, Integer::sum);
+        }
+
+        assertThat(counts).hasSize(4);
+        int mean = KEY_COUNT / 4;
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(mean * 8 / 10, mean * 12 / 10));
+    }
+
+    @Test
+    void sameNodesGiveSameAssignment() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(4), VIRTUAL_NODES);
+        // 节点的加入顺序不影响环上的位置，各进程按名称得到相同的归属
+        Map<String, String> reversed = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>(nodes(4).keySet());
+        for (int i = names.size() - 1; i >= 0; i--) {
+            reversed.put(names.get(i), names.get(i));
+        }
+        ConsistentHashRing<String> other = new ConsistentHashRing<>(reversed, VIRTUAL_NODES);
+
+        for (String key : keys(10_000)) {
+            assertThat(other.nodeFor(key)).isEqualTo(ring.nodeFor(key));
+        }
+    }
+
+    @Test
+    void addingNodeOnlyMovesKeysToNewNode() {
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(nodes(4), VIRTUAL_NODES);
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(nodes(5), VIRTUAL_NODES);
+
+        int moved = 0;
+        for (String key : keys(KEY_COUNT)) {
+            String from = before.nodeFor(key);
+            String to = after.nodeFor(key);
+            if (!from.equals(to)) {
+                assertThat(to).isEqualTo("redis-4:6379");
+                moved++;
+            }
+        }
+
+        // 约1/5的键改变归属
+        assertThat(moved).isBetween(KEY_COUNT / 5 * 7 / 10, KEY_COUNT / 5 * 13 / 10);
+    }
+
+    @Test
+    void removingNodeOnlyMovesItsOwnKeys() {
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(nodes(4), VIRTUAL_NODES);
+        Map<String, String> remaining = nodes(4);
+        remaining.remove("redis-1:6379");
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(remaining, VIRTUAL_NODES);
+
+        for (String key : keys(KEY_COUNT)) {
+            String from = before.nodeFor(key);
+            if (!from.equals("redis-1:6379")) {
+                assertThat(after.nodeFor(key)).isEqualTo(from);
+            }
+        }
+    }
+
+    @Test
+    void partitionGroupsKeysByNodeInInputOrder() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(3), VIRTUAL_NODES);
+        List<String> keys = keys(1_000);
+
+        Map<String, List<String>> partitions = ring.partition(keys);
+
+        assertThat(partitions.values().stream().mapToInt(List::size).sum()).isEqualTo(keys.size());
+        partitions.forEach((node, nodeKeys) -> {
+            assertThat(nodeKeys).allSatisfy(key -> assertThat(ring.nodeFor(key)).isEqualTo(node));
+            assertThat(nodeKeys).isSortedAccordingTo((a, b) -> Integer.compare(keys.indexOf(a), keys.indexOf(b)));
+        });
+    }
+
+    @Test
+    void singleNodeOwnsEveryKey() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(1), VIRTUAL_NODES);
+
+        assertThat(ring.partition(keys(100))).containsOnlyKeys("redis-0:6379");
+    }
+
+    @Test
+    void rejectsEmptyRing() {
+        assertThatThrownBy(() -> new ConsistentHashRing<>(new HashMap<String, String>(), VIRTUAL_NODES))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void distributesNonAsciiKeys() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(4), VIRTUAL_NODES);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            counts.merge(ring.nodeFor("用户:" + i), 1, Integer::sum);
+        }
+
+        int mean = KEY_COUNT / 4;
+        assertThat(counts).hasSize(4);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(mean * 8 / 10, mean * 12 / 10));
+        assertThat(ConsistentHashRing.hash("用户:1")).isNotEqualTo(ConsistentHashRing.hash("用户:2"));
+    }
+
+    private static Map<String, String> nodes(int count) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = "redis-" + i + ":6379";
+            nodes.put(name, name);
+        }
+        return nodes;
+    }
+
+    private static List<String> keys(int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add("user:" + i);
+        }
+        return keys;
+    }
+}
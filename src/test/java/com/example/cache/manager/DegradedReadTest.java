@@ -0,0 +1,90 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+        "cache.remote.breaker.open-millis=200",
+        "cache.remote.breaker.half-open-calls=1"
+})
+class DegradedReadTest extends RedisIntegrationTest {
+
+    @Autowired
+    private CacheConsistencyManager cacheManager;
+
+    @Autowired
+    private RemoteCircuitBreaker breaker;
+
+    @Autowired
+    private RemoteCacheTier remoteTier;
+
+    @Value("${cache.remote.breaker.minimum-calls:20}")
+    private int minimumCalls;
+
+    @Test
+    void servesLocalCachesWhileOpenAndRecovers() throws InterruptedException {
+        String cached = uniqueKey("user");
+        String missing = uniqueKey("user");
+        String updated = uniqueKey("user");
+        cacheManager.updateCache(cached, "alice");
+        assertThat(cacheManager.get(cached)).isEqualTo("alice");
+        for (int i = 0; i < minimumCalls; i++) {
+            breaker.recordFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.OPEN);
+
+        // 熔断期间本地缓存中的值照常返回，未命中的键直接回源，结果不写入远程缓存
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, String> loader = key -> {
+            loads.incrementAndGet();
+            return "loaded";
+        };
+        assertThat(cacheManager.<String>get(cached, loader)).isEqualTo("alice");
+        assertThat(cacheManager.<String>get(missing, loader)).isEqualTo("loaded");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cacheManager.updateCache(updated, "bob").getStatus())
+                .isEqualTo(CacheWriteResult.Status.UNAVAILABLE);
+
+        // 打开时间过后写入仍被拒绝，第一次远程读取作为探测，成功后关闭熔断器
+        Thread.sleep(250);
+        assertThat(cacheManager.updateCache(updated, "bob").getStatus())
+                .isEqualTo(CacheWriteResult.Status.UNAVAILABLE);
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.OPEN);
+        assertThat(remoteTier.GET(missing).isSuccess()).isFalse();
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.CLOSED);
+        assertThat(cacheManager.updateCache(updated, "bob").isApplied()).isTrue();
+        assertThat(cacheManager.get(updated)).isEqualTo("bob");
+    }
+
+    @Test
+    void rejectedWritesInvalidateRemoteCopiesAfterRecovery() throws InterruptedException {
+        String key = uniqueKey("user");
+        cacheManager.updateCache(key, "alice");
+        for (int i = 0; i < minimumCalls; i++) {
+            breaker.recordFailure();
+        }
+
+        // 被拒绝的写入清除本节点的旧值，远程缓存中的旧值在熔断器关闭后删除
+        assertThat(cacheManager.updateCache(key, "bob").getStatus())
+                .isEqualTo(CacheWriteResult.Status.UNAVAILABLE);
+        assertThat(cacheManager.<String>get(key, k -> "bob")).isEqualTo("bob");
+        Thread.sleep(250);
+        assertThat(remoteTier.GET(uniqueKey("probe")).isSuccess()).isFalse();
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.CLOSED);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (remoteTier.GET(key).isSuccess() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(remoteTier.GET(key).isSuccess()).isFalse();
+        assertThat(cacheManager.<String>get(key, k -> "bob")).isEqualTo("bob");
+    }
+}
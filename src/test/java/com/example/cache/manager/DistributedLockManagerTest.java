@@ -0,0 +1,117 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DistributedLockManagerTest extends RedisIntegrationTest {
+
+    private static final long LEASE_MILLIS = 10_000;
+
+    @Autowired
+    private DistributedLockManager lockManager;
+
+    @Test
+    void overlappingKeySetsConflictWithoutPartialLocks() throws InterruptedException {
+        String a = uniqueKey("a");
+        String b = uniqueKey("b");
+        String c = uniqueKey("c");
+        DistributedLock held = lockManager.tryLock(Arrays.asList(a, b), 0, LEASE_MILLIS);
+        assertThat(held).isNotNull();
+
+        assertThat(lockManager.tryLock(Arrays.asList(b, c), 0, LEASE_MILLIS)).isNull();
+        // 整体失败时没有锁住其中空闲的键
+        DistributedLock onlyC = lockManager.tryLock(Collections.singleton(c), 0, LEASE_MILLIS);
+        assertThat(onlyC).isNotNull();
+        lockManager.unlock(onlyC);
+
+        lockManager.unlock(held);
+        DistributedLock afterRelease = lockManager.tryLock(Arrays.asList(b, c), 0, LEASE_MILLIS);
+        assertThat(afterRelease).isNotNull();
+        lockManager.unlock(afterRelease);
+    }
+
+    @Test
+    void duplicateKeysAreLockedOnce() throws InterruptedException {
+        String key = uniqueKey("a");
+
+        DistributedLock lock = lockManager.tryLock(Arrays.asList(key, key), 0, LEASE_MILLIS);
+
+        assertThat(lock).isNotNull();
+        lockManager.unlock(lock);
+        assertThat(lockManager.tryLock(Collections.singleton(key), 0, LEASE_MILLIS)).isNotNull();
+    }
+
+    @Test
+    void waiterRetriesUntilHolderReleases() throws InterruptedException {
+        List<String> keys = Arrays.asList(uniqueKey("a"), uniqueKey("b"));
+        DistributedLock held = lockManager.tryLock(keys, 0, LEASE_MILLIS);
+        ScheduledExecutorService releaser = Executors.newSingleThreadScheduledExecutor();
+        try {
+            releaser.schedule(() -> lockManager.unlock(held), 200, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+
+            DistributedLock waited = lockManager.tryLock(keys, 5_000, LEASE_MILLIS);
+
+            assertThat(waited).isNotNull();
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isBetween(150L, 5_000L);
+            lockManager.unlock(waited);
+        } finally {
+            releaser.shutdownNow();
+        }
+    }
+
+    @Test
+    void waiterGivesUpAfterWaitTime() throws InterruptedException {
+        List<String> keys = Collections.singletonList(uniqueKey("a"));
+        DistributedLock held = lockManager.tryLock(keys, 0, LEASE_MILLIS);
+        long start = System.nanoTime();
+
+        assertThat(lockManager.tryLock(keys, 200, LEASE_MILLIS)).isNull();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(190L);
+        lockManager.unlock(held);
+    }
+
+    @Test
+    void asyncWaiterRetriesUntilHolderReleases() throws Exception {
+        List<String> keys = Arrays.asList(uniqueKey("a"), uniqueKey("b"));
+        DistributedLock held = lockManager.tryLock(keys, 0, LEASE_MILLIS);
+
+        CompletableFuture<DistributedLock> waiting = lockManager.tryLockAsync(keys, 5_000, LEASE_MILLIS);
+        Thread.sleep(100);
+        assertThat(waiting).isNotDone();
+        lockManager.unlock(held);
+
+        DistributedLock acquired = waiting.get(5, TimeUnit.SECONDS);
+        assertThat(acquired).isNotNull();
+        lockManager.unlock(acquired);
+
+        DistributedLock blocker = lockManager.tryLock(keys, 0, LEASE_MILLIS);
+        assertThat(lockManager.tryLockAsync(keys, 100, LEASE_MILLIS).get(5, TimeUnit.SECONDS)).isNull();
+        lockManager.unlock(blocker);
+    }
+
+    @Test
+    void expiredLeaseIsNotReleasedByFormerHolder() throws InterruptedException {
+        List<String> keys = Collections.singletonList(uniqueKey("a"));
+        DistributedLock expired = lockManager.tryLock(keys, 0, 100);
+
+        // 租期过期后被其他调用获取
+        DistributedLock current = lockManager.tryLock(keys, 2_000, LEASE_MILLIS);
+        assertThat(current).isNotNull();
+
+        lockManager.unlock(expired);
+        assertThat(lockManager.tryLock(keys, 0, LEASE_MILLIS)).isNull();
+        lockManager.unlock(current);
+        assertThat(lockManager.tryLock(keys, 0, LEASE_MILLIS)).isNotNull();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExpirationPolicyTest {
+
+    @Test
+    void jitterOnlyShortensTtlWithinTheRatio() {
+        ExpirationPolicy policy = newPolicy(0.1, false);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(policy.localTtl(10_000)).isBetween(9_000L, 10_000L);
+            assertThat(policy.remoteTtl(10_000)).isBetween(9_000L, 10_000L);
+        }
+        assertThat(newPolicy(0, false).remoteTtl(10_000)).isEqualTo(10_000);
+    }
+
+    @Test
+    void rejectsRatiosOutsideTheRange() {
+        assertThatThrownBy(() -> newPolicy(1, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cache.expiration.jitter.local");
+    }
+
+    @Test
+    void recomputesEarlyOnlyForKeysWithARecordedLoad() {
+        ExpirationPolicy policy = newPolicy(0, true);
+        long now = System.currentTimeMillis();
+
+        assertThat(policy.shouldRecomputeEarly("user:1", now + 1)).isFalse();
+
+        // 加载耗时约100毫秒，已过期的条目总会提前重新计算，离过期很远的条目几乎不会
+        policy.recordLoad("user:1", System.nanoTime() - 100_000_000L);
+        assertThat(policy.shouldRecomputeEarly("user:1", now)).isTrue();
+        assertThat(policy.shouldRecomputeEarly("user:1", now + 3_600_000)).isFalse();
+
+        ExpirationPolicy disabled = newPolicy(0, false);
+        disabled.recordLoad("user:1", System.nanoTime() - 100_000_000L);
+        assertThat(disabled.shouldRecomputeEarly("user:1", now)).isFalse();
+    }
+
+    static ExpirationPolicy newPolicy(double jitter, boolean earlyRecompute) {
+        ExpirationPolicy policy = new ExpirationPolicy();
+        ReflectionTestUtils.setField(policy, "localJitter", jitter);
+        ReflectionTestUtils.setField(policy, "offHeapJitter", jitter);
+        ReflectionTestUtils.setField(policy, "remoteJitter", jitter);
+        ReflectionTestUtils.setField(policy, "earlyRecomputeEnabled", earlyRecompute);
+        ReflectionTestUtils.setField(policy, "beta", 1.0);
+        ReflectionTestUtils.setField(policy, "trackedKeys", 100L);
+        ReflectionTestUtils.setField(policy, "retentionMillis", 60_000L);
+        policy.init();
+        return policy;
+    }
+}
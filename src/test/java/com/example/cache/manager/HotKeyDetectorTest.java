@@ -0,0 +1,83 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTest {
+
+    @Test
+    void admitsKeysOnceTheyReachTheThreshold() {
+        HotKeyDetector detector = detector(1_000, 2);
+
+        assertThat(detector.admit("a")).isFalse();
+        detector.recordAccess("a");
+        assertThat(detector.admit("a")).isFalse();
+        detector.recordAccess("a");
+        assertThat(detector.frequency("a")).isEqualTo(2);
+        assertThat(detector.admit("a")).isTrue();
+        // 其他键的计数不受影响
+        assertThat(detector.admit("b")).isFalse();
+    }
+
+    @Test
+    void admitsEverythingWhenDisabled() {
+        HotKeyDetector detector = detector(1_000, 2);
+        ReflectionTestUtils.setField(detector, "enabled", false);
+
+        assertThat(detector.admit("a")).isTrue();
+        assertThat(detector.isHot("a")).isFalse();
+    }
+
+    @Test
+    void hotSetKeepsTheMostFrequentKeys() {
+        HotKeyDetector detector = detector(1_000, 2);
+        access(detector, "a", 10);
+        access(detector, "b", 8);
+        access(detector, "c", 6);
+        access(detector, "d", 20);
+
+        for (String key : new String[]{"a", "b", "c", "d"}) {
+            detector.admit(key);
+        }
+
+        // 容量为2，c的频率低于集合中最冷的b不能进入，d替换b
+        assertThat(detector.getHotKeys()).containsOnlyKeys("d", "a");
+        assertThat(detector.getHotKeys().keySet()).containsExactly("d", "a");
+        assertThat(detector.isHot("b")).isFalse();
+        assertThat(detector.hotKeyCount()).isEqualTo(2);
+    }
+
+    @Test
+    void countersHalveAfterEachSampleWindow() {
+        HotKeyDetector detector = detector(16, 2);
+        access(detector, "a", 8);
+        detector.admit("a");
+        assertThat(detector.isHot("a")).isTrue();
+
+        // 窗口结束时所有计数器减半，频率低于热点阈值的键移出热点集合
+        access(detector, "b", 8);
+        assertThat(detector.frequency("a")).isEqualTo(4);
+        assertThat(detector.frequency("b")).isEqualTo(4);
+        assertThat(detector.isHot("a")).isFalse();
+    }
+
+    private static void access(HotKeyDetector detector, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            detector.recordAccess(key);
+        }
+    }
+
+    private static HotKeyDetector detector(int sampleSize, int capacity) {
+        HotKeyDetector detector = new HotKeyDetector();
+        ReflectionTestUtils.setField(detector, "enabled", true);
+        ReflectionTestUtils.setField(detector, "sketchWidth", 1024);
+        ReflectionTestUtils.setField(detector, "sampleSize", sampleSize);
+        ReflectionTestUtils.setField(detector, "admitThreshold", 2);
+        ReflectionTestUtils.setField(detector, "hotThreshold", 5);
+        ReflectionTestUtils.setField(detector, "capacity", capacity);
+        detector.init();
+        return detector;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@TestPropertySource(properties = {
+        "cache.bloom.enabled=true",
+        "cache.bloom.expected-insertions=10000",
+        "cache.bloom.sync-interval-millis=3600000",
+        "cache.remote.breaker.open-millis=100",
+        "cache.remote.breaker.half-open-calls=1"
+})
+class KeyBloomFilterTest extends RedisIntegrationTest {
+
+    private static final byte[] BITS_KEY = "cache:bloom:bits".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private KeyBloomFilter filter;
+
+    @Autowired
+    private CacheConsistencyManager cacheManager;
+
+    @Autowired
+    private RemoteCircuitBreaker breaker;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${cache.remote.breaker.minimum-calls:20}")
+    private int minimumCalls;
+
+    /**
+     * 另一个节点上的过滤器，只通过Redis看到本节点写入的位
+     */
+    private KeyBloomFilter otherNode;
+
+    @BeforeEach
+    void rebuild() {
+        filter.reset();
+        otherNode = newFilter(redisTemplate);
+    }
+
+    @AfterEach
+    void shutdown() {
+        otherNode.shutdown();
+    }
+
+    @Test
+    void rejectsUnknownKeysOnceComplete() {
+        String known = uniqueKey("user");
+        cacheManager.updateCache(known, "alice");
+        filter.markComplete();
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, String> loader = key -> {
+            loads.incrementAndGet();
+            return "loaded";
+        };
+
+        assertThat(filter.isReady()).isTrue();
+        assertThat(cacheManager.get(uniqueKey("missing"), loader)).isNull();
+        assertThat(loads.get()).isZero();
+        assertThat(cacheManager.get(known, loader)).isEqualTo("alice");
+    }
+
+    @Test
+    void writesBitsWithTheValue() {
+        String key = uniqueKey("user");
+
+        assertThat(cacheManager.<String>get(key, k -> "alice")).isEqualTo("alice");
+        filter.markComplete();
+        otherNode.sync();
+
+        assertThat(otherNode.mightContain(key)).isTrue();
+        assertThat(otherNode.mightContain(uniqueKey("missing"))).isFalse();
+        // 值与位图通过同一个管道写入，远程缓存可以正常读取
+        cacheManager.clearLocalCache(key);
+        assertThat(cacheManager.get(key)).isEqualTo("alice");
+    }
+
+    @Test
+    void keepsBitsLocallyWhenRedisWriteFailsAndMergesOnSync() {
+        String key = uniqueKey("user");
+        @SuppressWarnings("unchecked")
+        RedisTemplate<String, Object> failing = mock(RedisTemplate.class);
+        when(failing.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("Redis down"));
+        KeyBloomFilter disconnected = newFilter(failing);
+        ReflectionTestUtils.setField(disconnected, "redisTemplate", redisTemplate);
+        disconnected.sync();
+        ReflectionTestUtils.setField(disconnected, "redisTemplate", failing);
+
+        // 写入失败不抛出，位只设置在本地
+        disconnected.addAll(Collections.singleton(key));
+        filter.markComplete();
+        otherNode.sync();
+        assertThat(otherNode.mightContain(key)).isFalse();
+
+        // 恢复后的同步把本地的位合并到Redis
+        ReflectionTestUtils.setField(disconnected, "redisTemplate", redisTemplate);
+        disconnected.sync();
+        otherNode.sync();
+
+        assertThat(disconnected.mightContain(key)).isTrue();
+        assertThat(otherNode.mightContain(key)).isTrue();
+        disconnected.shutdown();
+    }
+
+    @Test
+    void keepsBitsLocallyWhileBreakerIsOpenAndMergesAfterRecovery() throws InterruptedException {
+        String key = uniqueKey("user");
+        for (int i = 0; i < minimumCalls; i++) {
+            breaker.recordFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.OPEN);
+
+        // 熔断期间回源仍然成功，位图只在本地设置
+        assertThat(cacheManager.<String>get(key, k -> "alice")).isEqualTo("alice");
+        assertThat(filter.mightContain(key)).isTrue();
+        assertThat(bitCount()).isZero();
+
+        closeBreaker();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (bitCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        filter.markComplete();
+        otherNode.sync();
+
+        assertThat(otherNode.mightContain(key)).isTrue();
+    }
+
+    private long bitCount() {
+        Long count = redisTemplate.execute((RedisCallback<Long>) connection -> connection.bitCount(BITS_KEY));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 等待熔断器进入半开状态，用一次成功的探测关闭
+     */
+    private void closeBreaker() throws InterruptedException {
+        Thread.sleep(150);
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.recordSuccess(System.nanoTime(), false);
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.CLOSED);
+    }
+
+    private static KeyBloomFilter newFilter(RedisTemplate<String, Object> redisTemplate) {
+        KeyBloomFilter filter = new KeyBloomFilter();
+        RemoteCircuitBreaker closed = mock(RemoteCircuitBreaker.class);
+        when(closed.allowsWrites()).thenReturn(true);
+        ReflectionTestUtils.setField(filter, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(filter, "remoteBreaker", closed);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "expectedInsertions", 10000L);
+        ReflectionTestUtils.setField(filter, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(filter, "syncIntervalMillis", 3_600_000L);
+        filter.init();
+        return filter;
+    }
+}
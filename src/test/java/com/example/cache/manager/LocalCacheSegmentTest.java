@@ -0,0 +1,78 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.CacheValueHolder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalCacheSegmentTest {
+
+    @Test
+    void entriesExpireByTheirOwnTtl() throws InterruptedException {
+        LocalCacheSegment segment = new LocalCacheSegment(100, null);
+        segment.put("short", "a", 50, TimeUnit.MILLISECONDS);
+        segment.put("long", "b", 1, TimeUnit.MINUTES);
+
+        Thread.sleep(100);
+
+        assertThat(segment.get("short")).isNull();
+        assertThat(segment.get("long")).isEqualTo("b");
+        assertThat(segment.getAll(new HashSet<>(Arrays.asList("short", "long")))).containsOnlyKeys("long");
+    }
+
+    @Test
+    void weightBoundLimitsEstimatedBytes() throws InterruptedException {
+        LocalEntryWeigher weigher = new LocalEntryWeigher(256);
+        long entryBytes = weigher.weigh("key-000", new CacheValueHolder<>("value-000", 60_000));
+        LocalCacheSegment segment = new LocalCacheSegment(entryBytes * 10, weigher);
+
+        for (int i = 0; i < 100; i++) {
+            segment.put(String.format("key-%03d", i), String.format("value-%03d", i), 1, TimeUnit.MINUTES);
+        }
+
+        awaitWeightAtMost(segment, entryBytes * 10);
+    }
+
+    @Test
+    void shrinkingEvictsDownToTheNewMaximum() throws InterruptedException {
+        LocalEntryWeigher weigher = new LocalEntryWeigher(256);
+        LocalCacheSegment segment = new LocalCacheSegment(1 << 20, weigher);
+        long weighted = 0;
+        for (int i = 0; i < 100; i++) {
+            segment.put("key-" + i, "value-" + i, 1, TimeUnit.MINUTES);
+            weighted += weigher.weigh("key-" + i, new CacheValueHolder<>("value-" + i, 60_000));
+        }
+
+        // 运行时缩小容量，超出的条目按淘汰策略淘汰
+        segment.setMaximum(weighted / 2);
+
+        assertThat(segment.getMaximum()).isEqualTo(weighted / 2);
+        awaitWeightAtMost(segment, weighted / 2);
+    }
+
+    @Test
+    void hottestSkipsExpiredEntries() throws InterruptedException {
+        LocalCacheSegment segment = new LocalCacheSegment(100, null);
+        segment.put("expiring", "a", 50, TimeUnit.MILLISECONDS);
+        segment.put("kept", "b", 1, TimeUnit.MINUTES);
+
+        Thread.sleep(100);
+
+        assertThat(segment.hottest(10)).containsOnlyKeys("kept");
+    }
+
+    /**
+     * 淘汰在Caffeine的维护任务中异步执行，等待权重降到容量以内
+     */
+    private static void awaitWeightAtMost(LocalCacheSegment segment, long maximum) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (segment.weightedSize() > maximum && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(segment.weightedSize()).isLessThanOrEqualTo(maximum);
+    }
+}
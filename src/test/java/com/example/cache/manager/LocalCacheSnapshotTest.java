@@ -0,0 +1,78 @@
+package com.example.cache.manager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+        "cache.local.snapshot.enabled=true",
+        "cache.local.snapshot.path=target/test-snapshot/local-cache.snapshot",
+        "cache.local.hot-key.enabled=false",
+        "jetcache.local.default.expireAfterWriteInMillis=100000"
+})
+class LocalCacheSnapshotTest extends RedisIntegrationTest {
+
+    private static final Path SNAPSHOT = Paths.get("target/test-snapshot/local-cache.snapshot");
+
+    @Autowired
+    private LocalCacheSnapshot snapshot;
+
+    @Autowired
+    private LocalCacheTier localTier;
+
+    @Autowired
+    private CacheConsistencyManager cacheManager;
+
+    @BeforeEach
+    void deleteSnapshot() throws IOException {
+        Files.deleteIfExists(SNAPSHOT);
+    }
+
+    @Test
+    void restoresEntriesThatDidNotChangeWhileDown() throws IOException {
+        String loaded = uniqueKey("loaded");
+        String unchanged = uniqueKey("unchanged");
+        String updated = uniqueKey("updated");
+        assertThat(cacheManager.<String>get(loaded, k -> "alice")).isEqualTo("alice");
+        cacheManager.updateCache(unchanged, "bob");
+        cacheManager.updateCache(updated, "carol");
+        assertThat(snapshot.save()).isGreaterThanOrEqualTo(3);
+
+        // 停机期间另一个节点更新了其中一个键
+        cacheManager.updateCache(updated, "dave");
+        localTier.removeAll(new HashSet<>(Arrays.asList(loaded, unchanged, updated)));
+
+        assertThat(snapshot.restore()).isGreaterThanOrEqualTo(2);
+        assertThat(VersionedValue.unwrap(localTier.get(loaded, null))).isEqualTo("alice");
+        assertThat(VersionedValue.unwrap(localTier.get(unchanged, null))).isEqualTo("bob");
+        assertThat(localTier.get(updated, null)).isNull();
+    }
+
+    @Test
+    void dropsEntriesThatExpiredDuringDowntime() throws IOException {
+        String key = uniqueKey("user");
+        cacheManager.updateCache(key, "alice");
+        assertThat(snapshot.save()).isPositive();
+        localTier.remove(key);
+
+        // 把写入时间提前到条目的剩余存活时间之前，快照本身仍在有效期内
+        try (RandomAccessFile file = new RandomAccessFile(SNAPSHOT.toFile(), "rw")) {
+            file.seek(4);
+            file.writeLong(System.currentTimeMillis() - 200_000);
+        }
+
+        assertThat(snapshot.restore()).isZero();
+        assertThat(localTier.get(key, null)).isNull();
+    }
+}
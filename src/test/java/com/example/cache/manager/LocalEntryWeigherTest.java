@@ -0,0 +1,80 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.CacheValueHolder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalEntryWeigherTest {
+
+    private static final int UNKNOWN_VALUE_BYTES = 256;
+
+    private final LocalEntryWeigher weigher = new LocalEntryWeigher(UNKNOWN_VALUE_BYTES);
+
+    @Test
+    void stringsGrowWithTheirLength() {
+        // 24字节的String对象加16字节头和每个字符2字节的数组，按8字节对齐
+        assertThat(weigher.estimate("")).isEqualTo(24 + 16);
+        assertThat(weigher.estimate("abcd")).isEqualTo(24 + 24);
+        assertThat(weigher.estimate(repeat('x', 1_000))).isGreaterThan(weigher.estimate(repeat('x', 10)));
+    }
+
+    @Test
+    void unknownTypesUseTheConfiguredSize() {
+        assertThat(weigher.estimate(new Object())).isEqualTo(UNKNOWN_VALUE_BYTES);
+        assertThat(weigher.estimate(null)).isZero();
+        assertThat(weigher.estimate(42L)).isEqualTo(24);
+        assertThat(weigher.estimate(42)).isEqualTo(16);
+    }
+
+    @Test
+    void largeCollectionsAreExtrapolatedFromASample() {
+        List<String> small = new ArrayList<>(Collections.nCopies(64, "value"));
+        List<String> large = new ArrayList<>(Collections.nCopies(6_400, "value"));
+
+        long smallBytes = weigher.estimate(small);
+        long largeBytes = weigher.estimate(large);
+
+        // 超出抽样数量的元素按平均大小推算，结果与逐个估算一致
+        assertThat(largeBytes - 40).isEqualTo((smallBytes - 40) * 100);
+    }
+
+    @Test
+    void nestedValuesBeyondTheDepthLimitUseTheConfiguredSize() {
+        Object nested = "leaf";
+        for (int i = 0; i < 6; i++) {
+            nested = Collections.singletonList(nested);
+        }
+
+        // 深度达到上限的部分按固定大小计算，不继续遍历
+        long bytes = weigher.estimate(nested);
+        assertThat(bytes).isEqualTo(4 * (40 + 16) + UNKNOWN_VALUE_BYTES);
+    }
+
+    @Test
+    void entryWeightIncludesKeyValueAndOverhead() {
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", "alice");
+        user.put("roles", Arrays.asList("admin", "ops"));
+        VersionedValue value = new VersionedValue(user, 1L);
+
+        int weight = weigher.weigh("user:1", new CacheValueHolder<>(value, 60_000));
+
+        assertThat(weight).isEqualTo(LocalEntryWeigher.ENTRY_OVERHEAD_BYTES
+                + weigher.estimate("user:1") + weigher.estimate(value));
+        assertThat(weigher.estimate(value)).isGreaterThan(weigher.estimate(user));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.cache.manager;
+
+import com.example.cache.codec.BinaryValueCodec;
+import com.example.cache.codec.VersionedValueSerializer;
+import com.example.cache.metrics.CacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class OffHeapCacheTierTest {
+
+    private static final BinaryValueCodec CODEC = new BinaryValueCodec(0)
+            .register(BinaryValueCodec.FIRST_CUSTOM_TAG, VersionedValue.class, new VersionedValueSerializer());
+
+    @Test
+    void roundTripsAndRemovesValues() {
+        OffHeapCacheTier tier = newTier(64 * 1024, 60_000);
+
+        tier.put("a", new VersionedValue("alice", 3));
+        tier.putAll(Collections.singletonMap("b", new VersionedValue("bob", 4)));
+
+        assertThat(tier.get("a")).isEqualTo(new VersionedValue("alice", 3));
+        assertThat(tier.getAll(new HashSet<>(Arrays.asList("a", "b", "c"))))
+                .containsOnlyKeys("a", "b");
+        tier.remove("a");
+        assertThat(tier.get("a")).isNull();
+        assertThat(tier.size()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsOldestEntriesWhenTheRingWraps() {
+        OffHeapCacheTier tier = newTier(8 * 1024, 60_000);
+        String payload = new String(new char[100]).replace('\0', 'x');
+
+        for (int i = 0; i < 500; i++) {
+            tier.put("key-" + i, payload + i);
+        }
+
+        // 环形写入只保留最近写入的条目，占用的空间不超过容量
+        assertThat(tier.get("key-0")).isNull();
+        assertThat(tier.get("key-499")).isEqualTo(payload + 499);
+        assertThat(tier.size()).isBetween(1L, 499L);
+        assertThat(tier.usedBytes()).isLessThanOrEqualTo(8 * 1024);
+    }
+
+    @Test
+    void overwrittenEntriesReleaseTheirBytes() {
+        OffHeapCacheTier tier = newTier(64 * 1024, 60_000);
+
+        for (int i = 0; i < 100; i++) {
+            tier.put("a", "value-" + i);
+        }
+
+        assertThat(tier.size()).isEqualTo(1);
+        assertThat(tier.usedBytes()).isEqualTo(CODEC.encode("value-99").length);
+    }
+
+    @Test
+    void keepsNewerVersionsAndInvalidatesOlderOnes() {
+        OffHeapCacheTier tier = newTier(64 * 1024, 60_000);
+        tier.put("a", new VersionedValue("v5", 5));
+
+        tier.putIfNewer("a", new VersionedValue("v4", 4));
+        assertThat(tier.get("a")).isEqualTo(new VersionedValue("v5", 5));
+
+        Map<String, Long> versions = new HashMap<>();
+        versions.put("a", 5L);
+        assertThat(tier.invalidate(versions)).isZero();
+        versions.put("a", 6L);
+        assertThat(tier.invalidate(versions)).isEqualTo(1);
+        assertThat(tier.get("a")).isNull();
+    }
+
+    @Test
+    void skipsValuesLargerThanASegmentAndExpiresEntries() throws InterruptedException {
+        OffHeapCacheTier tier = newTier(4 * 1024, 50);
+
+        tier.put("large", new String(new char[4096]).replace('\0', 'x'));
+        tier.put("small", "alice");
+
+        assertThat(tier.get("large")).isNull();
+        assertThat(tier.get("small")).isEqualTo("alice");
+        Thread.sleep(80);
+        assertThat(tier.get("small")).isNull();
+    }
+
+    private static OffHeapCacheTier newTier(long capacityBytes, long ttlMillis) {
+        CacheMetrics metrics = new CacheMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+        metrics.init();
+        OffHeapCacheTier tier = new OffHeapCacheTier();
+        ReflectionTestUtils.setField(tier, "enabled", true);
+        ReflectionTestUtils.setField(tier, "capacityBytes", capacityBytes);
+        ReflectionTestUtils.setField(tier, "segmentCount", 2);
+        ReflectionTestUtils.setField(tier, "ttlMillis", ttlMillis);
+        ReflectionTestUtils.setField(tier, "negativeTtlMillis", ttlMillis);
+        ReflectionTestUtils.setField(tier, "valueCodec", CODEC);
+        ReflectionTestUtils.setField(tier, "cacheMetrics", metrics);
+        ReflectionTestUtils.setField(tier, "tagIndex", mock(CacheTagIndex.class));
+        ReflectionTestUtils.setField(tier, "expirationPolicy", ExpirationPolicyTest.newPolicy(0, false));
+        tier.init();
+        return tier;
+    }
+}
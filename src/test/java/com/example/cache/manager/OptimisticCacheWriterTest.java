@@ -0,0 +1,155 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.Cache;
+import com.alicp.jetcache.CacheGetResult;
+import com.alicp.jetcache.anno.CacheType;
+import com.alicp.jetcache.anno.CreateCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OptimisticCacheWriterTest extends RedisIntegrationTest {
+
+    @Autowired
+    private OptimisticCacheWriter writer;
+
+    @CreateCache(name = "remoteCache", cacheType = CacheType.REMOTE)
+    private Cache<String, Object> remoteCache;
+
+    @Test
+    void appliesWhenVersionMatches() {
+        String key = uniqueKey("user");
+        assertThat(writer.currentVersion(key)).isZero();
+
+        CacheWriteResult result = writer.compareAndSet(key, "alice", 0, Collections.singleton("users"));
+
+        assertThat(result.isApplied()).isTrue();
+        assertThat(result.getVersion()).isEqualTo(1);
+        assertThat(writer.currentVersion(key)).isEqualTo(1);
+        // 脚本写入的值可以按远程缓存的格式正常读取，并携带新版本号和标签
+        Object cached = remoteCache.GET(key).getValue();
+        assertThat(VersionedValue.unwrap(cached)).isEqualTo("alice");
+        assertThat(VersionedValue.versionOf(cached)).isEqualTo(1);
+        assertThat(VersionedValue.tagsOf(cached)).containsExactly("users");
+    }
+
+    @Test
+    void reportsCurrentVersionOnConflict() {
+        String key = uniqueKey("user");
+        writer.compareAndSet(key, "alice", 0, null);
+        writer.compareAndSet(key, "bob", 1, null);
+
+        CacheWriteResult stale = writer.compareAndSet(key, "carol", 1, null);
+
+        assertThat(stale.getStatus()).isEqualTo(CacheWriteResult.Status.CONFLICT);
+        assertThat(stale.getVersion()).isEqualTo(2);
+        assertThat(VersionedValue.unwrap(remoteCache.GET(key).getValue())).isEqualTo("bob");
+
+        // 按冲突返回的版本号重试
+        CacheWriteResult retried = writer.compareAndSet(key, "carol", stale.getVersion(), null);
+        assertThat(retried.isApplied()).isTrue();
+        assertThat(retried.getVersion()).isEqualTo(3);
+        assertThat(VersionedValue.unwrap(remoteCache.GET(key).getValue())).isEqualTo("carol");
+    }
+
+    @Test
+    void deletesWhenVersionMatches() {
+        String key = uniqueKey("user");
+        writer.compareAndSet(key, "alice", 0, null);
+
+        CacheWriteResult stale = writer.compareAndDelete(key, 0);
+        assertThat(stale.getStatus()).isEqualTo(CacheWriteResult.Status.CONFLICT);
+        assertThat(remoteCache.GET(key).isSuccess()).isTrue();
+
+        CacheWriteResult deleted = writer.compareAndDelete(key, 1);
+        CacheGetResult<Object> afterDelete = remoteCache.GET(key);
+
+        assertThat(deleted.isApplied()).isTrue();
+        assertThat(deleted.getVersion()).isEqualTo(2);
+        assertThat(afterDelete.isSuccess()).isFalse();
+        // 版本号在删除后保留，之前读到的版本号不能再写入
+        assertThat(writer.compareAndSet(key, "stale", 1, null).getStatus())
+                .isEqualTo(CacheWriteResult.Status.CONFLICT);
+    }
+
+    @Test
+    void fillsOnlyWhileVersionIsUnchanged() {
+        String key = uniqueKey("user");
+        writer.compareAndSet(key, "alice", 0, null);
+
+        CacheWriteResult filled = writer.fillIfUnchanged(key,
+                new VersionedValue("loaded", VersionedValue.UNKNOWN_VERSION), 60_000, 1);
+
+        assertThat(filled.isApplied()).isTrue();
+        assertThat(filled.getVersion()).isEqualTo(1);
+        // 回填不递增版本号
+        assertThat(writer.currentVersion(key)).isEqualTo(1);
+        assertThat(VersionedValue.unwrap(remoteCache.GET(key).getValue())).isEqualTo("loaded");
+
+        writer.compareAndSet(key, "bob", 1, null);
+        CacheWriteResult stale = writer.fillIfUnchanged(key,
+                new VersionedValue("stale", VersionedValue.UNKNOWN_VERSION), 60_000, 1);
+
+        assertThat(stale.getStatus()).isEqualTo(CacheWriteResult.Status.CONFLICT);
+        assertThat(stale.getVersion()).isEqualTo(2);
+        assertThat(VersionedValue.unwrap(remoteCache.GET(key).getValue())).isEqualTo("bob");
+    }
+
+    @Test
+    void concurrentWritersRetryUntilEachWriteApplies() throws Exception {
+        String key = uniqueKey("counter");
+        int threads = 8;
+        int writesPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Long> appliedVersions = ConcurrentHashMap.newKeySet();
+        AtomicInteger conflicts = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String writerId = "writer-" + t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < writesPerThread; i++) {
+                        CacheWriteResult result = writer.compareAndSet(key, writerId, writer.currentVersion(key), null);
+                        while (result.getStatus() == CacheWriteResult.Status.CONFLICT) {
+                            conflicts.incrementAndGet();
+                            result = writer.compareAndSet(key, writerId, result.getVersion(), null);
+                        }
+                        assertThat(result.isApplied()).isTrue();
+                        appliedVersions.add(result.getVersion());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 每次成功的写入得到不同的版本号，没有写入丢失
+        int total = threads * writesPerThread;
+        assertThat(appliedVersions).containsExactlyInAnyOrderElementsOf(
+                LongStream.rangeClosed(1, total).boxed().collect(Collectors.toList()));
+        assertThat(writer.currentVersion(key)).isEqualTo(total);
+        assertThat(conflicts.get()).isPositive();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.cache.manager;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.UUID;
+
+/**
+ * 连接本地临时Redis的集成测试
+ * 同一个JVM中的所有子类共用一个Redis进程和一个Spring上下文，Redis在JVM退出时停止。
+ * 子类不清空Redis，每个测试使用带随机前缀的键，互不影响
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+abstract class RedisIntegrationTest {
+
+    private static final int REDIS_PORT = startRedis();
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.port", () -> REDIS_PORT);
+    }
+
+    /**
+     * 本次测试独有的键
+     */
+    static String uniqueKey(String name) {
+        return "test:" + UUID.randomUUID() + ":" + name;
+    }
+
+    private static int startRedis() {
+        try {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            RedisServer server = RedisServer.newRedisServer()
+                    .port(port)
+                    .bind("127.0.0.1")
+                    .setting("save \"\"")
+                    .setting("appendonly no")
+                    .onShutdownForceStop(true)
+                    .build();
+            server.start();
+            return port;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.cache.manager;
+
+import com.alicp.jetcache.Cache;
+import com.alicp.jetcache.anno.CacheType;
+import com.alicp.jetcache.anno.CreateCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+        "cache.local.refresh-ahead.enabled=true",
+        "cache.local.refresh-ahead.refresh-ratio=0.5",
+        "cache.local.refresh-ahead.stale-grace-millis=10000",
+        "cache.local.hot-key.enabled=false",
+        "jetcache.local.default.expireAfterWriteInMillis=400"
+})
+class RefreshAheadTest extends RedisIntegrationTest {
+
+    @Autowired
+    private CacheConsistencyManager cacheManager;
+
+    @Autowired
+    private LocalCacheTier localTier;
+
+    @CreateCache(name = "remoteCache", cacheType = CacheType.REMOTE)
+    private Cache<String, Object> remoteCache;
+
+    @Test
+    void readPastRefreshRatioReloadsInBackground() throws InterruptedException {
+        String key = uniqueKey("user");
+        assertThat(cacheManager.<String>get(key, k -> "alice")).isEqualTo("alice");
+        remoteCache.put(key, new VersionedValue("bob", 1));
+
+        Thread.sleep(250);
+        // 超过刷新比例时仍返回当前值，同时触发后台刷新
+        assertThat(cacheManager.get(key)).isEqualTo("alice");
+
+        // 刷新后的条目重新开始计时，没有刷新时本地缓存在过期后只会未命中
+        long deadline = System.currentTimeMillis() + 2_000;
+        Object refreshed = null;
+        while (!"bob".equals(refreshed) && System.currentTimeMillis() < deadline) {
+            refreshed = VersionedValue.unwrap(localTier.get(key, null));
+            Thread.sleep(10);
+        }
+        assertThat(refreshed).isEqualTo("bob");
+    }
+
+    @Test
+    void failedLoadServesStaleValueWithinGrace() throws InterruptedException {
+        String key = uniqueKey("user");
+        assertThat(cacheManager.<String>get(key, k -> "alice")).isEqualTo("alice");
+        remoteCache.remove(key);
+
+        Thread.sleep(450);
+        assertThat(localTier.get(key, null)).isNull();
+
+        Function<String, String> failing = k -> {
+            throw new IllegalStateException("source down");
+        };
+        assertThat(cacheManager.get(key, failing)).isEqualTo("alice");
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.cache.manager;
+
+import com.example.cache.metrics.CacheMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class RemoteCircuitBreakerTest {
+
+    private static final int MINIMUM_CALLS = 4;
+
+    private static final long OPEN_MILLIS = 50;
+
+    private RemoteCircuitBreaker breaker;
+
+    private final AtomicInteger recoveries = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        breaker = new RemoteCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "windowSize", 10);
+        ReflectionTestUtils.setField(breaker, "minimumCalls", MINIMUM_CALLS);
+        ReflectionTestUtils.setField(breaker, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(breaker, "openMillis", OPEN_MILLIS);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+        ReflectionTestUtils.setField(breaker, "readBudgetMillis", 1_000L);
+        ReflectionTestUtils.setField(breaker, "writeBudgetMillis", 1_000L);
+        ReflectionTestUtils.setField(breaker, "cacheMetrics", mock(CacheMetrics.class));
+        breaker.init();
+        breaker.onRecovery(recoveries::incrementAndGet);
+    }
+
+    @Test
+    void opensHalfOpensAndClosesAfterProbes() throws InterruptedException {
+        open();
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.allowsWrites()).isFalse();
+
+        Thread.sleep(OPEN_MILLIS + 20);
+        // 写入不会让熔断器进入半开状态
+        assertThat(breaker.allowsWrites()).isFalse();
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.OPEN);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.allowsWrites()).isFalse();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.recordSuccess(System.nanoTime(), false);
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.HALF_OPEN);
+        breaker.recordSuccess(System.nanoTime(), false);
+
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowsWrites()).isTrue();
+        assertThat(recoveries.get()).isEqualTo(1);
+    }
+
+    @Test
+    void writesDoNotCountAsProbes() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        // 打开前发出、半开后才完成的写入不关闭熔断器
+        breaker.recordSuccess(System.nanoTime(), true);
+        breaker.recordSuccess(System.nanoTime(), true);
+
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.HALF_OPEN);
+        assertThat(recoveries.get()).isZero();
+    }
+
+    @Test
+    void failedProbeReopens() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(recoveries.get()).isZero();
+    }
+
+    @Test
+    void slowCallsCountAsFailures() {
+        ReflectionTestUtils.setField(breaker, "readBudgetMillis", 0L);
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.recordSuccess(System.nanoTime() - 1_000_000, false);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.OPEN);
+    }
+
+    private void open() {
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            breaker.recordFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(RemoteCircuitBreaker.State.OPEN);
+    }
+}
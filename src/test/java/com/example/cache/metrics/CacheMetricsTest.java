@@ -0,0 +1,79 @@
+package com.example.cache.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final CacheMetrics metrics = new CacheMetrics();
+
+    @BeforeEach
+    void register() {
+        ReflectionTestUtils.setField(metrics, "registry", registry);
+        metrics.init();
+    }
+
+    @Test
+    void countsHitsMissesAndErrorsPerTier() {
+        long start = System.nanoTime();
+        metrics.local().recordGet(start, true);
+        metrics.local().recordGet(start, false);
+        metrics.local().recordGetAll(start, 4, 3);
+        metrics.remote().recordGetError(start);
+
+        assertThat(gets("l1", "hit")).isEqualTo(4);
+        assertThat(gets("l1", "miss")).isEqualTo(2);
+        assertThat(gets("l2", "error")).isEqualTo(1);
+        assertThat(gets("l2", "hit")).isZero();
+        assertThat(registry.get("cache.tier.hit.ratio").tag("tier", "l1").gauge().value())
+                .isEqualTo(4.0 / 6);
+        // 失败的读取不计入命中率
+        assertThat(registry.get("cache.tier.hit.ratio").tag("tier", "l2").gauge().value()).isZero();
+
+        assertThat(registry.get("cache.tier.latency").tag("tier", "l1").tag("operation", "get").timer().count())
+                .isEqualTo(2);
+        assertThat(registry.get("cache.tier.latency").tag("tier", "l1").tag("operation", "get_all").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void recordsInvalidationLagAndKeyCounts() {
+        long publishedAt = System.currentTimeMillis() - 50;
+        metrics.recordInvalidation(publishedAt, System.nanoTime(), 5, 2);
+        // 发布时间未知的批次不记录延迟，时钟偏差导致的负延迟按0记录
+        metrics.recordInvalidation(0, System.nanoTime(), 1, 1);
+        metrics.recordInvalidation(System.currentTimeMillis() + 60_000, System.nanoTime(), 1, 0);
+
+        assertThat(registry.get("cache.invalidation.keys").tag("result", "invalidated").counter().count())
+                .isEqualTo(3);
+        assertThat(registry.get("cache.invalidation.keys").tag("result", "skipped").counter().count())
+                .isEqualTo(4);
+        assertThat(registry.get("cache.invalidation.apply").timer().count()).isEqualTo(3);
+        assertThat(registry.get("cache.invalidation.lag").timer().count()).isEqualTo(2);
+        assertThat(registry.get("cache.invalidation.lag").timer().max(TimeUnit.MILLISECONDS))
+                .isBetween(50.0, 60_000.0);
+    }
+
+    @Test
+    void separatesAcquiredAndTimedOutLockWaits() {
+        metrics.recordLockWait(System.nanoTime(), true);
+        metrics.recordLockWait(System.nanoTime(), false);
+        metrics.recordLockWait(System.nanoTime(), false);
+
+        assertThat(registry.get("cache.lock.wait").tag("result", "acquired").timer().count()).isEqualTo(1);
+        assertThat(registry.get("cache.lock.wait").tag("result", "timeout").timer().count()).isEqualTo(2);
+    }
+
+    private double gets(String tier, String result) {
+        return registry.get("cache.tier.gets").tag("tier", tier).tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.cache.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+class UserWriteBehindQueueTest {
+
+    @TempDir
+    Path dir;
+
+    private final UserRepository repository = mock(UserRepository.class);
+
+    private final List<UserWriteBehindQueue> queues = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        reset(repository);
+        queues.forEach(UserWriteBehindQueue::shutdown);
+    }
+
+    @Test
+    void replaysWritesAfterLastCheckpoint() throws IOException {
+        UserWriteBehindQueue queue = newQueue(2, Long.MAX_VALUE);
+        queue.submit("u1", "alice");
+        queue.submit("u2", "bob");
+        queue.submit("u3", null);
+        queue.submit("u1", "alice-2");
+
+        // 队列按最后一次修改排序：u2、u3、u1，第一批写入u2和u3后检查点停在u1之前
+        assertThat(queue.flush()).isEqualTo(2);
+        verify(repository).deleteAll(Collections.singletonList("u3"));
+        verify(repository).saveAll(Collections.singletonMap("u2", "bob"));
+
+        // 进程崩溃，未关闭直接重启
+        UserWriteBehindQueue restarted = newQueue(2, Long.MAX_VALUE);
+
+        assertThat(restarted.pendingCount()).isEqualTo(1);
+        assertThat(restarted.lookup("u1").getUserInfo()).isEqualTo("alice-2");
+        assertThat(restarted.lookup("u2")).isNull();
+
+        // 重启后的序号接在日志中最大的序号之后
+        restarted.submit("u4", "dave");
+        assertThat(restarted.lookup("u4").getSeq()).isGreaterThan(restarted.lookup("u1").getSeq());
+        assertThat(restarted.flush()).isEqualTo(2);
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("u1", "alice-2");
+        expected.put("u4", "dave");
+        verify(repository).saveAll(expected);
+
+        assertThat(newQueue(2, Long.MAX_VALUE).pendingCount()).isZero();
+    }
+
+    @Test
+    void keepsFailedBatchForRetryAndReplay() throws IOException {
+        UserWriteBehindQueue queue = newQueue(10, Long.MAX_VALUE);
+        queue.submitAll(users("u1", "u2"));
+        doThrow(new IllegalStateException("storage down")).when(repository).saveAll(anyMap());
+
+        assertThatThrownBy(queue::flush).isInstanceOf(IllegalStateException.class);
+        assertThat(queue.pendingCount()).isEqualTo(2);
+        assertThat(newQueue(10, Long.MAX_VALUE).pendingCount()).isEqualTo(2);
+    }
+
+    @Test
+    void truncatesJournalOnceDrained() throws IOException {
+        UserWriteBehindQueue queue = newQueue(10, 0);
+        queue.submitAll(users("u1", "u2"));
+        queue.submitDeletes(Arrays.asList("u3"));
+
+        assertThat(queue.flush()).isEqualTo(3);
+
+        WriteBehindJournal journal = (WriteBehindJournal) ReflectionTestUtils.getField(queue, "journal");
+        assertThat(journal.size()).isZero();
+        assertThat(newQueue(10, 0).pendingCount()).isZero();
+    }
+
+    @Test
+    void rejectsWritesWhenQueueStaysFull() throws IOException {
+        UserWriteBehindQueue queue = newQueue(10, Long.MAX_VALUE);
+        ReflectionTestUtils.setField(queue, "maxPending", 1);
+        queue.submit("u1", "alice");
+
+        // 同一个用户的修改合并，不占用新的位置
+        queue.submit("u1", "alice-2");
+        assertThatThrownBy(() -> queue.submit("u2", "bob")).isInstanceOf(WriteBehindOverflowException.class);
+        assertThat(queue.pendingCount()).isEqualTo(1);
+    }
+
+    private UserWriteBehindQueue newQueue(int batchSize, long journalCompactBytes) throws IOException {
+        UserWriteBehindQueue queue = new UserWriteBehindQueue();
+        ReflectionTestUtils.setField(queue, "userRepository", repository);
+        ReflectionTestUtils.setField(queue, "enabled", true);
+        ReflectionTestUtils.setField(queue, "batchSize", batchSize);
+        // 测试中手动写入，不让后台线程参与
+        ReflectionTestUtils.setField(queue, "flushIntervalMillis", 3_600_000L);
+        ReflectionTestUtils.setField(queue, "maxPending", 100);
+        ReflectionTestUtils.setField(queue, "offerTimeoutMillis", 50L);
+        ReflectionTestUtils.setField(queue, "journalPath", dir.resolve("write-behind.journal").toString());
+        ReflectionTestUtils.setField(queue, "journalSync", false);
+        ReflectionTestUtils.setField(queue, "journalCompactBytes", journalCompactBytes);
+        queue.init();
+        queues.add(queue);
+        return queue;
+    }
+
+    private static Map<String, String> users(String... userIds) {
+        Map<String, String> users = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            users.put(userId, "info-" + userId);
+        }
+        return users;
+    }
+}
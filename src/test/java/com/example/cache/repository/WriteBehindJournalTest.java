@@ -0,0 +1,119 @@
+package com.example.cache.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsRecordsInAppendOrder() throws IOException {
+        Path path = dir.resolve("journal");
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, true)) {
+            journal.append(1, "u1", "alice");
+            journal.append(2, "u2", null);
+            journal.checkpoint(2);
+            journal.append(3, "u3", "用户");
+        }
+
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            List<WriteBehindJournal.Record> records = journal.readAll();
+
+            assertThat(records).extracting(WriteBehindJournal.Record::getSeq).containsExactly(1L, 2L, 2L, 3L);
+            assertThat(records).extracting(WriteBehindJournal.Record::isCheckpoint)
+                    .containsExactly(false, false, true, false);
+            assertThat(records.get(0).getUserInfo()).isEqualTo("alice");
+            assertThat(records.get(1).getUserId()).isEqualTo("u2");
+            assertThat(records.get(1).getUserInfo()).isNull();
+            assertThat(records.get(3).getUserInfo()).isEqualTo("用户");
+        }
+    }
+
+    @Test
+    void truncatesTornTailBeforeAppending() throws IOException {
+        Path path = dir.resolve("journal");
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            journal.append(1, "u1", "alice");
+            journal.append(2, "u2", "bob");
+        }
+        long complete = Files.size(path);
+        // 崩溃时第三条记录只写了一半
+        byte[] record = recordBytes(3, "u3", "carol");
+        Files.write(path, Arrays.copyOf(record, record.length / 2), StandardOpenOption.APPEND);
+
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            assertThat(journal.readAll()).extracting(WriteBehindJournal.Record::getSeq).containsExactly(1L, 2L);
+            assertThat(journal.size()).isEqualTo(complete);
+            journal.append(4, "u4", "dave");
+        }
+
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            assertThat(journal.readAll()).extracting(WriteBehindJournal.Record::getUserId)
+                    .containsExactly("u1", "u2", "u4");
+        }
+    }
+
+    @Test
+    void stopsAtLengthPastEndOfFile() throws IOException {
+        Path path = dir.resolve("journal");
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            journal.append(1, "u1", "alice");
+        }
+        long valid = Files.size(path);
+        Files.write(path, ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array(), StandardOpenOption.APPEND);
+
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            assertThat(journal.readAll()).hasSize(1);
+            assertThat(journal.size()).isEqualTo(valid);
+        }
+    }
+
+    @Test
+    void stopsAtRecordWithCorruptContent() throws IOException {
+        Path path = dir.resolve("journal");
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            journal.append(1, "u1", "alice");
+        }
+        long valid = Files.size(path);
+        // 长度完整但类型未知的记录
+        ByteBuffer corrupt = ByteBuffer.allocate(4 + 9).putInt(9).put((byte) 99).putLong(2);
+        Files.write(path, corrupt.array(), StandardOpenOption.APPEND);
+
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            assertThat(journal.readAll()).hasSize(1);
+            assertThat(journal.size()).isEqualTo(valid);
+        }
+    }
+
+    @Test
+    void truncateClearsJournal() throws IOException {
+        Path path = dir.resolve("nested").resolve("journal");
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            journal.append(1, "u1", "alice");
+            journal.truncate();
+
+            assertThat(journal.size()).isZero();
+            assertThat(journal.readAll()).isEmpty();
+        }
+    }
+
+    private byte[] recordBytes(long seq, String userId, String userInfo) throws IOException {
+        Path path = dir.resolve("record-" + seq);
+        try (WriteBehindJournal journal = new WriteBehindJournal(path, false)) {
+            journal.append(seq, userId, userInfo);
+        }
+        return Files.readAllBytes(path);
+    }
+}